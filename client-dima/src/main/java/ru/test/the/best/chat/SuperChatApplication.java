@@ -2,20 +2,38 @@ package ru.test.the.best.chat;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import redis.clients.jedis.ConnectionPoolConfig;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import ru.test.the.best.chat.config.InstantTypeAdapter;
+import ru.test.the.best.chat.metric.VirtualThreadPinningMonitor;
+import ru.test.the.best.chat.redis.JedisPoolMetrics;
+import ru.test.the.best.chat.redis.JedisPools;
+import ru.test.the.best.chat.redis.RedisClientCache;
+import ru.test.the.best.chat.redis.RedisReadRouter;
 
 import java.time.Duration;
 import java.time.Instant;
 
+@EnableScheduling
 @SpringBootApplication
 public class SuperChatApplication {
 
+    private static final String PRIMARY_POOL = "primary";
+    private static final String REPLICA_POOL = "replica";
+
     public static void main(String[] args) {
         SpringApplication.run(SuperChatApplication.class, args);
     }
@@ -29,25 +47,122 @@ public class SuperChatApplication {
     }
 
     @Bean
+    MeterBinder jedisPoolMetrics(@Qualifier("jedisPool") final JedisPool jedisPool) {
+        return new JedisPoolMetrics(jedisPool, PRIMARY_POOL);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "redis.replica.enabled", havingValue = "true")
+    MeterBinder replicaJedisPoolMetrics(@Qualifier("replicaJedisPool") final JedisPool replicaJedisPool) {
+        return new JedisPoolMetrics(replicaJedisPool, REPLICA_POOL);
+    }
+
+    /**
+     * Пул основного Redis: все записи и чтения, которым нужна свежесть.
+     */
+    @Bean
+    @Primary
     JedisPool jedisPool(
+            final JedisPoolConfig poolConfig,
+            @Value("${redis.host}") final String host,
+            @Value("${redis.port}") final int port,
+            @Value("${redis.password}") final String password,
+            @Value("${redis.username}") final String username,
+            @Value("${redis.validation.idle-threshold-ms}") final long validationIdleThresholdMillis,
+            final MeterRegistry meterRegistry) {
+        return JedisPools.create(PRIMARY_POOL, poolConfig, new HostAndPort(host, port),
+                username, password, validationIdleThresholdMillis, meterRegistry);
+    }
+
+    /**
+     * Пул реплики для чтений, которым допустимо отставание репликации (см. RedisReadRouter).
+     * Создаётся только при redis.replica.enabled=true; учётные данные те же, что у основного Redis.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "redis.replica.enabled", havingValue = "true")
+    JedisPool replicaJedisPool(
+            final JedisPoolConfig poolConfig,
+            @Value("${redis.replica.host}") final String host,
+            @Value("${redis.replica.port}") final int port,
+            @Value("${redis.password}") final String password,
+            @Value("${redis.username}") final String username,
+            @Value("${redis.validation.idle-threshold-ms}") final long validationIdleThresholdMillis,
+            final MeterRegistry meterRegistry) {
+        return JedisPools.create(REPLICA_POOL, poolConfig, new HostAndPort(host, port),
+                username, password, validationIdleThresholdMillis, meterRegistry);
+    }
+
+    /**
+     * Учёт закрепления виртуальных потоков; запись JFR запускается вместе с контекстом.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+    VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            final MeterRegistry meterRegistry,
+            @Value("${threads.virtual.pinned-threshold-ms:20}") final long thresholdMillis) {
+        return new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(thresholdMillis));
+    }
+
+    /**
+     * Выбор пула для чтений: реплика, если она настроена, кроме окна read-your-writes после записи.
+     */
+    @Bean
+    RedisReadRouter redisReadRouter(
+            @Qualifier("jedisPool") final JedisPool jedisPool,
+            @Qualifier("replicaJedisPool") final ObjectProvider<JedisPool> replicaJedisPool,
+            @Value("${redis.replica.read-your-writes-ms:2000}") final long readYourWritesMillis,
+            final MeterRegistry meterRegistry) {
+        return new RedisReadRouter(jedisPool, replicaJedisPool.getIfAvailable(),
+                Duration.ofMillis(readYourWritesMillis), meterRegistry);
+    }
+
+    /**
+     * Клиентский кеш значений сообщений с инвалидацией от Redis (RESP3 CLIENT TRACKING).
+     * Создаётся только при redis.client-cache.enabled=true; подключается к основному Redis
+     * отдельным пулом с размерами основного.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "redis.client-cache.enabled", havingValue = "true")
+    RedisClientCache redisClientCache(
+            final JedisPoolConfig poolConfig,
+            @Value("${redis.host}") final String host,
+            @Value("${redis.port}") final int port,
+            @Value("${redis.password}") final String password,
+            @Value("${redis.username}") final String username,
+            @Value("${redis.client-cache.max-size}") final int maxSize) {
+        final var connectionPoolConfig = new ConnectionPoolConfig();
+        connectionPoolConfig.setJmxEnabled(false);
+        connectionPoolConfig.setMaxTotal(poolConfig.getMaxTotal());
+        connectionPoolConfig.setMaxIdle(poolConfig.getMaxIdle());
+        connectionPoolConfig.setMinIdle(poolConfig.getMinIdle());
+        connectionPoolConfig.setBlockWhenExhausted(poolConfig.getBlockWhenExhausted());
+        connectionPoolConfig.setMaxWait(poolConfig.getMaxWaitDuration());
+        connectionPoolConfig.setTestWhileIdle(poolConfig.getTestWhileIdle());
+
+        return new RedisClientCache(new HostAndPort(host, port), username, password, maxSize, connectionPoolConfig);
+    }
+
+    /**
+     * Общие параметры пулов основного Redis и реплики.
+     */
+    @Bean
+    JedisPoolConfig jedisPoolConfig(
             @Value("${redis.max.total}") final int redisMaxTotal,
             @Value("${redis.max.idle}") final int redisMaxIdle,
             @Value("${redis.min.idle}") final int redisMinIdle,
             @Value("${redis.block.when.exhausted}") final boolean redisBlockWhenExhausted,
+            @Value("${redis.max.wait.ms}") final long redisMaxWaitMillis,
             @Value("${redis.test.on.borrow}") final boolean redisTestOnBorrow,
             @Value("${redis.test.on.return}") final boolean redisTestOnReturn,
             @Value("${redis.test.while.idle}") final boolean redisTestWhileIdle,
             @Value("${redis.min.evictable.idle.time}") final int minEvictableIdleTime,
             @Value("${redis.time.between.eviction.runs}") final int timeBetweenEvictionRuns,
-            @Value("${redis.num.tests.per.eviction.run}") final int numTestsPerEvictionRun,
-            @Value("${redis.host}") final String host,
-            @Value("${redis.port}") final int port,
-            @Value("${redis.password}") final String password,
-            @Value("${redis.username}") final String username
+            @Value("${redis.num.tests.per.eviction.run}") final int numTestsPerEvictionRun
 
     ) {
         final var poolConfig = new JedisPoolConfig();
 
+        // Состояние пула публикуется в Micrometer (JedisPoolMetrics, InstrumentedJedisPool), JMX не нужен
         poolConfig.setJmxEnabled(false);
 
         // === Основные параметры размера пула ===
@@ -84,6 +199,14 @@ public class SuperChatApplication {
          */
         poolConfig.setBlockWhenExhausted(redisBlockWhenExhausted);
 
+        /**
+         * Сколько поток ждёт свободное соединение, прежде чем получить JedisExhaustedPoolException.
+         * С виртуальными потоками число одновременных запросов не ограничено пулом потоков Tomcat,
+         * поэтому реальным ограничителем параллельности к Redis становится maxTotal, а maxWait
+         * не даёт очереди ожидания расти бесконечно: запрос быстро получает ошибку вместо зависания.
+         */
+        poolConfig.setMaxWait(Duration.ofMillis(redisMaxWaitMillis));
+
 
         // === Параметры проверки работоспособности соединений ===
 
@@ -130,6 +253,6 @@ public class SuperChatApplication {
          */
         poolConfig.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
 
-        return new JedisPool(poolConfig, host, port, username, password);
+        return poolConfig;
     }
 }
@@ -0,0 +1,122 @@
+package ru.test.the.best.chat.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.test.the.best.chat.errs.api.ApiResultResponse;
+import ru.test.the.best.chat.service.MessageDeleteAllJob;
+import ru.test.the.best.chat.model.dto.admin.DeleteAllStatusResponse;
+import ru.test.the.best.chat.model.dto.admin.KeySchemaMigrationStatusResponse;
+import ru.test.the.best.chat.service.MessageKeySchemaMigrationJob;
+
+/**
+ * Base URL: /api/v1/admin/messages
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/admin/messages")
+@RequiredArgsConstructor
+@Tag(name = "Messages admin", description = "Административные операции с сообщениями")
+public class MessageAdminController {
+
+    private final MessageDeleteAllJob messageDeleteAllJob;
+
+    private final MessageKeySchemaMigrationJob messageKeySchemaMigrationJob;
+
+    /**
+     * Запустить фоновое удаление всех сообщений.
+     *
+     * POST /api/v1/admin/messages/delete-all
+     */
+    @Operation(
+            summary = "Удалить все сообщения",
+            description = "Запускает фоновое удаление всех сообщений и индексов (SCAN + UNLINK). "
+                    + "Возвращает 409, если удаление уже выполняется"
+    )
+    @PostMapping("/delete-all")
+    public ResponseEntity<ApiResultResponse<DeleteAllStatusResponse>> startDeleteAll() {
+        log.warn("REST: POST /api/v1/admin/messages/delete-all - Starting delete all messages job");
+
+        var result = messageDeleteAllJob.start();
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to start delete all messages job: {}", result.getError().getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResultResponse.success(result.getValue()));
+    }
+
+    /**
+     * Получить прогресс удаления всех сообщений.
+     *
+     * GET /api/v1/admin/messages/delete-all
+     */
+    @Operation(
+            summary = "Прогресс удаления всех сообщений",
+            description = "Возвращает состояние последнего запуска удаления всех сообщений"
+    )
+    @GetMapping("/delete-all")
+    public ResponseEntity<ApiResultResponse<DeleteAllStatusResponse>> getDeleteAllStatus() {
+        log.debug("REST: GET /api/v1/admin/messages/delete-all - Fetching delete all messages job status");
+        return ResponseEntity.ok(ApiResultResponse.success(messageDeleteAllJob.status()));
+    }
+
+    /**
+     * Запустить фоновый перенос сообщений в текущую раскладку ключей.
+     *
+     * POST /api/v1/admin/messages/key-schema-migration
+     */
+    @Operation(
+            summary = "Перенести сообщения в текущую раскладку ключей",
+            description = "Запускает фоновый перенос сообщений из другой раскладки ключей (TEXT/BINARY) "
+                    + "в раскладку messages.key-schema и удаляет ключи исходной раскладки. "
+                    + "Запускать после переключения всех экземпляров. Возвращает 409, если перенос уже выполняется"
+    )
+    @PostMapping("/key-schema-migration")
+    public ResponseEntity<ApiResultResponse<KeySchemaMigrationStatusResponse>> startKeySchemaMigration() {
+        log.warn("REST: POST /api/v1/admin/messages/key-schema-migration - Starting key schema migration job");
+
+        var result = messageKeySchemaMigrationJob.start();
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to start key schema migration job: {}", result.getError().getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResultResponse.success(result.getValue()));
+    }
+
+    /**
+     * Получить прогресс переноса сообщений в текущую раскладку ключей.
+     *
+     * GET /api/v1/admin/messages/key-schema-migration
+     */
+    @Operation(
+            summary = "Прогресс переноса сообщений в текущую раскладку ключей",
+            description = "Возвращает состояние последнего запуска переноса сообщений между раскладками ключей"
+    )
+    @GetMapping("/key-schema-migration")
+    public ResponseEntity<ApiResultResponse<KeySchemaMigrationStatusResponse>> getKeySchemaMigrationStatus() {
+        log.debug("REST: GET /api/v1/admin/messages/key-schema-migration - Fetching key schema migration job status");
+        return ResponseEntity.ok(ApiResultResponse.success(messageKeySchemaMigrationJob.status()));
+    }
+}
@@ -10,10 +10,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.test.the.best.chat.errs.api.ApiResultResponse;
+import ru.test.the.best.chat.model.dto.message.BatchItemResponse;
 import ru.test.the.best.chat.model.dto.message.CreateMessageRequest;
 import ru.test.the.best.chat.model.dto.message.MessageResponse;
+import ru.test.the.best.chat.model.dto.message.MessageUpdatesResponse;
 import ru.test.the.best.chat.service.MessageService;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
@@ -24,6 +27,10 @@ import java.util.UUID;
 @Tag(name = "Messages", description = "API для управления сообщениями")
 public class MessageController {
 
+    private static final String DEFAULT_UPDATES_PAGE_SIZE = "200";
+
+    private static final int DEFAULT_CONVERSATION_PAGE_SIZE = 50;
+
     private final MessageService messageService;
 
     @Operation(
@@ -84,6 +91,41 @@ public class MessageController {
         return ResponseEntity.ok(ApiResultResponse.success(result.getValue().get()));
     }
 
+    /**
+     * Получить несколько сообщений по списку ID.
+     * Результат возвращается для каждого ID в порядке запроса.
+     * <p>
+     * GET /api/v1/messages?ids={id1},{id2}
+     */
+    @Operation(
+            summary = "Получить сообщения по списку ID",
+            description = "Возвращает результат для каждого ID (не больше " + MessageService.MAX_BATCH_SIZE
+                    + "), отсутствующие сообщения помечаются ошибкой entity.not.found"
+    )
+    @GetMapping(params = "ids")
+    public ResponseEntity<ApiResultResponse<List<BatchItemResponse<MessageResponse>>>> getMessagesByIds(
+            @Parameter(description = "UUID сообщений через запятую", required = true)
+            @RequestParam("ids") List<UUID> ids) {
+
+        log.info("REST: GET /api/v1/messages?ids - Fetching {} messages by ids", ids.size());
+
+        var result = messageService.findAllByIds(ids);
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to fetch messages by ids: {}", result.getError().getMessage());
+            HttpStatus status = determineHttpStatus(result.getError().getCode());
+            return ResponseEntity
+                    .status(status)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        log.info("REST: Successfully processed {} ids", ids.size());
+        return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
+    }
+
     /**
      * Получить все сообщения от конкретного пользователя.
      * <p>
@@ -154,24 +196,39 @@ public class MessageController {
 
     /**
      * Получить переписку между двумя пользователями.
+     * Без курсоров и limit возвращается вся переписка, с ними - страница по ID сообщений.
      * <p>
-     * GET /api/v1/messages/conversation?user1={id}&user2={id}
+     * GET /api/v1/messages/conversation?user1={id}&user2={id}&before={messageId}&after={messageId}&since={time}&limit={n}
      */
     @Operation(
             summary = "Получить переписку между пользователями",
-            description = "Возвращает все сообщения между двумя пользователями, отсортированные по дате"
+            description = "Возвращает сообщения между двумя пользователями в порядке создания. "
+                    + "before - страница истории до сообщения, after - новые сообщения после него, "
+                    + "since - сообщения начиная с момента времени"
     )
     @GetMapping("/conversation")
     public ResponseEntity<ApiResultResponse<List<MessageResponse>>> getConversation(
             @Parameter(description = "UUID первого пользователя", required = true)
             @RequestParam("user1") UUID user1Id,
             @Parameter(description = "UUID второго пользователя", required = true)
-            @RequestParam("user2") UUID user2Id) {
-
-        log.info("REST: GET /api/v1/messages/conversation?user1={}&user2={} - Fetching conversation",
-                user1Id, user2Id);
-
-        var result = messageService.findConversation(user1Id, user2Id);
+            @RequestParam("user2") UUID user2Id,
+            @Parameter(description = "Курсор: вернуть сообщения, созданные строго раньше сообщения с этим ID")
+            @RequestParam(value = "before", required = false) UUID before,
+            @Parameter(description = "Курсор: вернуть сообщения, созданные строго позже сообщения с этим ID")
+            @RequestParam(value = "after", required = false) UUID after,
+            @Parameter(description = "Вернуть сообщения, созданные начиная с этого момента (ISO-8601), если after не задан")
+            @RequestParam(value = "since", required = false) Instant since,
+            @Parameter(description = "Размер страницы (1-" + MessageService.MAX_CONVERSATION_PAGE_SIZE + ")")
+            @RequestParam(value = "limit", required = false) Integer limit) {
+
+        log.info("REST: GET /api/v1/messages/conversation?user1={}&user2={}&before={}&after={}&since={}&limit={} - Fetching conversation",
+                user1Id, user2Id, before, after, since, limit);
+
+        final boolean paged = before != null || after != null || since != null || limit != null;
+        var result = paged
+                ? messageService.findConversation(user1Id, user2Id, after, before, since,
+                        limit != null ? limit : DEFAULT_CONVERSATION_PAGE_SIZE)
+                : messageService.findConversation(user1Id, user2Id);
 
         if (result.isFailure()) {
             log.warn("REST: Failed to fetch conversation between users: {} and {}",
@@ -190,6 +247,48 @@ public class MessageController {
         return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
     }
 
+    /**
+     * Получить сообщения пользователя, созданные или изменённые после курсора.
+     * Первый запрос выполняется без since, следующие - с cursor из предыдущего ответа.
+     * <p>
+     * GET /api/v1/messages/updates?user={id}&since={cursor}&limit={n}
+     */
+    @Operation(
+            summary = "Получить новые сообщения пользователя",
+            description = "Дельта-синхронизация: возвращает входящие и исходящие сообщения пользователя, "
+                    + "созданные или изменённые после курсора, и курсор для следующего запроса. "
+                    + "ID удалённых после курсора сообщений возвращаются в deletedIds"
+    )
+    @GetMapping("/updates")
+    public ResponseEntity<ApiResultResponse<MessageUpdatesResponse>> getUpdates(
+            @Parameter(description = "UUID пользователя", required = true)
+            @RequestParam("user") UUID userId,
+            @Parameter(description = "Курсор из предыдущего ответа (без него - с начала)")
+            @RequestParam(value = "since", required = false) String since,
+            @Parameter(description = "Размер страницы (1-" + MessageService.MAX_UPDATES_PAGE_SIZE + ")")
+            @RequestParam(value = "limit", defaultValue = DEFAULT_UPDATES_PAGE_SIZE) int limit) {
+
+        log.debug("REST: GET /api/v1/messages/updates?user={}&since={}&limit={} - Fetching updates",
+                userId, since, limit);
+
+        var result = messageService.findUpdates(userId, since, limit);
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to fetch updates for user: {}", userId);
+            HttpStatus status = determineHttpStatus(result.getError().getCode());
+            return ResponseEntity
+                    .status(status)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        log.debug("REST: Successfully fetched {} updates for user: {}, next cursor: {}",
+                result.getValue().messages().size(), userId, result.getValue().cursor());
+        return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
+    }
+
     /**
      * Отправить сообщение.
      * <p>
@@ -226,6 +325,40 @@ public class MessageController {
                 .body(ApiResultResponse.success(null));
     }
 
+    /**
+     * Отправить несколько сообщений одним запросом.
+     * Некорректные элементы не прерывают пакет: результат возвращается для каждого элемента.
+     * <p>
+     * POST /api/v1/messages/batch
+     */
+    @Operation(
+            summary = "Отправить пакет сообщений",
+            description = "Создает до " + MessageService.MAX_BATCH_SIZE
+                    + " сообщений за один запрос и возвращает результат для каждого"
+    )
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResultResponse<List<BatchItemResponse<Void>>>> sendMessages(
+            @RequestBody List<CreateMessageRequest> requests) {
+
+        log.info("REST: POST /api/v1/messages/batch - Sending {} messages", requests.size());
+
+        var result = messageService.saveAll(requests);
+
+        if (result.isFailure()) {
+            var error = result.getError();
+            log.warn("REST: Failed to send batch of messages: {} - {}", error.getCode(), error.getMessage());
+
+            HttpStatus status = determineHttpStatus(error.getCode());
+
+            return ResponseEntity
+                    .status(status)
+                    .body(ApiResultResponse.failure(error.getCode(), error.getMessage()));
+        }
+
+        log.info("REST: Successfully processed batch of {} messages", requests.size());
+        return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
+    }
+
     /**
      * Обновить сообщение.
      * <p>
@@ -297,12 +430,47 @@ public class MessageController {
                 .build();
     }
 
+    /**
+     * Удалить несколько сообщений по списку ID.
+     * <p>
+     * DELETE /api/v1/messages?ids={id1},{id2}
+     */
+    @Operation(
+            summary = "Удалить сообщения по списку ID",
+            description = "Удаляет до " + MessageService.MAX_BATCH_SIZE
+                    + " сообщений и возвращает результат для каждого ID"
+    )
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<ApiResultResponse<List<BatchItemResponse<Void>>>> deleteMessages(
+            @Parameter(description = "UUID сообщений через запятую", required = true)
+            @RequestParam("ids") List<UUID> ids) {
+
+        log.info("REST: DELETE /api/v1/messages?ids - Deleting {} messages", ids.size());
+
+        var result = messageService.deleteAllByIds(ids);
+
+        if (result.isFailure()) {
+            var error = result.getError();
+            log.warn("REST: Failed to delete messages by ids: {} - {}", error.getCode(), error.getMessage());
+
+            HttpStatus status = determineHttpStatus(error.getCode());
+
+            return ResponseEntity
+                    .status(status)
+                    .body(ApiResultResponse.failure(error.getCode(), error.getMessage()));
+        }
+
+        log.info("REST: Successfully processed delete of {} messages", ids.size());
+        return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
+    }
+
     private HttpStatus determineHttpStatus(String errorCode) {
         return switch (errorCode) {
             case "entity.not.found", "record.not.found", "message.not.found" -> HttpStatus.NOT_FOUND;
             case "duplicate.entity", "data.conflict" -> HttpStatus.CONFLICT;
             case "validation.error", "value.is.invalid", "value.is.empty",
-                 "value.is.required", "invalid.string.length", "invalid.format" -> HttpStatus.BAD_REQUEST;
+                 "value.is.required", "invalid.string.length", "invalid.format",
+                 "collection.is.too.small", "collection.is.too.large" -> HttpStatus.BAD_REQUEST;
             case "access.denied" -> HttpStatus.FORBIDDEN;
             case "authentication.failed", "invalid.token" -> HttpStatus.UNAUTHORIZED;
             case "database.error", "internal.server.error" -> HttpStatus.INTERNAL_SERVER_ERROR;
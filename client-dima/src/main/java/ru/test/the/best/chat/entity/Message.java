@@ -3,15 +3,18 @@ package ru.test.the.best.chat.entity;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import lombok.Value;
+import ru.test.the.best.chat.codec.BinaryMessageFormat;
 import ru.test.the.best.chat.entity.value.DataMessage;
 import ru.test.the.best.chat.errs.Error;
 import ru.test.the.best.chat.errs.GeneralErrors;
 import ru.test.the.best.chat.errs.Guard;
 import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.id.UuidV7;
 import ru.test.the.best.chat.model.dto.message.CreateMessageRequest;
 import ru.test.the.best.chat.model.dto.message.MessageResponse;
 
 import java.time.Instant;
+import java.util.Base64;
 import java.util.UUID;
 
 @Value
@@ -43,6 +46,8 @@ public class Message {
 
     public static Result<Message, Error> create(final UUID id, final Instant date, final UUID from, final UUID to, final DataMessage dataMessage) {
         if (Guard.isNull(date)) return Result.failure(GeneralErrors.valueIsEmpty("date"));
+        if (!BinaryMessageFormat.isSupportedDate(date)) return Result.failure(GeneralErrors.valueIsOutOfRange(
+                "date", date, BinaryMessageFormat.MIN_DATE, BinaryMessageFormat.MAX_DATE));
         if (Guard.isNullOrEmpty(from)) return Result.failure(GeneralErrors.valueIsEmpty("from"));
         if (Guard.isNullOrEmpty(to)) return Result.failure(GeneralErrors.valueIsEmpty("to"));
         if (Guard.isNull(dataMessage)) return Result.failure(GeneralErrors.valueIsEmpty("dataMessage"));
@@ -51,7 +56,7 @@ public class Message {
     }
 
     public static Result<Message, Error> update(final Instant date, final UUID from, final UUID to, final DataMessage dataMessage) {
-        return create(UUID.randomUUID(), date, from, to, dataMessage);
+        return create(UuidV7.next(), date, from, to, dataMessage);
     }
 
     public static Result<Message, Error> from(final CreateMessageRequest messageRequest) {
@@ -68,13 +73,20 @@ public class Message {
         return update(messageRequest.date(), messageRequest.from(), messageRequest.to(), dateMessageErrorResult.getValue());
     }
 
+    /**
+     * Ответ с содержимым: текст для STRING, Base64 для IMAGE и SOUND.
+     */
     public MessageResponse toMessageResponse() {
+        final String data = "STRING".equals(this.dataMessage.getType())
+                ? this.dataMessage.deserializeToString().getValue()
+                : Base64.getEncoder().encodeToString(this.dataMessage.getData());
+
         return new MessageResponse(
                 this.id,
                 this.date,
                 this.from,
                 this.to,
-                this.dataMessage.deserializeToString().getValue(),
+                data,
                 this.dataMessage.getType()
         );
     }
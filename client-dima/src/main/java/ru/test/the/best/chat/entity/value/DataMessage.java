@@ -1,8 +1,11 @@
 package ru.test.the.best.chat.entity.value;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 import lombok.Value;
+import ru.test.the.best.chat.codec.PayloadInflater;
 import ru.test.the.best.chat.errs.Error;
 import ru.test.the.best.chat.errs.GeneralErrors;
 import ru.test.the.best.chat.errs.Guard;
@@ -26,9 +29,23 @@ public class DataMessage {
     byte[] data;
     Type type;
 
+    /**
+     * Распаковка data, если содержимое прочитано из хранилища сжатым; null - data хранится как есть.
+     * Содержимое распаковывается при каждом обращении к нему и нигде не кешируется.
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    transient PayloadInflater inflater;
+
     private DataMessage(final byte[] data, final Type type) {
+        this(data, type, null);
+    }
+
+    private DataMessage(final byte[] data, final Type type, final PayloadInflater inflater) {
         this.data = data;
         this.type = type;
+        this.inflater = inflater;
     }
 
     public static Result<DataMessage, Error> create(
@@ -45,6 +62,26 @@ public class DataMessage {
         return Result.success(new DataMessage(data, maybeType.getValue()));
     }
 
+    /**
+     * Создать содержимое из сжатых байт хранилища без распаковки.
+     * Распаковка выполняется при обращении к содержимому: getData и deserializeTo*.
+     *
+     * @param compressedData сжатое содержимое
+     * @param type           тип содержимого
+     * @param inflater       распаковка содержимого
+     * @return Result с содержимым или Error
+     */
+    public static Result<DataMessage, Error> compressed(
+            final byte[] compressedData, final String type, final PayloadInflater inflater
+    ) {
+        if (Guard.isNull(inflater)) return Result.failure(GeneralErrors.valueIsEmpty("inflater"));
+
+        final var dataMessage = create(compressedData, type);
+        if (dataMessage.isFailure()) return dataMessage;
+
+        return Result.success(new DataMessage(compressedData, dataMessage.getValue().type, inflater));
+    }
+
     private static Result<Type, Error> toType(final String typeStr) {
         if (Guard.isNullOrEmpty(typeStr)) return Result.failure(GeneralErrors.valueIsEmpty("typeStr"));
 
@@ -65,8 +102,11 @@ public class DataMessage {
         if (this.type != Type.STRING)
             return Result.failure(GeneralErrors.illegalState("Cannot deserialize to String, message type is " + this.type));
 
+        final var payload = payload();
+        if (payload.isFailure()) return Result.failure(payload.getError());
+
         // Декодирование в строку с использованием стандартной кодировки UTF-8.
-        return Result.success(new String(this.data, StandardCharsets.UTF_8));
+        return Result.success(new String(payload.getValue(), StandardCharsets.UTF_8));
     }
 
     /**
@@ -80,7 +120,10 @@ public class DataMessage {
         if (this.type != Type.IMAGE)
             return Result.failure(GeneralErrors.illegalState("Cannot deserialize to Image, message type is " + this.type));
 
-        try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(this.data)) {
+        final var payload = payload();
+        if (payload.isFailure()) return Result.failure(payload.getError());
+
+        try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(payload.getValue())) {
             final var image = ImageIO.read(inputStream);
 
             if (Guard.isNull(image))
@@ -103,7 +146,10 @@ public class DataMessage {
         if (this.type != Type.SOUND)
             return Result.failure(GeneralErrors.illegalState("Cannot deserialize to Sound, message type is " + this.type));
 
-        try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(this.data)) {
+        final var payload = payload();
+        if (payload.isFailure()) return Result.failure(payload.getError());
+
+        try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(payload.getValue())) {
             return Result.success(AudioSystem.getAudioInputStream(inputStream));
         } catch (final UnsupportedAudioFileException e) {
             return Result.failure(GeneralErrors.deserializationError("Failed to deserialize sound, unsupported audio format: " + e.getMessage()));
@@ -112,14 +158,30 @@ public class DataMessage {
         }
     }
 
+    /**
+     * Содержимое сообщения (распакованное, если оно хранится сжатым).
+     *
+     * @throws IllegalStateException если сжатое содержимое повреждено
+     */
     public byte[] getData() {
-        return Arrays.copyOf(data, data.length);
+        if (this.inflater == null) return Arrays.copyOf(data, data.length);
+
+        final var payload = payload();
+        if (payload.isFailure()) throw new IllegalStateException(payload.getError().getMessage());
+
+        return payload.getValue();
     }
 
     public String getType() {
         return type.name();
     }
 
+    private Result<byte[], Error> payload() {
+        if (this.inflater == null) return Result.success(this.data);
+
+        return this.inflater.inflate(this.type.name(), this.data);
+    }
+
     private enum Type {
         STRING, IMAGE, SOUND
     }
@@ -1,16 +1,38 @@
 package ru.test.the.best.chat.repository;
 
-import com.google.gson.Gson;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 
 import org.springframework.stereotype.Repository;
 import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.params.ZAddParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.resps.Tuple;
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.codec.MessageCodec;
 import ru.test.the.best.chat.entity.Message;
 import ru.test.the.best.chat.errs.*;
 import ru.test.the.best.chat.errs.Error;
-
+import ru.test.the.best.chat.id.UuidV7;
+import ru.test.the.best.chat.redis.KeySchema;
+import ru.test.the.best.chat.redis.KeySchemaMigrationJob;
+import ru.test.the.best.chat.redis.LuaScript;
+import ru.test.the.best.chat.redis.RedisClientCache;
+import ru.test.the.best.chat.redis.RedisReadRouter;
+
+import java.time.Instant;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
@@ -25,21 +47,107 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
 
     private static final String ALL_MESSAGES_KEY = "messages:all";
 
+    private static final String MESSAGE_SEQUENCE_KEY = "messages:seq";
+
+    private static final String USER_UPDATES_INDEX_PREFIX = "user:updates:";
+
+    /**
+     * Запись об удалении в ленте изменений: deleted:{id} вместо ID удалённого сообщения.
+     */
+    private static final String TOMBSTONE_MEMBER_PREFIX = "deleted:";
+
+    /**
+     * Переписка пары пользователей: ZSET с одинаковым score 0, члены - ID сообщений.
+     * ID - UUIDv7, поэтому лексикографический порядок членов совпадает с порядком создания сообщений.
+     */
+    private static final String CONVERSATION_INDEX_PREFIX = "conversation:lex:";
+
+    private static final String UPDATES_BACKFILL_DONE_KEY = "updates:backfill:done";
+
+    private static final String UPDATES_BACKFILL_LOCK_KEY = "updates:backfill:lock";
+
+    private static final String CONVERSATION_BACKFILL_DONE_KEY = "backfill:conversation:lex:done";
+
+    private static final String CONVERSATION_BACKFILL_LOCK_KEY = "backfill:conversation:lex:lock";
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private static final int BACKFILL_LOCK_TTL = 600; // 10 минут
+
     private static final int MESSAGE_TTL = 86400 * 30; // 30 дней
 
+    private static final int DELETE_ALL_SCAN_COUNT = 1000;
+
+    private static final int MIGRATION_BATCH_SIZE = 500;
+
+    private static final byte[] LEX_MIN = SafeEncoder.encode("-");
+
+    private static final byte[] LEX_MAX = SafeEncoder.encode("+");
+
+    private static final byte[] SET_INDEX_SPEC = SafeEncoder.encode("S");
+
+    private static final byte[] CONVERSATION_INDEX_SPEC = SafeEncoder.encode("Z0");
+
+    private static final byte[] SEQUENCE_SPEC = SafeEncoder.encode("C");
+
+    private static final byte[] SEQUENCE_INDEX_SPEC = SafeEncoder.encode("Q");
+
+    private static final LuaScript SAVE_SCRIPT = LuaScript.fromClasspath("save_message.lua");
+    private static final LuaScript DELETE_SCRIPT = LuaScript.fromClasspath("delete_message.lua");
+    private static final LuaScript UPDATE_SCRIPT = LuaScript.fromClasspath("update_message.lua");
+    private static final LuaScript BACKFILL_UPDATES_SCRIPT = LuaScript.fromClasspath("backfill_updates.lua");
+    /** Ответ delete/update скриптов: участники в значении сменились после чтения, ключи индексов устарели */
+    private static final Long STALE_INDEX_KEYS = -1L;
+    /** Сколько раз перечитать значение, если ключи индексов устаревают при конкурентных изменениях */
+    private static final int STALE_INDEX_ATTEMPTS = 3;
+
     private final JedisPool jedisPool;
 
-    private final Gson gson;
+    private final RedisReadRouter readRouter;
+
+    private final MessageCodec<Message> messageCodec;
+
+    /**
+     * Представление ID в ключах и членах индексов (messages.key-schema).
+     */
+    private final KeySchema keySchema;
+
+    /**
+     * Шаблоны индексов для Lua-скриптов (формат описан в message_lib.lua).
+     * Состав и порядок должны совпадать с {@link #scriptKeys(Message)} и {@link #indexSpecs(Message)}
+     * (кроме счётчика messages:seq: он не индекс, и шаблона у него нет).
+     */
+    private final List<byte[]> indexTemplates;
+
+    /**
+     * Клиентский кеш значений сообщений (redis.client-cache.enabled), null если выключен.
+     */
+    private final RedisClientCache clientCache;
+
+    /**
+     * Индекс переписок построен для всех сообщений (маркер backfill найден).
+     * До этого полная переписка читается пересечением индексов отправителя и получателя.
+     */
+    private volatile boolean conversationIndexReady;
 
     @Autowired
-    public MessageRedisRepository(final JedisPool jedisPool, final Gson gson) {
-        this.jedisPool = Objects.requireNonNull(jedisPool, "jedisPool must not be null");
-        this.gson = Objects.requireNonNull(gson, "gson must not be null");
-        log.info("MessageRedisRepository initialized");
+    public MessageRedisRepository(
+            final RedisReadRouter readRouter,
+            final MessageCodec<Message> messageCodec,
+            final ObjectProvider<RedisClientCache> clientCache,
+            @Value("${messages.key-schema:TEXT}") final KeySchema keySchema) {
+        this.readRouter = Objects.requireNonNull(readRouter, "readRouter must not be null");
+        this.jedisPool = readRouter.primary();
+        this.messageCodec = Objects.requireNonNull(messageCodec, "messageCodec must not be null");
+        this.clientCache = clientCache.getIfAvailable();
+        this.keySchema = Objects.requireNonNull(keySchema, "keySchema must not be null");
+        this.indexTemplates = indexTemplates(keySchema);
+        log.info("MessageRedisRepository initialized with {} key schema", keySchema);
     }
 
     /**
      * Сохранить сообщение с индексацией.
+     * Значение и все индексы записываются одним вызовом Lua-скрипта (EVALSHA).
      *
      * @param message сообщение для сохранения
      * @return UnitResult с результатом операции
@@ -59,34 +167,136 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
         }
 
         try (Jedis jedis = jedisPool.getResource()) {
-            final String messageKey = MESSAGE_KEY_PREFIX + message.getId();
-            final String fromIndexKey = USER_FROM_INDEX_PREFIX + message.getFrom();
-            final String toIndexKey = USER_TO_INDEX_PREFIX + message.getTo();
-            final String messageIdStr = message.getId().toString();
+            SAVE_SCRIPT.eval(jedis, scriptKeys(message), saveArgs(message));
+            readRouter.recordWrite(message.getFrom());
+
+            log.info("Successfully saved message: {} from {} to {}",
+                    message.getId(), message.getFrom(), message.getTo());
+            return UnitResult.success();
+
+        } catch (Exception e) {
+            log.error("Error occurred while saving message: {}", message.getId(), e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Сохранить несколько сообщений одним pipeline вызовов save_message.lua на одном соединении.
+     * Каждый скрипт атомарен сам по себе, результат возвращается для каждого сообщения отдельно.
+     *
+     * @param messages сообщения для сохранения
+     * @return результаты в том же порядке, что и messages
+     */
+    @Override
+    public List<UnitResult<Error>> saveAll(final List<Message> messages) {
+        if (Guard.isNull(messages) || messages.isEmpty()) {
+            log.debug("SaveAll called with no messages");
+            return Collections.emptyList();
+        }
+
+        log.debug("Attempting to save {} messages", messages.size());
+
+        final List<UnitResult<Error>> results = new ArrayList<>(Collections.nCopies(messages.size(), null));
+        final List<Integer> pending = new ArrayList<>(messages.size());
+
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = messages.get(i);
+            if (Guard.isNull(message)) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsRequired("message")));
+            } else if (Guard.isNullOrEmpty(message.getId())) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsRequired("message.id")));
+            } else {
+                pending.add(i);
+            }
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            final List<Object> replies = evalBatch(jedis, SAVE_SCRIPT,
+                    pending.stream().map(i -> scriptKeys(messages.get(i))).toList(),
+                    pending.stream().map(i -> saveArgs(messages.get(i))).toList());
+
+            for (int i = 0; i < pending.size(); i++) {
+                final int index = pending.get(i);
+                if (replies.get(i) instanceof Exception e) {
+                    log.error("Error occurred while saving message: {}", messages.get(index).getId(), e);
+                    results.set(index, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                } else {
+                    results.set(index, UnitResult.success());
+                    readRouter.recordWrite(messages.get(index).getFrom());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error occurred while saving {} messages", messages.size(), e);
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                }
+            }
+        }
 
-            // Сериализация
-            final String jsonMessage = gson.toJson(message);
+        log.info("Saved batch of {} messages", messages.size());
+        return results;
+    }
 
-            Transaction transaction = jedis.multi();
-            transaction.set(messageKey, jsonMessage);
-            transaction.sadd(fromIndexKey, messageIdStr);
-            transaction.sadd(toIndexKey, messageIdStr);
-            transaction.sadd(ALL_MESSAGES_KEY, messageIdStr);
-            transaction.expire(messageKey, MESSAGE_TTL);
+    /**
+     * Обновить существующее сообщение (check-and-set).
+     * Lua-скрипт проверяет существование, переносит записи индексов и сохраняет TTL атомарно.
+     * Ключи старых индексов строятся по прочитанному перед скриптом значению ({@link #readStored(Jedis, UUID)}).
+     *
+     * @param id      идентификатор сообщения
+     * @param message новое состояние сообщения с тем же ID
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
+     */
+    @Override
+    public UnitResult<Error> update(final UUID id, final Message message) {
+        log.debug("Attempting to update message with id: {}", id);
 
-            final var results = transaction.exec();
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("Update called with null or empty id");
+            return UnitResult.failure(GeneralErrors.valueIsEmpty("id"));
+        }
+
+        if (Guard.isNull(message)) {
+            log.warn("Update called with null message");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("message"));
+        }
 
-            if (results == null || results.isEmpty()) {
-                log.error("Transaction failed while saving message: {}", message.getId());
-                return UnitResult.failure(GeneralErrors.databaseError("Redis transaction failed"));
+        if (!id.equals(message.getId())) {
+            log.warn("Update called with mismatched ids: {} and {}", id, message.getId());
+            return UnitResult.failure(GeneralErrors.validationError("message.id", "Message id does not match updated id"));
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            final List<byte[]> args = new ArrayList<>();
+            args.add(messageCodec.encode(message));
+            args.add(keySchema.member(id));
+            args.add(SafeEncoder.encode(String.valueOf(indexTemplates.size())));
+            args.addAll(indexTemplates);
+            args.addAll(indexSpecs(message));
+
+            Object updated = STALE_INDEX_KEYS;
+            for (int attempt = 0; attempt < STALE_INDEX_ATTEMPTS && STALE_INDEX_KEYS.equals(updated); attempt++) {
+                final Optional<Message> stored = readStored(jedis, id);
+                updated = stored.isPresent()
+                        ? UPDATE_SCRIPT.eval(jedis, updateKeys(stored.get(), message), args)
+                        : 0L;
             }
 
-            log.info("Successfully saved message: {} from {} to {}",
-                    message.getId(), message.getFrom(), message.getTo());
+            if (STALE_INDEX_KEYS.equals(updated)) {
+                log.warn("Cannot update: message {} keeps changing concurrently", id);
+                return UnitResult.failure(GeneralErrors.conflict("Message " + id + " was changed concurrently"));
+            }
+
+            if (!Long.valueOf(1L).equals(updated)) {
+                log.warn("Cannot update: message not found with id: {}", id);
+                return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
+            }
+
+            log.info("Successfully updated message: {} from {} to {}", id, message.getFrom(), message.getTo());
             return UnitResult.success();
 
         } catch (Exception e) {
-            log.error("Error occurred while saving message: {}", message.getId(), e);
+            log.error("Error occurred while updating message with id: {}", id, e);
             return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
         }
     }
@@ -106,18 +316,26 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
             return Result.failure(GeneralErrors.valueIsEmpty("id"));
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final String key = MESSAGE_KEY_PREFIX + id;
-            final String jsonMessage = jedis.get(key);
+        try {
+            final byte[] encodedMessage = clientCache != null
+                    ? clientCache.get(messageKey(id))
+                    : readWithPrimaryFallback(
+                            jedis -> jedis.get(messageKey(id)),
+                            value -> value == null || value.length == 0);
 
-            if (jsonMessage == null || jsonMessage.isEmpty()) {
+            if (encodedMessage == null || encodedMessage.length == 0) {
                 log.debug("Message not found with id: {}", id);
                 return Result.success(Optional.empty());
             }
 
-            final Message message = gson.fromJson(jsonMessage, Message.class);
+            final Result<Message, Error> messageResult = messageCodec.decode(encodedMessage);
+            if (messageResult.isFailure()) {
+                log.error("Failed to decode message with id: {}", id);
+                return Result.failure(messageResult.getError());
+            }
+
             log.debug("Message found with id: {}", id);
-            return Result.success(Optional.of(message));
+            return Result.success(Optional.of(messageResult.getValue()));
 
         } catch (Exception e) {
             log.error("Error occurred while finding message by id: {}", id, e);
@@ -125,6 +343,67 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
         }
     }
 
+    /**
+     * Найти сообщения по списку ID одним pipeline GET.
+     *
+     * @param ids идентификаторы сообщений
+     * @return Result со списком в том же порядке, что и ids (Optional.empty для отсутствующих), или Error
+     */
+    @Override
+    public Result<List<Optional<Message>>, Error> findAllByIds(final List<UUID> ids) {
+        log.debug("Attempting to find {} messages by ids", ids != null ? ids.size() : 0);
+
+        if (Guard.isNull(ids)) {
+            log.warn("FindAllByIds called with null ids");
+            return Result.failure(GeneralErrors.valueIsRequired("ids"));
+        }
+
+        if (ids.isEmpty()) {
+            return Result.success(Collections.emptyList());
+        }
+
+        try {
+            final List<byte[]> values = clientCache != null
+                    ? clientCache.getAll(ids.stream().map(this::messageKey).toList())
+                    : readWithPrimaryFallback(
+                            jedis -> {
+                                final Pipeline pipeline = jedis.pipelined();
+                                final List<Response<byte[]>> responses = new ArrayList<>(ids.size());
+                                for (UUID id : ids) {
+                                    responses.add(pipeline.get(messageKey(id)));
+                                }
+                                pipeline.sync();
+                                return responses.stream().map(Response::get).toList();
+                            },
+                            found -> found.stream().anyMatch(Objects::isNull));
+
+            final List<Optional<Message>> messages = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                final byte[] value = values.get(i);
+                if (value == null || value.length == 0) {
+                    messages.add(Optional.empty());
+                    continue;
+                }
+
+                final Result<Message, Error> messageResult = messageCodec.decode(value);
+                if (messageResult.isFailure()) {
+                    log.error("Failed to decode message with id: {}", ids.get(i));
+                    messages.add(Optional.empty());
+                    continue;
+                }
+                messages.add(Optional.of(messageResult.getValue()));
+            }
+
+            log.debug("Found {} of {} messages by ids",
+                    messages.stream().filter(Optional::isPresent).count(), ids.size());
+            return Result.success(messages);
+
+        } catch (Exception e) {
+            log.error("Error occurred while finding {} messages by ids", ids.size(), e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
     /**
      * Найти все сообщения.
      * ВНИМАНИЕ: Может быть медленным при большом количестве сообщений!
@@ -135,8 +414,8 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
     public List<Message> findAll() {
         log.debug("Fetching all messages from Redis");
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var allMessageIds = jedis.smembers(ALL_MESSAGES_KEY);
+        try (Jedis jedis = readRouter.forAnyUser().getResource()) {
+            final var allMessageIds = jedis.smembers(allMessagesKey());
 
             if (allMessageIds.isEmpty()) {
                 log.debug("No messages found in Redis");
@@ -158,10 +437,11 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
 
     /**
      * Удалить сообщение по ID.
-     * Удаляет из основного хранилища и всех индексов.
+     * Удаляет из основного хранилища и всех индексов одним вызовом Lua-скрипта;
+     * ключи индексов строятся по прочитанному перед скриптом значению.
      *
      * @param id идентификатор сообщения
-     * @return UnitResult с результатом операции
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
      */
     @Override
     public UnitResult<Error> deleteById(final UUID id) {
@@ -173,40 +453,100 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
         }
 
         try (Jedis jedis = jedisPool.getResource()) {
-            final var messageKey = MESSAGE_KEY_PREFIX + id;
-            final var jsonMessage = jedis.get(messageKey);
+            final Object deleted = deleteStored(jedis, id);
+
+            if (STALE_INDEX_KEYS.equals(deleted)) {
+                log.warn("Cannot delete: message {} keeps changing concurrently", id);
+                return UnitResult.failure(GeneralErrors.conflict("Message " + id + " was changed concurrently"));
+            }
 
-            if (jsonMessage == null || jsonMessage.isEmpty()) {
+            if (!Long.valueOf(1L).equals(deleted)) {
                 log.warn("Cannot delete: message not found with id: {}", id);
                 return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
             }
 
-            final var message = gson.fromJson(jsonMessage, Message.class);
-            final var messageIdStr = id.toString();
-            final var fromIndexKey = USER_FROM_INDEX_PREFIX + message.getFrom();
-            final var toIndexKey = USER_TO_INDEX_PREFIX + message.getTo();
+            log.info("Successfully deleted message: {}", id);
+            return UnitResult.success();
+
+        } catch (Exception e) {
+            log.error("Error occurred while deleting message with id: {}", id, e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Удалить сообщения по списку ID: значения читаются одним pipeline, затем одним pipeline
+     * вызывается delete_message.lua. Вызовы с устаревшими ключами индексов повторяются по одному.
+     *
+     * @param ids идентификаторы сообщений
+     * @return результаты в том же порядке, что и ids, entity.not.found для отсутствующих
+     */
+    @Override
+    public List<UnitResult<Error>> deleteAllByIds(final List<UUID> ids) {
+        if (Guard.isNull(ids) || ids.isEmpty()) {
+            log.debug("DeleteAllByIds called with no ids");
+            return Collections.emptyList();
+        }
 
-            Transaction transaction = jedis.multi();
-            transaction.del(messageKey);
-            transaction.srem(fromIndexKey, messageIdStr);
-            transaction.srem(toIndexKey, messageIdStr);
-            transaction.srem(ALL_MESSAGES_KEY, messageIdStr);
+        log.debug("Attempting to delete {} messages by ids", ids.size());
 
-            final var results = transaction.exec();
+        final List<UnitResult<Error>> results = new ArrayList<>(Collections.nCopies(ids.size(), null));
+        final List<Integer> pending = new ArrayList<>(ids.size());
 
-            if (results == null || results.isEmpty()) {
-                log.error("Transaction failed while deleting message: {}", id);
-                return UnitResult.failure(GeneralErrors.databaseError("Redis transaction failed"));
+        for (int i = 0; i < ids.size(); i++) {
+            if (Guard.isNullOrEmpty(ids.get(i))) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsEmpty("id")));
+            } else {
+                pending.add(i);
             }
+        }
 
-            log.info("Successfully deleted message: {} from {} to {}",
-                    id, message.getFrom(), message.getTo());
-            return UnitResult.success();
+        try (Jedis jedis = jedisPool.getResource()) {
+            final List<Optional<Message>> stored = readStored(jedis, pending.stream().map(ids::get).toList());
+            final List<Integer> existing = new ArrayList<>(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                if (stored.get(i).isPresent()) {
+                    existing.add(i);
+                } else {
+                    final UUID id = ids.get(pending.get(i));
+                    results.set(pending.get(i), UnitResult.failure(GeneralErrors.entityNotFound("Message", id)));
+                }
+            }
 
+            final List<Object> replies = evalBatch(jedis, DELETE_SCRIPT,
+                    existing.stream().map(i -> deleteKeys(stored.get(i).orElseThrow())).toList(),
+                    existing.stream().map(i -> deleteArgs(ids.get(pending.get(i)))).toList());
+
+            for (int i = 0; i < existing.size(); i++) {
+                final int index = pending.get(existing.get(i));
+                Object reply = replies.get(i);
+                if (STALE_INDEX_KEYS.equals(reply)) {
+                    reply = deleteStored(jedis, ids.get(index));
+                }
+
+                if (reply instanceof Exception e) {
+                    log.error("Error occurred while deleting message with id: {}", ids.get(index), e);
+                    results.set(index, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                } else if (Long.valueOf(1L).equals(reply)) {
+                    results.set(index, UnitResult.success());
+                } else if (STALE_INDEX_KEYS.equals(reply)) {
+                    results.set(index, UnitResult.failure(
+                            GeneralErrors.conflict("Message " + ids.get(index) + " was changed concurrently")));
+                } else {
+                    results.set(index, UnitResult.failure(GeneralErrors.entityNotFound("Message", ids.get(index))));
+                }
+            }
         } catch (Exception e) {
-            log.error("Error occurred while deleting message with id: {}", id, e);
-            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+            log.error("Error occurred while deleting {} messages by ids", ids.size(), e);
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                }
+            }
         }
+
+        log.info("Processed delete batch of {} messages", ids.size());
+        return results;
     }
 
     /**
@@ -225,9 +565,8 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
             return Collections.emptyList();
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var fromIndexKey = USER_FROM_INDEX_PREFIX + fromUserId;
-            final var messageIds = jedis.smembers(fromIndexKey);
+        try (Jedis jedis = readRouter.forUsers(fromUserId).getResource()) {
+            final var messageIds = jedis.smembers(fromIndexKey(fromUserId));
 
             if (messageIds.isEmpty()) {
                 log.debug("No messages found from user: {}", fromUserId);
@@ -265,9 +604,8 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
             return Collections.emptyList();
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var toIndexKey = USER_TO_INDEX_PREFIX + toUserId;
-            final var messageIds = jedis.smembers(toIndexKey);
+        try (Jedis jedis = readRouter.forUsers(toUserId).getResource()) {
+            final var messageIds = jedis.smembers(toIndexKey(toUserId));
 
             if (messageIds.isEmpty()) {
                 log.debug("No messages found from user: {}", toUserId);
@@ -291,10 +629,13 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
 
     /**
      * Найти переписку между двумя пользователями.
+     * Читает индекс conversation:lex:{min}:{max} одним ZRANGE: члены с одинаковым score упорядочены
+     * лексикографически, то есть по времени создания UUIDv7, и сортировка по дате не нужна.
+     * Сообщения со случайными ID, созданные до перехода на UUIDv7, сортируются по дате.
      *
      * @param user1Id ID первого пользователя
      * @param user2Id ID второго пользователя
-     * @return список сообщений, отсортированных по дате
+     * @return список сообщений в порядке создания
      */
     @Override
     public List<Message> findConversation(final UUID user1Id, final UUID user2Id) {
@@ -310,33 +651,26 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
             return Collections.emptyList();
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final String from1Key = USER_FROM_INDEX_PREFIX + user1Id;
-            final String to1Key = USER_TO_INDEX_PREFIX + user2Id;
-            final String from2Key = USER_FROM_INDEX_PREFIX + user2Id;
-            final String to2Key = USER_TO_INDEX_PREFIX + user1Id;
-
-            // Получаем сообщения от user1 к user2
-            final var messages1to2 = jedis.sinter(from1Key, to1Key);
-
-            // Получаем сообщения от user2 к user1
-            final var messages2to1 = jedis.sinter(from2Key, to2Key);
-
-            Set<String> allMessageIds = new HashSet<>();
-            allMessageIds.addAll(messages1to2);
-            allMessageIds.addAll(messages2to1);
+        try (Jedis jedis = readRouter.forUsers(user1Id, user2Id).getResource()) {
+            final boolean indexReady = isConversationIndexReady(jedis);
+            final Collection<byte[]> messageIds = indexReady
+                    ? jedis.zrange(conversationKey(user1Id, user2Id), 0, -1)
+                    : conversationIdsFromSets(jedis, user1Id, user2Id);
 
-            if (allMessageIds.isEmpty()) {
+            if (messageIds.isEmpty()) {
                 log.debug("No conversation found between users: {} and {}", user1Id, user2Id);
                 return Collections.emptyList();
             }
 
             log.debug("Found {} messages in conversation between users: {} and {}",
-                    allMessageIds.size(), user1Id, user2Id);
+                    messageIds.size(), user1Id, user2Id);
 
-            final var messages = getMessagesByIds(jedis, allMessageIds);
-            // Сортируем по дате
-            messages.sort(Comparator.comparing(Message::getDate));
+            List<Message> messages = getMessagesByIds(jedis, messageIds);
+            if (!indexReady || !messages.stream().map(Message::getId).allMatch(UuidV7::isTimeOrdered)) {
+                messages = messages.stream()
+                        .sorted(Comparator.comparing(Message::getDate))
+                        .toList();
+            }
 
             log.info("Successfully fetched {} messages in conversation between users: {} and {}",
                     messages.size(), user1Id, user2Id);
@@ -348,6 +682,138 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
         }
     }
 
+    /**
+     * Найти страницу переписки по курсорам из ID сообщений.
+     * UUIDv7 упорядочены по времени, поэтому страница - один ZRANGEBYLEX/ZREVRANGEBYLEX с LIMIT
+     * по индексу переписки без чтения и сортировки остальных сообщений.
+     * Сообщения со случайными ID, созданные до перехода на UUIDv7, стоят в индексе вне хронологического
+     * порядка и перестают попадать в страницы после истечения их TTL.
+     *
+     * @param user1Id ID первого пользователя
+     * @param user2Id ID второго пользователя
+     * @param after   вернуть самые ранние сообщения, созданные строго после этого ID, или null
+     * @param before  вернуть самые поздние сообщения, созданные строго до этого ID, или null
+     * @param limit   максимальный размер страницы
+     * @return страница сообщений в порядке создания
+     */
+    @Override
+    public List<Message> findConversation(final UUID user1Id, final UUID user2Id,
+                                          final UUID after, final UUID before, final int limit) {
+        log.debug("Fetching conversation page between users: {} and {}, after: {}, before: {}, limit: {}",
+                user1Id, user2Id, after, before, limit);
+
+        if (Guard.isNullOrEmpty(user1Id)) {
+            log.warn("FindConversation called with null or empty user1Id");
+            return Collections.emptyList();
+        }
+
+        if (Guard.isNullOrEmpty(user2Id)) {
+            log.warn("FindConversation called with null or empty user2Id");
+            return Collections.emptyList();
+        }
+
+        if (limit <= 0) {
+            log.warn("FindConversation called with non-positive limit: {}", limit);
+            return Collections.emptyList();
+        }
+
+        try (Jedis jedis = readRouter.forUsers(user1Id, user2Id).getResource()) {
+            final byte[] conversationKey = conversationKey(user1Id, user2Id);
+            final byte[] max = before == null ? LEX_MAX : exclusiveLexBound(before);
+
+            final List<byte[]> messageIds;
+            if (after != null) {
+                // Дельта "после ID": ближайшие к курсору сообщения по возрастанию
+                messageIds = jedis.zrangeByLex(conversationKey, exclusiveLexBound(after), max, 0, limit);
+            } else {
+                // Самые свежие сообщения до курсора, затем разворачиваем страницу в хронологический порядок
+                messageIds = jedis.zrevrangeByLex(conversationKey, max, LEX_MIN, 0, limit).reversed();
+            }
+
+            if (messageIds.isEmpty()) {
+                log.debug("No conversation found between users: {} and {}", user1Id, user2Id);
+                return Collections.emptyList();
+            }
+
+            final var messages = getMessagesByIds(jedis, messageIds);
+
+            log.info("Successfully fetched {} messages in conversation page between users: {} and {}",
+                    messages.size(), user1Id, user2Id);
+            return messages;
+        } catch (Exception e) {
+            log.error("Error occurred while fetching conversation page between users: {} and {}",
+                    user1Id, user2Id, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Найти сообщения пользователя, созданные или изменённые после курсора.
+     * Читает ленту user:updates:{userId} через ZRANGEBYSCORE c LIMIT: score - номер изменения
+     * из messages:seq, поэтому курсор не зависит от часов клиентов.
+     * Запрашивается на одну запись больше лимита, чтобы определить, есть ли следующая страница.
+     * Лента всегда читается с основного Redis: клиент забирает по ней свои сообщения сразу после отправки.
+     *
+     * @param userId ID пользователя
+     * @param since  курсор из предыдущего ответа (0 - с начала)
+     * @param limit  максимальный размер страницы
+     * @return Result со страницей изменений и следующим курсором или Error
+     */
+    @Override
+    public Result<UpdatesPage<Message>, Error> findUpdates(final UUID userId, final long since, final int limit) {
+        log.debug("Fetching updates for user: {}, since: {}, limit: {}", userId, since, limit);
+
+        if (Guard.isNullOrEmpty(userId)) {
+            log.warn("FindUpdates called with null or empty userId");
+            return Result.failure(GeneralErrors.valueIsEmpty("userId"));
+        }
+
+        if (since < 0) {
+            log.warn("FindUpdates called with negative cursor: {}", since);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("since", since, 0, Long.MAX_VALUE));
+        }
+
+        if (limit < 1) {
+            log.warn("FindUpdates called with non-positive limit: {}", limit);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("limit", limit, 1, Integer.MAX_VALUE));
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            final List<Tuple> entries = jedis.zrangeByScoreWithScores(
+                    updatesKey(userId), SafeEncoder.encode("(" + since), SafeEncoder.encode("+inf"), 0, limit + 1);
+
+            final boolean hasMore = entries.size() > limit;
+            final List<Tuple> page = hasMore ? entries.subList(0, limit) : entries;
+
+            if (page.isEmpty()) {
+                log.debug("No updates for user: {} since: {}", userId, since);
+                return Result.success(new UpdatesPage<>(Collections.emptyList(), Collections.emptyList(), since, false));
+            }
+
+            // Курсор - номер последнего изменения страницы, даже если само сообщение уже истекло
+            final long cursor = (long) page.getLast().getScore();
+            final List<byte[]> ids = new ArrayList<>(page.size());
+            final List<UUID> deletedIds = new ArrayList<>();
+            for (Tuple entry : page) {
+                final UUID deletedId = keySchema.idFromKey(TOMBSTONE_MEMBER_PREFIX, entry.getBinaryElement());
+                if (deletedId != null) {
+                    deletedIds.add(deletedId);
+                } else {
+                    ids.add(entry.getBinaryElement());
+                }
+            }
+            final var messages = getMessagesByIds(jedis, ids);
+
+            log.info("Successfully fetched {} updates and {} deletions for user: {}, next cursor: {}",
+                    messages.size(), deletedIds.size(), userId, cursor);
+            return Result.success(new UpdatesPage<>(messages, deletedIds, cursor, hasMore));
+
+        } catch (Exception e) {
+            log.error("Error occurred while fetching updates for user: {}", userId, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
     /**
      * Подсчитать количество сообщений от пользователя.
      *
@@ -363,9 +829,8 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
             return 0L;
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var fromIndexKey = USER_FROM_INDEX_PREFIX + fromUserId;
-            final var count = jedis.scard(fromIndexKey);
+        try (Jedis jedis = readRouter.forUsers(fromUserId).getResource()) {
+            final var count = jedis.scard(fromIndexKey(fromUserId));
 
             log.debug("User {} has {} messages sent", fromUserId, count);
             return count;
@@ -391,9 +856,8 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
             return 0L;
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var toIndexKey = USER_TO_INDEX_PREFIX + toUserId;
-            final var count = jedis.scard(toIndexKey);
+        try (Jedis jedis = readRouter.forUsers(toUserId).getResource()) {
+            final var count = jedis.scard(toIndexKey(toUserId));
 
             log.debug("User {} has {} messages received", toUserId, count);
             return count;
@@ -419,9 +883,9 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
             return false;
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final String messageKey = MESSAGE_KEY_PREFIX + id;
-            boolean exists = jedis.exists(messageKey);
+        try {
+            final byte[] messageKey = messageKey(id);
+            final boolean exists = readWithPrimaryFallback(jedis -> jedis.exists(messageKey), found -> !found);
 
             log.debug("Message {} exists: {}", id, exists);
             return exists;
@@ -440,90 +904,671 @@ public class MessageRedisRepository implements RepositoryMessage<Message, UUID>
      */
     @Override
     public UnitResult<Error> deleteAll() {
+        return deleteAll((scannedKeys, deletedKeys) -> { });
+    }
+
+    /**
+     * Удалить все сообщения (ОСТОРОЖНО!) инкрементально.
+     * Один проход SCAN по пространству ключей: ключи сообщений и индексов обеих раскладок из каждой страницы
+     * удаляются через UNLINK, в памяти держится не больше одной страницы ключей.
+     * Сообщения, сохранённые во время удаления, могут остаться.
+     *
+     * @param progressListener обработчик прогресса, вызывается после каждой страницы
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> deleteAll(final DeleteAllProgressListener progressListener) {
         log.warn("Attempting to delete ALL messages from Redis");
 
+        if (Guard.isNull(progressListener)) {
+            log.warn("DeleteAll called with null progress listener");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("progressListener"));
+        }
+
+        final Result<Long, Error> deleted = unlinkLayoutKeys(
+                key -> isMessageLayoutKey(key, KeySchema.TEXT) || isMessageLayoutKey(key, KeySchema.BINARY),
+                progressListener);
+        if (deleted.isFailure()) {
+            return UnitResult.failure(deleted.getError());
+        }
+
+        log.warn("Successfully deleted {} message keys and indexes", deleted.getValue());
+        return UnitResult.success();
+    }
+
+    /**
+     * Перенести сообщения из раскладки source в текущую раскладку онлайн.
+     * Сначала каждое сообщение копируется с остатком TTL: значение, индексы отправителя и получателя,
+     * переписка и ленты изменений с прежними номерами изменений. Затем ключи source удаляются через SCAN + UNLINK.
+     * Запускать после переключения всех экземпляров на текущую раскладку: сообщения, которые старые экземпляры
+     * сохранят в source во время переноса, будут удалены вместе с ней.
+     *
+     * @param source           раскладка, из которой переносятся сообщения
+     * @param progressListener обработчик прогресса, вызывается после каждой пачки
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> migrateKeySchema(final KeySchema source, final KeySchemaMigrationJob.ProgressListener progressListener) {
+        log.warn("Attempting to migrate messages from {} to {} key schema", source, keySchema);
+
+        if (Guard.isNull(source)) {
+            log.warn("MigrateKeySchema called with null source");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("source"));
+        }
+
+        if (Guard.isNull(progressListener)) {
+            log.warn("MigrateKeySchema called with null progress listener");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("progressListener"));
+        }
+
+        if (source == keySchema) {
+            log.warn("MigrateKeySchema called with the current key schema: {}", source);
+            return UnitResult.failure(GeneralErrors.validationError("source", "Source key schema must differ from " + keySchema));
+        }
+
+        final byte[] sourceAllKey = SafeEncoder.encode(source.staticKey(ALL_MESSAGES_KEY));
+        final ScanParams scanParams = new ScanParams().count(MIGRATION_BATCH_SIZE);
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        long migrated = 0;
+
+        do {
+            try (Jedis jedis = jedisPool.getResource()) {
+                final ScanResult<byte[]> page = jedis.sscan(sourceAllKey, cursor, scanParams);
+                cursor = page.getCursorAsBytes();
+
+                final long copied = copyMessages(jedis, source, page.getResult());
+                migrated += copied;
+                progressListener.onProgress(copied, page.getResult().size() - copied, 0);
+            } catch (Exception e) {
+                log.error("Error occurred while migrating messages from {} key schema", source, e);
+                return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+            }
+        } while (!Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, cursor));
+
+        final Result<Long, Error> deleted = unlinkLayoutKeys(
+                key -> isMessageLayoutKey(key, source),
+                (scannedKeys, deletedKeys) -> progressListener.onProgress(0, 0, deletedKeys));
+        if (deleted.isFailure()) {
+            return UnitResult.failure(deleted.getError());
+        }
+
+        log.warn("Migrated {} messages from {} to {} key schema, deleted {} source keys",
+                migrated, source, keySchema, deleted.getValue());
+        return UnitResult.success();
+    }
+
+    /**
+     * Загрузить Lua-скрипты в Redis при старте приложения.
+     * Если Redis недоступен, скрипты будут загружены при первом вызове (NOSCRIPT).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadScripts() {
         try (Jedis jedis = jedisPool.getResource()) {
-            // Получаем все ID сообщений
-            final var allMessageIds = jedis.smembers(ALL_MESSAGES_KEY);
+            for (LuaScript script : List.of(SAVE_SCRIPT, DELETE_SCRIPT, UPDATE_SCRIPT)) {
+                script.load(jedis);
+            }
+            log.info("Redis message scripts loaded");
+        } catch (Exception e) {
+            log.warn("Failed to preload Redis message scripts, they will be loaded on first use", e);
+        }
+    }
 
-            if (allMessageIds.isEmpty()) {
-                log.info("No messages to delete");
-                return UnitResult.success();
+    /**
+     * Построить ленты изменений и индексы переписок для сообщений, сохранённых до их появления.
+     * Каждый индекс строится один раз в фоне после старта приложения:
+     * повторный запуск блокируется маркером, одновременный - блокировкой с TTL.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIndexes() {
+        Thread.ofVirtual()
+                .name("message-index-backfill")
+                .start(() -> {
+                    runIndexBackfill("updates", keySchema.staticKey(UPDATES_BACKFILL_DONE_KEY),
+                            keySchema.staticKey(UPDATES_BACKFILL_LOCK_KEY), this::indexUpdates);
+                    runIndexBackfill("conversation", keySchema.staticKey(CONVERSATION_BACKFILL_DONE_KEY),
+                            keySchema.staticKey(CONVERSATION_BACKFILL_LOCK_KEY), this::indexConversations);
+                });
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    /**
+     * Прочитать без привязки к пользователю: с реплики, а промах - повторно с основного Redis,
+     * так как только что сохранённое значение могло ещё не дойти до реплики.
+     *
+     * @param read   чтение на соединении
+     * @param isMiss признак промаха, после которого читать с основного Redis
+     */
+    private <T> T readWithPrimaryFallback(final Function<Jedis, T> read, final Predicate<T> isMiss) {
+        final JedisPool readPool = readRouter.forAnyUser();
+        if (readPool != jedisPool) {
+            try (Jedis jedis = readPool.getResource()) {
+                final T value = read.apply(jedis);
+                if (!isMiss.test(value)) {
+                    return value;
+                }
             }
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            return read.apply(jedis);
+        }
+    }
 
-            // Получаем все ключи для удаления
-            HashSet<String> allKeys = new HashSet<>();
+    /**
+     * Пройти messages:all текущей раскладки через SSCAN и передать каждую страницу сообщений в indexer.
+     *
+     * @param name    название индекса для логов
+     * @param doneKey маркер завершённого построения
+     * @param lockKey блокировка от одновременного построения на нескольких экземплярах
+     * @param indexer запись страницы сообщений в индекс
+     */
+    private void runIndexBackfill(final String name, final String doneKey, final String lockKey,
+                                  final BiConsumer<Jedis, List<Message>> indexer) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (jedis.exists(doneKey)) {
+                log.debug("{} indexes already backfilled", name);
+                return;
+            }
 
-            // Добавляем ключи сообщений
-            for (String id : allMessageIds) {
-                allKeys.add(MESSAGE_KEY_PREFIX + id);
+            final String lock = jedis.set(lockKey, Instant.now().toString(),
+                    SetParams.setParams().nx().ex(BACKFILL_LOCK_TTL));
+            if (lock == null) {
+                log.debug("{} index backfill is already running", name);
+                return;
             }
 
-            // Добавляем ключи индексов (получаем все ключи user:messages:*)
-            Set<String> indexKeys = jedis.keys(USER_FROM_INDEX_PREFIX + "*");
-            allKeys.addAll(indexKeys);
+            log.info("Starting {} index backfill", name);
+            final ScanParams scanParams = new ScanParams().count(BACKFILL_BATCH_SIZE);
+            byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+            long indexed = 0;
+
+            do {
+                final ScanResult<byte[]> page = jedis.sscan(allMessagesKey(), cursor, scanParams);
+                cursor = page.getCursorAsBytes();
+
+                final List<Message> messages = getMessagesByIds(jedis, page.getResult());
+                if (!messages.isEmpty()) {
+                    indexer.accept(jedis, messages);
+                    indexed += messages.size();
+                }
+            } while (!Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, cursor));
 
-            indexKeys = jedis.keys(USER_TO_INDEX_PREFIX + "*");
-            allKeys.addAll(indexKeys);
+            jedis.set(doneKey, Instant.now().toString());
+            jedis.del(lockKey);
+            log.info("{} index backfill finished, indexed {} messages", name, indexed);
 
-            // Добавляем общий индекс
-            allKeys.add(ALL_MESSAGES_KEY);
+        } catch (Exception e) {
+            log.error("Error occurred while backfilling {} indexes", name, e);
+        }
+    }
+
+    /**
+     * Добавить сообщения в ленты изменений отправителя и получателя скриптом backfill_updates.lua.
+     * Номера изменений выдаются в одном скрипте с записью в ленты, поэтому сохранение, выполненное
+     * параллельно с backfill, не получает номер больше ещё не записанных; внутри страницы
+     * сообщения нумеруются по дате. NX не трогает сообщения, уже записанные в ленту при сохранении.
+     */
+    private void indexUpdates(final Jedis jedis, final List<Message> messages) {
+        final List<Message> byDate = messages.stream()
+                .sorted(Comparator.comparing(Message::getDate))
+                .toList();
 
-            // Удаляем все через pipeline
-            final var pipeline = jedis.pipelined();
-            for (String key : allKeys) {
-                pipeline.del(key);
+        final List<byte[]> keys = new ArrayList<>(byDate.size() * 2 + 1);
+        final List<byte[]> args = new ArrayList<>(byDate.size());
+        keys.add(SafeEncoder.encode(MESSAGE_SEQUENCE_KEY));
+        for (Message message : byDate) {
+            keys.add(updatesKey(message.getFrom()));
+            keys.add(updatesKey(message.getTo()));
+            args.add(keySchema.member(message.getId()));
+        }
+        BACKFILL_UPDATES_SCRIPT.eval(jedis, keys, args);
+    }
+
+    /**
+     * Добавить сообщения в индексы их переписок.
+     */
+    private void indexConversations(final Jedis jedis, final List<Message> messages) {
+        final Pipeline pipeline = jedis.pipelined();
+        for (Message message : messages) {
+            pipeline.zadd(conversationKey(message.getFrom(), message.getTo()), 0, keySchema.member(message.getId()));
+        }
+        pipeline.sync();
+    }
+
+    /**
+     * Проверить, построен ли индекс переписок. Маркер проверяется, пока не будет найден:
+     * backfill мог завершиться на другом экземпляре.
+     */
+    private boolean isConversationIndexReady(final Jedis jedis) {
+        if (!conversationIndexReady && jedis.exists(keySchema.staticKey(CONVERSATION_BACKFILL_DONE_KEY))) {
+            conversationIndexReady = true;
+        }
+        return conversationIndexReady;
+    }
+
+    /**
+     * ID сообщений переписки из индексов отправителей и получателей (до построения индекса переписок).
+     */
+    private Set<byte[]> conversationIdsFromSets(final Jedis jedis, final UUID user1Id, final UUID user2Id) {
+        // Переписка с самим собой попадает в оба пересечения, поэтому члены сравниваются по содержимому
+        final Set<byte[]> messageIds = new TreeSet<>(Arrays::compareUnsigned);
+        messageIds.addAll(jedis.sinter(fromIndexKey(user1Id), toIndexKey(user2Id)));
+        messageIds.addAll(jedis.sinter(fromIndexKey(user2Id), toIndexKey(user1Id)));
+        return messageIds;
+    }
+
+    /**
+     * Скопировать сообщения из раскладки source в текущую: значение с остатком TTL и все индексы.
+     * Номера изменений в лентах сохраняются, поэтому курсоры клиентов остаются действительными.
+     *
+     * @return количество скопированных сообщений (истёкшие и недекодируемые пропускаются)
+     */
+    private long copyMessages(final Jedis jedis, final KeySchema source, final List<byte[]> members) {
+        final Pipeline reads = jedis.pipelined();
+        final List<Response<byte[]>> values = new ArrayList<>(members.size());
+        final List<Response<Long>> ttls = new ArrayList<>(members.size());
+        for (byte[] member : members) {
+            final byte[] key = source.key(MESSAGE_KEY_PREFIX, member);
+            values.add(reads.get(key));
+            ttls.add(reads.pttl(key));
+        }
+        reads.sync();
+
+        final List<Message> messages = new ArrayList<>(members.size());
+        final List<Long> messageTtls = new ArrayList<>(members.size());
+        for (int i = 0; i < members.size(); i++) {
+            final byte[] value = values.get(i).get();
+            final long ttl = ttls.get(i).get();
+            if (value == null || value.length == 0 || ttl == -2) {
+                continue;
+            }
+            final Result<Message, Error> decoded = messageCodec.decode(value);
+            if (decoded.isFailure()) {
+                log.error("Failed to decode message while migrating key schema: {}", decoded.getError().getMessage());
+                continue;
+            }
+            messages.add(decoded.getValue());
+            messageTtls.add(ttl);
+        }
+
+        final Pipeline scores = jedis.pipelined();
+        final List<Response<Double>> fromScores = new ArrayList<>(messages.size());
+        final List<Response<Double>> toScores = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            final byte[] member = source.member(message.getId());
+            fromScores.add(scores.zscore(source.key(USER_UPDATES_INDEX_PREFIX, message.getFrom()), member));
+            toScores.add(scores.zscore(source.key(USER_UPDATES_INDEX_PREFIX, message.getTo()), member));
+        }
+        scores.sync();
+
+        final Pipeline writes = jedis.pipelined();
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = messages.get(i);
+            final byte[] member = keySchema.member(message.getId());
+            final byte[] value = messageCodec.encode(message);
+            final long ttl = messageTtls.get(i);
+
+            if (ttl > 0) {
+                writes.psetex(messageKey(message.getId()), ttl, value);
+            } else {
+                writes.set(messageKey(message.getId()), value);
+            }
+            writes.sadd(fromIndexKey(message.getFrom()), member);
+            writes.sadd(toIndexKey(message.getTo()), member);
+            writes.sadd(allMessagesKey(), member);
+            writes.zadd(conversationKey(message.getFrom(), message.getTo()), 0, member);
+            addUpdate(writes, message.getFrom(), member, fromScores.get(i).get());
+            addUpdate(writes, message.getTo(), member, toScores.get(i).get());
+        }
+        writes.sync();
+        return messages.size();
+    }
+
+    /**
+     * Перенести запись ленты изменений с прежним номером; сообщение без записи в ленте подхватит backfill.
+     */
+    private void addUpdate(final Pipeline pipeline, final UUID userId, final byte[] member, final Double sequence) {
+        if (sequence != null) {
+            pipeline.zadd(updatesKey(userId), sequence, member, ZAddParams.zAddParams().nx());
+        }
+    }
+
+    /**
+     * Удалить через SCAN + UNLINK все ключи, подходящие под фильтр.
+     *
+     * @return количество удалённых ключей или Error
+     */
+    private Result<Long, Error> unlinkLayoutKeys(final Predicate<byte[]> isLayoutKey,
+                                                 final DeleteAllProgressListener progressListener) {
+        final ScanParams scanParams = new ScanParams().count(DELETE_ALL_SCAN_COUNT);
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        long deleted = 0;
+
+        do {
+            try (Jedis jedis = jedisPool.getResource()) {
+                final ScanResult<byte[]> page = jedis.scan(cursor, scanParams);
+                cursor = page.getCursorAsBytes();
+
+                final byte[][] keys = page.getResult().stream()
+                        .filter(isLayoutKey)
+                        .toArray(byte[][]::new);
+                final long unlinked = keys.length == 0 ? 0 : jedis.unlink(keys);
+
+                deleted += unlinked;
+                progressListener.onProgress(page.getResult().size(), unlinked);
+            } catch (Exception e) {
+                log.error("Error occurred while deleting message keys at cursor: {}", SafeEncoder.encode(cursor), e);
+                return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+            }
+        } while (!Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, cursor));
+
+        return Result.success(deleted);
+    }
+
+    /**
+     * Принадлежит ли ключ раскладке сообщений schema (значения и индексы).
+     * Раскладки различаются длиной ID в ключах и суффиксом статических ключей.
+     * Счётчик messages:seq не удаляется, чтобы курсоры клиентов оставались монотонными.
+     */
+    private static boolean isMessageLayoutKey(final byte[] key, final KeySchema schema) {
+        if (Arrays.equals(key, SafeEncoder.encode(schema.staticKey(ALL_MESSAGES_KEY)))) {
+            return true;
+        }
+        return Stream.of(MESSAGE_KEY_PREFIX, USER_FROM_INDEX_PREFIX, USER_TO_INDEX_PREFIX, USER_UPDATES_INDEX_PREFIX)
+                .anyMatch(prefix -> schema.idFromKey(prefix, key) != null)
+                || isConversationKey(key, schema);
+    }
+
+    private static boolean isConversationKey(final byte[] key, final KeySchema schema) {
+        final int pairLength = schema == KeySchema.TEXT ? schema.idLength() * 2 + 1 : schema.idLength() * 2;
+        return KeySchema.hasPrefix(key, CONVERSATION_INDEX_PREFIX)
+                && key.length == CONVERSATION_INDEX_PREFIX.length() + pairLength;
+    }
+
+    /**
+     * Шаблоны индексов раскладки: роли для бинарных ID отличаются (см. message_lib.lua).
+     */
+    private static List<byte[]> indexTemplates(final KeySchema schema) {
+        return List.of(
+                schema.template('S', "from", USER_FROM_INDEX_PREFIX),
+                schema.template('S', "to", USER_TO_INDEX_PREFIX),
+                schema.template('S', "static", ALL_MESSAGES_KEY),
+                schema.template('Z', "pair", CONVERSATION_INDEX_PREFIX),
+                schema.template('Q', "from", USER_UPDATES_INDEX_PREFIX),
+                schema.template('Q', "to", USER_UPDATES_INDEX_PREFIX)
+        );
+    }
+
+    /**
+     * Граница ZRANGEBYLEX, не включающая ID: "(" и член индекса.
+     */
+    private byte[] exclusiveLexBound(final UUID id) {
+        final byte[] member = keySchema.member(id);
+        final byte[] bound = new byte[member.length + 1];
+        bound[0] = '(';
+        System.arraycopy(member, 0, bound, 1, member.length);
+        return bound;
+    }
+
+    private byte[] messageKey(final UUID id) {
+        return keySchema.key(MESSAGE_KEY_PREFIX, id);
+    }
+
+    private byte[] fromIndexKey(final UUID userId) {
+        return keySchema.key(USER_FROM_INDEX_PREFIX, userId);
+    }
+
+    private byte[] toIndexKey(final UUID userId) {
+        return keySchema.key(USER_TO_INDEX_PREFIX, userId);
+    }
+
+    private byte[] allMessagesKey() {
+        return SafeEncoder.encode(keySchema.staticKey(ALL_MESSAGES_KEY));
+    }
+
+    private byte[] updatesKey(final UUID userId) {
+        return keySchema.key(USER_UPDATES_INDEX_PREFIX, userId);
+    }
+
+    /**
+     * Ключ переписки не зависит от порядка участников: min и max, как роль pair в message_lib.lua.
+     */
+    private byte[] conversationKey(final UUID user1Id, final UUID user2Id) {
+        return keySchema.pairKey(CONVERSATION_INDEX_PREFIX, user1Id, user2Id);
+    }
+
+    /**
+     * ARGV для save_message.lua.
+     */
+    private List<byte[]> saveArgs(final Message message) {
+        final List<byte[]> args = new ArrayList<>();
+        args.add(messageCodec.encode(message));
+        args.add(SafeEncoder.encode(String.valueOf(MESSAGE_TTL)));
+        args.add(keySchema.member(message.getId()));
+        args.addAll(indexSpecs(message));
+        return args;
+    }
+
+    /**
+     * ARGV для delete_message.lua: в лентах изменений остаётся запись об удалении.
+     */
+    private List<byte[]> deleteArgs(final UUID id) {
+        final List<byte[]> args = new ArrayList<>();
+        args.add(keySchema.member(id));
+        args.add(keySchema.key(TOMBSTONE_MEMBER_PREFIX, id));
+        args.addAll(indexTemplates);
+        return args;
+    }
+
+    /**
+     * Выполнить скрипт для каждого набора KEYS/ARGV одним pipeline.
+     * Вызовы, получившие NOSCRIPT, повторяются один раз после SCRIPT LOAD.
+     *
+     * @return ответ скрипта или исключение для каждого вызова, в порядке keys
+     */
+    private static List<Object> evalBatch(final Jedis jedis, final LuaScript script,
+                                          final List<List<byte[]>> keys, final List<List<byte[]>> args) {
+        final List<Object> replies = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        List<Integer> pending = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            pending.add(i);
+        }
+
+        for (int attempt = 0; attempt < 2 && !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                log.warn("Redis script {} is not loaded, loading it", script.getName());
+                script.load(jedis);
+            }
+
+            final Pipeline pipeline = jedis.pipelined();
+            final List<Response<Object>> responses = new ArrayList<>(pending.size());
+            for (int index : pending) {
+                responses.add(script.eval(pipeline, keys.get(index), args.get(index)));
             }
             pipeline.sync();
 
-            log.warn("Successfully deleted {} messages and all indexes", allMessageIds.size());
-            return UnitResult.success();
+            final List<Integer> notLoaded = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                final int index = pending.get(i);
+                try {
+                    replies.set(index, responses.get(i).get());
+                } catch (JedisNoScriptException e) {
+                    replies.set(index, e);
+                    notLoaded.add(index);
+                } catch (Exception e) {
+                    replies.set(index, e);
+                }
+            }
+            pending = notLoaded;
+        }
+        return replies;
+    }
 
-        } catch (Exception e) {
-            log.error("Error occurred while deleting all messages", e);
-            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+    /**
+     * Ключи для Lua-скриптов: ключ сообщения и ключи всех индексов в порядке {@link #indexTemplates}.
+     * Перед лентами изменений идёт счётчик messages:seq: он выдаёт score для них.
+     */
+    private List<byte[]> scriptKeys(final Message message) {
+        return List.of(
+                messageKey(message.getId()),
+                fromIndexKey(message.getFrom()),
+                toIndexKey(message.getTo()),
+                allMessagesKey(),
+                conversationKey(message.getFrom(), message.getTo()),
+                SafeEncoder.encode(MESSAGE_SEQUENCE_KEY),
+                updatesKey(message.getFrom()),
+                updatesKey(message.getTo())
+        );
+    }
+
+    /**
+     * Ключи индексов сохранённого значения в порядке {@link #indexTemplates}.
+     * Скрипты пишут только в переданные KEYS, поэтому ключи старых индексов строятся здесь, а не в Lua.
+     */
+    private List<byte[]> indexKeys(final Message stored) {
+        return List.of(
+                fromIndexKey(stored.getFrom()),
+                toIndexKey(stored.getTo()),
+                allMessagesKey(),
+                conversationKey(stored.getFrom(), stored.getTo()),
+                updatesKey(stored.getFrom()),
+                updatesKey(stored.getTo())
+        );
+    }
+
+    /**
+     * KEYS для delete_message.lua: ключ сообщения, ключи индексов сохранённого значения
+     * и счётчик messages:seq для записей об удалении в лентах изменений.
+     */
+    private List<byte[]> deleteKeys(final Message stored) {
+        final List<byte[]> keys = new ArrayList<>(indexTemplates.size() + 2);
+        keys.add(messageKey(stored.getId()));
+        keys.addAll(indexKeys(stored));
+        keys.add(SafeEncoder.encode(MESSAGE_SEQUENCE_KEY));
+        return keys;
+    }
+
+    /**
+     * KEYS для update_message.lua: ключ сообщения и ключи индексов сохранённого значения,
+     * затем ключи индексов нового значения из {@link #scriptKeys(Message)}.
+     */
+    private List<byte[]> updateKeys(final Message stored, final Message message) {
+        final List<byte[]> keys = new ArrayList<>(indexTemplates.size() * 2 + 1);
+        keys.add(messageKey(stored.getId()));
+        keys.addAll(indexKeys(stored));
+        final List<byte[]> newKeys = scriptKeys(message);
+        keys.addAll(newKeys.subList(1, newKeys.size()));
+        return keys;
+    }
+
+    /**
+     * Удалить сообщение через delete_message.lua, повторяя вызов, пока ключи индексов устаревают.
+     *
+     * @return ответ скрипта: 1 - удалено, 0 - сообщения нет, {@link #STALE_INDEX_KEYS} - не удалось
+     */
+    private Object deleteStored(final Jedis jedis, final UUID id) {
+        Object deleted = STALE_INDEX_KEYS;
+        for (int attempt = 0; attempt < STALE_INDEX_ATTEMPTS && STALE_INDEX_KEYS.equals(deleted); attempt++) {
+            final Optional<Message> stored = readStored(jedis, id);
+            deleted = stored.isPresent()
+                    ? DELETE_SCRIPT.eval(jedis, deleteKeys(stored.get()), deleteArgs(id))
+                    : 0L;
         }
+        return deleted;
     }
 
-    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+    /**
+     * Прочитать сохранённое значение с основного Redis в обход кешей: по его участникам
+     * строятся ключи индексов для delete_message.lua и update_message.lua.
+     */
+    private Optional<Message> readStored(final Jedis jedis, final UUID id) {
+        return readStored(jedis, List.of(id)).getFirst();
+    }
+
+    private List<Optional<Message>> readStored(final Jedis jedis, final List<UUID> ids) {
+        final Pipeline pipeline = jedis.pipelined();
+        final List<Response<byte[]>> responses = ids.stream()
+                .map(id -> pipeline.get(messageKey(id)))
+                .toList();
+        pipeline.sync();
+
+        final List<Optional<Message>> stored = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            final byte[] value = responses.get(i).get();
+            if (value == null) {
+                stored.add(Optional.empty());
+                continue;
+            }
+            final Result<Message, Error> decoded = messageCodec.decode(value);
+            if (decoded.isFailure()) {
+                throw new IllegalStateException("Cannot decode stored message " + ids.get(i) + ": "
+                        + decoded.getError().getMessage());
+            }
+            stored.add(Optional.of(decoded.getValue()));
+        }
+        return stored;
+    }
+
+    /**
+     * Спецификации записи для индексов из {@link #scriptKeys(Message)} (формат описан в message_lib.lua).
+     */
+    private static List<byte[]> indexSpecs(final Message message) {
+        return List.of(
+                SET_INDEX_SPEC,
+                SET_INDEX_SPEC,
+                SET_INDEX_SPEC,
+                CONVERSATION_INDEX_SPEC,
+                SEQUENCE_SPEC,
+                SEQUENCE_INDEX_SPEC,
+                SEQUENCE_INDEX_SPEC
+        );
+    }
 
     /**
      * Получить сообщения по списку ID через pipeline (batch).
      * Оптимизирует количество обращений к Redis.
      *
      * @param jedis      подключение к Redis
-     * @param messageIds Set с ID сообщений
+     * @param messageIds коллекция с членами индексов - ID сообщений в представлении текущей раскладки
+     *                   (порядок результата совпадает с порядком итерации)
      * @return список сообщений
      */
-    private List<Message> getMessagesByIds(final Jedis jedis, final Set<String> messageIds) {
+    private List<Message> getMessagesByIds(final Jedis jedis, final Collection<byte[]> messageIds) {
         if (messageIds.isEmpty()) {
 
             return Collections.emptyList();
         }
 
-        // Используем pipeline для batch-получения всех сообщений за один round-trip
-        Pipeline pipeline = jedis.pipelined();
-        List<Response<String>> responses = new ArrayList<>();
+        final List<byte[]> values;
+        if (clientCache != null) {
+            // Попадания клиентского кеша не уходят в сеть, промахи читаются параллельно
+            values = clientCache.getAll(messageIds.stream()
+                    .map(messageId -> keySchema.key(MESSAGE_KEY_PREFIX, messageId))
+                    .toList());
+        } else {
+            // Используем pipeline для batch-получения всех сообщений за один round-trip
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<byte[]>> responses = new ArrayList<>();
+
+            for (byte[] messageId : messageIds) {
+                responses.add(pipeline.get(keySchema.key(MESSAGE_KEY_PREFIX, messageId)));
+            }
 
-        for (String messageId : messageIds) {
-            String messageKey = MESSAGE_KEY_PREFIX + messageId;
-            responses.add(pipeline.get(messageKey));
+            // Выполняем все запросы одним батчем
+            pipeline.sync();
+            values = responses.stream().map(Response::get).toList();
         }
 
-        // Выполняем все запросы одним батчем
-        pipeline.sync();
-
-        return responses.stream()
-                .map(Response::get)
+        return values.stream()
                 .filter(Objects::nonNull)
-                .filter(json -> !json.isEmpty())
-                .map(json -> {
-                    try {
-                        return gson.fromJson(json, Message.class);
-                    } catch (Exception e) {
-                        log.error("Failed to deserialize message from JSON", e);
+                .filter(value -> value.length > 0)
+                .map(value -> {
+                    final Result<Message, Error> messageResult = messageCodec.decode(value);
+                    if (messageResult.isFailure()) {
+                        log.error("Failed to decode message: {}", messageResult.getError().getMessage());
                         return null;
                     }
+                    return messageResult.getValue();
                 })
                 .filter(Objects::nonNull)
                 .toList();
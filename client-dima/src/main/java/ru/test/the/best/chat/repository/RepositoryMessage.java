@@ -3,6 +3,8 @@ package ru.test.the.best.chat.repository;
 import ru.test.the.best.chat.errs.Error;
 import ru.test.the.best.chat.errs.Result;
 import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.redis.KeySchema;
+import ru.test.the.best.chat.redis.KeySchemaMigrationJob;
 
 import java.util.List;
 import java.util.Optional;
@@ -18,6 +20,25 @@ public interface RepositoryMessage<T, I> {
      */
     UnitResult<Error> save(final T message);
 
+    /**
+     * Сохранить несколько сообщений за один обмен с хранилищем.
+     * Каждое сообщение сохраняется независимо: ошибка одного не отменяет остальные.
+     *
+     * @param messages сообщения для сохранения
+     * @return результаты в том же порядке, что и messages
+     */
+    List<UnitResult<Error>> saveAll(final List<T> messages);
+
+    /**
+     * Обновить существующее сообщение атомарно (check-and-set).
+     * Если сообщения нет, ничего не записывается.
+     *
+     * @param id      идентификатор сообщения
+     * @param message новое состояние сообщения с тем же ID
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
+     */
+    UnitResult<Error> update(final I id, final T message);
+
     /**
      * Найти сообщение по ID.
      *
@@ -26,6 +47,14 @@ public interface RepositoryMessage<T, I> {
      */
     Result<Optional<T>, Error> findById(final I id);
 
+    /**
+     * Найти сообщения по списку ID за один обмен с хранилищем.
+     *
+     * @param ids идентификаторы сообщений
+     * @return Result со списком в том же порядке, что и ids (Optional.empty для отсутствующих), или Error
+     */
+    Result<List<Optional<T>>, Error> findAllByIds(final List<I> ids);
+
     /**
      * Найти все сообщения.
      * ВНИМАНИЕ: Может быть медленным при большом количестве сообщений!
@@ -39,10 +68,19 @@ public interface RepositoryMessage<T, I> {
      * Удаляет из основного хранилища и всех индексов.
      *
      * @param id идентификатор сообщения
-     * @return UnitResult с результатом операции
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
      */
     UnitResult<Error> deleteById(final I id);
 
+    /**
+     * Удалить сообщения по списку ID за один обмен с хранилищем.
+     * Каждое сообщение удаляется независимо.
+     *
+     * @param ids идентификаторы сообщений
+     * @return результаты в том же порядке, что и ids, entity.not.found для отсутствующих
+     */
+    List<UnitResult<Error>> deleteAllByIds(final List<I> ids);
+
     /**
      * Найти все сообщения от конкретного пользователя.
      * Использует индекс для быстрого поиска.
@@ -66,10 +104,36 @@ public interface RepositoryMessage<T, I> {
      *
      * @param user1Id ID первого пользователя
      * @param user2Id ID второго пользователя
-     * @return список сообщений, отсортированных по дате
+     * @return список сообщений в порядке создания
      */
     List<T> findConversation(final UUID user1Id, final UUID user2Id);
 
+    /**
+     * Найти страницу переписки между двумя пользователями по курсорам из ID сообщений.
+     * Без after возвращаются самые поздние сообщения до before (прокрутка истории),
+     * с after - самые ранние сообщения после него (новые сообщения с момента последнего ID).
+     *
+     * @param user1Id ID первого пользователя
+     * @param user2Id ID второго пользователя
+     * @param after   ID, после которого созданы сообщения страницы, или null
+     * @param before  ID, до которого созданы сообщения страницы, или null
+     * @param limit   максимальный размер страницы
+     * @return список сообщений в порядке создания
+     */
+    List<T> findConversation(final UUID user1Id, final UUID user2Id, final I after, final I before, final int limit);
+
+    /**
+     * Найти сообщения пользователя, созданные или изменённые после курсора.
+     * Лента содержит входящие и исходящие сообщения в порядке изменений;
+     * удалённые сообщения возвращаются отдельным списком ID, истёкшие в ленту не попадают.
+     *
+     * @param userId ID пользователя
+     * @param since  курсор из предыдущего ответа (0 - с начала)
+     * @param limit  максимальный размер страницы
+     * @return Result со страницей изменений и следующим курсором или Error
+     */
+    Result<UpdatesPage<T>, Error> findUpdates(final UUID userId, final long since, final int limit);
+
     /**
      * Подсчитать количество сообщений от пользователя.
      *
@@ -101,4 +165,37 @@ public interface RepositoryMessage<T, I> {
      * @return UnitResult с результатом операции
      */
     UnitResult<Error> deleteAll();
+
+    /**
+     * Удалить все сообщения (ОСТОРОЖНО!) инкрементально, сообщая о прогрессе.
+     * Ключи перебираются через SCAN и удаляются пачками, поэтому Redis не блокируется,
+     * а память не зависит от количества сообщений.
+     *
+     * @param progressListener обработчик прогресса, вызывается после каждой пачки
+     * @return UnitResult с результатом операции
+     */
+    UnitResult<Error> deleteAll(final DeleteAllProgressListener progressListener);
+
+    /**
+     * Перенести сообщения из другой раскладки ключей в текущую, не останавливая приложение.
+     * После копирования сообщений ключи исходной раскладки удаляются.
+     *
+     * @param source           раскладка, из которой переносятся сообщения
+     * @param progressListener обработчик прогресса, вызывается после каждой пачки
+     * @return UnitResult с результатом операции
+     */
+    UnitResult<Error> migrateKeySchema(final KeySchema source, final KeySchemaMigrationJob.ProgressListener progressListener);
+
+    /**
+     * Обработчик прогресса удаления всех сообщений.
+     */
+    @FunctionalInterface
+    interface DeleteAllProgressListener {
+
+        /**
+         * @param scannedKeys ключи, просмотренные в очередной пачке
+         * @param deletedKeys ключи, удалённые в очередной пачке
+         */
+        void onProgress(long scannedKeys, long deletedKeys);
+    }
 }
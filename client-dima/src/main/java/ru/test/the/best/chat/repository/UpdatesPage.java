@@ -0,0 +1,15 @@
+package ru.test.the.best.chat.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Страница ленты изменений пользователя.
+ *
+ * @param items      новые и изменённые сообщения в порядке изменений
+ * @param deletedIds ID сообщений, удалённых после курсора, в порядке удаления
+ * @param cursor     курсор для следующего запроса (не меньше переданного)
+ * @param hasMore    есть ли изменения после этой страницы
+ */
+public record UpdatesPage<T>(List<T> items, List<UUID> deletedIds, long cursor, boolean hasMore) {
+}
@@ -0,0 +1,114 @@
+package ru.test.the.best.chat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.test.the.best.chat.entity.Message;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.model.dto.admin.DeleteAllStatusResponse;
+import ru.test.the.best.chat.repository.RepositoryMessage;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая задача удаления всех сообщений.
+ * Одновременно выполняется не больше одной задачи на экземпляр приложения;
+ * состояние последнего запуска доступно для опроса.
+ */
+@Slf4j
+@Component
+public class MessageDeleteAllJob {
+
+    private enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private final RepositoryMessage<Message, UUID> messageRepository;
+
+    private final AtomicLong scannedKeys = new AtomicLong();
+    private final AtomicLong deletedKeys = new AtomicLong();
+
+    private volatile State state = State.IDLE;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    @Autowired
+    public MessageDeleteAllJob(final RepositoryMessage<Message, UUID> messageRepository) {
+        this.messageRepository = messageRepository;
+    }
+
+    /**
+     * Запустить удаление всех сообщений в фоне.
+     *
+     * @return Result с состоянием запущенной задачи или data.conflict, если задача уже выполняется
+     */
+    public synchronized Result<DeleteAllStatusResponse, Error> start() {
+        if (state == State.RUNNING) {
+            log.warn("Delete all messages job is already running since {}", startedAt);
+            return Result.failure(GeneralErrors.conflict("Delete all messages job is already running"));
+        }
+
+        scannedKeys.set(0);
+        deletedKeys.set(0);
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+        state = State.RUNNING;
+
+        Thread.ofVirtual()
+                .name("messages-delete-all")
+                .start(this::run);
+
+        log.warn("Delete all messages job started");
+        return Result.success(status());
+    }
+
+    /**
+     * Текущее состояние задачи.
+     *
+     * @return состояние последнего запуска или IDLE, если задача не запускалась
+     */
+    public DeleteAllStatusResponse status() {
+        return new DeleteAllStatusResponse(
+                state.name(),
+                scannedKeys.get(),
+                deletedKeys.get(),
+                startedAt,
+                finishedAt,
+                error
+        );
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void run() {
+        UnitResult<Error> result;
+        try {
+            result = messageRepository.deleteAll((scanned, deleted) -> {
+                scannedKeys.addAndGet(scanned);
+                deletedKeys.addAndGet(deleted);
+            });
+        } catch (Exception e) {
+            result = UnitResult.failure(GeneralErrors.internalServerError(e.getMessage()));
+        }
+
+        synchronized (this) {
+            finishedAt = Instant.now();
+            if (result.isFailure()) {
+                error = result.getError().getMessage();
+                state = State.FAILED;
+                log.error("Delete all messages job failed after {} deleted keys: {}", deletedKeys.get(), error);
+            } else {
+                state = State.COMPLETED;
+                log.warn("Delete all messages job completed: scanned {} keys, deleted {} keys",
+                        scannedKeys.get(), deletedKeys.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.test.the.best.chat.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.test.the.best.chat.entity.Message;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.model.dto.admin.KeySchemaMigrationStatusResponse;
+import ru.test.the.best.chat.redis.KeySchema;
+import ru.test.the.best.chat.redis.KeySchemaMigrationJob;
+import ru.test.the.best.chat.repository.RepositoryMessage;
+
+import java.util.UUID;
+
+/**
+ * Фоновая задача переноса сообщений в текущую раскладку ключей (messages.key-schema)
+ * из другой раскладки. Состояние задачи ведёт {@link KeySchemaMigrationJob},
+ * перенос выполняет {@link RepositoryMessage#migrateKeySchema}.
+ */
+@Component
+public class MessageKeySchemaMigrationJob {
+
+    private final KeySchemaMigrationJob job;
+
+    @Autowired
+    public MessageKeySchemaMigrationJob(
+            final RepositoryMessage<Message, UUID> messageRepository,
+            @Value("${messages.key-schema:TEXT}") final KeySchema target) {
+        this.job = new KeySchemaMigrationJob(target, messageRepository::migrateKeySchema);
+    }
+
+    /**
+     * Запустить перенос сообщений в фоне.
+     *
+     * @return Result с состоянием запущенной задачи или data.conflict, если задача уже выполняется
+     */
+    public Result<KeySchemaMigrationStatusResponse, Error> start() {
+        return job.start();
+    }
+
+    /**
+     * Текущее состояние задачи.
+     *
+     * @return состояние последнего запуска или IDLE, если задача не запускалась
+     */
+    public KeySchemaMigrationStatusResponse status() {
+        return job.status();
+    }
+}
@@ -8,10 +8,15 @@ import ru.test.the.best.chat.entity.Message;
 import ru.test.the.best.chat.entity.value.DataMessage;
 import ru.test.the.best.chat.errs.*;
 import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.id.UuidV7;
+import ru.test.the.best.chat.model.dto.message.BatchItemResponse;
 import ru.test.the.best.chat.model.dto.message.CreateMessageRequest;
 import ru.test.the.best.chat.model.dto.message.MessageResponse;
+import ru.test.the.best.chat.model.dto.message.MessageUpdatesResponse;
 import ru.test.the.best.chat.repository.MessageRedisRepository;
+import ru.test.the.best.chat.repository.UpdatesPage;
 
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -21,6 +26,21 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class MessageService implements ServiceChat<MessageResponse, UUID, CreateMessageRequest> {
 
+    /**
+     * Максимальное количество элементов в пакетной операции.
+     */
+    public static final int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Максимальный размер страницы ленты изменений.
+     */
+    public static final int MAX_UPDATES_PAGE_SIZE = 500;
+
+    /**
+     * Максимальный размер страницы переписки.
+     */
+    public static final int MAX_CONVERSATION_PAGE_SIZE = 500;
+
     private final MessageRedisRepository repository;
 
     @Override
@@ -85,18 +105,7 @@ public class MessageService implements ServiceChat<MessageResponse, UUID, Create
         }
 
         try {
-            final Result<Optional<Message>, Error> existingMessage = repository.findById(id);
-
-            if (existingMessage.isFailure()) {
-                log.error("Failed to check message existence with id: {}", id);
-                return UnitResult.failure(existingMessage.getError());
-            }
-
-            if (existingMessage.getValue().isEmpty()) {
-                log.warn("Cannot delete: message not found with id: {}", id);
-                return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
-            }
-
+            // Проверка существования выполняется атомарно в репозитории
             final UnitResult<Error> deleteResult = repository.deleteById(id);
 
             if (deleteResult.isSuccess()) {
@@ -127,18 +136,6 @@ public class MessageService implements ServiceChat<MessageResponse, UUID, Create
         }
 
         try {
-            final Result<Optional<Message>, Error> existingMessageResult = repository.findById(id);
-
-            if (existingMessageResult.isFailure()) {
-                log.error("Failed to find message with id: {} during update", id);
-                return UnitResult.failure(existingMessageResult.getError());
-            }
-
-            if (existingMessageResult.getValue().isEmpty()) {
-                log.warn("Cannot update: message not found with id: {}", id);
-                return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
-            }
-
             final Result<DataMessage, Error> dataMessageResult = DataMessage.create(
                     createMessageRequest.getDataAsBytes(),
                     createMessageRequest.type()
@@ -149,7 +146,9 @@ public class MessageService implements ServiceChat<MessageResponse, UUID, Create
                 return UnitResult.failure(dataMessageResult.getError());
             }
 
-            final Result<Message, Error> messageResult = Message.update(
+            // Сохраняем ID существующей записи
+            final Result<Message, Error> messageResult = Message.create(
+                    id,
                     createMessageRequest.date(),
                     createMessageRequest.from(),
                     createMessageRequest.to(),
@@ -161,19 +160,24 @@ public class MessageService implements ServiceChat<MessageResponse, UUID, Create
                 return UnitResult.failure(messageResult.getError());
             }
 
-            // Устанавливаем ID для обновления существующей записи
             final Message messageToUpdate = messageResult.getValue();
 
-            // Сохраняем обновленное сообщение
-            final UnitResult<Error> saveResult = repository.save(messageToUpdate);
+            final UnitResult<Error> validationResult = validateMessage(messageToUpdate);
+            if (validationResult.isFailure()) {
+                log.warn("Validation failed for message update with id: {}", id);
+                return validationResult;
+            }
+
+            // Проверка существования и запись выполняются атомарно в репозитории
+            final UnitResult<Error> updateResult = repository.update(id, messageToUpdate);
 
-            if (saveResult.isSuccess()) {
+            if (updateResult.isSuccess()) {
                 log.info("Successfully updated message with id: {}", id);
             } else {
-                log.error("Failed to save updated message with id: {}", id);
+                log.error("Failed to update message with id: {}: {}", id, updateResult.getError().getMessage());
             }
 
-            return saveResult;
+            return updateResult;
         } catch (Exception e) {
             log.error("Error occurred while updating message with id: {}", id, e);
             return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
@@ -321,6 +325,269 @@ public class MessageService implements ServiceChat<MessageResponse, UUID, Create
         }
     }
 
+    /**
+     * Получить страницу переписки между двумя пользователями по курсорам из ID сообщений.
+     * ID сообщений - UUIDv7, поэтому момент времени since переводится в наименьший ID этой миллисекунды
+     * и работает как курсор after без чтения дат сообщений.
+     *
+     * @param user1Id ID первого пользователя
+     * @param user2Id ID второго пользователя
+     * @param after   вернуть сообщения, созданные после этого ID (null - не ограничено)
+     * @param before  вернуть сообщения, созданные до этого ID (null - не ограничено)
+     * @param since   вернуть сообщения, созданные начиная с этого момента, если after не задан
+     * @param limit   размер страницы
+     * @return Result со страницей сообщений в порядке создания или Error
+     */
+    @Transactional(readOnly = true)
+    public Result<List<MessageResponse>, Error> findConversation(final UUID user1Id, final UUID user2Id,
+                                                                 final UUID after, final UUID before,
+                                                                 final Instant since, final int limit) {
+        log.debug("Fetching conversation page between users: {} and {}", user1Id, user2Id);
+
+        if (Guard.isNullOrEmpty(user1Id)) {
+            log.warn("FindConversation called with null or empty user1Id");
+            return Result.failure(GeneralErrors.valueIsEmpty("user1Id"));
+        }
+
+        if (Guard.isNullOrEmpty(user2Id)) {
+            log.warn("FindConversation called with null or empty user2Id");
+            return Result.failure(GeneralErrors.valueIsEmpty("user2Id"));
+        }
+
+        if (limit < 1 || limit > MAX_CONVERSATION_PAGE_SIZE) {
+            log.warn("FindConversation called with out of range limit: {}", limit);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("limit", limit, 1, MAX_CONVERSATION_PAGE_SIZE));
+        }
+
+        final UUID lowerBound = after == null && since != null ? UuidV7.lowerBound(since) : after;
+
+        try {
+            final List<MessageResponse> messages = repository.findConversation(user1Id, user2Id, lowerBound, before, limit)
+                    .stream()
+                    .map(Message::toMessageResponse)
+                    .toList();
+
+            log.info("Successfully fetched {} messages in conversation page between users: {} and {}",
+                    messages.size(), user1Id, user2Id);
+            return Result.success(messages);
+        } catch (Exception e) {
+            log.error("Error occurred while fetching conversation page between users: {} and {}",
+                    user1Id, user2Id, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Получить сообщения пользователя, созданные или изменённые после курсора (дельта-синхронизация).
+     *
+     * @param userId ID пользователя
+     * @param since  курсор из предыдущего ответа (null или пусто - с начала)
+     * @param limit  размер страницы
+     * @return Result со страницей изменений и следующим курсором или Error
+     */
+    public Result<MessageUpdatesResponse, Error> findUpdates(final UUID userId, final String since, final int limit) {
+        log.debug("Fetching updates for user: {} since: {}", userId, since);
+
+        if (Guard.isNullOrEmpty(userId)) {
+            log.warn("FindUpdates called with null or empty userId");
+            return Result.failure(GeneralErrors.valueIsEmpty("userId"));
+        }
+
+        if (limit < 1 || limit > MAX_UPDATES_PAGE_SIZE) {
+            log.warn("FindUpdates called with out of range limit: {}", limit);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("limit", limit, 1, MAX_UPDATES_PAGE_SIZE));
+        }
+
+        final Result<Long, Error> cursorResult = parseUpdatesCursor(since);
+        if (cursorResult.isFailure()) {
+            log.warn("FindUpdates called with invalid cursor: {}", since);
+            return Result.failure(cursorResult.getError());
+        }
+
+        try {
+            final Result<UpdatesPage<Message>, Error> pageResult =
+                    repository.findUpdates(userId, cursorResult.getValue(), limit);
+            if (pageResult.isFailure()) {
+                log.error("Failed to fetch updates for user: {}: {}", userId, pageResult.getError().getMessage());
+                return Result.failure(pageResult.getError());
+            }
+
+            final UpdatesPage<Message> page = pageResult.getValue();
+            final List<MessageResponse> messages = page.items()
+                    .stream()
+                    .map(Message::toMessageResponse)
+                    .toList();
+
+            log.info("Successfully fetched {} updates and {} deletions for user: {}",
+                    messages.size(), page.deletedIds().size(), userId);
+            return Result.success(new MessageUpdatesResponse(
+                    messages,
+                    page.deletedIds(),
+                    String.valueOf(page.cursor()),
+                    page.hasMore()
+            ));
+        } catch (Exception e) {
+            log.error("Error occurred while fetching updates for user: {}", userId, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Создать несколько сообщений одним пакетом.
+     * Некорректные элементы не прерывают пакет: результат возвращается для каждого элемента.
+     *
+     * @param requests данные новых сообщений (не больше {@link #MAX_BATCH_SIZE})
+     * @return Result с результатами в порядке запроса или Error для пакета целиком
+     */
+    @Transactional
+    public Result<List<BatchItemResponse<Void>>, Error> saveAll(final List<CreateMessageRequest> requests) {
+        final UnitResult<Error> sizeResult = validateBatchSize(requests);
+        if (sizeResult.isFailure()) {
+            log.warn("SaveAll called with invalid batch: {}", sizeResult.getError().getMessage());
+            return Result.failure(sizeResult.getError());
+        }
+
+        log.debug("Attempting to create {} messages", requests.size());
+
+        try {
+            final List<BatchItemResponse<Void>> items = new ArrayList<>(Collections.nCopies(requests.size(), null));
+            final List<Integer> validIndexes = new ArrayList<>(requests.size());
+            final List<Message> validMessages = new ArrayList<>(requests.size());
+
+            for (int i = 0; i < requests.size(); i++) {
+                final CreateMessageRequest request = requests.get(i);
+                if (Guard.isNull(request)) {
+                    items.set(i, BatchItemResponse.failure(i, null,
+                            GeneralErrors.valueIsRequired("createMessageRequest")));
+                    continue;
+                }
+
+                final Result<Message, Error> messageResult = Message.from(request);
+                if (messageResult.isFailure()) {
+                    items.set(i, BatchItemResponse.failure(i, null, messageResult.getError()));
+                    continue;
+                }
+
+                final UnitResult<Error> validationResult = validateMessage(messageResult.getValue());
+                if (validationResult.isFailure()) {
+                    items.set(i, BatchItemResponse.failure(i, null, validationResult.getError()));
+                    continue;
+                }
+
+                validIndexes.add(i);
+                validMessages.add(messageResult.getValue());
+            }
+
+            final List<UnitResult<Error>> saveResults = repository.saveAll(validMessages);
+            for (int i = 0; i < validIndexes.size(); i++) {
+                final int index = validIndexes.get(i);
+                final UUID id = validMessages.get(i).getId();
+                final UnitResult<Error> saveResult = saveResults.get(i);
+                items.set(index, saveResult.isSuccess()
+                        ? BatchItemResponse.success(index, id, null)
+                        : BatchItemResponse.failure(index, id, saveResult.getError()));
+            }
+
+            log.info("Created {} of {} messages in batch",
+                    items.stream().filter(BatchItemResponse::success).count(), requests.size());
+            return Result.success(items);
+        } catch (Exception e) {
+            log.error("Error occurred while creating batch of messages", e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Найти несколько сообщений по ID одним пакетом.
+     *
+     * @param ids идентификаторы сообщений (не больше {@link #MAX_BATCH_SIZE})
+     * @return Result с результатами в порядке запроса (entity.not.found для отсутствующих) или Error
+     */
+    @Transactional(readOnly = true)
+    public Result<List<BatchItemResponse<MessageResponse>>, Error> findAllByIds(final List<UUID> ids) {
+        final UnitResult<Error> sizeResult = validateBatchSize(ids);
+        if (sizeResult.isFailure()) {
+            log.warn("FindAllByIds called with invalid batch: {}", sizeResult.getError().getMessage());
+            return Result.failure(sizeResult.getError());
+        }
+
+        final Result<List<Optional<Message>>, Error> messagesResult = repository.findAllByIds(ids);
+        if (messagesResult.isFailure()) {
+            log.error("Failed to find messages by ids: {}", messagesResult.getError().getMessage());
+            return Result.failure(messagesResult.getError());
+        }
+
+        final List<Optional<Message>> messages = messagesResult.getValue();
+        final List<BatchItemResponse<MessageResponse>> items = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            final int index = i;
+            final UUID id = ids.get(i);
+            items.add(messages.get(i)
+                    .map(message -> BatchItemResponse.success(index, id, message.toMessageResponse()))
+                    .orElseGet(() -> BatchItemResponse.failure(
+                            index, id, GeneralErrors.entityNotFound("Message", id))));
+        }
+
+        log.info("Found {} of {} messages by ids",
+                items.stream().filter(BatchItemResponse::success).count(), ids.size());
+        return Result.success(items);
+    }
+
+    /**
+     * Удалить несколько сообщений по ID одним пакетом.
+     *
+     * @param ids идентификаторы сообщений (не больше {@link #MAX_BATCH_SIZE})
+     * @return Result с результатами в порядке запроса (entity.not.found для отсутствующих) или Error
+     */
+    @Transactional
+    public Result<List<BatchItemResponse<Void>>, Error> deleteAllByIds(final List<UUID> ids) {
+        final UnitResult<Error> sizeResult = validateBatchSize(ids);
+        if (sizeResult.isFailure()) {
+            log.warn("DeleteAllByIds called with invalid batch: {}", sizeResult.getError().getMessage());
+            return Result.failure(sizeResult.getError());
+        }
+
+        final List<UnitResult<Error>> deleteResults = repository.deleteAllByIds(ids);
+        final List<BatchItemResponse<Void>> items = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            final UnitResult<Error> deleteResult = deleteResults.get(i);
+            items.add(deleteResult.isSuccess()
+                    ? BatchItemResponse.success(i, ids.get(i), null)
+                    : BatchItemResponse.failure(i, ids.get(i), deleteResult.getError()));
+        }
+
+        log.info("Deleted {} of {} messages by ids",
+                items.stream().filter(BatchItemResponse::success).count(), ids.size());
+        return Result.success(items);
+    }
+
+    /**
+     * Разобрать курсор ленты изменений: неотрицательное число, пустой курсор означает начало ленты.
+     */
+    private static Result<Long, Error> parseUpdatesCursor(final String since) {
+        if (since == null || since.isBlank()) {
+            return Result.success(0L);
+        }
+        try {
+            final long cursor = Long.parseLong(since.trim());
+            return cursor < 0
+                    ? Result.failure(GeneralErrors.valueIsInvalid("since", "cursor must not be negative"))
+                    : Result.success(cursor);
+        } catch (NumberFormatException e) {
+            return Result.failure(GeneralErrors.valueIsInvalid("since", "cursor must be a number"));
+        }
+    }
+
+    private static UnitResult<Error> validateBatchSize(final List<?> items) {
+        if (Guard.isNull(items) || items.isEmpty()) {
+            return UnitResult.failure(GeneralErrors.collectionIsTooSmall(1, items == null ? 0 : items.size()));
+        }
+        if (items.size() > MAX_BATCH_SIZE) {
+            return UnitResult.failure(GeneralErrors.collectionIsTooLarge(MAX_BATCH_SIZE, items.size()));
+        }
+        return UnitResult.success();
+    }
+
     /**
      * Валидация сообщения.
      *
@@ -0,0 +1,135 @@
+package ru.test.the.best.chat.message;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.ConnectionPoolConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.redis.RedisClientCache;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение пропускной способности и p99 чтения горячих значений message:* через обычный пул
+ * и через клиентский кеш Redis (RESP3 CLIENT TRACKING) при одинаковом числе клиентов.
+ * <p>
+ * Нужен запущенный Redis 7.4+; запуск: CHAT_BENCHMARK=true ./gradlew :client-dima:test --tests '*ClientSideCacheBenchmarkTest'.
+ * Ключи бенчмарка (message:benchmark:*) создаются с TTL и удаляются в конце.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_BENCHMARK", matches = "true")
+public class ClientSideCacheBenchmarkTest {
+
+    private static final int HOT_KEYS = 1000;
+    private static final int VALUE_BYTES = 512;
+    private static final int CLIENTS = 500;
+    private static final int READS_PER_CLIENT = 200;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Value("${redis.host}")
+    private String host;
+
+    @Value("${redis.port}")
+    private int port;
+
+    @Value("${redis.username}")
+    private String username;
+
+    @Value("${redis.password}")
+    private String password;
+
+    @Test
+    void comparePlainPoolWithClientCacheTest() throws Exception {
+        final byte[][] keys = new byte[HOT_KEYS][];
+        try (Jedis jedis = jedisPool.getResource()) {
+            final byte[] value = new byte[VALUE_BYTES];
+            ThreadLocalRandom.current().nextBytes(value);
+            for (int i = 0; i < HOT_KEYS; i++) {
+                keys[i] = SafeEncoder.encode("message:benchmark:" + i);
+                jedis.setex(keys[i], 300, value);
+            }
+        }
+
+        final var poolConfig = new ConnectionPoolConfig();
+        poolConfig.setMaxTotal(128);
+        poolConfig.setJmxEnabled(false);
+
+        try (var clientCache = new RedisClientCache(new HostAndPort(host, port), username, password,
+                HOT_KEYS * 2, poolConfig)) {
+            final Function<byte[], byte[]> plainRead = key -> {
+                try (Jedis jedis = jedisPool.getResource()) {
+                    return jedis.get(key);
+                }
+            };
+
+            // Прогрев: JIT, соединения пулов, заполнение клиентского кеша
+            run(plainRead, keys);
+            run(clientCache::get, keys);
+
+            var plain = run(plainRead, keys);
+            var cached = run(clientCache::get, keys);
+
+            System.out.printf("plain pool:   %.0f reads/s, p99 %.3f ms%n", plain.throughput(), plain.p99Millis());
+            System.out.printf("client cache: %.0f reads/s, p99 %.3f ms%n", cached.throughput(), cached.p99Millis());
+            assertEquals(0, plain.errors() + cached.errors());
+        } finally {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.del(keys);
+            }
+        }
+    }
+
+    private BenchmarkResult run(final Function<byte[], byte[]> read, final byte[][] keys) throws Exception {
+        final int total = CLIENTS * READS_PER_CLIENT;
+        final long[] latencies = new long[total];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+
+        final long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final Future<?>[] clients = new Future<?>[CLIENTS];
+            for (int c = 0; c < CLIENTS; c++) {
+                clients[c] = executor.submit(() -> {
+                    for (int r = 0; r < READS_PER_CLIENT; r++) {
+                        final byte[] key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+                        final long readStart = System.nanoTime();
+                        if (read.apply(key) == null) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[next.getAndIncrement()] = System.nanoTime() - readStart;
+                    }
+                });
+            }
+            for (Future<?> client : clients) {
+                client.get(5, TimeUnit.MINUTES);
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new BenchmarkResult(
+                total / (elapsed / 1_000_000_000.0),
+                latencies[(int) Math.ceil(total * 0.99) - 1] / 1_000_000.0,
+                errors.get()
+        );
+    }
+
+    private record BenchmarkResult(double throughput, double p99Millis, int errors) {
+    }
+}
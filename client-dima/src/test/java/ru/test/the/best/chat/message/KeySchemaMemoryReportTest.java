@@ -0,0 +1,174 @@
+package ru.test.the.best.chat.message;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.id.UuidV7;
+import ru.test.the.best.chat.redis.KeySchema;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Отчёт о памяти раскладок ключей сообщений TEXT и BINARY на одинаковом синтетическом наборе:
+ * MEMORY USAGE по видам ключей (значения, индексы отправителей и получателей, общий индекс, переписки,
+ * ленты изменений) и кодировка индексов.
+ * <p>
+ * Нужен запущенный Redis; запуск: CHAT_BENCHMARK=true ./gradlew :client-dima:test --tests '*KeySchemaMemoryReportTest'.
+ * Ключи набора создаются под префиксом memory-report: и удаляются в конце.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_BENCHMARK", matches = "true")
+public class KeySchemaMemoryReportTest {
+
+    private static final String PREFIX = "memory-report:";
+    private static final int USERS = 500;
+    private static final int MESSAGES = 50_000;
+    private static final int VALUE_BYTES = 160;
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Test
+    void compareTextAndBinaryKeySchemasTest() {
+        final Random random = new Random(42);
+        final List<UUID> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(UuidV7.next());
+        }
+        final List<UUID[]> messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            messages.add(new UUID[]{UuidV7.next(), users.get(random.nextInt(USERS)), users.get(random.nextInt(USERS))});
+        }
+        final byte[] value = new byte[VALUE_BYTES];
+        random.nextBytes(value);
+
+        final Map<KeySchema, Map<String, Long>> report = new LinkedHashMap<>();
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (KeySchema schema : KeySchema.values()) {
+                final Map<String, Collection<byte[]>> keys = write(jedis, schema, messages, value);
+                try {
+                    report.put(schema, measure(jedis, schema, keys));
+                } finally {
+                    for (Collection<byte[]> group : keys.values()) {
+                        unlink(jedis, group);
+                    }
+                }
+            }
+        }
+
+        System.out.printf("%d messages, %d users%n", MESSAGES, USERS);
+        System.out.printf("%-14s %14s %14s %8s%n", "keys", "TEXT, bytes", "BINARY, bytes", "ratio");
+        for (String group : report.get(KeySchema.TEXT).keySet()) {
+            final long text = report.get(KeySchema.TEXT).get(group);
+            final long binary = report.get(KeySchema.BINARY).get(group);
+            System.out.printf("%-14s %14d %14d %8.2f%n", group, text, binary, text == 0 ? 0 : (double) binary / text);
+        }
+
+        assertTrue(report.get(KeySchema.BINARY).get("total") < report.get(KeySchema.TEXT).get("total"));
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    /**
+     * Записать набор в раскладке schema так же, как его записывает save_message.lua.
+     *
+     * @return ключи набора по видам
+     */
+    private Map<String, Collection<byte[]>> write(final Jedis jedis, final KeySchema schema,
+                                                  final List<UUID[]> messages, final byte[] value) {
+        final Map<String, Map<String, byte[]>> keys = new LinkedHashMap<>();
+        for (String group : List.of("values", "from", "to", "all", "conversation", "updates")) {
+            keys.put(group, new LinkedHashMap<>());
+        }
+
+        long sequence = 0;
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < messages.size(); i++) {
+            final UUID id = messages.get(i)[0];
+            final UUID from = messages.get(i)[1];
+            final UUID to = messages.get(i)[2];
+            final byte[] member = schema.member(id);
+            sequence++;
+
+            pipeline.setex(remember(keys, "values", schema.key(PREFIX + "message:", id)), 600, value);
+            pipeline.sadd(remember(keys, "from", schema.key(PREFIX + "user:messages:from:", from)), member);
+            pipeline.sadd(remember(keys, "to", schema.key(PREFIX + "user:messages:to:", to)), member);
+            pipeline.sadd(remember(keys, "all", SafeEncoder.encode(schema.staticKey(PREFIX + "messages:all"))), member);
+            pipeline.zadd(remember(keys, "conversation", schema.pairKey(PREFIX + "conversation:lex:", from, to)), 0, member);
+            pipeline.zadd(remember(keys, "updates", schema.key(PREFIX + "user:updates:", from)), sequence, member);
+            pipeline.zadd(remember(keys, "updates", schema.key(PREFIX + "user:updates:", to)), sequence, member);
+
+            if ((i + 1) % BATCH_SIZE == 0) {
+                pipeline.sync();
+                pipeline = jedis.pipelined();
+            }
+        }
+        pipeline.sync();
+
+        final Map<String, Collection<byte[]>> result = new LinkedHashMap<>();
+        keys.forEach((group, groupKeys) -> result.put(group, groupKeys.values()));
+        return result;
+    }
+
+    /**
+     * MEMORY USAGE по видам ключей и кодировка первого ключа каждого вида.
+     */
+    private Map<String, Long> measure(final Jedis jedis, final KeySchema schema,
+                                      final Map<String, Collection<byte[]>> keys) {
+        final Map<String, Long> usage = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<String, Collection<byte[]>> group : keys.entrySet()) {
+            final Pipeline pipeline = jedis.pipelined();
+            final List<Response<Long>> responses = new ArrayList<>(group.getValue().size());
+            for (byte[] key : group.getValue()) {
+                responses.add(pipeline.memoryUsage(key));
+            }
+            pipeline.sync();
+
+            final long bytes = responses.stream().mapToLong(response -> response.get() == null ? 0 : response.get()).sum();
+            usage.put(group.getKey(), bytes);
+            total += bytes;
+
+            final byte[] sample = group.getValue().iterator().next();
+            System.out.printf("%s %s: %d keys, encoding %s%n", schema, group.getKey(), group.getValue().size(),
+                    SafeEncoder.encode(jedis.objectEncoding(sample)));
+        }
+        usage.put("total", total);
+        return usage;
+    }
+
+    private static byte[] remember(final Map<String, Map<String, byte[]>> keys, final String group, final byte[] key) {
+        // Ключ строки в карте - только для устранения повторов, бинарные ключи сравниваются по содержимому
+        return keys.get(group).computeIfAbsent(new String(key, StandardCharsets.ISO_8859_1), k -> key);
+    }
+
+    private static void unlink(final Jedis jedis, final Collection<byte[]> keys) {
+        final List<byte[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (byte[] key : keys) {
+            batch.add(key);
+            if (batch.size() == BATCH_SIZE) {
+                jedis.unlink(batch.toArray(byte[][]::new));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jedis.unlink(batch.toArray(byte[][]::new));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.test.the.best.chat.message;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.test.the.best.chat.controller.MessageController;
+import ru.test.the.best.chat.controller.UserController;
+import ru.test.the.best.chat.model.dto.message.CreateMessageRequest;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение пропускной способности и p99 пути запроса (сохранение + чтение ленты) на платформенных
+ * потоках (пул как у Tomcat по умолчанию) и на виртуальных потоках при одинаковом числе клиентов.
+ * <p>
+ * Нужен запущенный Redis; запуск: CHAT_BENCHMARK=true ./gradlew :client-dima:test --tests '*VirtualThreadBenchmarkTest'.
+ * Tomcat здесь не участвует: сравнивается поведение под нагрузкой всего, что ниже контроллера,
+ * где ограничителем параллельности должен быть JedisPool (redis.max.total), а не пул потоков.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_BENCHMARK", matches = "true")
+public class VirtualThreadBenchmarkTest {
+
+    private static final int PLATFORM_THREADS = 200;
+    private static final int CLIENTS = 2000;
+    private static final int REQUESTS_PER_CLIENT = 10;
+
+    @Autowired
+    private MessageController messageController;
+
+    @Autowired
+    private UserController userController;
+
+    @Test
+    void compareThreadModelsTest() throws Exception {
+        var userId = userController.getUserByName("user1").getBody().getData().id();
+        var userId2 = userController.getUserByName("user2").getBody().getData().id();
+
+        // Прогрев: JIT, соединения пула, Lua-скрипты
+        run("warmup", Executors.newFixedThreadPool(PLATFORM_THREADS), userId, userId2);
+
+        var platform = run("platform", Executors.newFixedThreadPool(PLATFORM_THREADS), userId, userId2);
+        var virtual = run("virtual", Executors.newVirtualThreadPerTaskExecutor(), userId, userId2);
+
+        System.out.printf("platform: %.0f req/s, p99 %.2f ms%n", platform.throughput(), platform.p99Millis());
+        System.out.printf("virtual:  %.0f req/s, p99 %.2f ms%n", virtual.throughput(), virtual.p99Millis());
+        assertEquals(0, platform.errors() + virtual.errors());
+    }
+
+    private BenchmarkResult run(
+            final String name,
+            final ExecutorService executor,
+            final UUID from,
+            final UUID to) throws Exception {
+        final int total = CLIENTS * REQUESTS_PER_CLIENT;
+        final long[] latencies = new long[total];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+
+        final long start = System.nanoTime();
+        try (executor) {
+            final Future<?>[] clients = new Future<?>[CLIENTS];
+            for (int c = 0; c < CLIENTS; c++) {
+                clients[c] = executor.submit(() -> {
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        final long requestStart = System.nanoTime();
+                        var saved = messageController.sendMessage(
+                                new CreateMessageRequest(Instant.now(), from, to, "benchmark " + name, "STRING"));
+                        var updates = messageController.getUpdates(to, null, 1);
+                        if (!saved.getStatusCode().is2xxSuccessful() || !updates.getStatusCode().is2xxSuccessful()) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[next.getAndIncrement()] = System.nanoTime() - requestStart;
+                    }
+                });
+            }
+            for (Future<?> client : clients) {
+                client.get(5, TimeUnit.MINUTES);
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new BenchmarkResult(
+                total / (elapsed / 1_000_000_000.0),
+                latencies[(int) Math.ceil(total * 0.99) - 1] / 1_000_000.0,
+                errors.get()
+        );
+    }
+
+    private record BenchmarkResult(double throughput, double p99Millis, int errors) {
+    }
+}
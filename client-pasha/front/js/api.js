@@ -149,9 +149,33 @@ class ChatAPI {
         return this.request(`/messages?${direction}=${userId}`);
     }
 
-    async getConversation(user1Id, user2Id) {
-        console.log(`[ChatAPI] Fetching conversation between ${user1Id} and ${user2Id}`);
-        return this.request(`/messages/conversation?user1=${user1Id}&user2=${user2Id}`);
+    // Следующая страница: before и beforeId - дата и ID первого сообщения текущей
+    async getConversation(user1Id, user2Id, before = null, limit = null, beforeId = null) {
+        console.log(`[ChatAPI] Fetching conversation between ${user1Id} and ${user2Id}, before=${before}, beforeId=${beforeId}, limit=${limit}`);
+        let url = `/messages/conversation?user1=${user1Id}&user2=${user2Id}`;
+        if (before) {
+            url += `&before=${encodeURIComponent(before)}`;
+        }
+        if (before && beforeId) {
+            url += `&beforeId=${beforeId}`;
+        }
+        if (limit) {
+            url += `&limit=${limit}`;
+        }
+        return this.request(url);
+    }
+
+    // Дельта-синхронизация: только сообщения, созданные или изменённые после курсора
+    async getUpdates(userId, since = null, limit = null) {
+        console.log(`[ChatAPI] Fetching updates for ${userId}, since=${since}, limit=${limit}`);
+        let url = `/messages/updates?user=${userId}`;
+        if (since) {
+            url += `&since=${encodeURIComponent(since)}`;
+        }
+        if (limit) {
+            url += `&limit=${limit}`;
+        }
+        return this.request(url);
     }
 }
 
@@ -165,6 +189,10 @@ class DistributedChatAPI {
         this.localAPI = new ChatAPI(CONFIG.LOCAL_API);
         this.remoteAPI = new ChatAPI(CONFIG.REMOTE_API);
 
+        // Курсоры ленты изменений: у каждого бэкенда свой Redis и своя нумерация
+        this.updatesUserId = null;
+        this.cursors = { local: null, remote: null };
+
         console.log(`[DistributedChatAPI] Initialization complete`);
     }
 
@@ -251,6 +279,61 @@ class DistributedChatAPI {
     }
 
 
+    // Сбросить курсоры, чтобы следующий getUpdates загрузил ленту с начала
+    resetUpdates() {
+        console.log(`[DistributedChatAPI] Resetting update cursors`);
+        this.updatesUserId = null;
+        this.cursors = { local: null, remote: null };
+    }
+
+    // Получить новые и изменённые сообщения пользователя с обоих бэкендов
+    async getUpdates(userId) {
+        if (this.updatesUserId !== userId) {
+            this.resetUpdates();
+            this.updatesUserId = userId;
+        }
+
+        const [localMessages, remoteMessages] = await Promise.all([
+            this.drainUpdates(this.localAPI, 'local', userId),
+            this.drainUpdates(this.remoteAPI, 'remote', userId)
+        ]);
+
+        if (localMessages === null && remoteMessages === null) {
+            throw new Error('Both backends failed to return updates');
+        }
+
+        // Объединяем и дедуплицируем сообщения по ID
+        const uniqueMessages = Array.from(
+            new Map([...(localMessages || []), ...(remoteMessages || [])].map(msg => [msg.id, msg])).values()
+        );
+
+        console.log(`[DistributedChatAPI] Received ${uniqueMessages.length} updated messages`);
+        return uniqueMessages.sort((a, b) => new Date(a.date) - new Date(b.date));
+    }
+
+    // Выбрать все страницы изменений одного бэкенда; null, если бэкенд недоступен
+    async drainUpdates(api, name, userId) {
+        const messages = [];
+        try {
+            let hasMore = true;
+            while (hasMore) {
+                const response = await api.getUpdates(userId, this.cursors[name]);
+                const page = response.data || {};
+                messages.push(...(page.messages || []));
+
+                // Курсор только растёт: ответ на более ранний параллельный запрос не откатывает его назад
+                if (page.cursor && Number(page.cursor) > Number(this.cursors[name] || 0)) {
+                    this.cursors[name] = page.cursor;
+                }
+                hasMore = page.hasMore === true;
+            }
+            return messages;
+        } catch (error) {
+            console.warn(`[DistributedChatAPI] ${name} updates unavailable:`, error);
+            return messages.length > 0 ? messages : null;
+        }
+    }
+
     // Создать пользователя на обоих бэкендах
     async createUser(username, displayName) {
         console.log(`[DistributedChatAPI] Creating user on both backends`);
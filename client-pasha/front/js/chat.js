@@ -9,7 +9,7 @@ class ChatManager {
         this.allUsers = [];
         this.selectedRecipient = null;
         this.pollingInterval = null;
-        this.lastMessageTime = new Date(0);
+        this.eventSource = null;
 
         this.init();
     }
@@ -49,7 +49,10 @@ class ChatManager {
         console.log(`[ChatManager] Loading existing messages...`);
         this.loadMessages();
 
-        // Начинаем опрос новых сообщений
+        // Подписываемся на push новых сообщений и начинаем опрос как запасной канал
+        console.log(`[ChatManager] Opening message stream...`);
+        this.openMessageStream();
+
         console.log(`[ChatManager] Starting polling...`);
         this.startPolling();
 
@@ -148,25 +151,20 @@ class ChatManager {
         try {
             this.updateConnectionStatus(true);
 
+            // Полная загрузка - это лента изменений пользователя с начала
             console.log(`[ChatManager] Fetching messages from API...`);
-            const messages = await window.chatAPI.getAllMessages();
+            window.chatAPI.resetUpdates();
+            const messages = await window.chatAPI.getUpdates(this.currentUser.id);
 
             console.log(`[ChatManager] Received ${messages.length} messages`);
 
-            this.messages = messages;
+            this.messages = [];
+            this.mergeMessages(messages);
 
             if (this.selectedRecipient) {
                 this.renderMessagesForRecipient();
             }
 
-            if (messages.length > 0) {
-                const maxDate = Math.max(...messages.map(m => new Date(m.date)));
-                this.lastMessageTime = new Date(maxDate);
-                console.log(`[ChatManager] Last message time: ${this.lastMessageTime}`);
-            } else {
-                console.log(`[ChatManager] No messages found`);
-            }
-
         } catch (error) {
             console.error(`[ChatManager] Failed to load messages:`, error);
             this.updateConnectionStatus(false);
@@ -269,9 +267,9 @@ class ChatManager {
             input.value = '';
             console.log(`[ChatManager] Input cleared`);
 
-            // Сразу обновляем сообщения
-            console.log(`[ChatManager] Reloading messages...`);
-            await this.loadMessages();
+            // Сразу забираем изменения, не дожидаясь очередного опроса
+            console.log(`[ChatManager] Fetching updates...`);
+            await this.pollNewMessages();
 
         } catch (error) {
             console.error(`[ChatManager] Failed to send message:`, error);
@@ -291,35 +289,48 @@ class ChatManager {
         console.log(`[ChatManager] Polling started`);
     }
 
+    // SSE-поток локального бэкенда: событие о новом сообщении сразу запускает дельта-синхронизацию
+    openMessageStream() {
+        if (!window.EventSource) {
+            console.warn(`[ChatManager] EventSource is not supported, relying on polling`);
+            return;
+        }
+
+        const url = `${CONFIG.LOCAL_API}/messages/stream?user=${this.currentUser.id}`;
+        this.eventSource = new EventSource(url);
+
+        // После (пере)подключения забираем то, что могли пропустить
+        this.eventSource.onopen = () => {
+            console.log(`[ChatManager] Message stream connected`);
+            this.pollNewMessages();
+        };
+
+        this.eventSource.addEventListener('message', () => {
+            console.log(`[ChatManager] Message stream event received`);
+            this.pollNewMessages();
+        });
+
+        // EventSource переподключается сам, опрос продолжает работать
+        this.eventSource.onerror = () => {
+            console.warn(`[ChatManager] Message stream error, browser will reconnect`);
+        };
+    }
+
     async pollNewMessages() {
         console.log(`[ChatManager] Polling for new messages...`);
 
         try {
             this.updateConnectionStatus(true);
 
-            const messages = await window.chatAPI.getAllMessages();
-
-            // Проверяем, есть ли новые сообщения
-            const hasNewMessages = messages.some(msg => {
-                const msgDate = new Date(msg.date);
-                const isNew = msgDate > this.lastMessageTime;
-                if (isNew) {
-                    console.log(`[ChatManager] Found new message:`, msg);
-                }
-                return isNew;
-            });
+            // Сервер возвращает только то, что появилось после прошлого опроса
+            const updates = await window.chatAPI.getUpdates(this.currentUser.id);
 
-            if (hasNewMessages) {
-                console.log(`[ChatManager] New messages detected, updating display`);
-                this.messages = messages;
+            if (this.mergeMessages(updates)) {
+                console.log(`[ChatManager] ${updates.length} new or changed messages, updating display`);
 
                 if (this.selectedRecipient) {
                     this.renderMessagesForRecipient();
                 }
-
-                this.lastMessageTime = new Date(
-                    Math.max(...messages.map(m => new Date(m.date)))
-                );
             }
 
         } catch (error) {
@@ -328,7 +339,28 @@ class ChatManager {
         }
     }
 
+    // Влить новые и изменённые сообщения в список; true, если что-то изменилось
+    mergeMessages(updates) {
+        if (updates.length === 0) {
+            return false;
+        }
+
+        const byId = new Map(this.messages.map(msg => [msg.id, msg]));
+        updates.forEach(msg => byId.set(msg.id, msg));
+
+        this.messages = Array.from(byId.values()).sort((a, b) =>
+            new Date(a.date) - new Date(b.date)
+        );
+        return true;
+    }
+
     stop() {
+        if (this.eventSource) {
+            this.eventSource.close();
+            this.eventSource = null;
+            console.log(`[ChatManager] Message stream closed`);
+        }
+
         console.log(`[ChatManager] Stopping polling...`);
 
         if (this.pollingInterval) {
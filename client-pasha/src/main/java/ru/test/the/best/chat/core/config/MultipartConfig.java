@@ -0,0 +1,51 @@
+package ru.test.the.best.chat.core.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Лимиты multipart-загрузки, согласованные с messages.upload.max-bytes.
+ * <p>
+ * Файл ограничен тем же лимитом, что и тело octet-stream, а запрос целиком - лимитом файла плюс запас
+ * на остальные части формы и разделители. Поэтому изменение messages.upload.max-bytes не требует
+ * править spring.servlet.multipart.* и файл на границе лимита не отклоняется раньше проверки сервиса.
+ */
+@Configuration
+public class MultipartConfig {
+
+    @Bean
+    public MultipartConfigElement multipartConfigElement(
+            @Value("${messages.upload.max-bytes:52428800}") final long maxUploadBytes,
+            @Value("${messages.upload.multipart-overhead-bytes:65536}") final long overheadBytes,
+            @Value("${spring.servlet.multipart.file-size-threshold:256KB}") final DataSize fileSizeThreshold,
+            @Value("${spring.servlet.multipart.location:}") final String location) {
+        return multipartConfig(location, maxUploadBytes, overheadBytes, fileSizeThreshold);
+    }
+
+    /**
+     * Собрать лимиты multipart-загрузки.
+     *
+     * @param location          каталог временных файлов или пустая строка - каталог контейнера
+     * @param maxUploadBytes    максимальный размер файла
+     * @param overheadBytes     запас запроса на остальные части формы и разделители
+     * @param fileSizeThreshold размер, начиная с которого часть пишется во временный файл
+     */
+    static MultipartConfigElement multipartConfig(
+            final String location,
+            final long maxUploadBytes,
+            final long overheadBytes,
+            final DataSize fileSizeThreshold) {
+        if (maxUploadBytes <= 0 || overheadBytes < 0) {
+            throw new IllegalArgumentException("messages.upload.max-bytes must be positive and "
+                    + "messages.upload.multipart-overhead-bytes must not be negative");
+        }
+        return new MultipartConfigElement(
+                location,
+                maxUploadBytes,
+                Math.addExact(maxUploadBytes, overheadBytes),
+                (int) Math.min(fileSizeThreshold.toBytes(), Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,45 @@
+package ru.test.the.best.chat.core.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+import ru.test.the.best.chat.message.socket.MessageSocketHandler;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final MessageSocketHandler messageSocketHandler;
+    private final int maxFrameBytes;
+
+    public WebSocketConfig(
+            final MessageSocketHandler messageSocketHandler,
+            @Value("${messages.socket.max-frame-bytes:16777216}") final int maxFrameBytes) {
+        this.messageSocketHandler = messageSocketHandler;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(messageSocketHandler, "/api/v1/messages/ws")
+                .setAllowedOriginPatterns(
+                        "http://localhost:*",
+                        "http://127.0.0.1:*"
+                );
+    }
+
+    /**
+     * Лимит размера кадра: сообщение целиком (включая IMAGE/SOUND) передаётся одним кадром.
+     */
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        final ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(maxFrameBytes);
+        container.setMaxBinaryMessageBufferSize(maxFrameBytes);
+        return container;
+    }
+}
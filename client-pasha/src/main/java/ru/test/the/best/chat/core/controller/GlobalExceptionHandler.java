@@ -10,6 +10,7 @@ import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import ru.test.the.best.chat.errs.api.ApiError;
 import ru.test.the.best.chat.errs.api.ApiResultResponse;
 
@@ -109,6 +110,20 @@ public class GlobalExceptionHandler {
                 .body(ApiResultResponse.failure("missing.parameter", message));
     }
 
+    /**
+     * Обработка превышения лимита multipart-загрузки ({@link ru.test.the.best.chat.core.config.MultipartConfig}).
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ApiResultResponse<Void>> handleMaxUploadSize(
+            MaxUploadSizeExceededException ex) {
+
+        log.warn("Upload size exceeded: {}", ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.CONTENT_TOO_LARGE)
+                .body(ApiResultResponse.failure("payload.too.large", "Uploaded file is too large"));
+    }
+
     /**
      * Обработка IllegalArgumentException.
      */
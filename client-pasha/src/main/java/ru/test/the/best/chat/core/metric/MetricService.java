@@ -16,6 +16,7 @@ public class MetricService {
     private final Map<String, Timer> timers = new ConcurrentHashMap<>();
     private final Map<String, Counter> successCounters = new ConcurrentHashMap<>();
     private final Map<String, Counter> errorCounters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> batchSizeSummaries = new ConcurrentHashMap<>();
     private final Counter notFoundCounter;
 
     public MetricService(
@@ -66,6 +67,17 @@ public class MetricService {
         ).increment();
     }
 
+    public void recordBatchSize(final OperationMetric operationMetric, final int batchSize) {
+        final var operation = operationMetric.createNameOperationForMetric(this.entityName);
+        batchSizeSummaries.computeIfAbsent(operation, op ->
+                DistributionSummary.builder("service.operation.batch.size")
+                        .tag("service", serviceName)
+                        .tag("entity", entityName)
+                        .tag("operation", op)
+                        .register(registry)
+        ).record(batchSize);
+    }
+
     public void recordNotFound() {
         notFoundCounter.increment();
     }
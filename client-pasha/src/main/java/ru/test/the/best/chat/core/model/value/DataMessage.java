@@ -1,8 +1,14 @@
 package ru.test.the.best.chat.core.model.value;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 import lombok.Value;
+import ru.test.the.best.chat.codec.BlobReader;
+import ru.test.the.best.chat.codec.BlobReference;
+import ru.test.the.best.chat.codec.PayloadCompression;
+import ru.test.the.best.chat.codec.PayloadInflater;
 import ru.test.the.best.chat.errs.Error;
 import ru.test.the.best.chat.errs.GeneralErrors;
 import ru.test.the.best.chat.errs.Guard;
@@ -15,20 +21,62 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
 
 @Value
 @ToString
 @EqualsAndHashCode
 public class DataMessage {
 
+    // Содержимое из BlobStore не выводится: иначе логирование сообщения читало бы его из хранилища
+    @ToString.Exclude
     byte[] data;
     Type type;
 
+    /**
+     * Ссылка на содержимое в хранилище больших объектов; null - содержимое хранится в data.
+     */
+    BlobReference blob;
+
+    /**
+     * Распаковка data, если содержимое прочитано из хранилища сжатым; null - data хранится как есть.
+     * Содержимое распаковывается при каждом обращении к нему и нигде не кешируется.
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    transient PayloadInflater inflater;
+
+    /**
+     * Чтение содержимого по {@link #blob}; содержимое читается при каждом обращении и нигде не кешируется.
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    transient BlobReader blobReader;
+
     private DataMessage(final byte[] data, final Type type) {
+        this(data, type, null);
+    }
+
+    private DataMessage(final byte[] data, final Type type, final PayloadInflater inflater) {
+        this(data, type, inflater, null, null);
+    }
+
+    private DataMessage(
+            final byte[] data, final Type type, final PayloadInflater inflater,
+            final BlobReference blob, final BlobReader blobReader
+    ) {
         this.data = data;
         this.type = type;
+        this.inflater = inflater;
+        this.blob = blob;
+        this.blobReader = blobReader;
     }
 
     public static Result<DataMessage, Error> create(
@@ -45,6 +93,54 @@ public class DataMessage {
         return Result.success(new DataMessage(data, maybeType.getValue()));
     }
 
+    /**
+     * Создать содержимое из сжатых байт хранилища без распаковки.
+     * Распаковка выполняется при обращении к содержимому: getData и deserializeTo*.
+     *
+     * @param compressedData сжатое содержимое
+     * @param type           тип содержимого
+     * @param inflater       распаковка содержимого
+     * @return Result с содержимым или Error
+     */
+    public static Result<DataMessage, Error> compressed(
+            final byte[] compressedData, final String type, final PayloadInflater inflater
+    ) {
+        if (Guard.isNull(inflater)) return Result.failure(GeneralErrors.valueIsEmpty("inflater"));
+
+        final var dataMessage = create(compressedData, type);
+        if (dataMessage.isFailure()) return dataMessage;
+
+        return Result.success(new DataMessage(compressedData, dataMessage.getValue().type, inflater));
+    }
+
+    /**
+     * Создать содержимое, вынесенное в хранилище больших объектов.
+     * Содержимое читается при обращении к нему: getData и deserializeTo*.
+     *
+     * @param blob       ссылка на содержимое
+     * @param type       тип содержимого
+     * @param blobReader чтение содержимого по ссылке
+     * @return Result с содержимым или Error
+     */
+    public static Result<DataMessage, Error> blob(
+            final BlobReference blob, final String type, final BlobReader blobReader
+    ) {
+        if (Guard.isNull(blob)) return Result.failure(GeneralErrors.valueIsEmpty("blob"));
+        if (Guard.isNull(blobReader)) return Result.failure(GeneralErrors.valueIsEmpty("blobReader"));
+
+        final var maybeType = toType(type);
+        if (maybeType.isFailure()) return Result.failure(maybeType.getError());
+
+        return Result.success(new DataMessage(new byte[0], maybeType.getValue(), null, blob, blobReader));
+    }
+
+    /**
+     * Известен ли тип содержимого (STRING, IMAGE, SOUND без учёта регистра).
+     */
+    public static boolean isKnownType(final String type) {
+        return toType(type).isSuccess();
+    }
+
     private static Result<Type, Error> toType(final String typeStr) {
         if (Guard.isNullOrEmpty(typeStr)) return Result.failure(GeneralErrors.valueIsEmpty("typeStr"));
 
@@ -65,8 +161,11 @@ public class DataMessage {
         if (this.type != Type.STRING)
             return Result.failure(GeneralErrors.illegalState("Cannot deserialize to String, message type is " + this.type));
 
+        final var payload = payload();
+        if (payload.isFailure()) return Result.failure(payload.getError());
+
         // Декодирование в строку с использованием стандартной кодировки UTF-8.
-        return Result.success(new String(this.data, StandardCharsets.UTF_8));
+        return Result.success(new String(payload.getValue(), StandardCharsets.UTF_8));
     }
 
     /**
@@ -80,7 +179,10 @@ public class DataMessage {
         if (this.type != Type.IMAGE)
             return Result.failure(GeneralErrors.illegalState("Cannot deserialize to Image, message type is " + this.type));
 
-        try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(this.data)) {
+        final var payload = payload();
+        if (payload.isFailure()) return Result.failure(payload.getError());
+
+        try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(payload.getValue())) {
             final var image = ImageIO.read(inputStream);
 
             if (Guard.isNull(image))
@@ -103,7 +205,10 @@ public class DataMessage {
         if (this.type != Type.SOUND)
             return Result.failure(GeneralErrors.illegalState("Cannot deserialize to Sound, message type is " + this.type));
 
-        try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(this.data)) {
+        final var payload = payload();
+        if (payload.isFailure()) return Result.failure(payload.getError());
+
+        try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(payload.getValue())) {
             return Result.success(AudioSystem.getAudioInputStream(inputStream));
         } catch (final UnsupportedAudioFileException e) {
             return Result.failure(GeneralErrors.deserializationError("Failed to deserialize sound, unsupported audio format: " + e.getMessage()));
@@ -112,14 +217,90 @@ public class DataMessage {
         }
     }
 
+    /**
+     * Содержимое сообщения (распакованное, если оно хранится сжатым, и прочитанное из BlobStore,
+     * если оно вынесено туда).
+     *
+     * @throws IllegalStateException если сжатое содержимое повреждено или не прочитано из BlobStore
+     */
     public byte[] getData() {
-        return Arrays.copyOf(data, data.length);
+        if (this.inflater == null && this.blob == null) return Arrays.copyOf(data, data.length);
+
+        final var payload = payload();
+        if (payload.isFailure()) throw new IllegalStateException(payload.getError().getMessage());
+
+        return payload.getValue();
     }
 
     public String getType() {
         return type.name();
     }
 
+    /**
+     * Содержимое вынесено в хранилище больших объектов.
+     */
+    public boolean isBlob() {
+        return this.blob != null;
+    }
+
+    /**
+     * Размер исходного содержимого без чтения из BlobStore и без распаковки.
+     */
+    @ToString.Include
+    public long getSize() {
+        if (this.blob != null) return this.blob.size();
+        if (this.inflater != null) return PayloadCompression.originalLength(this.data);
+
+        return this.data.length;
+    }
+
+    /**
+     * Записать диапазон содержимого в канал без копии массива, как в {@link #getData()}:
+     * хранимые байты пишутся как есть, блоб - средствами хранилища. Сжатое содержимое распаковывается.
+     *
+     * @param offset  смещение первого байта
+     * @param length  количество байт
+     * @param channel канал назначения
+     * @throws IOException              если содержимое не прочитано или запись в канал не удалась
+     * @throws IllegalArgumentException если диапазон выходит за границы содержимого
+     */
+    public void transferTo(final long offset, final long length, final WritableByteChannel channel) throws IOException {
+        if (offset < 0 || length < 0 || offset > getSize() - length)
+            throw new IllegalArgumentException("Range " + offset + "+" + length + " is outside of " + getSize() + " bytes");
+
+        if (this.blob != null) {
+            this.blobReader.transferTo(this.blob, offset, length, channel);
+            return;
+        }
+
+        final var payload = payload();
+        if (payload.isFailure()) throw new IOException(payload.getError().getMessage());
+
+        final ByteBuffer buffer = ByteBuffer.wrap(payload.getValue(), (int) offset, (int) length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Метка версии содержимого для ETag: ID блоба (новое содержимое - новый блоб)
+     * или CRC32C и размер хранимых байт.
+     */
+    public String contentTag() {
+        if (this.blob != null) return this.blob.id().toString();
+
+        final CRC32C crc = new CRC32C();
+        crc.update(this.data);
+        return HexFormat.of().toHexDigits((int) crc.getValue()) + "-" + Long.toHexString(this.data.length);
+    }
+
+    private Result<byte[], Error> payload() {
+        if (this.blob != null) return this.blobReader.read(this.blob);
+        if (this.inflater == null) return Result.success(this.data);
+
+        return this.inflater.inflate(this.type.name(), this.data);
+    }
+
     private enum Type {
         STRING, IMAGE, SOUND
     }
@@ -0,0 +1,99 @@
+package ru.test.the.best.chat.core.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Неизменяемое кольцо консистентного хеширования.
+ * <p>
+ * Каждый узел занимает virtualNodes точек кольца (MD5 от "имя#номер"), ключ принадлежит первой
+ * точке по часовой стрелке от своего хеша. Виртуальные узлы выравнивают распределение ключей,
+ * а при добавлении узла к нему переезжает примерно 1/N ключей, остальные остаются на месте.
+ * Положение узла зависит только от его имени, поэтому кольцо одинаково на всех экземплярах
+ * приложения с одинаковым списком узлов.
+ *
+ * @param <T> узел (например, пул соединений шарда)
+ */
+public final class ConsistentHashRing<T> {
+
+    private final Map<String, T> nodes;
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param nodes        узлы по именам; имена определяют положение на кольце
+     * @param virtualNodes число точек кольца на узел
+     */
+    public ConsistentHashRing(final Map<String, T> nodes, final int virtualNodes) {
+        Objects.requireNonNull(nodes, "Nodes cannot be null");
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Ring must have at least one node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be positive: " + virtualNodes);
+        }
+
+        this.nodes = Collections.unmodifiableMap(new LinkedHashMap<>(nodes));
+        this.virtualNodes = virtualNodes;
+        for (String name : this.nodes.keySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(name + "#" + i), name);
+            }
+        }
+    }
+
+    /**
+     * Кольцо с дополнительным узлом; текущее кольцо не меняется.
+     *
+     * @param name имя нового узла
+     * @param node новый узел
+     * @return новое кольцо
+     */
+    public ConsistentHashRing<T> withNode(final String name, final T node) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Node already exists: " + name);
+        }
+        final Map<String, T> extended = new LinkedHashMap<>(nodes);
+        extended.put(name, Objects.requireNonNull(node, "Node cannot be null"));
+        return new ConsistentHashRing<>(extended, virtualNodes);
+    }
+
+    /**
+     * Имя узла, которому принадлежит ключ.
+     */
+    public String nameFor(final String key) {
+        final Map.Entry<Long, String> point = ring.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * Узел, которому принадлежит ключ.
+     */
+    public T nodeFor(final String key) {
+        return nodes.get(nameFor(key));
+    }
+
+    /**
+     * Все узлы кольца по именам в порядке добавления.
+     */
+    public Map<String, T> nodes() {
+        return nodes;
+    }
+
+    private static long hash(final String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
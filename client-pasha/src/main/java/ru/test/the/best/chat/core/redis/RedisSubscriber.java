@@ -0,0 +1,169 @@
+package ru.test.the.best.chat.core.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Подписка на каналы Redis (SUBSCRIBE или PSUBSCRIBE) в отдельном потоке.
+ * Подписка занимает соединение из пула целиком; при обрыве соединения
+ * поток переподключается с растущей паузой, пока подписчик не закрыт.
+ */
+@Slf4j
+public final class RedisSubscriber implements AutoCloseable {
+
+    private static final Duration MIN_RECONNECT_DELAY = Duration.ofMillis(100);
+    private static final Duration MAX_RECONNECT_DELAY = Duration.ofSeconds(10);
+
+    /**
+     * Обработчик сообщений подписки. Вызывается в потоке подписчика,
+     * поэтому не должен блокироваться надолго и не может использовать подписанное соединение.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * @param channel канал, в который пришло сообщение
+         * @param message тело сообщения
+         */
+        void onMessage(String channel, byte[] message);
+    }
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final boolean pattern;
+    private final byte[][] channels;
+    private final Listener listener;
+
+    private volatile boolean running;
+    private volatile BinaryJedisPubSub pubSub;
+    private Thread thread;
+
+    private RedisSubscriber(final JedisPool jedisPool, final String name, final boolean pattern,
+                            final Listener listener, final String... channels) {
+        this.jedisPool = Objects.requireNonNull(jedisPool, "JedisPool cannot be null");
+        this.name = Objects.requireNonNull(name, "Name cannot be null");
+        this.listener = Objects.requireNonNull(listener, "Listener cannot be null");
+        this.pattern = pattern;
+        this.channels = Arrays.stream(channels).map(SafeEncoder::encode).toArray(byte[][]::new);
+    }
+
+    /**
+     * Подписка на каналы по именам (SUBSCRIBE).
+     */
+    public static RedisSubscriber channels(final JedisPool jedisPool, final String name,
+                                           final Listener listener, final String... channels) {
+        return new RedisSubscriber(jedisPool, name, false, listener, channels);
+    }
+
+    /**
+     * Подписка на каналы по шаблонам (PSUBSCRIBE).
+     */
+    public static RedisSubscriber patterns(final JedisPool jedisPool, final String name,
+                                           final Listener listener, final String... patterns) {
+        return new RedisSubscriber(jedisPool, name, true, listener, patterns);
+    }
+
+    /**
+     * Запустить поток подписки.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = Thread.ofPlatform()
+                .name(name)
+                .daemon()
+                .start(this::run);
+    }
+
+    /**
+     * Отписаться и остановить поток подписки.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        final BinaryJedisPubSub current = pubSub;
+        if (current != null && current.isSubscribed()) {
+            try {
+                if (pattern) {
+                    current.punsubscribe();
+                } else {
+                    current.unsubscribe();
+                }
+            } catch (Exception e) {
+                log.debug("Failed to unsubscribe {}", name, e);
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void run() {
+        Duration delay = MIN_RECONNECT_DELAY;
+
+        while (running) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                final BinaryJedisPubSub current = createPubSub();
+                pubSub = current;
+                log.info("Redis subscriber {} connected", name);
+                delay = MIN_RECONNECT_DELAY;
+
+                // Блокируется до отписки или обрыва соединения
+                if (pattern) {
+                    jedis.psubscribe(current, channels);
+                } else {
+                    jedis.subscribe(current, channels);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Redis subscriber {} disconnected, reconnecting in {} ms", name, delay.toMillis(), e);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                delay = delay.multipliedBy(2).compareTo(MAX_RECONNECT_DELAY) > 0
+                        ? MAX_RECONNECT_DELAY
+                        : delay.multipliedBy(2);
+            }
+        }
+
+        log.info("Redis subscriber {} stopped", name);
+    }
+
+    private BinaryJedisPubSub createPubSub() {
+        return new BinaryJedisPubSub() {
+            @Override
+            public void onMessage(final byte[] channel, final byte[] message) {
+                dispatch(channel, message);
+            }
+
+            @Override
+            public void onPMessage(final byte[] pattern, final byte[] channel, final byte[] message) {
+                dispatch(channel, message);
+            }
+        };
+    }
+
+    private void dispatch(final byte[] channel, final byte[] message) {
+        try {
+            listener.onMessage(SafeEncoder.encode(channel), message);
+        } catch (Exception e) {
+            log.error("Redis subscriber {} listener failed", name, e);
+        }
+    }
+}
@@ -4,9 +4,11 @@ import ru.test.the.best.chat.errs.Error;
 import ru.test.the.best.chat.errs.Result;
 import ru.test.the.best.chat.errs.UnitResult;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface Repository<T, I> {
 
@@ -18,6 +20,25 @@ public interface Repository<T, I> {
      */
     UnitResult<Error> save(final T message);
 
+    /**
+     * Сохранить несколько сообщений за один обмен с хранилищем.
+     * Каждое сообщение сохраняется независимо: ошибка одного не отменяет остальные.
+     *
+     * @param messages сообщения для сохранения
+     * @return результаты в том же порядке, что и messages
+     */
+    List<UnitResult<Error>> saveAll(final List<T> messages);
+
+    /**
+     * Обновить существующее сообщение атомарно (check-and-set).
+     * Если сообщения нет, ничего не записывается.
+     *
+     * @param id      идентификатор сообщения
+     * @param message новое состояние сообщения с тем же ID
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
+     */
+    UnitResult<Error> update(final I id, final T message);
+
     /**
      * Найти сообщение по ID.
      *
@@ -26,6 +47,14 @@ public interface Repository<T, I> {
      */
     Result<Optional<T>, Error> findById(final I id);
 
+    /**
+     * Найти сообщения по списку ID за один обмен с хранилищем.
+     *
+     * @param ids идентификаторы сообщений
+     * @return Result со списком в том же порядке, что и ids (Optional.empty для отсутствующих), или Error
+     */
+    Result<List<Optional<T>>, Error> findAllByIds(final List<I> ids);
+
     /**
      * Найти все сообщения.
      * ВНИМАНИЕ: Может быть медленным при большом количестве сообщений!
@@ -34,15 +63,35 @@ public interface Repository<T, I> {
      */
     List<T> findAll();
 
+    /**
+     * Обойти все сообщения постранично.
+     * Память ограничена размером страницы независимо от общего количества сообщений.
+     * Сообщение может встретиться повторно, если индекс изменялся во время обхода.
+     *
+     * @param pageSize     желаемый размер страницы (подсказка для хранилища)
+     * @param pageConsumer обработчик очередной страницы
+     * @return UnitResult с результатом операции
+     */
+    UnitResult<Error> scanAll(final int pageSize, final Consumer<List<T>> pageConsumer);
+
     /**
      * Удалить сообщение по ID.
      * Удаляет из основного хранилища и всех индексов.
      *
      * @param id идентификатор сообщения
-     * @return UnitResult с результатом операции
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
      */
     UnitResult<Error> deleteById(final I id);
 
+    /**
+     * Удалить сообщения по списку ID за один обмен с хранилищем.
+     * Каждое сообщение удаляется независимо.
+     *
+     * @param ids идентификаторы сообщений
+     * @return результаты в том же порядке, что и ids, entity.not.found для отсутствующих
+     */
+    List<UnitResult<Error>> deleteAllByIds(final List<I> ids);
+
     /**
      * Найти все сообщения от конкретного пользователя.
      * Использует индекс для быстрого поиска.
@@ -62,13 +111,32 @@ public interface Repository<T, I> {
     List<T> findAllByTo(final UUID toUserId);
 
     /**
-     * Найти переписку между двумя пользователями.
+     * Найти страницу переписки между двумя пользователями.
+     * Сообщения выбираются из индекса переписки, упорядоченного по времени,
+     * поэтому сортировка на стороне приложения не требуется.
      *
      * @param user1Id ID первого пользователя
      * @param user2Id ID второго пользователя
-     * @return список сообщений, отсортированных по дате
+     * @param before   курсор: время первого сообщения предыдущей страницы (null - самые свежие)
+     * @param beforeId ID первого сообщения предыдущей страницы: сообщения того же момента с меньшим ID
+     *                 тоже попадают в страницу (null - строго раньше before)
+     * @param limit    максимальный размер страницы
+     * @return страница сообщений, отсортированных по дате по возрастанию
      */
-    List<T> findConversation(final UUID user1Id, final UUID user2Id);
+    List<T> findConversation(final UUID user1Id, final UUID user2Id, final Instant before, final UUID beforeId,
+                             final int limit);
+
+    /**
+     * Найти сообщения пользователя, созданные или изменённые после курсора.
+     * Лента содержит входящие и исходящие сообщения в порядке изменений;
+     * удалённые сообщения возвращаются отдельным списком ID, истёкшие в ленту не попадают.
+     *
+     * @param userId ID пользователя
+     * @param since  курсор из предыдущего ответа (0 - с начала)
+     * @param limit  максимальный размер страницы
+     * @return Result со страницей изменений и следующим курсором или Error
+     */
+    Result<UpdatesPage<T>, Error> findUpdates(final UUID userId, final long since, final int limit);
 
     /**
      * Подсчитать количество сообщений от пользователя.
@@ -101,5 +169,28 @@ public interface Repository<T, I> {
      * @return UnitResult с результатом операции
      */
     UnitResult<Error> deleteAll();
+
+    /**
+     * Удалить все сообщения (ОСТОРОЖНО!) инкрементально, сообщая о прогрессе.
+     * Ключи перебираются через SCAN и удаляются пачками, поэтому Redis не блокируется,
+     * а память не зависит от количества сообщений.
+     *
+     * @param progressListener обработчик прогресса, вызывается после каждой пачки
+     * @return UnitResult с результатом операции
+     */
+    UnitResult<Error> deleteAll(final DeleteAllProgressListener progressListener);
+
+    /**
+     * Обработчик прогресса удаления всех сообщений.
+     */
+    @FunctionalInterface
+    interface DeleteAllProgressListener {
+
+        /**
+         * @param scannedKeys ключи, просмотренные в очередной пачке
+         * @param deletedKeys ключи, удалённые в очередной пачке
+         */
+        void onProgress(long scannedKeys, long deletedKeys);
+    }
 }
 
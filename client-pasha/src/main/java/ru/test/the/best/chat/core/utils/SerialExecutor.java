@@ -0,0 +1,69 @@
+package ru.test.the.best.chat.core.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Последовательный исполнитель поверх общего: задачи выполняются по одной в порядке передачи.
+ * <p>
+ * Поток общего исполнителя занимается только пока очередь не пуста: первая задача запускает
+ * обработку очереди, последняя её завершает. Используется для отправки в одно подключение,
+ * чтобы события доходили до клиента в порядке публикации, а подключения не ждали друг друга.
+ */
+@Slf4j
+public final class SerialExecutor implements Executor {
+
+    private final Executor delegate;
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean draining;
+
+    public SerialExecutor(final Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        synchronized (tasks) {
+            tasks.add(task);
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+
+        try {
+            delegate.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            synchronized (tasks) {
+                tasks.clear();
+                draining = false;
+            }
+            throw e;
+        }
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void drain() {
+        while (true) {
+            final Runnable task;
+            synchronized (tasks) {
+                task = tasks.poll();
+                if (task == null) {
+                    draining = false;
+                    return;
+                }
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("Serial task failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+}
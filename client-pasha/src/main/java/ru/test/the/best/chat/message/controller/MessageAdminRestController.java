@@ -0,0 +1,274 @@
+package ru.test.the.best.chat.message.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.api.ApiResultResponse;
+import ru.test.the.best.chat.message.repository.ClusterMessageMigration;
+import ru.test.the.best.chat.message.repository.KeySchemaMessageMigration;
+import ru.test.the.best.chat.message.repository.ShardedRedisMessageRepository;
+import ru.test.the.best.chat.message.service.MessageDeleteAllJob;
+import ru.test.the.best.chat.model.dto.admin.ClusterMigrationStatusResponse;
+import ru.test.the.best.chat.model.dto.admin.DeleteAllStatusResponse;
+import ru.test.the.best.chat.model.dto.admin.KeySchemaMigrationStatusResponse;
+import ru.test.the.best.chat.model.dto.admin.ShardingStatusResponse;
+
+import java.util.List;
+
+/**
+ * Base URL: /api/v1/admin/messages
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/admin/messages")
+@RequiredArgsConstructor
+@Tag(name = "Messages admin", description = "Административные операции с сообщениями")
+public class MessageAdminRestController {
+
+    private final MessageDeleteAllJob messageDeleteAllJob;
+    private final ObjectProvider<ShardedRedisMessageRepository> shardedMessageRepository;
+    private final ObjectProvider<ClusterMessageMigration> clusterMessageMigration;
+    private final ObjectProvider<KeySchemaMessageMigration> keySchemaMessageMigration;
+
+    /**
+     * Запустить фоновое удаление всех сообщений.
+     *
+     * POST /api/v1/admin/messages/delete-all
+     */
+    @Operation(
+            summary = "Удалить все сообщения",
+            description = "Запускает фоновое удаление всех сообщений и индексов (SCAN + UNLINK). "
+                    + "Возвращает 409, если удаление уже выполняется"
+    )
+    @PostMapping("/delete-all")
+    public ResponseEntity<ApiResultResponse<DeleteAllStatusResponse>> startDeleteAll() {
+        log.warn("REST: POST /api/v1/admin/messages/delete-all - Starting delete all messages job");
+
+        var result = messageDeleteAllJob.start();
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to start delete all messages job: {}", result.getError().getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResultResponse.success(result.getValue()));
+    }
+
+    /**
+     * Получить прогресс удаления всех сообщений.
+     *
+     * GET /api/v1/admin/messages/delete-all
+     */
+    @Operation(
+            summary = "Прогресс удаления всех сообщений",
+            description = "Возвращает состояние последнего запуска удаления всех сообщений"
+    )
+    @GetMapping("/delete-all")
+    public ResponseEntity<ApiResultResponse<DeleteAllStatusResponse>> getDeleteAllStatus() {
+        log.debug("REST: GET /api/v1/admin/messages/delete-all - Fetching delete all messages job status");
+        return ResponseEntity.ok(ApiResultResponse.success(messageDeleteAllJob.status()));
+    }
+
+    /**
+     * Добавить шард сообщений и запустить фоновую перебалансировку.
+     *
+     * POST /api/v1/admin/messages/shards?name={name}&address={host:port}
+     */
+    @Operation(
+            summary = "Добавить шард сообщений",
+            description = "Добавляет Redis в кольцо шардов и в фоне переносит на него пользователей. "
+                    + "Повторный вызов с тем же именем продолжает прерванный перенос. "
+                    + "Возвращает 409, если перенос уже выполняется или шардирование выключено"
+    )
+    @PostMapping("/shards")
+    public ResponseEntity<ApiResultResponse<ShardingStatusResponse>> addShard(
+            @RequestParam final String name,
+            @RequestParam final String address) {
+        log.warn("REST: POST /api/v1/admin/messages/shards - Adding shard {} at {}", name, address);
+
+        final ShardedRedisMessageRepository repository = shardedMessageRepository.getIfAvailable();
+        if (repository == null) {
+            final var error = GeneralErrors.conflict("Message sharding is disabled");
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(ApiResultResponse.failure(error.getCode(), error.getMessage()));
+        }
+
+        var result = repository.addShard(name, address);
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to add shard {}: {}", name, result.getError().getMessage());
+            return ResponseEntity
+                    .status(isConflict(result.getError()) ? HttpStatus.CONFLICT : HttpStatus.BAD_REQUEST)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResultResponse.success(result.getValue()));
+    }
+
+    /**
+     * Получить состояние шардирования сообщений.
+     *
+     * GET /api/v1/admin/messages/shards
+     */
+    @Operation(
+            summary = "Состояние шардирования",
+            description = "Возвращает список шардов и прогресс перебалансировки"
+    )
+    @GetMapping("/shards")
+    public ResponseEntity<ApiResultResponse<ShardingStatusResponse>> getShards() {
+        log.debug("REST: GET /api/v1/admin/messages/shards - Fetching sharding status");
+
+        final ShardedRedisMessageRepository repository = shardedMessageRepository.getIfAvailable();
+        if (repository == null) {
+            return ResponseEntity.ok(ApiResultResponse.success(new ShardingStatusResponse(List.of(), false, 0)));
+        }
+        return ResponseEntity.ok(ApiResultResponse.success(repository.status()));
+    }
+
+    /**
+     * Запустить перенос сообщений из одного Redis в Redis Cluster.
+     *
+     * POST /api/v1/admin/messages/cluster-migration
+     */
+    @Operation(
+            summary = "Перенести сообщения в Redis Cluster",
+            description = "Запускает фоновый перенос сообщений из redis.cluster.migration.source-host в раскладку кластера. "
+                    + "Повторный запуск безопасен. Возвращает 409, если перенос уже выполняется или кластер выключен"
+    )
+    @PostMapping("/cluster-migration")
+    public ResponseEntity<ApiResultResponse<ClusterMigrationStatusResponse>> startClusterMigration() {
+        log.warn("REST: POST /api/v1/admin/messages/cluster-migration - Starting cluster migration");
+
+        final ClusterMessageMigration migration = clusterMessageMigration.getIfAvailable();
+        if (migration == null) {
+            final var error = GeneralErrors.conflict("Redis Cluster is disabled");
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(ApiResultResponse.failure(error.getCode(), error.getMessage()));
+        }
+
+        var result = migration.start();
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to start cluster migration: {}", result.getError().getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResultResponse.success(result.getValue()));
+    }
+
+    /**
+     * Получить прогресс переноса сообщений в Redis Cluster.
+     *
+     * GET /api/v1/admin/messages/cluster-migration
+     */
+    @Operation(
+            summary = "Прогресс переноса в Redis Cluster",
+            description = "Возвращает состояние последнего запуска переноса сообщений в Redis Cluster"
+    )
+    @GetMapping("/cluster-migration")
+    public ResponseEntity<ApiResultResponse<ClusterMigrationStatusResponse>> getClusterMigrationStatus() {
+        log.debug("REST: GET /api/v1/admin/messages/cluster-migration - Fetching cluster migration status");
+
+        final ClusterMessageMigration migration = clusterMessageMigration.getIfAvailable();
+        if (migration == null) {
+            return ResponseEntity.ok(ApiResultResponse.success(
+                    new ClusterMigrationStatusResponse("IDLE", 0, 0, null, null, null)));
+        }
+        return ResponseEntity.ok(ApiResultResponse.success(migration.status()));
+    }
+
+    /**
+     * Запустить перенос сообщений в раскладку ключей messages.key-schema.
+     *
+     * POST /api/v1/admin/messages/key-schema-migration
+     */
+    @Operation(
+            summary = "Перенести сообщения в текущую раскладку ключей",
+            description = "Запускает фоновый перенос сообщений из другой раскладки ключей (TEXT или BINARY) в messages.key-schema "
+                    + "и удаление ключей старой раскладки. Запускать после переключения всех экземпляров. "
+                    + "Возвращает 409, если перенос уже выполняется или включены шардинг либо кластер"
+    )
+    @PostMapping("/key-schema-migration")
+    public ResponseEntity<ApiResultResponse<KeySchemaMigrationStatusResponse>> startKeySchemaMigration() {
+        log.warn("REST: POST /api/v1/admin/messages/key-schema-migration - Starting key schema migration");
+
+        final KeySchemaMessageMigration migration = keySchemaMessageMigration.getIfAvailable();
+        if (migration == null) {
+            final var error = GeneralErrors.conflict("Key schema migration is available for a single Redis only");
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(ApiResultResponse.failure(error.getCode(), error.getMessage()));
+        }
+
+        var result = migration.start();
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to start key schema migration: {}", result.getError().getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResultResponse.success(result.getValue()));
+    }
+
+    /**
+     * Получить прогресс переноса сообщений между раскладками ключей.
+     *
+     * GET /api/v1/admin/messages/key-schema-migration
+     */
+    @Operation(
+            summary = "Прогресс переноса между раскладками ключей",
+            description = "Возвращает состояние последнего запуска переноса сообщений в раскладку messages.key-schema"
+    )
+    @GetMapping("/key-schema-migration")
+    public ResponseEntity<ApiResultResponse<KeySchemaMigrationStatusResponse>> getKeySchemaMigrationStatus() {
+        log.debug("REST: GET /api/v1/admin/messages/key-schema-migration - Fetching key schema migration status");
+
+        final KeySchemaMessageMigration migration = keySchemaMessageMigration.getIfAvailable();
+        if (migration == null) {
+            return ResponseEntity.ok(ApiResultResponse.success(
+                    new KeySchemaMigrationStatusResponse("IDLE", null, null, 0, 0, 0, null, null, null)));
+        }
+        return ResponseEntity.ok(ApiResultResponse.success(migration.status()));
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private static boolean isConflict(final Error error) {
+        return "data.conflict".equals(error.getCode()) || "duplicate.entity".equals(error.getCode());
+    }
+}
@@ -1,22 +1,53 @@
 package ru.test.the.best.chat.message.controller;
 
-
+import com.google.gson.stream.JsonWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
 import ru.test.the.best.chat.errs.api.ApiResultResponse;
+import ru.test.the.best.chat.model.dto.message.BatchItemResponse;
 import ru.test.the.best.chat.model.dto.message.CreateMessageRequest;
 import ru.test.the.best.chat.model.dto.message.MessageResponse;
+import ru.test.the.best.chat.model.dto.message.MessageUpdatesResponse;
+import ru.test.the.best.chat.message.model.value.MessageContent;
 import ru.test.the.best.chat.message.service.MessageService;
-
+import ru.test.the.best.chat.message.service.MessageStreamService;
+import ru.test.the.best.chat.message.service.MessageWaitService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Base URL: /api/v1/messages
@@ -28,32 +59,87 @@ import java.util.UUID;
 @Tag(name = "Messages", description = "API для управления сообщениями")
 public class MessageRestController {
 
+    private static final String DEFAULT_CONVERSATION_PAGE_SIZE = "50";
+    private static final String DEFAULT_UPDATES_PAGE_SIZE = "200";
+    private static final String DEFAULT_WAIT_TIMEOUT_MS = "30000";
+
+    /**
+     * Запас к таймауту ожидания, чтобы асинхронный запрос не истёк раньше, чем ответит сервис.
+     */
+    private static final long WAIT_TIMEOUT_GRACE_MS = 5000;
+
+    /**
+     * Размер страницы при потоковой выдаче всех сообщений.
+     */
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    /**
+     * Формат даты сообщения, совпадающий с @JsonFormat в {@link MessageResponse}.
+     */
+    private static final DateTimeFormatter MESSAGE_DATE_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
     private final MessageService messageService;
 
+    private final MessageStreamService messageStreamService;
+
+    private final MessageWaitService messageWaitService;
+
     /**
      * Получить все сообщения.
+     * Ответ отдаётся потоком (chunked) постранично, поэтому память сервера
+     * ограничена размером страницы. Формат совпадает с {@link ApiResultResponse},
+     * но поле success записывается после data, так как становится известно только в конце выдачи.
      *
      * GET /api/v1/messages
      */
     @Operation(
             summary = "Получить все сообщения",
-            description = "Возвращает список всех сообщений в системе"
+            description = "Возвращает список всех сообщений в системе потоковым ответом"
     )
-    @GetMapping
-    public ResponseEntity<ApiResultResponse<List<MessageResponse>>> getAllMessages() {
-        log.info("REST: GET /api/v1/messages - Fetching all messages");
-
-        try {
-            List<MessageResponse> messages = messageService.findAll();
-            log.info("REST: Successfully fetched {} messages", messages.size());
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getAllMessages() {
+        log.info("REST: GET /api/v1/messages - Streaming all messages");
+
+        final StreamingResponseBody body = outputStream -> {
+            final JsonWriter writer = new JsonWriter(
+                    new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+
+            writer.beginObject();
+            writer.name("data").beginArray();
+
+            final UnitResult<Error> result = messageService.streamAll(STREAM_PAGE_SIZE, page -> {
+                try {
+                    for (MessageResponse message : page) {
+                        writeMessage(writer, message);
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            writer.endArray();
+            writer.name("success").value(result.isSuccess());
+
+            if (result.isFailure()) {
+                log.error("REST: Error streaming all messages: {}", result.getError().getMessage());
+                writer.name("error").beginObject()
+                        .name("code").value(result.getError().getCode())
+                        .name("message").value(result.getError().getMessage())
+                        .endObject();
+            } else {
+                log.info("REST: Successfully streamed all messages");
+            }
+
+            writer.name("timestamp").value(LocalDateTime.now().toString());
+            writer.endObject();
+            writer.flush();
+        };
 
-            return ResponseEntity.ok(ApiResultResponse.success(messages));
-        } catch (Exception e) {
-            log.error("REST: Error fetching all messages", e);
-            return ResponseEntity
-                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResultResponse.failure("internal.error", "Failed to fetch messages"));
-        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     /**
@@ -98,6 +184,127 @@ public class MessageRestController {
         return ResponseEntity.ok(ApiResultResponse.success(result.getValue().get()));
     }
 
+    /**
+     * Получить содержимое сообщения сырыми байтами.
+     * Поддерживаются ETag (If-None-Match, If-Range) и один диапазон Range; несколько диапазонов
+     * отдаются целым содержимым. Байты пишутся в ответ прямо из хранимого значения или блоба,
+     * без сборки содержимого и Base64.
+     *
+     * GET /api/v1/messages/{id}/content
+     */
+    @Operation(
+            summary = "Получить содержимое сообщения",
+            description = "Возвращает содержимое сообщения сырыми байтами с Content-Type по формату, "
+                    + "поддерживает Range и ETag"
+    )
+    @GetMapping("/{id}/content")
+    public ResponseEntity<StreamingResponseBody> getMessageContent(
+            @Parameter(description = "UUID сообщения", required = true)
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        log.info("REST: GET /api/v1/messages/{}/content - Fetching message content, range: {}", id, range);
+
+        var result = messageService.findContent(id);
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to fetch content of message with id: {}", id);
+            return errorBody(determineHttpStatus(result.getError().getCode()),
+                    result.getError().getCode(), result.getError().getMessage());
+        }
+
+        if (result.getValue().isEmpty()) {
+            log.warn("REST: Message not found with id: {}", id);
+            return errorBody(HttpStatus.NOT_FOUND, "message.not.found", "Message not found with id: " + id);
+        }
+
+        final MessageContent content = result.getValue().get();
+        final long size = content.size();
+
+        if (ifNoneMatch != null && matchesETag(ifNoneMatch, content.eTag())) {
+            log.info("REST: Content of message {} is not modified", id);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(content.eTag())
+                    .build();
+        }
+
+        long start = 0;
+        long length = size;
+        HttpStatus status = HttpStatus.OK;
+        // If-Range с другим ETag (или датой): диапазон игнорируется, отдаётся всё содержимое
+        if (range != null && (ifRange == null || ifRange.equals(content.eTag()))) {
+            final List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                log.warn("REST: Invalid range '{}' for content of message {}", range, id);
+                return rangeNotSatisfiable(size);
+            }
+
+            if (ranges.size() == 1) {
+                try {
+                    start = ranges.getFirst().getRangeStart(size);
+                    length = ranges.getFirst().getRangeEnd(size) - start + 1;
+                } catch (IllegalArgumentException e) {
+                    log.warn("REST: Range '{}' is not satisfiable for {} bytes of message {}", range, size, id);
+                    return rangeNotSatisfiable(size);
+                }
+                status = HttpStatus.PARTIAL_CONTENT;
+            }
+        }
+
+        final long offset = start;
+        final long count = length;
+        final ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                .contentType(MediaType.parseMediaType(content.mediaType()))
+                .contentLength(count)
+                .eTag(content.eTag())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes " + offset + "-" + (offset + count - 1) + "/" + size);
+        }
+
+        log.info("REST: Streaming {} of {} bytes of message {} content", count, size, id);
+        return response.body(outputStream -> content.transferTo(offset, count, channel(outputStream)));
+    }
+
+    /**
+     * Получить несколько сообщений по списку ID.
+     * Результат возвращается для каждого ID в порядке запроса.
+     *
+     * GET /api/v1/messages?ids={id1},{id2}
+     */
+    @Operation(
+            summary = "Получить сообщения по списку ID",
+            description = "Возвращает результат для каждого ID (не больше " + MessageService.MAX_BATCH_SIZE
+                    + "), отсутствующие сообщения помечаются ошибкой entity.not.found"
+    )
+    @GetMapping(params = "ids")
+    public ResponseEntity<ApiResultResponse<List<BatchItemResponse<MessageResponse>>>> getMessagesByIds(
+            @Parameter(description = "UUID сообщений через запятую", required = true)
+            @RequestParam("ids") List<UUID> ids) {
+
+        log.info("REST: GET /api/v1/messages?ids - Fetching {} messages by ids", ids.size());
+
+        var result = messageService.findAllByIds(ids);
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to fetch messages by ids: {}", result.getError().getMessage());
+            HttpStatus status = determineHttpStatus(result.getError().getCode());
+            return ResponseEntity
+                    .status(status)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        log.info("REST: Successfully processed {} ids", ids.size());
+        return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
+    }
+
     /**
      * Получить все сообщения от конкретного пользователя.
      *
@@ -167,25 +374,34 @@ public class MessageRestController {
     }
 
     /**
-     * Получить переписку между двумя пользователями.
+     * Получить страницу переписки между двумя пользователями.
+     * Для следующей (более старой) страницы передайте в before дату, а в beforeId - ID первого сообщения текущей:
+     * без beforeId сообщения с той же миллисекундой, не вошедшие в текущую страницу, пропускаются.
      *
-     * GET /api/v1/messages/conversation?user1={id}&user2={id}
+     * GET /api/v1/messages/conversation?user1={id}&user2={id}&before={instant}&beforeId={id}&limit={n}
      */
     @Operation(
             summary = "Получить переписку между пользователями",
-            description = "Возвращает все сообщения между двумя пользователями, отсортированные по дате"
+            description = "Возвращает страницу сообщений между двумя пользователями, отсортированных по дате. "
+                    + "Без before возвращаются самые свежие сообщения"
     )
     @GetMapping("/conversation")
     public ResponseEntity<ApiResultResponse<List<MessageResponse>>> getConversation(
             @Parameter(description = "UUID первого пользователя", required = true)
             @RequestParam("user1") UUID user1Id,
             @Parameter(description = "UUID второго пользователя", required = true)
-            @RequestParam("user2") UUID user2Id) {
+            @RequestParam("user2") UUID user2Id,
+            @Parameter(description = "Курсор: вернуть сообщения строго раньше этого момента (ISO-8601 или epoch millis)")
+            @RequestParam(value = "before", required = false) Instant before,
+            @Parameter(description = "ID первого сообщения текущей страницы (вместе с before)")
+            @RequestParam(value = "beforeId", required = false) UUID beforeId,
+            @Parameter(description = "Размер страницы (1-" + MessageService.MAX_CONVERSATION_PAGE_SIZE + ")")
+            @RequestParam(value = "limit", defaultValue = DEFAULT_CONVERSATION_PAGE_SIZE) int limit) {
 
-        log.info("REST: GET /api/v1/messages/conversation?user1={}&user2={} - Fetching conversation",
-                user1Id, user2Id);
+        log.info("REST: GET /api/v1/messages/conversation?user1={}&user2={}&before={}&beforeId={}&limit={} - Fetching conversation",
+                user1Id, user2Id, before, beforeId, limit);
 
-        var result = messageService.findConversation(user1Id, user2Id);
+        var result = messageService.findConversation(user1Id, user2Id, before, beforeId, limit);
 
         if (result.isFailure()) {
             log.warn("REST: Failed to fetch conversation between users: {} and {}",
@@ -204,6 +420,116 @@ public class MessageRestController {
         return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
     }
 
+    /**
+     * Получить сообщения пользователя, созданные или изменённые после курсора.
+     * Первый запрос выполняется без since, следующие - с cursor из предыдущего ответа.
+     *
+     * GET /api/v1/messages/updates?user={id}&since={cursor}&limit={n}
+     */
+    @Operation(
+            summary = "Получить новые сообщения пользователя",
+            description = "Дельта-синхронизация: возвращает входящие и исходящие сообщения пользователя, "
+                    + "созданные или изменённые после курсора, и курсор для следующего запроса. "
+                    + "ID удалённых после курсора сообщений возвращаются в deletedIds"
+    )
+    @GetMapping("/updates")
+    public ResponseEntity<ApiResultResponse<MessageUpdatesResponse>> getUpdates(
+            @Parameter(description = "UUID пользователя", required = true)
+            @RequestParam("user") UUID userId,
+            @Parameter(description = "Курсор из предыдущего ответа (без него - с начала)")
+            @RequestParam(value = "since", required = false) String since,
+            @Parameter(description = "Размер страницы (1-" + MessageService.MAX_UPDATES_PAGE_SIZE + ")")
+            @RequestParam(value = "limit", defaultValue = DEFAULT_UPDATES_PAGE_SIZE) int limit) {
+
+        log.debug("REST: GET /api/v1/messages/updates?user={}&since={}&limit={} - Fetching updates",
+                userId, since, limit);
+
+        var result = messageService.findUpdates(userId, since, limit);
+
+        if (result.isFailure()) {
+            log.warn("REST: Failed to fetch updates for user: {}", userId);
+            HttpStatus status = determineHttpStatus(result.getError().getCode());
+            return ResponseEntity
+                    .status(status)
+                    .body(ApiResultResponse.failure(
+                            result.getError().getCode(),
+                            result.getError().getMessage()
+                    ));
+        }
+
+        log.debug("REST: Successfully fetched {} updates for user: {}, next cursor: {}",
+                result.getValue().messages().size(), userId, result.getValue().cursor());
+        return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
+    }
+
+    /**
+     * Открыть поток новых сообщений для получателя (Server-Sent Events).
+     * Каждое сохранённое сообщение приходит событием "message" с MessageResponse в data;
+     * после переподключения пропущенное забирается через /updates.
+     *
+     * GET /api/v1/messages/stream?user={id}
+     */
+    @Operation(
+            summary = "Поток новых сообщений",
+            description = "Server-Sent Events: отправляет получателю каждое сохранённое для него сообщение "
+                    + "сразу после сохранения на любом экземпляре приложения"
+    )
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessages(
+            @Parameter(description = "UUID получателя", required = true)
+            @RequestParam("user") UUID userId) {
+
+        log.debug("REST: GET /api/v1/messages/stream?user={} - Opening message stream", userId);
+        return messageStreamService.subscribe(userId);
+    }
+
+    /**
+     * Дождаться новых сообщений пользователя (long polling) - для клиентов, у которых недоступны SSE и WebSocket.
+     * Запрос держится асинхронно и не занимает поток; ответ совпадает с /updates,
+     * по таймауту возвращается пустая страница с тем же курсором.
+     *
+     * GET /api/v1/messages/wait?user={id}&since={cursor}&timeout={ms}
+     */
+    @Operation(
+            summary = "Дождаться новых сообщений",
+            description = "Long polling ленты изменений: отвечает, как только у пользователя появятся "
+                    + "сообщения после курсора, или по истечении таймаута"
+    )
+    @GetMapping("/wait")
+    public DeferredResult<ResponseEntity<ApiResultResponse<MessageUpdatesResponse>>> waitForUpdates(
+            @Parameter(description = "UUID пользователя", required = true)
+            @RequestParam("user") UUID userId,
+            @Parameter(description = "Курсор из предыдущего ответа (без него - с начала)")
+            @RequestParam(value = "since", required = false) String since,
+            @Parameter(description = "Сколько ждать, мс")
+            @RequestParam(value = "timeout", defaultValue = DEFAULT_WAIT_TIMEOUT_MS) long timeout) {
+
+        log.debug("REST: GET /api/v1/messages/wait?user={}&since={}&timeout={} - Waiting for updates",
+                userId, since, timeout);
+
+        final DeferredResult<ResponseEntity<ApiResultResponse<MessageUpdatesResponse>>> deferred =
+                new DeferredResult<>(timeout + WAIT_TIMEOUT_GRACE_MS);
+        final CompletableFuture<Result<MessageUpdatesResponse, Error>> future =
+                messageWaitService.await(userId, since, timeout);
+
+        // Отключение клиента или таймаут запроса снимают ожидание
+        deferred.onCompletion(() -> future.cancel(false));
+        future.thenAccept(result -> {
+            if (result.isFailure()) {
+                log.warn("REST: Failed to wait for updates for user: {}", userId);
+                deferred.setResult(ResponseEntity
+                        .status(determineHttpStatus(result.getError().getCode()))
+                        .body(ApiResultResponse.failure(
+                                result.getError().getCode(),
+                                result.getError().getMessage()
+                        )));
+                return;
+            }
+            deferred.setResult(ResponseEntity.ok(ApiResultResponse.success(result.getValue())));
+        });
+        return deferred;
+    }
+
     /**
      * Отправить сообщение.
      *
@@ -240,6 +566,107 @@ public class MessageRestController {
                 .body(ApiResultResponse.success(null));
     }
 
+    /**
+     * Отправить медиа-сообщение файлом (multipart/form-data).
+     * Контейнер сохраняет часть data во временный файл, откуда содержимое читается потоком.
+     *
+     * POST /api/v1/messages (multipart/form-data)
+     */
+    @Operation(
+            summary = "Загрузить медиа-сообщение файлом",
+            description = "Создает сообщение из части data формы multipart/form-data "
+                    + "без кодирования в Base64 и возвращает его ID"
+    )
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ApiResultResponse<UUID>> uploadMessage(
+            @Parameter(description = "UUID отправителя", required = true)
+            @RequestParam("from") UUID from,
+            @Parameter(description = "UUID получателя", required = true)
+            @RequestParam("to") UUID to,
+            @Parameter(description = "Тип содержимого (STRING, IMAGE, SOUND)", required = true)
+            @RequestParam("type") String type,
+            @Parameter(description = "Дата сообщения (по умолчанию - текущая)")
+            @RequestParam(value = "date", required = false) Instant date,
+            @Parameter(description = "Содержимое сообщения", required = true)
+            @RequestPart("data") MultipartFile data) {
+
+        log.info("REST: POST /api/v1/messages - Uploading {} message of {} bytes from {} to {}",
+                type, data.getSize(), from, to);
+
+        try (InputStream body = data.getInputStream()) {
+            return uploadResponse(messageService.upload(from, to, type, dateOrNow(date), body, data.getSize()));
+        } catch (IOException e) {
+            log.warn("REST: Failed to read uploaded file: {}", e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResultResponse.failure("value.is.invalid", "Failed to read uploaded file"));
+        }
+    }
+
+    /**
+     * Отправить медиа-сообщение телом запроса (application/octet-stream).
+     * Тело читается потоком прямо в хранилище, без сборки в памяти.
+     *
+     * POST /api/v1/messages?from={id}&to={id}&type={type} (application/octet-stream)
+     */
+    @Operation(
+            summary = "Загрузить медиа-сообщение телом запроса",
+            description = "Создает сообщение из тела application/octet-stream и возвращает его ID"
+    )
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ApiResultResponse<UUID>> uploadMessageBody(
+            @Parameter(description = "UUID отправителя", required = true)
+            @RequestParam("from") UUID from,
+            @Parameter(description = "UUID получателя", required = true)
+            @RequestParam("to") UUID to,
+            @Parameter(description = "Тип содержимого (STRING, IMAGE, SOUND)", required = true)
+            @RequestParam("type") String type,
+            @Parameter(description = "Дата сообщения (по умолчанию - текущая)")
+            @RequestParam(value = "date", required = false) Instant date,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            InputStream body) {
+
+        log.info("REST: POST /api/v1/messages - Uploading {} message of {} bytes from {} to {}",
+                type, contentLength, from, to);
+
+        return uploadResponse(messageService.upload(
+                from, to, type, dateOrNow(date), body, contentLength != null ? contentLength : -1));
+    }
+
+    /**
+     * Отправить несколько сообщений одним запросом.
+     * Некорректные элементы не прерывают пакет: результат возвращается для каждого элемента.
+     *
+     * POST /api/v1/messages/batch
+     */
+    @Operation(
+            summary = "Отправить пакет сообщений",
+            description = "Создает до " + MessageService.MAX_BATCH_SIZE
+                    + " сообщений за один запрос и возвращает результат для каждого"
+    )
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResultResponse<List<BatchItemResponse<Void>>>> sendMessages(
+            @RequestBody List<CreateMessageRequest> requests) {
+
+        log.info("REST: POST /api/v1/messages/batch - Sending {} messages", requests.size());
+
+        var result = messageService.saveAll(requests);
+
+        if (result.isFailure()) {
+            var error = result.getError();
+            log.warn("REST: Failed to send batch of messages: {} - {}", error.getCode(), error.getMessage());
+
+            HttpStatus status = determineHttpStatus(error.getCode());
+
+            return ResponseEntity
+                    .status(status)
+                    .body(ApiResultResponse.failure(error.getCode(), error.getMessage()));
+        }
+
+        log.info("REST: Successfully processed batch of {} messages", requests.size());
+        return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
+    }
+
     /**
      * Обновить сообщение.
      *
@@ -311,8 +738,142 @@ public class MessageRestController {
                 .build();
     }
 
+    /**
+     * Удалить несколько сообщений по списку ID.
+     *
+     * DELETE /api/v1/messages?ids={id1},{id2}
+     */
+    @Operation(
+            summary = "Удалить сообщения по списку ID",
+            description = "Удаляет до " + MessageService.MAX_BATCH_SIZE
+                    + " сообщений и возвращает результат для каждого ID"
+    )
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<ApiResultResponse<List<BatchItemResponse<Void>>>> deleteMessages(
+            @Parameter(description = "UUID сообщений через запятую", required = true)
+            @RequestParam("ids") List<UUID> ids) {
+
+        log.info("REST: DELETE /api/v1/messages?ids - Deleting {} messages", ids.size());
+
+        var result = messageService.deleteAllByIds(ids);
+
+        if (result.isFailure()) {
+            var error = result.getError();
+            log.warn("REST: Failed to delete messages by ids: {} - {}", error.getCode(), error.getMessage());
+
+            HttpStatus status = determineHttpStatus(error.getCode());
+
+            return ResponseEntity
+                    .status(status)
+                    .body(ApiResultResponse.failure(error.getCode(), error.getMessage()));
+        }
+
+        log.info("REST: Successfully processed delete of {} messages", ids.size());
+        return ResponseEntity.ok(ApiResultResponse.success(result.getValue()));
+    }
+
     // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
 
+    private void writeMessage(final JsonWriter writer, final MessageResponse message) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(message.id().toString());
+        writer.name("date").value(message.date() != null ? MESSAGE_DATE_FORMATTER.format(message.date()) : null);
+        writer.name("from").value(message.from().toString());
+        writer.name("to").value(message.to().toString());
+        writer.name("data").value(message.data());
+        writer.name("type").value(message.type());
+        writer.name("size").value(message.size());
+        writer.endObject();
+    }
+
+    /**
+     * Канал поверх потока ответа. ServletOutputStream принимает ByteBuffer напрямую (Servlet 6.1),
+     * поэтому отображённый файл блоба не копируется через промежуточный массив, как в Channels.newChannel.
+     */
+    private static WritableByteChannel channel(final OutputStream outputStream) {
+        if (!(outputStream instanceof ServletOutputStream servletOutputStream)) {
+            return Channels.newChannel(outputStream);
+        }
+
+        return new WritableByteChannel() {
+            @Override
+            public int write(final ByteBuffer buffer) throws IOException {
+                final int remaining = buffer.remaining();
+                servletOutputStream.write(buffer);
+                return remaining;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+                // поток ответа закрывает контейнер
+            }
+        };
+    }
+
+    private static boolean matchesETag(final String header, final String eTag) {
+        for (String candidate : header.split(",")) {
+            final String value = candidate.trim();
+            if (value.equals("*") || value.equals(eTag) || value.equals("W/" + eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> rangeNotSatisfiable(final long size) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                .build();
+    }
+
+    /**
+     * Ошибка в формате {@link ApiResultResponse} для методов, отдающих поток байт.
+     */
+    private static ResponseEntity<StreamingResponseBody> errorBody(
+            final HttpStatus status, final String code, final String message) {
+        final StreamingResponseBody body = outputStream -> {
+            final JsonWriter writer = new JsonWriter(
+                    new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+            writer.beginObject();
+            writer.name("success").value(false);
+            writer.name("error").beginObject()
+                    .name("code").value(code)
+                    .name("message").value(message)
+                    .endObject();
+            writer.name("timestamp").value(LocalDateTime.now().toString());
+            writer.endObject();
+            writer.flush();
+        };
+
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private ResponseEntity<ApiResultResponse<UUID>> uploadResponse(final Result<UUID, Error> result) {
+        if (result.isFailure()) {
+            var error = result.getError();
+            log.warn("REST: Failed to upload message: {} - {}", error.getCode(), error.getMessage());
+            return ResponseEntity
+                    .status(determineHttpStatus(error.getCode()))
+                    .body(ApiResultResponse.failure(error.getCode(), error.getMessage()));
+        }
+
+        log.info("REST: Successfully uploaded message: {}", result.getValue());
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(ApiResultResponse.success(result.getValue()));
+    }
+
+    private static Instant dateOrNow(final Instant date) {
+        return date != null ? date : Instant.now();
+    }
+
     private HttpStatus determineHttpStatus(String errorCode) {
         return switch (errorCode) {
             case "entity.not.found", "record.not.found", "message.not.found" ->
@@ -320,8 +881,11 @@ public class MessageRestController {
             case "duplicate.entity", "data.conflict" ->
                     HttpStatus.CONFLICT;
             case "validation.error", "value.is.invalid", "value.is.empty",
-                 "value.is.required", "invalid.string.length", "invalid.format" ->
+                 "value.is.required", "invalid.string.length", "invalid.format",
+                 "value.is.out.of.range", "collection.is.too.small", "collection.is.too.large" ->
                     HttpStatus.BAD_REQUEST;
+            case "payload.too.large" ->
+                    HttpStatus.CONTENT_TOO_LARGE;
             case "access.denied" ->
                     HttpStatus.FORBIDDEN;
             case "authentication.failed", "invalid.token" ->
@@ -5,7 +5,15 @@ import ru.test.the.best.chat.core.metric.OperationMetric;
 public enum MetricOperationNameMessage implements OperationMetric {
     FIND_ALL_BY_FROM("find.all.by.from"),
     FIND_ALL_BY_TO("find.all.by.to"),
-    FIND_CONVERSATION("find.conversation");
+    FIND_CONVERSATION("find.conversation"),
+    STREAM_ALL("stream.all"),
+    WRITE_BATCH_FLUSH("write.batch.flush"),
+    SAVE_ALL("save.all"),
+    FIND_ALL_BY_IDS("find.all.by.ids"),
+    DELETE_ALL_BY_IDS("delete.all.by.ids"),
+    FIND_UPDATES("find.updates"),
+    FIND_CONTENT("find.content"),
+    UPLOAD("upload");
 
     private final String nameOperation;
 
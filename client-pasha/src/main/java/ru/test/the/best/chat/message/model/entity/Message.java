@@ -3,15 +3,18 @@ package ru.test.the.best.chat.message.model.entity;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import lombok.Value;
+import ru.test.the.best.chat.codec.BinaryMessageFormat;
 import ru.test.the.best.chat.errs.Error;
 import ru.test.the.best.chat.errs.GeneralErrors;
 import ru.test.the.best.chat.errs.Guard;
 import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.id.UuidV7;
 import ru.test.the.best.chat.model.dto.message.CreateMessageRequest;
 import ru.test.the.best.chat.model.dto.message.MessageResponse;
 import ru.test.the.best.chat.core.model.value.DataMessage;
 
 import java.time.Instant;
+import java.util.Base64;
 import java.util.UUID;
 
 @Value
@@ -51,6 +54,8 @@ public class Message {
         if (Guard.isNullOrEmpty(from)) return Result.failure(GeneralErrors.valueIsEmpty("from"));
         if (Guard.isNullOrEmpty(to)) return Result.failure(GeneralErrors.valueIsEmpty("to"));
         if (Guard.isNull(date)) return Result.failure(GeneralErrors.valueIsEmpty("date"));
+        if (!BinaryMessageFormat.isSupportedDate(date)) return Result.failure(GeneralErrors.valueIsOutOfRange(
+                "date", date, BinaryMessageFormat.MIN_DATE, BinaryMessageFormat.MAX_DATE));
         if (Guard.isNull(dataMessage)) return Result.failure(GeneralErrors.valueIsEmpty("dataMessage"));
 
         return Result.success(new Message(id, date, from, to, dataMessage));
@@ -62,7 +67,7 @@ public class Message {
             final UUID to,
             final DataMessage dataMessage
     ) {
-        return create(date, from, to, dataMessage, UUID.randomUUID());
+        return create(date, from, to, dataMessage, UuidV7.next());
     }
 
     public static Result<Message, Error> from(final CreateMessageRequest messageRequest) {
@@ -84,14 +89,38 @@ public class Message {
         );
     }
 
+    /**
+     * Ответ без содержимого IMAGE и SOUND (только тип и размер): для списков и лент,
+     * чтобы медиа, в том числе вынесенное в BlobStore, не читалось ради метаданных.
+     */
     public MessageResponse toMessageResponse() {
+        return toMessageResponse(isText() ? this.dataMessage.deserializeToString().getValue() : null);
+    }
+
+    /**
+     * Ответ с содержимым: IMAGE и SOUND в Base64, вынесенное в BlobStore читается из хранилища.
+     *
+     * @throws IllegalStateException если содержимое не прочитано
+     */
+    public MessageResponse toMessageResponseWithContent() {
+        return toMessageResponse(isText()
+                ? this.dataMessage.deserializeToString().getValue()
+                : Base64.getEncoder().encodeToString(this.dataMessage.getData()));
+    }
+
+    private MessageResponse toMessageResponse(final String data) {
         return new MessageResponse(
                 this.id,
                 this.date,
                 this.from,
                 this.to,
-                this.dataMessage.deserializeToString().getValue(),
-                this.dataMessage.getType()
+                data,
+                this.dataMessage.getType(),
+                this.dataMessage.getSize()
         );
     }
+
+    private boolean isText() {
+        return "STRING".equals(this.dataMessage.getType());
+    }
 }
@@ -0,0 +1,93 @@
+package ru.test.the.best.chat.message.model.value;
+
+import ru.test.the.best.chat.core.model.value.DataMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.UUID;
+
+/**
+ * Содержимое сообщения для выдачи сырыми байтами (GET /api/v1/messages/{id}/content).
+ * Тип содержимого определяется по сигнатуре первых байт, так как формат медиа не хранится.
+ *
+ * @param id        ID сообщения
+ * @param data      содержимое сообщения
+ * @param mediaType MIME-тип для Content-Type
+ * @param eTag      ETag в кавычках
+ */
+public record MessageContent(UUID id, DataMessage data, String mediaType, String eTag) {
+
+    public static final String OCTET_STREAM = "application/octet-stream";
+
+    private static final int SIGNATURE_SIZE = 12;
+
+    /**
+     * Собрать содержимое: для IMAGE и SOUND читаются первые байты, чтобы определить формат.
+     *
+     * @param id   ID сообщения
+     * @param data содержимое сообщения
+     * @return содержимое с типом и ETag
+     * @throws IOException если начало содержимого не прочитано
+     */
+    public static MessageContent of(final UUID id, final DataMessage data) throws IOException {
+        final String mediaType = switch (data.getType()) {
+            case "STRING" -> "text/plain;charset=UTF-8";
+            case "IMAGE" -> imageType(signature(data));
+            case "SOUND" -> soundType(signature(data));
+            default -> OCTET_STREAM;
+        };
+        return new MessageContent(id, data, mediaType, "\"" + data.contentTag() + "\"");
+    }
+
+    public long size() {
+        return data.getSize();
+    }
+
+    /**
+     * Записать диапазон содержимого в канал.
+     *
+     * @see DataMessage#transferTo(long, long, WritableByteChannel)
+     */
+    public void transferTo(final long offset, final long length, final WritableByteChannel channel) throws IOException {
+        data.transferTo(offset, length, channel);
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private static byte[] signature(final DataMessage data) throws IOException {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream(SIGNATURE_SIZE);
+        data.transferTo(0, Math.min(SIGNATURE_SIZE, data.getSize()), Channels.newChannel(head));
+        return head.toByteArray();
+    }
+
+    private static String imageType(final byte[] head) {
+        if (startsWith(head, 0, 0x89, 'P', 'N', 'G')) return "image/png";
+        if (startsWith(head, 0, 0xFF, 0xD8, 0xFF)) return "image/jpeg";
+        if (startsWith(head, 0, 'G', 'I', 'F', '8')) return "image/gif";
+        if (startsWith(head, 0, 'R', 'I', 'F', 'F') && startsWith(head, 8, 'W', 'E', 'B', 'P')) return "image/webp";
+        if (startsWith(head, 0, 'B', 'M')) return "image/bmp";
+        return OCTET_STREAM;
+    }
+
+    private static String soundType(final byte[] head) {
+        if (startsWith(head, 0, 'R', 'I', 'F', 'F') && startsWith(head, 8, 'W', 'A', 'V', 'E')) return "audio/wav";
+        if (startsWith(head, 0, 'O', 'g', 'g', 'S')) return "audio/ogg";
+        if (startsWith(head, 0, 'f', 'L', 'a', 'C')) return "audio/flac";
+        if (startsWith(head, 0, 'F', 'O', 'R', 'M')) return "audio/aiff";
+        if (startsWith(head, 0, '.', 's', 'n', 'd')) return "audio/basic";
+        if (startsWith(head, 0, 'I', 'D', '3') || (head.length > 1 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xE0) == 0xE0))
+            return "audio/mpeg";
+        return OCTET_STREAM;
+    }
+
+    private static boolean startsWith(final byte[] head, final int offset, final int... signature) {
+        if (head.length < offset + signature.length) return false;
+
+        for (int i = 0; i < signature.length; i++) {
+            if ((head[offset + i] & 0xFF) != signature[i]) return false;
+        }
+        return true;
+    }
+}
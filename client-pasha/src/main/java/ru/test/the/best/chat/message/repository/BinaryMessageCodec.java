@@ -0,0 +1,206 @@
+package ru.test.the.best.chat.message.repository;
+
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.test.the.best.chat.codec.BinaryMessageFormat;
+import ru.test.the.best.chat.codec.BlobReference;
+import ru.test.the.best.chat.codec.MessageCodec;
+import ru.test.the.best.chat.codec.MessageFrame;
+import ru.test.the.best.chat.codec.PayloadCompression;
+import ru.test.the.best.chat.core.model.value.DataMessage;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Guard;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодек сообщений для Redis на основе {@link BinaryMessageFormat}.
+ * Пишет только бинарный формат, читает также legacy JSON (Gson),
+ * чтобы ранее сохранённые ключи оставались читаемыми до истечения TTL.
+ * <p>
+ * При messages.compression.enabled=true содержимое от messages.compression.threshold-bytes
+ * сжимается ({@link PayloadCompression}), если это уменьшает его размер. Сжатое содержимое
+ * читается без распаковки: {@link DataMessage} распаковывает его только при обращении.
+ * Метрики по типу содержимого: messages.compression.ratio, messages.compression.time, messages.compression.skipped.
+ * <p>
+ * Содержимое, вынесенное в {@link BlobStore}, пишется ссылкой ({@link BlobReference}) и читается из хранилища
+ * только при обращении к нему.
+ */
+@Slf4j
+@Component
+public class BinaryMessageCodec implements MessageCodec<Message> {
+
+    private final Gson gson;
+    private final BlobStore blobStore;
+    private final MeterRegistry meterRegistry;
+    private final boolean compressionEnabled;
+    private final int compressionThreshold;
+    private final int compressionLevel;
+    private final Map<String, CompressionMeters> meters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BinaryMessageCodec(
+            final Gson gson,
+            final BlobStore blobStore,
+            final MeterRegistry meterRegistry,
+            @Value("${messages.compression.enabled:false}") final boolean compressionEnabled,
+            @Value("${messages.compression.threshold-bytes:1024}") final int compressionThreshold,
+            @Value("${messages.compression.level:1}") final int compressionLevel) {
+        this.gson = Objects.requireNonNull(gson, "Gson cannot be null");
+        this.blobStore = Objects.requireNonNull(blobStore, "BlobStore cannot be null");
+        this.meterRegistry = Objects.requireNonNull(meterRegistry, "MeterRegistry cannot be null");
+        this.compressionEnabled = compressionEnabled;
+        this.compressionThreshold = compressionThreshold;
+        this.compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public byte[] encode(final Message message) {
+        final DataMessage dataMessage = message.getDataMessage();
+        if (dataMessage.isBlob()) {
+            return BinaryMessageFormat.encode(frame(message, dataMessage.getBlob().encode(), BinaryMessageFormat.FLAG_BLOB));
+        }
+
+        final byte[] data = dataMessage.getData();
+        final byte[] compressed = compress(dataMessage.getType(), data);
+
+        return compressed != null
+                ? BinaryMessageFormat.encode(frame(message, compressed, BinaryMessageFormat.FLAG_COMPRESSED))
+                : BinaryMessageFormat.encode(frame(message, data, (byte) 0));
+    }
+
+    @Override
+    public byte[] encodeUncompressed(final Message message) {
+        return BinaryMessageFormat.encode(frame(message, message.getDataMessage().getData(), (byte) 0));
+    }
+
+    @Override
+    public Result<Message, Error> decode(final byte[] value) {
+        if (Guard.isNull(value) || value.length == 0)
+            return Result.failure(GeneralErrors.valueIsEmpty("value"));
+
+        if (!BinaryMessageFormat.isBinary(value)) return decodeLegacyJson(value);
+
+        final Result<MessageFrame, Error> frameResult = BinaryMessageFormat.decode(value);
+        if (frameResult.isFailure()) return Result.failure(frameResult.getError());
+
+        final MessageFrame frame = frameResult.getValue();
+        final Result<DataMessage, Error> dataMessageResult;
+        if (frame.blob()) {
+            final Result<BlobReference, Error> reference = BlobReference.decode(frame.data());
+            if (reference.isFailure()) return Result.failure(reference.getError());
+
+            dataMessageResult = DataMessage.blob(reference.getValue(), frame.type(), blobStore);
+        } else if (frame.compressed()) {
+            dataMessageResult = DataMessage.compressed(frame.data(), frame.type(), this::inflate);
+        } else {
+            dataMessageResult = DataMessage.create(frame.data(), frame.type());
+        }
+        if (dataMessageResult.isFailure()) return Result.failure(dataMessageResult.getError());
+
+        return Message.create(frame.date(), frame.from(), frame.to(), dataMessageResult.getValue(), frame.id());
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private static MessageFrame frame(final Message message, final byte[] data, final byte flags) {
+        return new MessageFrame(
+                message.getId(),
+                message.getDate(),
+                message.getFrom(),
+                message.getTo(),
+                message.getDataMessage().getType(),
+                data,
+                flags
+        );
+    }
+
+    /**
+     * Сжать содержимое, если оно не меньше порога и сжатие уменьшает его размер.
+     *
+     * @return сжатое содержимое или null, если содержимое пишется как есть
+     */
+    private byte[] compress(final String type, final byte[] data) {
+        if (!compressionEnabled || data.length < compressionThreshold) return null;
+
+        final CompressionMeters typeMeters = meters(type);
+        final long startedAt = System.nanoTime();
+        final byte[] compressed = PayloadCompression.compress(data, compressionLevel);
+        typeMeters.compressTime().record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        typeMeters.ratio().record((double) compressed.length / data.length);
+
+        if (compressed.length >= data.length) {
+            typeMeters.skipped().increment();
+            return null;
+        }
+        return compressed;
+    }
+
+    private Result<byte[], Error> inflate(final String type, final byte[] compressed) {
+        final long startedAt = System.nanoTime();
+        final Result<byte[], Error> data = PayloadCompression.decompress(compressed);
+        meters(type).decompressTime().record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+
+        if (data.isFailure()) log.error("Failed to decompress {} message payload: {}", type, data.getError().getMessage());
+        return data;
+    }
+
+    private CompressionMeters meters(final String type) {
+        return meters.computeIfAbsent(type, key -> new CompressionMeters(
+                DistributionSummary.builder("messages.compression.ratio")
+                        .description("Отношение размера сжатого содержимого к исходному")
+                        .tag("type", key)
+                        .register(meterRegistry),
+                Timer.builder("messages.compression.time")
+                        .description("Время сжатия и распаковки содержимого")
+                        .tag("type", key)
+                        .tag("operation", "compress")
+                        .register(meterRegistry),
+                Timer.builder("messages.compression.time")
+                        .description("Время сжатия и распаковки содержимого")
+                        .tag("type", key)
+                        .tag("operation", "decompress")
+                        .register(meterRegistry),
+                Counter.builder("messages.compression.skipped")
+                        .description("Содержимое выше порога, записанное без сжатия: сжатие не уменьшило размер")
+                        .tag("type", key)
+                        .register(meterRegistry)
+        ));
+    }
+
+    private Result<Message, Error> decodeLegacyJson(final byte[] value) {
+        try {
+            final Message message = gson.fromJson(new String(value, StandardCharsets.UTF_8), Message.class);
+
+            if (Guard.isNull(message))
+                return Result.failure(GeneralErrors.deserializationError("Legacy JSON message is empty"));
+
+            return Result.success(message);
+        } catch (Exception e) {
+            log.error("Failed to deserialize legacy JSON message", e);
+            return Result.failure(GeneralErrors.deserializationError(e.getMessage()));
+        }
+    }
+
+    private record CompressionMeters(
+            DistributionSummary ratio,
+            Timer compressTime,
+            Timer decompressTime,
+            Counter skipped
+    ) {
+    }
+}
@@ -0,0 +1,82 @@
+package ru.test.the.best.chat.message.repository;
+
+import ru.test.the.best.chat.codec.BlobReader;
+import ru.test.the.best.chat.codec.BlobReference;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Guard;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Хранилище блобов: содержимое IMAGE и SOUND сообщений хранится отдельно от message:{id},
+ * а в значении сообщения остаётся только {@link BlobReference} (ID и размер).
+ * Списки сообщений читаются без содержимого, оно загружается по ссылке только при обращении.
+ * <p>
+ * Реализация выбирается messages.blob.store: redis ({@link RedisBlobStore}) или file ({@link MappedFileBlobStore}).
+ * Блобы живут столько же, сколько сообщения (30 дней), и удаляются по истечении срока. Раньше срока
+ * удаляются только блобы, на которые больше не ссылается ни одно значение: записанные для сообщения,
+ * которое не удалось сохранить, и заменённые обновлением ({@link #delete(BlobReference)}).
+ */
+public interface BlobStore extends BlobReader {
+
+    /**
+     * Сохранить содержимое.
+     *
+     * @param data содержимое
+     * @return Result со ссылкой на сохранённое содержимое или Error
+     */
+    default Result<BlobReference, Error> put(final byte[] data) {
+        if (Guard.isNull(data)) return Result.failure(GeneralErrors.valueIsEmpty("data"));
+
+        return put(new ByteArrayInputStream(data), data.length);
+    }
+
+    /**
+     * Сохранить содержимое из потока по мере чтения: в памяти держится не больше нескольких кусков.
+     * Размер проверяется во время чтения; при превышении лимита записанная часть удаляется.
+     *
+     * @param input    поток содержимого (не закрывается)
+     * @param maxBytes максимальный размер содержимого
+     * @return Result со ссылкой, payload.too.large при превышении лимита, value.is.empty для пустого потока
+     */
+    Result<BlobReference, Error> put(final InputStream input, final long maxBytes);
+
+    /**
+     * Прочитать содержимое целиком.
+     *
+     * @param reference ссылка на содержимое
+     * @return Result с содержимым или entity.not.found, если срок хранения истёк
+     */
+    @Override
+    Result<byte[], Error> read(final BlobReference reference);
+
+    /**
+     * Записать диапазон содержимого в канал, читая из хранилища только этот диапазон
+     * и не собирая его в отдельный массив.
+     *
+     * @param reference ссылка на содержимое
+     * @param offset    смещение первого байта
+     * @param length    количество байт
+     * @param channel   канал назначения
+     * @throws IOException если блоб отсутствует или запись в канал не удалась
+     */
+    @Override
+    void transferTo(
+            final BlobReference reference, final long offset, final long length, final WritableByteChannel channel
+    ) throws IOException;
+
+    /**
+     * Удалить содержимое, на которое больше не ссылается ни одно сообщение.
+     * Отсутствующее содержимое (истёк срок или уже удалено) ошибкой не считается.
+     *
+     * @param reference ссылка на содержимое
+     * @return UnitResult с результатом операции
+     */
+    UnitResult<Error> delete(final BlobReference reference);
+}
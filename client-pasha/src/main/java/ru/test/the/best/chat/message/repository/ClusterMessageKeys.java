@@ -0,0 +1,149 @@
+package ru.test.the.best.chat.message.repository;
+
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Раскладка ключей сообщений для Redis Cluster.
+ * <p>
+ * Ключи одного пользователя содержат его ID в hash tag ({...}) и попадают в один слот,
+ * поэтому запись индексов пользователя - один Lua-скрипт, а чтение его ленты, входящих,
+ * исходящих и переписки - команды в пределах слота. Значение сообщения лежит в слоте своего ID.
+ * <p>
+ * Структура ключей:
+ * - message:{id} - значение сообщения (BinaryMessageFormat)
+ * - user:{userId}:messages:from - Set с ID сообщений от пользователя
+ * - user:{userId}:messages:to - Set с ID сообщений для пользователя
+ * - user:{userId}:conversation:{otherId без скобок} - Sorted Set переписки с другим пользователем,
+ *   score - время сообщения в мс; хранится у обоих участников
+ * - user:{userId}:seq - счётчик изменений пользователя
+ * - user:{userId}:updates - Sorted Set ленты изменений, score - номер из user:{userId}:seq;
+ *   удалённое сообщение остаётся в ней записью deleted:{id} с номером удаления
+ * <p>
+ * Глобальных ключей (messages:all, messages:owners, messages:seq) нет: обход всех сообщений идёт
+ * через SCAN по ведущим узлам, курсор ленты изменений относится к счётчику пользователя.
+ */
+final class ClusterMessageKeys {
+
+    static final String MESSAGE_KEY_PATTERN = "message:{*";
+
+    private static final byte[] SET_INDEX_SPEC = SafeEncoder.encode("S");
+    private static final byte[] SEQUENCE_SPEC = SafeEncoder.encode("C");
+    private static final byte[] SEQUENCE_INDEX_SPEC = SafeEncoder.encode("Q");
+
+    private ClusterMessageKeys() {
+    }
+
+    static byte[] messageKey(final Object id) {
+        return SafeEncoder.encode("message:{" + id + "}");
+    }
+
+    static String fromIndexKey(final UUID userId) {
+        return userPrefix(userId) + "messages:from";
+    }
+
+    static String toIndexKey(final UUID userId) {
+        return userPrefix(userId) + "messages:to";
+    }
+
+    static String conversationKey(final UUID userId, final UUID otherId) {
+        return userPrefix(userId) + "conversation:" + otherId;
+    }
+
+    static String sequenceKey(final UUID userId) {
+        return userPrefix(userId) + "seq";
+    }
+
+    static String updatesKey(final UUID userId) {
+        return userPrefix(userId) + "updates";
+    }
+
+    /**
+     * Принадлежит ли ключ раскладке сообщений. Счётчики изменений пользователей не удаляются,
+     * чтобы курсоры клиентов оставались монотонными.
+     */
+    static boolean isMessageLayoutKey(final String key) {
+        if (key.startsWith("message:{")) {
+            return true;
+        }
+        return key.startsWith("user:{")
+                && (key.endsWith("}:messages:from")
+                || key.endsWith("}:messages:to")
+                || key.endsWith("}:updates")
+                || key.contains("}:conversation:"));
+    }
+
+    /**
+     * Ключи index_message.lua для записей сообщения в слоте пользователя:
+     * индексы его стороны переписки, переписка, счётчик и лента изменений.
+     *
+     * @param message сообщение
+     * @param userId  отправитель или получатель сообщения
+     */
+    static List<byte[]> userIndexKeys(final Message message, final UUID userId) {
+        final List<byte[]> keys = new ArrayList<>(5);
+        if (userId.equals(message.getFrom())) {
+            keys.add(SafeEncoder.encode(fromIndexKey(userId)));
+        }
+        if (userId.equals(message.getTo())) {
+            keys.add(SafeEncoder.encode(toIndexKey(userId)));
+        }
+        keys.add(SafeEncoder.encode(conversationKey(userId, otherParticipant(message, userId))));
+        keys.add(SafeEncoder.encode(sequenceKey(userId)));
+        keys.add(SafeEncoder.encode(updatesKey(userId)));
+        return keys;
+    }
+
+    /**
+     * ARGV index_message.lua: ID сообщения и спецификации записи для {@link #userIndexKeys}.
+     */
+    static List<byte[]> userIndexArgs(final Message message, final UUID userId) {
+        final List<byte[]> args = new ArrayList<>(6);
+        args.add(SafeEncoder.encode(message.getId().toString()));
+        if (userId.equals(message.getFrom())) {
+            args.add(SET_INDEX_SPEC);
+        }
+        if (userId.equals(message.getTo())) {
+            args.add(SET_INDEX_SPEC);
+        }
+        args.add(SafeEncoder.encode("Z" + message.getDate().toEpochMilli()));
+        args.add(SEQUENCE_SPEC);
+        args.add(SEQUENCE_INDEX_SPEC);
+        return args;
+    }
+
+    /**
+     * Ключи tombstone_message.lua в слоте пользователя: лента и счётчик изменений.
+     */
+    static List<byte[]> tombstoneKeys(final UUID userId) {
+        return List.of(SafeEncoder.encode(updatesKey(userId)), SafeEncoder.encode(sequenceKey(userId)));
+    }
+
+    /**
+     * ARGV tombstone_message.lua: ID сообщения и запись об удалении.
+     */
+    static List<byte[]> tombstoneArgs(final UUID id) {
+        return List.of(SafeEncoder.encode(id.toString()), SafeEncoder.encode(RedisMessageKeys.tombstone(id)));
+    }
+
+    /**
+     * Участники сообщения без повторов: для сообщения самому себе - один пользователь.
+     */
+    static List<UUID> participants(final Message message) {
+        return message.getFrom().equals(message.getTo())
+                ? List.of(message.getFrom())
+                : List.of(message.getFrom(), message.getTo());
+    }
+
+    private static UUID otherParticipant(final Message message, final UUID userId) {
+        return userId.equals(message.getFrom()) ? message.getTo() : message.getFrom();
+    }
+
+    private static String userPrefix(final UUID userId) {
+        return "user:{" + userId + "}:";
+    }
+}
@@ -0,0 +1,253 @@
+package ru.test.the.best.chat.message.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.ClusterPipeline;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.codec.MessageCodec;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.model.dto.admin.ClusterMigrationStatusResponse;
+import ru.test.the.best.chat.redis.LuaScript;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.ALL_MESSAGES_KEY;
+
+/**
+ * Фоновый перенос сообщений из раскладки одного Redis ({@link RedisMessageKeys})
+ * в раскладку Redis Cluster ({@link ClusterMessageKeys}).
+ * <p>
+ * Источник - отдельный Redis (redis.cluster.migration.source-host/port), обходится через SSCAN messages:all.
+ * Значения переносятся с оставшимся TTL; записи ленты изменений сохраняют номер из messages:seq,
+ * а счётчик каждого пользователя поднимается до максимального перенесённого номера,
+ * поэтому курсоры клиентов остаются валидными. Повторный запуск безопасен: все записи идемпотентны.
+ * Источник не изменяется; запись в него во время переноса должна быть остановлена.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "redis.cluster.enabled", havingValue = "true")
+public class ClusterMessageMigration {
+
+    private enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final LuaScript RAISE_SEQUENCE_SCRIPT = LuaScript.fromClasspath("raise_sequence.lua");
+
+    private final JedisCluster jedisCluster;
+    private final MessageCodec<Message> messageCodec;
+    private final HostAndPort sourceAddress;
+    private final DefaultJedisClientConfig sourceClientConfig;
+
+    private final AtomicLong migratedMessages = new AtomicLong();
+    private final AtomicLong skippedMessages = new AtomicLong();
+
+    private volatile State state = State.IDLE;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public ClusterMessageMigration(
+            final JedisCluster jedisCluster,
+            final MessageCodec<Message> messageCodec,
+            @Value("${redis.cluster.migration.source-host}") final String sourceHost,
+            @Value("${redis.cluster.migration.source-port}") final int sourcePort,
+            @Value("${redis.username}") final String username,
+            @Value("${redis.password}") final String password) {
+        this.jedisCluster = jedisCluster;
+        this.messageCodec = messageCodec;
+        this.sourceAddress = new HostAndPort(sourceHost, sourcePort);
+        this.sourceClientConfig = DefaultJedisClientConfig.builder()
+                .user(username)
+                .password(password)
+                .build();
+    }
+
+    /**
+     * Запустить перенос сообщений в фоне.
+     *
+     * @return Result с состоянием запущенной задачи или data.conflict, если задача уже выполняется
+     */
+    public synchronized Result<ClusterMigrationStatusResponse, Error> start() {
+        if (state == State.RUNNING) {
+            log.warn("Cluster migration is already running since {}", startedAt);
+            return Result.failure(GeneralErrors.conflict("Cluster migration is already running"));
+        }
+
+        migratedMessages.set(0);
+        skippedMessages.set(0);
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+        state = State.RUNNING;
+
+        Thread.ofVirtual()
+                .name("messages-cluster-migration")
+                .start(this::run);
+
+        log.warn("Cluster migration started from {}", sourceAddress);
+        return Result.success(status());
+    }
+
+    /**
+     * Текущее состояние задачи.
+     *
+     * @return состояние последнего запуска или IDLE, если задача не запускалась
+     */
+    public ClusterMigrationStatusResponse status() {
+        return new ClusterMigrationStatusResponse(
+                state.name(),
+                migratedMessages.get(),
+                skippedMessages.get(),
+                startedAt,
+                finishedAt,
+                error
+        );
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void run() {
+        String failure = null;
+        try (Jedis source = new Jedis(sourceAddress, sourceClientConfig)) {
+            final ScanParams params = new ScanParams().count(BATCH_SIZE);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                final ScanResult<String> page = source.sscan(ALL_MESSAGES_KEY, cursor, params);
+                migrateBatch(source, page.getResult());
+                cursor = page.getCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        } catch (Exception e) {
+            failure = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+        }
+
+        synchronized (this) {
+            finishedAt = Instant.now();
+            if (failure != null) {
+                error = failure;
+                state = State.FAILED;
+                log.error("Cluster migration failed after {} messages: {}", migratedMessages.get(), error);
+            } else {
+                state = State.COMPLETED;
+                log.warn("Cluster migration completed: migrated {} messages, skipped {}",
+                        migratedMessages.get(), skippedMessages.get());
+            }
+        }
+    }
+
+    /**
+     * Перенести пачку сообщений: чтение источника одним pipeline, запись в кластер одним cluster pipeline.
+     */
+    private void migrateBatch(final Jedis source, final List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        final List<Response<byte[]>> values = new ArrayList<>(ids.size());
+        final List<Response<Long>> ttls = new ArrayList<>(ids.size());
+        final Pipeline pipeline = source.pipelined();
+        for (String id : ids) {
+            values.add(pipeline.get(RedisMessageKeys.messageKey(id)));
+            ttls.add(pipeline.pttl(RedisMessageKeys.messageKey(id)));
+        }
+        pipeline.sync();
+
+        final List<Message> messages = new ArrayList<>(ids.size());
+        final List<byte[]> encoded = new ArrayList<>(ids.size());
+        final List<Long> remainingTtls = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            final byte[] value = values.get(i).get();
+            final long ttl = ttls.get(i).get();
+            final Result<Message, Error> decoded = value == null ? null : messageCodec.decode(value);
+            if (decoded == null || decoded.isFailure() || ttl == -2) {
+                skippedMessages.incrementAndGet();
+                continue;
+            }
+            messages.add(decoded.getValue());
+            encoded.add(value);
+            remainingTtls.add(ttl);
+        }
+
+        final Map<String, Double> sequences = readSequences(source, messages);
+        final Map<UUID, Long> maxSequences = new HashMap<>();
+
+        try (ClusterPipeline target = jedisCluster.pipelined()) {
+            for (int i = 0; i < messages.size(); i++) {
+                final Message message = messages.get(i);
+                final String member = message.getId().toString();
+                final long ttl = remainingTtls.get(i);
+                target.set(ClusterMessageKeys.messageKey(member), encoded.get(i),
+                        ttl > 0 ? SetParams.setParams().px(ttl) : SetParams.setParams());
+
+                target.sadd(ClusterMessageKeys.fromIndexKey(message.getFrom()), member);
+                target.sadd(ClusterMessageKeys.toIndexKey(message.getTo()), member);
+                for (UUID userId : ClusterMessageKeys.participants(message)) {
+                    final UUID otherId = userId.equals(message.getFrom()) ? message.getTo() : message.getFrom();
+                    target.zadd(ClusterMessageKeys.conversationKey(userId, otherId),
+                            message.getDate().toEpochMilli(), member);
+
+                    final Double sequence = sequences.get(userId + ":" + member);
+                    if (sequence != null) {
+                        target.zadd(ClusterMessageKeys.updatesKey(userId), sequence, member);
+                        maxSequences.merge(userId, sequence.longValue(), Math::max);
+                    }
+                }
+            }
+            target.sync();
+        }
+
+        maxSequences.forEach((userId, sequence) -> RAISE_SEQUENCE_SCRIPT.eval(jedisCluster,
+                List.of(SafeEncoder.encode(ClusterMessageKeys.sequenceKey(userId))),
+                List.of(SafeEncoder.encode(String.valueOf(sequence)))));
+
+        migratedMessages.addAndGet(messages.size());
+        log.debug("Cluster migration: migrated batch of {} messages", messages.size());
+    }
+
+    /**
+     * Номера изменений сообщений в лентах участников источника.
+     *
+     * @return ключ "userId:messageId" -> score в user:updates:{userId}
+     */
+    private static Map<String, Double> readSequences(final Jedis source, final List<Message> messages) {
+        final Map<String, Response<Double>> responses = new HashMap<>();
+        final Pipeline pipeline = source.pipelined();
+        for (Message message : messages) {
+            final String member = message.getId().toString();
+            for (UUID userId : ClusterMessageKeys.participants(message)) {
+                responses.put(userId + ":" + member, pipeline.zscore(RedisMessageKeys.updatesKey(userId), member));
+            }
+        }
+        pipeline.sync();
+
+        final Map<String, Double> sequences = new HashMap<>(responses.size());
+        responses.forEach((key, response) -> {
+            if (response.get() != null) {
+                sequences.put(key, response.get());
+            }
+        });
+        return sequences;
+    }
+}
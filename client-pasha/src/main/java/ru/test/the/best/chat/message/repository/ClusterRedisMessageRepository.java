@@ -0,0 +1,915 @@
+package ru.test.the.best.chat.message.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import redis.clients.jedis.ClusterPipeline;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanIteration;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.resps.Tuple;
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.codec.MessageCodec;
+import ru.test.the.best.chat.core.repository.UpdatesPage;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Guard;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.redis.LuaScript;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import static ru.test.the.best.chat.message.repository.ClusterMessageKeys.*;
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.MESSAGE_EVENTS_CHANNEL;
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.MESSAGE_TTL;
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.deletedId;
+import static ru.test.the.best.chat.message.repository.RedisMessageScripts.STALE_INDEX_ATTEMPTS;
+import static ru.test.the.best.chat.message.repository.RedisMessageScripts.STALE_INDEX_KEYS;
+
+/**
+ * Репозиторий сообщений в Redis Cluster (redis.cluster.enabled=true).
+ * <p>
+ * Раскладка ключей с hash tag описана в {@link ClusterMessageKeys}: данные пользователя лежат в одном слоте,
+ * значение сообщения - в слоте своего ID. Операции над несколькими слотами (значение и индексы
+ * отправителя и получателя, пакетное чтение значений) выполняются через {@link ClusterPipeline},
+ * который раскладывает команды по узлам слотов; индексы одного пользователя пишутся одним
+ * вызовом index_message.lua. Атомарность есть только в пределах слота: при ошибке части pipeline
+ * запись может остаться частичной, а вызов вернёт ошибку.
+ * <p>
+ * Переход с раскладки одного Redis выполняет {@link ClusterMessageMigration}.
+ * Очистка индексов после истечения TTL ({@link MessageIndexReaper}) в кластере не работает
+ * (нет глобального хэша владельцев): чтения пропускают ID истёкших сообщений,
+ * а записи о них удаляются вместе с индексами.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "redis.cluster.enabled", havingValue = "true")
+public class ClusterRedisMessageRepository implements ru.test.the.best.chat.core.repository.Repository<Message, UUID> {
+
+    private static final int SCAN_COUNT = 1000;
+
+    private static final byte[] MESSAGE_EVENTS_CHANNEL_BYTES = SafeEncoder.encode(MESSAGE_EVENTS_CHANNEL);
+
+    static final LuaScript INDEX_SCRIPT = LuaScript.fromClasspath("index_message.lua");
+    static final LuaScript COMPARE_AND_SET_SCRIPT = LuaScript.fromClasspath("compare_and_set_message.lua");
+    static final LuaScript TOMBSTONE_SCRIPT = LuaScript.fromClasspath("tombstone_message.lua");
+
+    private final JedisCluster jedisCluster;
+    private final MessageCodec<Message> messageCodec;
+
+    public ClusterRedisMessageRepository(final JedisCluster jedisCluster, final MessageCodec<Message> messageCodec) {
+        this.jedisCluster = Objects.requireNonNull(jedisCluster, "JedisCluster cannot be null");
+        this.messageCodec = Objects.requireNonNull(messageCodec, "MessageCodec cannot be null");
+        log.info("ClusterRedisMessageRepository initialized with JedisCluster and MessageCodec");
+    }
+
+    /**
+     * Сохранить сообщение: значение и индексы участников одним pipeline по узлам их слотов,
+     * после чего сообщение публикуется в канал messages:events.
+     *
+     * @param message сообщение для сохранения
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> save(final Message message) {
+        log.debug("Attempting to save message with id: {}", message != null ? message.getId() : "null");
+
+        if (Guard.isNull(message)) {
+            log.warn("Save called with null message");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("message"));
+        }
+
+        if (Guard.isNullOrEmpty(message.getId())) {
+            log.warn("Save called with message without ID");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("message.id"));
+        }
+
+        final List<UnitResult<Error>> results = saveAll(List.of(message));
+        return results.getFirst();
+    }
+
+    /**
+     * Сохранить несколько сообщений одним cluster pipeline: SET значений и index_message.lua
+     * для каждого участника. Результат возвращается для каждого сообщения отдельно.
+     *
+     * @param messages сообщения для сохранения
+     * @return результаты в том же порядке, что и messages
+     */
+    @Override
+    public List<UnitResult<Error>> saveAll(final List<Message> messages) {
+        if (Guard.isNull(messages) || messages.isEmpty()) {
+            log.debug("SaveAll called with no messages");
+            return Collections.emptyList();
+        }
+
+        log.debug("Attempting to save {} messages", messages.size());
+
+        final List<UnitResult<Error>> results = new ArrayList<>(Collections.nCopies(messages.size(), null));
+        final List<Integer> pending = new ArrayList<>(messages.size());
+        final Map<Integer, byte[]> encoded = new HashMap<>();
+
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = messages.get(i);
+            if (Guard.isNull(message)) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsRequired("message")));
+            } else if (Guard.isNullOrEmpty(message.getId())) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsRequired("message.id")));
+            } else {
+                // Сообщение, которое не кодируется, отклоняется отдельно и не срывает остальную пачку
+                try {
+                    encoded.put(i, messageCodec.encode(message));
+                    pending.add(i);
+                } catch (Exception e) {
+                    log.warn("Failed to encode message: {}", message.getId(), e);
+                    results.set(i, UnitResult.failure(GeneralErrors.serializationError(e.getMessage())));
+                }
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return results;
+        }
+
+        try {
+            final List<ScriptCall> calls = new ArrayList<>();
+            final Map<Integer, Response<String>> sets = new LinkedHashMap<>();
+
+            try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+                for (int index : pending) {
+                    final Message message = messages.get(index);
+                    sets.put(index, pipeline.set(messageKey(message.getId()), encoded.get(index),
+                            SetParams.setParams().ex(MESSAGE_TTL)));
+                    for (UUID userId : participants(message)) {
+                        calls.add(ScriptCall.index(pipeline, index, message, userId));
+                    }
+                }
+                pipeline.sync();
+            }
+
+            sets.forEach((index, response) -> {
+                try {
+                    response.get();
+                } catch (Exception e) {
+                    fail(results, index, messages.get(index).getId(), e);
+                }
+            });
+            completeScriptCalls(calls, results, index -> messages.get(index).getId());
+
+            final List<byte[]> saved = new ArrayList<>(pending.size());
+            for (int index : pending) {
+                if (results.get(index) == null) {
+                    results.set(index, UnitResult.success());
+                    saved.add(encoded.get(index));
+                }
+            }
+            publishSaved(saved);
+        } catch (Exception e) {
+            log.error("Error occurred while saving {} messages", messages.size(), e);
+            fillFailures(results, e);
+        }
+
+        log.info("Saved batch of {} messages", messages.size());
+        return results;
+    }
+
+    /**
+     * Обновить существующее сообщение: compare_and_set_message.lua заменяет значение, только если оно
+     * не изменилось после чтения, затем записи в индексах участников переносятся по прочитанному значению.
+     * Если значение меняется одновременно, вызов повторяется; после {@code STALE_INDEX_ATTEMPTS}
+     * неудачных попыток возвращается data.conflict.
+     *
+     * @param id      идентификатор сообщения
+     * @param message новое состояние сообщения с тем же ID
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
+     */
+    @Override
+    public UnitResult<Error> update(final UUID id, final Message message) {
+        log.debug("Attempting to update message with id: {}", id);
+
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("Update called with null or empty id");
+            return UnitResult.failure(GeneralErrors.valueIsEmpty("id"));
+        }
+
+        if (Guard.isNull(message)) {
+            log.warn("Update called with null message");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("message"));
+        }
+
+        if (!id.equals(message.getId())) {
+            log.warn("Update called with mismatched ids: {} and {}", id, message.getId());
+            return UnitResult.failure(GeneralErrors.validationError("message.id", "Message id does not match updated id"));
+        }
+
+        try {
+            final byte[] key = messageKey(id);
+            final byte[] newValue = messageCodec.encode(message);
+
+            byte[] oldValue = null;
+            Object replaced = STALE_INDEX_KEYS;
+            for (int attempt = 0; attempt < STALE_INDEX_ATTEMPTS && STALE_INDEX_KEYS.equals(replaced); attempt++) {
+                oldValue = jedisCluster.get(key);
+                replaced = oldValue != null
+                        ? COMPARE_AND_SET_SCRIPT.eval(jedisCluster, List.of(key), List.of(oldValue, newValue))
+                        : 0L;
+            }
+
+            if (STALE_INDEX_KEYS.equals(replaced)) {
+                log.warn("Cannot update: message {} keeps changing concurrently", id);
+                return UnitResult.failure(GeneralErrors.conflict("Message " + id + " was changed concurrently"));
+            }
+
+            if (!Long.valueOf(1L).equals(replaced)) {
+                log.warn("Cannot update: message not found with id: {}", id);
+                return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
+            }
+
+            final Result<Message, Error> oldMessage = messageCodec.decode(oldValue);
+            final List<UnitResult<Error>> results = new ArrayList<>(Collections.nCopies(1, null));
+            final List<ScriptCall> calls = new ArrayList<>();
+
+            try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+                if (oldMessage.isSuccess()) {
+                    removeFromIndexes(pipeline, oldMessage.getValue());
+                }
+                for (UUID userId : participants(message)) {
+                    calls.add(ScriptCall.index(pipeline, 0, message, userId));
+                }
+                pipeline.sync();
+            }
+            completeScriptCalls(calls, results, index -> id);
+
+            if (results.getFirst() != null) {
+                return results.getFirst();
+            }
+
+            log.info("Successfully updated message: {} from {} to {}", id, message.getFrom(), message.getTo());
+            return UnitResult.success();
+
+        } catch (Exception e) {
+            log.error("Error occurred while updating message with id: {}", id, e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Найти сообщение по ID.
+     *
+     * @param id идентификатор сообщения
+     * @return Result с Optional<Message> или Error
+     */
+    @Override
+    public Result<Optional<Message>, Error> findById(final UUID id) {
+        log.debug("Attempting to find message by id: {}", id);
+
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("FindById called with null or empty id");
+            return Result.failure(GeneralErrors.valueIsEmpty("id"));
+        }
+
+        try {
+            final byte[] encodedMessage = jedisCluster.get(messageKey(id));
+
+            if (encodedMessage == null || encodedMessage.length == 0) {
+                log.debug("Message not found with id: {}", id);
+                return Result.success(Optional.empty());
+            }
+
+            final Result<Message, Error> messageResult = messageCodec.decode(encodedMessage);
+            if (messageResult.isFailure()) {
+                log.error("Failed to decode message with id: {}", id);
+                return Result.failure(messageResult.getError());
+            }
+
+            return Result.success(Optional.of(messageResult.getValue()));
+
+        } catch (Exception e) {
+            log.error("Error occurred while finding message by id: {}", id, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Найти сообщения по списку ID одним cluster pipeline GET.
+     *
+     * @param ids идентификаторы сообщений
+     * @return Result со списком в том же порядке, что и ids (Optional.empty для отсутствующих), или Error
+     */
+    @Override
+    public Result<List<Optional<Message>>, Error> findAllByIds(final List<UUID> ids) {
+        log.debug("Attempting to find {} messages by ids", ids != null ? ids.size() : 0);
+
+        if (Guard.isNull(ids)) {
+            log.warn("FindAllByIds called with null ids");
+            return Result.failure(GeneralErrors.valueIsRequired("ids"));
+        }
+
+        if (ids.isEmpty()) {
+            return Result.success(Collections.emptyList());
+        }
+
+        try {
+            final List<byte[]> values = getValues(ids);
+            final List<Optional<Message>> messages = new ArrayList<>(ids.size());
+            for (byte[] value : values) {
+                messages.add(Optional.ofNullable(decode(value)));
+            }
+            return Result.success(messages);
+        } catch (Exception e) {
+            log.error("Error occurred while finding {} messages by ids", ids.size(), e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Найти все сообщения: SCAN по ведущим узлам кластера.
+     * ВНИМАНИЕ: Может быть медленным при большом количестве сообщений!
+     *
+     * @return список всех сообщений
+     */
+    @Override
+    public List<Message> findAll() {
+        log.debug("Fetching all messages from Redis Cluster");
+
+        final List<Message> messages = new ArrayList<>();
+        final UnitResult<Error> result = scanAll(SCAN_COUNT, messages::addAll);
+        if (result.isFailure()) {
+            return Collections.emptyList();
+        }
+
+        log.info("Successfully fetched {} messages", messages.size());
+        return messages;
+    }
+
+    /**
+     * Обойти все сообщения постранично: SCAN MATCH message:{* по очереди на каждом ведущем узле.
+     *
+     * @param pageSize     значение COUNT для SCAN
+     * @param pageConsumer обработчик очередной страницы
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> scanAll(final int pageSize, final Consumer<List<Message>> pageConsumer) {
+        log.debug("Scanning all messages with page size: {}", pageSize);
+
+        if (pageSize < 1) {
+            log.warn("ScanAll called with non-positive page size: {}", pageSize);
+            return UnitResult.failure(GeneralErrors.valueIsOutOfRange("pageSize", pageSize, 1, Integer.MAX_VALUE));
+        }
+
+        if (Guard.isNull(pageConsumer)) {
+            log.warn("ScanAll called with null page consumer");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("pageConsumer"));
+        }
+
+        try {
+            final ScanIteration iteration = jedisCluster.scanIteration(pageSize, MESSAGE_KEY_PATTERN);
+            long scanned = 0;
+            while (!iteration.isIterationCompleted()) {
+                final ScanResult<String> page = iteration.nextBatch();
+                final List<Message> messages = getMessagesByKeys(page.getResult());
+                if (!messages.isEmpty()) {
+                    pageConsumer.accept(messages);
+                    scanned += messages.size();
+                }
+            }
+
+            log.info("Successfully scanned {} messages", scanned);
+            return UnitResult.success();
+        } catch (Exception e) {
+            log.error("Error occurred while scanning messages", e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Удалить сообщение по ID вместе с записями в индексах участников.
+     *
+     * @param id идентификатор сообщения
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
+     */
+    @Override
+    public UnitResult<Error> deleteById(final UUID id) {
+        log.debug("Attempting to delete message with id: {}", id);
+
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("DeleteById called with null or empty id");
+            return UnitResult.failure(GeneralErrors.valueIsEmpty("id"));
+        }
+
+        return deleteAllByIds(List.of(id)).getFirst();
+    }
+
+    /**
+     * Удалить сообщения по списку ID: pipeline GET для участников, затем pipeline
+     * удаления значений и записей в индексах по узлам слотов. В лентах изменений участников
+     * ID заменяется записью об удалении.
+     *
+     * @param ids идентификаторы сообщений
+     * @return результаты в том же порядке, что и ids, entity.not.found для отсутствующих
+     */
+    @Override
+    public List<UnitResult<Error>> deleteAllByIds(final List<UUID> ids) {
+        if (Guard.isNull(ids) || ids.isEmpty()) {
+            log.debug("DeleteAllByIds called with no ids");
+            return Collections.emptyList();
+        }
+
+        log.debug("Attempting to delete {} messages by ids", ids.size());
+
+        final List<UnitResult<Error>> results = new ArrayList<>(Collections.nCopies(ids.size(), null));
+        final List<Integer> pending = new ArrayList<>(ids.size());
+
+        for (int i = 0; i < ids.size(); i++) {
+            if (Guard.isNullOrEmpty(ids.get(i))) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsEmpty("id")));
+            } else {
+                pending.add(i);
+            }
+        }
+
+        try {
+            final List<byte[]> values = getValues(pending.stream().map(ids::get).toList());
+            final Map<Integer, Response<Long>> deletes = new LinkedHashMap<>();
+            final List<ScriptCall> calls = new ArrayList<>();
+
+            try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+                for (int i = 0; i < pending.size(); i++) {
+                    final int index = pending.get(i);
+                    final Message message = decode(values.get(i));
+                    if (message == null) {
+                        results.set(index, UnitResult.failure(GeneralErrors.entityNotFound("Message", ids.get(index))));
+                        continue;
+                    }
+                    deletes.put(index, pipeline.del(messageKey(ids.get(index))));
+                    // Запись об удалении ставится до снятия индексов: команды слота выполняются по порядку
+                    for (UUID userId : participants(message)) {
+                        calls.add(ScriptCall.tombstone(pipeline, index, message, userId));
+                    }
+                    removeFromIndexes(pipeline, message);
+                }
+                pipeline.sync();
+            }
+            completeScriptCalls(calls, results, ids::get);
+
+            deletes.forEach((index, response) -> {
+                if (results.get(index) != null) {
+                    return;
+                }
+                try {
+                    results.set(index, response.get() > 0
+                            ? UnitResult.success()
+                            : UnitResult.failure(GeneralErrors.entityNotFound("Message", ids.get(index))));
+                } catch (Exception e) {
+                    fail(results, index, ids.get(index), e);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Error occurred while deleting {} messages by ids", ids.size(), e);
+            fillFailures(results, e);
+        }
+
+        log.info("Processed delete batch of {} messages", ids.size());
+        return results;
+    }
+
+    /**
+     * Найти все сообщения от пользователя: индекс в слоте пользователя, значения - pipeline по узлам.
+     *
+     * @param fromUserId ID отправителя
+     * @return список сообщений
+     */
+    @Override
+    public List<Message> findAllByFrom(final UUID fromUserId) {
+        log.debug("Fetching all messages from user: {}", fromUserId);
+
+        if (Guard.isNullOrEmpty(fromUserId)) {
+            log.warn("FindAllByFrom called with null or empty fromUserId");
+            return Collections.emptyList();
+        }
+
+        try {
+            final var messages = getMessagesByIds(jedisCluster.smembers(fromIndexKey(fromUserId)));
+            log.info("Successfully fetched {} messages from user: {}", messages.size(), fromUserId);
+            return messages;
+        } catch (Exception e) {
+            log.error("Error occurred while fetching messages from user: {}", fromUserId, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Найти все сообщения для пользователя.
+     *
+     * @param toUserId ID получателя
+     * @return список сообщений
+     */
+    @Override
+    public List<Message> findAllByTo(final UUID toUserId) {
+        log.debug("Fetching all messages to user: {}", toUserId);
+
+        if (Guard.isNullOrEmpty(toUserId)) {
+            log.warn("FindAllByTo called with null or empty toUserId");
+            return Collections.emptyList();
+        }
+
+        try {
+            final var messages = getMessagesByIds(jedisCluster.smembers(toIndexKey(toUserId)));
+            log.info("Successfully fetched {} messages to user: {}", messages.size(), toUserId);
+            return messages;
+        } catch (Exception e) {
+            log.error("Error occurred while fetching messages to user: {}", toUserId, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Найти страницу переписки: ZREVRANGEBYSCORE по копии переписки в слоте первого пользователя,
+     * значения - pipeline по узлам их слотов.
+     *
+     * @param user1Id  ID первого пользователя
+     * @param user2Id  ID второго пользователя
+     * @param before   курсор: время первого сообщения предыдущей страницы (null - самые свежие)
+     * @param beforeId ID первого сообщения предыдущей страницы или null
+     * @param limit    максимальный размер страницы
+     * @return страница сообщений, отсортированных по дате по возрастанию
+     */
+    @Override
+    public List<Message> findConversation(final UUID user1Id, final UUID user2Id,
+                                          final Instant before, final UUID beforeId, final int limit) {
+        log.debug("Fetching conversation page between users: {} and {}, before: {}/{}, limit: {}",
+                user1Id, user2Id, before, beforeId, limit);
+
+        if (Guard.isNullOrEmpty(user1Id)) {
+            log.warn("FindConversation called with null or empty user1Id");
+            return Collections.emptyList();
+        }
+
+        if (Guard.isNullOrEmpty(user2Id)) {
+            log.warn("FindConversation called with null or empty user2Id");
+            return Collections.emptyList();
+        }
+
+        if (limit <= 0) {
+            log.warn("FindConversation called with non-positive limit: {}", limit);
+            return Collections.emptyList();
+        }
+
+        try {
+            final String conversationKey = conversationKey(user1Id, user2Id);
+            final ConversationCursor cursor = ConversationCursor.of(before, beforeId);
+            final List<String> boundary = cursor.hasBoundary()
+                    ? jedisCluster.zrevrangeByScore(conversationKey, cursor.boundaryScore(), cursor.boundaryScore())
+                    : List.of();
+            final List<String> older = jedisCluster.zrevrangeByScore(
+                    conversationKey, cursor.olderMaxScore(), "-inf", 0, limit);
+
+            final String cursorMember = cursor.hasBoundary() ? beforeId.toString() : null;
+            final List<String> newestFirst = ConversationCursor.page(
+                    boundary, older, member -> member.compareTo(cursorMember) < 0, limit);
+
+            final var messages = getMessagesByIds(newestFirst.reversed());
+            log.info("Successfully fetched {} messages in conversation between users: {} and {}",
+                    messages.size(), user1Id, user2Id);
+            return messages;
+        } catch (Exception e) {
+            log.error("Error occurred while fetching conversation between users: {} and {}",
+                    user1Id, user2Id, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Найти сообщения пользователя, созданные или изменённые после курсора.
+     * Курсор - номер изменения из счётчика пользователя user:{userId}:seq.
+     *
+     * @param userId ID пользователя
+     * @param since  курсор из предыдущего ответа (0 - с начала)
+     * @param limit  максимальный размер страницы
+     * @return Result со страницей изменений и следующим курсором или Error
+     */
+    @Override
+    public Result<UpdatesPage<Message>, Error> findUpdates(final UUID userId, final long since, final int limit) {
+        log.debug("Fetching updates for user: {}, since: {}, limit: {}", userId, since, limit);
+
+        if (Guard.isNullOrEmpty(userId)) {
+            log.warn("FindUpdates called with null or empty userId");
+            return Result.failure(GeneralErrors.valueIsEmpty("userId"));
+        }
+
+        if (since < 0) {
+            log.warn("FindUpdates called with negative cursor: {}", since);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("since", since, 0, Long.MAX_VALUE));
+        }
+
+        if (limit < 1) {
+            log.warn("FindUpdates called with non-positive limit: {}", limit);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("limit", limit, 1, Integer.MAX_VALUE));
+        }
+
+        try {
+            final List<Tuple> entries = jedisCluster.zrangeByScoreWithScores(
+                    updatesKey(userId), "(" + since, "+inf", 0, limit + 1);
+
+            final boolean hasMore = entries.size() > limit;
+            final List<Tuple> page = hasMore ? entries.subList(0, limit) : entries;
+
+            if (page.isEmpty()) {
+                return Result.success(new UpdatesPage<>(Collections.emptyList(), Collections.emptyList(), since, false));
+            }
+
+            final long cursor = (long) page.getLast().getScore();
+            final List<String> ids = new ArrayList<>(page.size());
+            final List<UUID> deletedIds = new ArrayList<>();
+            for (Tuple entry : page) {
+                final UUID deletedId = deletedId(entry.getElement());
+                if (deletedId != null) {
+                    deletedIds.add(deletedId);
+                } else {
+                    ids.add(entry.getElement());
+                }
+            }
+            final var messages = getMessagesByIds(ids);
+
+            log.info("Successfully fetched {} updates and {} deletions for user: {}, next cursor: {}",
+                    messages.size(), deletedIds.size(), userId, cursor);
+            return Result.success(new UpdatesPage<>(messages, deletedIds, cursor, hasMore));
+
+        } catch (Exception e) {
+            log.error("Error occurred while fetching updates for user: {}", userId, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    @Override
+    public long countByFrom(final UUID fromUserId) {
+        if (Guard.isNullOrEmpty(fromUserId)) {
+            log.warn("CountByFrom called with null or empty fromUserId");
+            return 0L;
+        }
+
+        try {
+            return jedisCluster.scard(fromIndexKey(fromUserId));
+        } catch (Exception e) {
+            log.error("Error occurred while counting messages from user: {}", fromUserId, e);
+            return 0L;
+        }
+    }
+
+    @Override
+    public long countByTo(final UUID toUserId) {
+        if (Guard.isNullOrEmpty(toUserId)) {
+            log.warn("CountByTo called with null or empty toUserId");
+            return 0L;
+        }
+
+        try {
+            return jedisCluster.scard(toIndexKey(toUserId));
+        } catch (Exception e) {
+            log.error("Error occurred while counting messages to user: {}", toUserId, e);
+            return 0L;
+        }
+    }
+
+    @Override
+    public boolean existsById(final UUID id) {
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("ExistsById called with null or empty id");
+            return false;
+        }
+
+        try {
+            return jedisCluster.exists(messageKey(id));
+        } catch (Exception e) {
+            log.error("Error occurred while checking message existence: {}", id, e);
+            return false;
+        }
+    }
+
+    /**
+     * Удалить все сообщения (ОСТОРОЖНО!).
+     *
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> deleteAll() {
+        return deleteAll((scannedKeys, deletedKeys) -> { });
+    }
+
+    /**
+     * Удалить все сообщения (ОСТОРОЖНО!) инкрементально: SCAN по ведущим узлам,
+     * ключи раскладки сообщений из каждой страницы удаляются через UNLINK в cluster pipeline.
+     *
+     * @param progressListener обработчик прогресса, вызывается после каждой страницы
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> deleteAll(final DeleteAllProgressListener progressListener) {
+        log.warn("Attempting to delete ALL messages from Redis Cluster");
+
+        if (Guard.isNull(progressListener)) {
+            log.warn("DeleteAll called with null progress listener");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("progressListener"));
+        }
+
+        try {
+            final ScanIteration iteration = jedisCluster.scanIteration(SCAN_COUNT, "*");
+            long deleted = 0;
+            while (!iteration.isIterationCompleted()) {
+                final ScanResult<String> page = iteration.nextBatch();
+                final List<String> keys = page.getResult().stream()
+                        .filter(ClusterMessageKeys::isMessageLayoutKey)
+                        .toList();
+
+                long unlinked = 0;
+                if (!keys.isEmpty()) {
+                    final List<Response<Long>> responses = new ArrayList<>(keys.size());
+                    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+                        keys.forEach(key -> responses.add(pipeline.unlink(key)));
+                        pipeline.sync();
+                    }
+                    for (Response<Long> response : responses) {
+                        unlinked += response.get();
+                    }
+                }
+
+                deleted += unlinked;
+                progressListener.onProgress(page.getResult().size(), unlinked);
+            }
+
+            log.warn("Successfully deleted {} message keys and indexes", deleted);
+            return UnitResult.success();
+        } catch (Exception e) {
+            log.error("Error occurred while deleting all messages", e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    /**
+     * Вызов скрипта в слоте одного пользователя, поставленный в pipeline.
+     *
+     * @param index    позиция сообщения в пакете
+     * @param script   скрипт
+     * @param keys     KEYS скрипта
+     * @param args     ARGV скрипта
+     * @param response отложенный ответ
+     */
+    private record ScriptCall(int index, LuaScript script, List<byte[]> keys, List<byte[]> args,
+                              Response<Object> response) {
+
+        /**
+         * index_message.lua: записи сообщения в индексах пользователя.
+         */
+        static ScriptCall index(final ClusterPipeline pipeline, final int index, final Message message,
+                                final UUID userId) {
+            return add(pipeline, index, INDEX_SCRIPT, userIndexKeys(message, userId), userIndexArgs(message, userId));
+        }
+
+        /**
+         * tombstone_message.lua: запись об удалении сообщения в ленте изменений пользователя.
+         */
+        static ScriptCall tombstone(final ClusterPipeline pipeline, final int index, final Message message,
+                                    final UUID userId) {
+            return add(pipeline, index, TOMBSTONE_SCRIPT, tombstoneKeys(userId), tombstoneArgs(message.getId()));
+        }
+
+        private static ScriptCall add(final ClusterPipeline pipeline, final int index, final LuaScript script,
+                                      final List<byte[]> keys, final List<byte[]> args) {
+            return new ScriptCall(index, script, keys, args, script.eval(pipeline, keys, args));
+        }
+    }
+
+    /**
+     * Дождаться вызовов скриптов. Вызовы, получившие NOSCRIPT на узле, повторяются
+     * через EVAL; остальные ошибки становятся результатом сообщения.
+     */
+    private void completeScriptCalls(final List<ScriptCall> calls, final List<UnitResult<Error>> results,
+                                     final IntFunction<UUID> idOf) {
+        for (ScriptCall call : calls) {
+            try {
+                call.response().get();
+            } catch (JedisNoScriptException e) {
+                try {
+                    call.script().eval(jedisCluster, call.keys(), call.args());
+                } catch (Exception retryError) {
+                    fail(results, call.index(), idOf.apply(call.index()), retryError);
+                }
+            } catch (Exception e) {
+                fail(results, call.index(), idOf.apply(call.index()), e);
+            }
+        }
+    }
+
+    /**
+     * Удалить записи сообщения из индексов его участников (в слотах участников).
+     */
+    private static void removeFromIndexes(final ClusterPipeline pipeline, final Message message) {
+        final String member = message.getId().toString();
+        pipeline.srem(fromIndexKey(message.getFrom()), member);
+        pipeline.srem(toIndexKey(message.getTo()), member);
+        for (UUID userId : participants(message)) {
+            final UUID otherId = userId.equals(message.getFrom()) ? message.getTo() : message.getFrom();
+            pipeline.zrem(conversationKey(userId, otherId), member);
+            pipeline.zrem(updatesKey(userId), member);
+        }
+    }
+
+    private static void fail(final List<UnitResult<Error>> results, final int index, final UUID id, final Exception e) {
+        if (results.get(index) == null) {
+            log.error("Redis Cluster operation failed for message: {}", id, e);
+            results.set(index, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+        }
+    }
+
+    private static void fillFailures(final List<UnitResult<Error>> results, final Exception e) {
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                results.set(i, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+            }
+        }
+    }
+
+    /**
+     * Опубликовать сохранённые сообщения в messages:events.
+     * PUBLISH в кластере доходит до подписчиков на любом узле.
+     */
+    private void publishSaved(final List<byte[]> encodedMessages) {
+        for (byte[] encoded : encodedMessages) {
+            try {
+                jedisCluster.publish(MESSAGE_EVENTS_CHANNEL_BYTES, encoded);
+            } catch (Exception e) {
+                log.warn("Failed to publish saved message", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Значения сообщений одним cluster pipeline GET, в порядке ids (null для отсутствующих).
+     * Pipeline группирует команды по узлам слотов, поэтому число round trip - по числу узлов.
+     */
+    private List<byte[]> getValues(final List<UUID> ids) {
+        return getValuesByKeys(ids.stream().map(ClusterMessageKeys::messageKey).toList());
+    }
+
+    private List<byte[]> getValuesByKeys(final List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Response<byte[]>> responses = new ArrayList<>(keys.size());
+        try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+            for (byte[] key : keys) {
+                responses.add(pipeline.get(key));
+            }
+            pipeline.sync();
+        }
+        return responses.stream().map(Response::get).toList();
+    }
+
+    private List<Message> getMessagesByIds(final Collection<String> messageIds) {
+        return decodeAll(getValuesByKeys(messageIds.stream().map(ClusterMessageKeys::messageKey).toList()));
+    }
+
+    private List<Message> getMessagesByKeys(final Collection<String> keys) {
+        return decodeAll(getValuesByKeys(keys.stream().map(SafeEncoder::encode).toList()));
+    }
+
+    private List<Message> decodeAll(final List<byte[]> values) {
+        return values.stream()
+                .map(this::decode)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private Message decode(final byte[] value) {
+        if (value == null || value.length == 0) {
+            return null;
+        }
+        final Result<Message, Error> messageResult = messageCodec.decode(value);
+        if (messageResult.isFailure()) {
+            log.error("Failed to decode message: {}", messageResult.getError().getMessage());
+            return null;
+        }
+        return messageResult.getValue();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.test.the.best.chat.message.repository;
+
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Курсор страницы переписки: время первого сообщения предыдущей страницы (score в мс) и его ID.
+ * <p>
+ * Сообщения одной миллисекунды в Sorted Set упорядочены по байтам member, поэтому граница страницы
+ * задаётся парой (score, member): следующая страница - сообщения этой миллисекунды с member меньше
+ * курсора и затем сообщения строго раньше неё. Только время как граница теряло бы остаток миллисекунды,
+ * если страница заканчивалась посреди сообщений с одинаковым временем (например, при групповой записи).
+ * Текстовый и бинарный ID UUID упорядочены одинаково (шестнадцатеричные цифры в нижнем регистре),
+ * поэтому порядок не зависит от раскладки ключей.
+ * Без ID курсора граница - строго раньше момента, как в первых версиях API.
+ *
+ * @param before   время первого сообщения предыдущей страницы или null - самые свежие
+ * @param beforeId ID первого сообщения предыдущей страницы или null
+ */
+record ConversationCursor(Instant before, UUID beforeId) {
+
+    /**
+     * Порядок страницы переписки от новых к старым - тот же, что у ZREVRANGEBYSCORE.
+     */
+    static final Comparator<Message> NEWEST_FIRST = Comparator
+            .<Message>comparingLong(message -> message.getDate().toEpochMilli())
+            .thenComparing(message -> message.getId().toString())
+            .reversed();
+
+    static ConversationCursor of(final Instant before, final UUID beforeId) {
+        return new ConversationCursor(before, before == null ? null : beforeId);
+    }
+
+    /**
+     * Нужно ли отдельно читать сообщения миллисекунды курсора.
+     */
+    boolean hasBoundary() {
+        return beforeId != null;
+    }
+
+    /**
+     * Верхняя граница ZREVRANGEBYSCORE для сообщений строго раньше миллисекунды курсора.
+     */
+    String olderMaxScore() {
+        return before == null ? "+inf" : "(" + before.toEpochMilli();
+    }
+
+    /**
+     * Score миллисекунды курсора (для чтения границы ZREVRANGEBYSCORE score score).
+     */
+    String boundaryScore() {
+        return Long.toString(before.toEpochMilli());
+    }
+
+    /**
+     * Стоит ли member из миллисекунды курсора после курсора в порядке страницы.
+     *
+     * @param member       member Sorted Set
+     * @param cursorMember member сообщения курсора в той же раскладке
+     */
+    static boolean isOlder(final byte[] member, final byte[] cursorMember) {
+        return Arrays.compareUnsigned(member, cursorMember) < 0;
+    }
+
+    /**
+     * Собрать страницу от новых к старым: подходящие сообщения миллисекунды курсора, затем более ранние.
+     *
+     * @param boundary все member миллисекунды курсора от новых к старым
+     * @param older    первые limit member строго раньше курсора от новых к старым
+     * @param isOlder  проверка member миллисекунды курсора
+     * @param limit    максимальный размер страницы
+     * @return до limit member от новых к старым
+     */
+    static <M> List<M> page(final List<M> boundary, final List<M> older, final Predicate<M> isOlder, final int limit) {
+        final List<M> page = new ArrayList<>(Math.min(limit, boundary.size() + older.size()));
+        for (M member : boundary) {
+            if (page.size() == limit) return page;
+            if (isOlder.test(member)) page.add(member);
+        }
+        for (M member : older) {
+            if (page.size() == limit) return page;
+            page.add(member);
+        }
+        return page;
+    }
+}
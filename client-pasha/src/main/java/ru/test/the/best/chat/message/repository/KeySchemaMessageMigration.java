@@ -0,0 +1,192 @@
+package ru.test.the.best.chat.message.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.params.ZAddParams;
+import redis.clients.jedis.resps.ScanResult;
+import ru.test.the.best.chat.codec.MessageCodec;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.model.dto.admin.KeySchemaMigrationStatusResponse;
+import ru.test.the.best.chat.redis.KeySchema;
+import ru.test.the.best.chat.redis.KeySchemaMigrationJob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Фоновый перенос сообщений между раскладками ключей одного Redis ({@link MessageKeyLayout}):
+ * из другой раскладки в ту, что задана messages.key-schema.
+ * <p>
+ * Источник обходится через SSCAN messages:all своей раскладки. Значения переносятся с оставшимся TTL,
+ * записи лент изменений сохраняют номер из messages:seq (счётчик общий), поэтому курсоры клиентов
+ * остаются валидными. Затем ключи исходной раскладки удаляются через SCAN + UNLINK.
+ * Запускать после переключения всех экземпляров на новую раскладку; повторный запуск безопасен.
+ * Состояние и счётчики задачи ведёт {@link KeySchemaMigrationJob}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = {"messages.sharding.enabled", "redis.cluster.enabled"}, havingValue = "false", matchIfMissing = true)
+public class KeySchemaMessageMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JedisPool jedisPool;
+    private final MessageCodec<Message> messageCodec;
+    private final MessageKeyLayout target;
+    private final KeySchemaMigrationJob job;
+
+    public KeySchemaMessageMigration(
+            final JedisPool jedisPool,
+            final MessageCodec<Message> messageCodec,
+            @Value("${messages.key-schema:TEXT}") final KeySchema keySchema) {
+        this.jedisPool = jedisPool;
+        this.messageCodec = messageCodec;
+        this.target = MessageKeyLayout.of(keySchema);
+        this.job = new KeySchemaMigrationJob(keySchema, this::migrate);
+    }
+
+    /**
+     * Запустить перенос сообщений в фоне.
+     *
+     * @return Result с состоянием запущенной задачи или data.conflict, если задача уже выполняется
+     */
+    public Result<KeySchemaMigrationStatusResponse, Error> start() {
+        return job.start();
+    }
+
+    /**
+     * Текущее состояние задачи.
+     *
+     * @return состояние последнего запуска или IDLE, если задача не запускалась
+     */
+    public KeySchemaMigrationStatusResponse status() {
+        return job.status();
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private UnitResult<Error> migrate(final KeySchema sourceSchema, final KeySchemaMigrationJob.ProgressListener listener) {
+        final MessageKeyLayout source = MessageKeyLayout.of(sourceSchema);
+        try (Jedis jedis = jedisPool.getResource()) {
+            final ScanParams params = new ScanParams().count(BATCH_SIZE);
+            byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+            do {
+                final ScanResult<byte[]> page = jedis.sscan(source.allMessagesKey(), cursor, params);
+                migrateBatch(jedis, source, page.getResult(), listener);
+                cursor = page.getCursorAsBytes();
+            } while (!Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, cursor));
+
+            deleteSourceKeys(jedis, source, listener);
+            return UnitResult.success();
+        } catch (Exception e) {
+            log.error("Error occurred while migrating messages from {} key schema", sourceSchema, e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Перенести пачку сообщений: чтение значений и номеров изменений двумя pipeline, запись одним pipeline.
+     */
+    private void migrateBatch(final Jedis jedis, final MessageKeyLayout source, final List<byte[]> members,
+                              final KeySchemaMigrationJob.ProgressListener listener) {
+        if (members.isEmpty()) {
+            return;
+        }
+
+        final List<Response<byte[]>> values = new ArrayList<>(members.size());
+        final List<Response<Long>> ttls = new ArrayList<>(members.size());
+        Pipeline pipeline = jedis.pipelined();
+        for (byte[] member : members) {
+            values.add(pipeline.get(source.messageKey(member)));
+            ttls.add(pipeline.pttl(source.messageKey(member)));
+        }
+        pipeline.sync();
+
+        final List<Message> messages = new ArrayList<>(members.size());
+        final List<byte[]> encoded = new ArrayList<>(members.size());
+        final List<Long> remainingTtls = new ArrayList<>(members.size());
+        final List<Response<Double>> fromSequences = new ArrayList<>(members.size());
+        final List<Response<Double>> toSequences = new ArrayList<>(members.size());
+        pipeline = jedis.pipelined();
+        for (int i = 0; i < members.size(); i++) {
+            final byte[] value = values.get(i).get();
+            final long ttl = ttls.get(i).get();
+            final Result<Message, Error> decoded = value == null ? null : messageCodec.decode(value);
+            if (decoded == null || decoded.isFailure() || ttl == -2) {
+                continue;
+            }
+            final Message message = decoded.getValue();
+            messages.add(message);
+            encoded.add(value);
+            remainingTtls.add(ttl);
+            fromSequences.add(pipeline.zscore(source.updatesKey(message.getFrom()), members.get(i)));
+            toSequences.add(pipeline.zscore(source.updatesKey(message.getTo()), members.get(i)));
+        }
+        pipeline.sync();
+
+        pipeline = jedis.pipelined();
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = messages.get(i);
+            final byte[] member = target.member(message.getId());
+            final byte[] key = target.messageKey(message.getId());
+            final long ttl = remainingTtls.get(i);
+            if (ttl > 0) {
+                pipeline.psetex(key, ttl, encoded.get(i));
+            } else {
+                pipeline.set(key, encoded.get(i));
+            }
+
+            pipeline.sadd(target.fromIndexKey(message.getFrom()), member);
+            pipeline.sadd(target.toIndexKey(message.getTo()), member);
+            pipeline.sadd(target.allMessagesKey(), member);
+            pipeline.zadd(target.conversationKey(message.getFrom(), message.getTo()),
+                    message.getDate().toEpochMilli(), member);
+            pipeline.hset(target.ownersKey(), member, target.owners(message));
+
+            // NX: запись, уже сделанная экземпляром на новой раскладке, новее перенесённой
+            addUpdate(pipeline, target.updatesKey(message.getFrom()), fromSequences.get(i).get(), member);
+            addUpdate(pipeline, target.updatesKey(message.getTo()), toSequences.get(i).get(), member);
+        }
+        pipeline.sync();
+
+        listener.onProgress(messages.size(), members.size() - messages.size(), 0);
+        log.debug("Key schema migration: migrated batch of {} messages", messages.size());
+    }
+
+    private static void addUpdate(final Pipeline pipeline, final byte[] key, final Double sequence, final byte[] member) {
+        if (sequence != null) {
+            pipeline.zadd(key, sequence, member, ZAddParams.zAddParams().nx());
+        }
+    }
+
+    /**
+     * Удалить ключи исходной раскладки. Счётчик messages:seq общий и не удаляется.
+     */
+    private void deleteSourceKeys(final Jedis jedis, final MessageKeyLayout source,
+                                  final KeySchemaMigrationJob.ProgressListener listener) {
+        final ScanParams params = new ScanParams().count(BATCH_SIZE);
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        do {
+            final ScanResult<byte[]> page = jedis.scan(cursor, params);
+            final byte[][] keys = page.getResult().stream()
+                    .filter(source::isLayoutKey)
+                    .toArray(byte[][]::new);
+            if (keys.length > 0) {
+                listener.onProgress(0, 0, jedis.unlink(keys));
+            }
+            cursor = page.getCursorAsBytes();
+        } while (!Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, cursor));
+    }
+}
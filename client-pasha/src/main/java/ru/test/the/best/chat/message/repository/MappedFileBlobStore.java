@@ -0,0 +1,211 @@
+package ru.test.the.best.chat.message.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.test.the.best.chat.codec.BlobReference;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Guard;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.id.UuidV7;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище блобов в локальных файлах {directory}/{последние 2 символа id}/{id}.blob
+ * (начало UUIDv7 - время, поэтому каталог выбирается по случайному концу).
+ * Файл пишется во временный по мере чтения и атомарно переименовывается, поэтому читатель
+ * не видит недописанный блоб. Читается отображением в память (FileChannel.map) без промежуточных
+ * буферов: при выдаче диапазона отображённый регион окнами по {@link #MAP_WINDOW} байт пишется прямо в канал ответа.
+ * <p>
+ * Файлы старше срока хранения сообщений удаляются по расписанию (messages.blob.file.sweep-interval-ms).
+ * Каталог должен быть общим для всех экземпляров приложения (например, сетевой том).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "messages.blob.store", havingValue = "file")
+public class MappedFileBlobStore implements BlobStore {
+
+    private static final String BLOB_SUFFIX = ".blob";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Duration BLOB_TTL = Duration.ofSeconds(RedisMessageKeys.MESSAGE_TTL);
+    private static final long MAP_WINDOW = 16L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    public MappedFileBlobStore(@Value("${messages.blob.file.directory:./data/blobs}") final Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+        log.info("File blob store directory: {}", this.directory);
+    }
+
+    @Override
+    public Result<BlobReference, Error> put(final InputStream input, final long maxBytes) {
+        if (Guard.isNull(input)) return Result.failure(GeneralErrors.valueIsEmpty("data"));
+
+        final UUID id = UuidV7.next();
+        final Path path = path(id);
+        long size = 0;
+        try {
+            Files.createDirectories(path.getParent());
+            final Path temp = Files.createTempFile(path.getParent(), id.toString(), TEMP_SUFFIX);
+            try {
+                try (OutputStream output = Files.newOutputStream(temp)) {
+                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    while (true) {
+                        final int read;
+                        try {
+                            read = input.read(buffer);
+                        } catch (IOException e) {
+                            log.warn("Blob upload {} was interrupted after {} bytes: {}", id, size, e.getMessage());
+                            return Result.failure(GeneralErrors.valueIsInvalid("data", "upload was interrupted"));
+                        }
+                        if (read == -1) {
+                            break;
+                        }
+
+                        size += read;
+                        if (size > maxBytes) {
+                            log.warn("Blob upload {} exceeds limit of {} bytes", id, maxBytes);
+                            return Result.failure(GeneralErrors.payloadTooLarge(maxBytes));
+                        }
+                        output.write(buffer, 0, read);
+                    }
+                }
+
+                if (size == 0) return Result.failure(GeneralErrors.valueIsEmpty("data"));
+
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            log.debug("Stored blob {} of {} bytes in {}", id, size, path);
+            return Result.success(new BlobReference(id, size));
+        } catch (IOException e) {
+            log.error("Error occurred while storing blob {} after {} bytes", id, size, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    @Override
+    public Result<byte[], Error> read(final BlobReference reference) {
+        if (Guard.isNull(reference)) return Result.failure(GeneralErrors.valueIsRequired("reference"));
+        if (reference.size() > Integer.MAX_VALUE)
+            return Result.failure(GeneralErrors.illegalState("Blob is too large to read into memory: " + reference.size()));
+
+        try (FileChannel channel = FileChannel.open(path(reference.id()), StandardOpenOption.READ)) {
+            if (channel.size() != reference.size()) {
+                log.warn("Blob {} has size {} instead of {}", reference.id(), channel.size(), reference.size());
+                return Result.failure(GeneralErrors.entityNotFound("Blob", reference.id()));
+            }
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, reference.size());
+            final byte[] data = new byte[(int) reference.size()];
+            buffer.get(data);
+            return Result.success(data);
+        } catch (NoSuchFileException e) {
+            log.warn("Blob {} is missing", reference.id());
+            return Result.failure(GeneralErrors.entityNotFound("Blob", reference.id()));
+        } catch (IOException e) {
+            log.error("Error occurred while reading blob: {}", reference.id(), e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    @Override
+    public void transferTo(
+            final BlobReference reference, final long offset, final long length, final WritableByteChannel channel
+    ) throws IOException {
+        reference.checkRange(offset, length);
+
+        try (FileChannel file = FileChannel.open(path(reference.id()), StandardOpenOption.READ)) {
+            if (file.size() != reference.size()) {
+                throw new IOException("Blob " + reference.id() + " has size " + file.size()
+                        + " instead of " + reference.size());
+            }
+
+            for (long position = offset; position < offset + length; position += MAP_WINDOW) {
+                final long size = Math.min(MAP_WINDOW, offset + length - position);
+                final MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, position, size);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    @Override
+    public UnitResult<Error> delete(final BlobReference reference) {
+        if (Guard.isNull(reference)) return UnitResult.failure(GeneralErrors.valueIsRequired("reference"));
+
+        try {
+            if (Files.deleteIfExists(path(reference.id()))) {
+                log.debug("Deleted blob {}", reference.id());
+            }
+            return UnitResult.success();
+        } catch (IOException e) {
+            log.error("Error occurred while deleting blob: {}", reference.id(), e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Удалить блобы старше срока хранения сообщений и брошенные временные файлы.
+     */
+    @Scheduled(fixedDelayString = "${messages.blob.file.sweep-interval-ms:3600000}")
+    public void sweep() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        final Instant expiredBefore = Instant.now().minus(BLOB_TTL);
+        long deleted = 0;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (isExpired(file, expiredBefore) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error occurred while sweeping expired blobs in {}", directory, e);
+        }
+
+        if (deleted > 0) {
+            log.info("Blob sweep deleted {} expired files", deleted);
+        }
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private Path path(final UUID id) {
+        final String name = id.toString();
+        return directory.resolve(name.substring(name.length() - 2)).resolve(name + BLOB_SUFFIX);
+    }
+
+    private static boolean isExpired(final Path file, final Instant expiredBefore) throws IOException {
+        final String name = file.getFileName().toString();
+        if (!Files.isRegularFile(file) || !(name.endsWith(BLOB_SUFFIX) || name.endsWith(TEMP_SUFFIX))) {
+            return false;
+        }
+        return Files.getLastModifiedTime(file).toInstant().isBefore(expiredBefore);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.test.the.best.chat.message.repository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.JedisPool;
+import ru.test.the.best.chat.codec.MessageCodec;
+import ru.test.the.best.chat.core.redis.RedisSubscriber;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.MESSAGE_EVENTS_CHANNEL;
+
+/**
+ * Подписка на канал messages:events, в который {@link RedisMessageRepository} публикует сохранённые сообщения.
+ * Сообщения от всех экземпляров приложения (включая этот) декодируются и передаются обработчикам.
+ * <p>
+ * Обработчики вызываются в потоке подписки и не должны блокироваться:
+ * медленную доставку клиентам нужно выносить в свои потоки.
+ */
+@Slf4j
+@Component
+public class MessageEventSubscriber {
+
+    private final JedisPool jedisPool;
+    private final MessageCodec<Message> messageCodec;
+    private final List<Consumer<Message>> listeners = new CopyOnWriteArrayList<>();
+
+    private RedisSubscriber subscriber;
+
+    public MessageEventSubscriber(final JedisPool jedisPool, final MessageCodec<Message> messageCodec) {
+        this.jedisPool = Objects.requireNonNull(jedisPool, "JedisPool cannot be null");
+        this.messageCodec = Objects.requireNonNull(messageCodec, "MessageCodec cannot be null");
+    }
+
+    /**
+     * Зарегистрировать обработчик сохранённых сообщений.
+     *
+     * @param listener обработчик
+     */
+    public void addListener(final Consumer<Message> listener) {
+        listeners.add(Objects.requireNonNull(listener, "Listener cannot be null"));
+    }
+
+    /**
+     * Подписаться на канал после старта приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (subscriber != null) {
+            return;
+        }
+        subscriber = RedisSubscriber.channels(jedisPool, "message-events", this::onEvent, MESSAGE_EVENTS_CHANNEL);
+        subscriber.start();
+        log.info("Subscribed to saved message events");
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (subscriber != null) {
+            subscriber.close();
+            subscriber = null;
+        }
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void onEvent(final String channel, final byte[] payload) {
+        final Result<Message, Error> messageResult = messageCodec.decode(payload);
+        if (messageResult.isFailure()) {
+            log.error("Failed to decode saved message event: {}", messageResult.getError().getMessage());
+            return;
+        }
+
+        final Message message = messageResult.getValue();
+        for (Consumer<Message> listener : listeners) {
+            try {
+                listener.accept(message);
+            } catch (Exception e) {
+                log.error("Saved message listener failed for message: {}", message.getId(), e);
+            }
+        }
+    }
+}
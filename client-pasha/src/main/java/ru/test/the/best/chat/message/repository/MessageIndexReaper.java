@@ -0,0 +1,471 @@
+package ru.test.the.best.chat.message.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.resps.Tuple;
+import ru.test.the.best.chat.core.redis.RedisSubscriber;
+import ru.test.the.best.chat.id.UuidV7;
+import ru.test.the.best.chat.redis.KeySchema;
+import ru.test.the.best.chat.redis.LuaScript;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.MESSAGE_TTL;
+
+/**
+ * Фоновая очистка индексов от ID сообщений, у которых истёк TTL.
+ * <p>
+ * Redis удаляет message:{id} сам, а записи в индексах остаются навсегда.
+ * Основной путь - уведомления keyspace о событии expired (нужен notify-keyspace-events Ex):
+ * ID попадает в очередь, и отдельный поток вычищает его из всех индексов скриптом reap_message.lua,
+ * беря участников переписки из хэша владельцев.
+ * <p>
+ * Уведомления не гарантированы (Pub/Sub без доставки при обрыве соединения, переполнение очереди,
+ * сообщения, сохранённые до появления хэша владельцев), поэтому по расписанию выполняется
+ * инкрементальный обход индексов через SCAN/SSCAN/ZSCAN/HSCAN с проверкой EXISTS.
+ * <p>
+ * Ключи и члены индексов берутся в раскладке messages.key-schema ({@link MessageKeyLayout}).
+ * Бин работает с одним Redis ({@link RedisMessageRepository}): при шардировании и в Redis Cluster
+ * индексы лежат не на основном Redis, и бин не создаётся. {@link ShardedRedisMessageRepository}
+ * создаёт по экземпляру на каждый шард ({@link #forPool}) и сам вызывает {@link #sweep()}.
+ * Метрики помечены тегом pool: primary для бина, имя шарда для экземпляров шардов.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = {"messages.sharding.enabled", "redis.cluster.enabled"}, havingValue = "false", matchIfMissing = true)
+public class MessageIndexReaper {
+
+    private static final String EXPIRED_EVENTS_PATTERN = "__keyevent@*__:expired";
+    private static final int EVENT_QUEUE_CAPACITY = 10_000;
+
+    private static final LuaScript REAP_SCRIPT = LuaScript.fromClasspath("reap_message.lua");
+
+    private static final String SOURCE_EVENT = "event";
+    private static final String SOURCE_SWEEP = "sweep";
+    private static final String PRIMARY_POOL = "primary";
+
+    private final JedisPool jedisPool;
+    private final String poolName;
+    private final MessageKeyLayout layout;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int sweepPagesPerRun;
+
+    private final BlockingQueue<ExpiredMessage> expiredMessages = new ArrayBlockingQueue<>(EVENT_QUEUE_CAPACITY);
+    private final Counter eventReapedCounter;
+    private final Counter sweepReapedCounter;
+    private final Counter droppedEventsCounter;
+    private final Timer eventLagTimer;
+    private final AtomicLong lastSweepCompletedAt = new AtomicLong(System.currentTimeMillis());
+
+    // Состояние обхода: меняется только из потока планировщика
+    private final Deque<byte[]> pendingIndexKeys = new ArrayDeque<>();
+    private byte[] keyCursor = ScanParams.SCAN_POINTER_START_BINARY;
+    private byte[] memberCursor = ScanParams.SCAN_POINTER_START_BINARY;
+    private boolean keyScanFinished;
+
+    private volatile boolean running;
+    private RedisSubscriber subscriber;
+    private Thread worker;
+
+    @Autowired
+    public MessageIndexReaper(
+            final JedisPool jedisPool,
+            final MeterRegistry meterRegistry,
+            @Value("${messages.key-schema:TEXT}") final KeySchema keySchema,
+            @Value("${messages.reaper.enabled:true}") final boolean enabled,
+            @Value("${messages.reaper.batch-size:500}") final int batchSize,
+            @Value("${messages.reaper.sweep-pages-per-run:10}") final int sweepPagesPerRun) {
+        this(jedisPool, PRIMARY_POOL, meterRegistry, keySchema, enabled, batchSize, sweepPagesPerRun);
+    }
+
+    private MessageIndexReaper(final JedisPool jedisPool, final String poolName, final MeterRegistry meterRegistry,
+                               final KeySchema keySchema, final boolean enabled,
+                               final int batchSize, final int sweepPagesPerRun) {
+        this.jedisPool = Objects.requireNonNull(jedisPool, "JedisPool cannot be null");
+        this.poolName = Objects.requireNonNull(poolName, "Pool name cannot be null");
+        this.layout = MessageKeyLayout.of(Objects.requireNonNull(keySchema, "KeySchema cannot be null"));
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.sweepPagesPerRun = sweepPagesPerRun;
+
+        this.eventReapedCounter = Counter.builder("messages.reaper.reaped")
+                .description("ID сообщений, вычищенных из индексов")
+                .tag("source", SOURCE_EVENT)
+                .tag("pool", poolName)
+                .register(meterRegistry);
+        this.sweepReapedCounter = Counter.builder("messages.reaper.reaped")
+                .description("ID сообщений, вычищенных из индексов")
+                .tag("source", SOURCE_SWEEP)
+                .tag("pool", poolName)
+                .register(meterRegistry);
+        this.droppedEventsCounter = Counter.builder("messages.reaper.events.dropped")
+                .description("Уведомления об истечении, не поместившиеся в очередь (дочистит обход)")
+                .tag("pool", poolName)
+                .register(meterRegistry);
+        this.eventLagTimer = Timer.builder("messages.reaper.event.lag")
+                .description("Время от уведомления об истечении до очистки индексов")
+                .tag("pool", poolName)
+                .register(meterRegistry);
+        Gauge.builder("messages.reaper.events.pending", expiredMessages, Collection::size)
+                .description("Уведомления об истечении, ожидающие очистки")
+                .tag("pool", poolName)
+                .register(meterRegistry);
+        Gauge.builder("messages.reaper.sweep.age.seconds", lastSweepCompletedAt,
+                        completedAt -> (System.currentTimeMillis() - completedAt.get()) / 1000.0)
+                .description("Секунды с момента последнего полного обхода индексов")
+                .tag("pool", poolName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Экземпляр для отдельного сервера Redis, не управляемый Spring: запуск, остановку и вызов
+     * {@link #sweep()} по расписанию выполняет владелец пула.
+     *
+     * @param jedisPool пул сервера с индексами сообщений
+     * @param poolName  имя сервера для метрик и потоков
+     */
+    static MessageIndexReaper forPool(final JedisPool jedisPool, final String poolName,
+                                      final MeterRegistry meterRegistry, final KeySchema keySchema,
+                                      final boolean enabled, final int batchSize, final int sweepPagesPerRun) {
+        return new MessageIndexReaper(jedisPool, poolName, meterRegistry, keySchema, enabled, batchSize, sweepPagesPerRun);
+    }
+
+    /**
+     * Подписаться на уведомления об истечении ключей и запустить поток очистки.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            REAP_SCRIPT.load(jedis);
+            warnIfExpiredEventsDisabled(jedis);
+        } catch (Exception e) {
+            log.warn("Failed to prepare message index reaper, relying on NOSCRIPT reload", e);
+        }
+
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("message-index-reaper-" + poolName)
+                .daemon()
+                .start(this::processExpiredMessages);
+        subscriber = RedisSubscriber.patterns(jedisPool, "message-expired-events-" + poolName,
+                this::onExpiredKey, EXPIRED_EVENTS_PATTERN);
+        subscriber.start();
+        log.info("Message index reaper started on {} Redis", poolName);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (subscriber != null) {
+            subscriber.close();
+        }
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Один шаг инкрементального обхода индексов: до sweep-pages-per-run страниц SCAN/SSCAN/ZSCAN/HSCAN.
+     * Полный цикл проходит всё пространство ключей; его давность видна в метрике messages.reaper.sweep.age.seconds.
+     */
+    @Scheduled(fixedDelayString = "${messages.reaper.sweep-interval-ms:1000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            long reaped = 0;
+            for (int page = 0; page < sweepPagesPerRun; page++) {
+                if (pendingIndexKeys.isEmpty()) {
+                    if (keyScanFinished) {
+                        finishSweepCycle();
+                        break;
+                    }
+                    scanIndexKeys(jedis);
+                    continue;
+                }
+                reaped += sweepIndexPage(jedis, pendingIndexKeys.peekFirst());
+            }
+
+            if (reaped > 0) {
+                sweepReapedCounter.increment(reaped);
+                log.info("Index sweep reaped {} expired message ids on {} Redis", reaped, poolName);
+            }
+        } catch (Exception e) {
+            log.error("Error occurred while sweeping message indexes on {} Redis", poolName, e);
+        }
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void onExpiredKey(final String channel, final byte[] key) {
+        final UUID id = layout.idFromMessageKey(key);
+        if (id == null) {
+            return;
+        }
+
+        if (!expiredMessages.offer(new ExpiredMessage(layout.member(id), System.nanoTime()))) {
+            droppedEventsCounter.increment();
+        }
+    }
+
+    private void processExpiredMessages() {
+        final List<ExpiredMessage> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                final ExpiredMessage first = expiredMessages.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                expiredMessages.drainTo(batch, batchSize - 1);
+
+                try (Jedis jedis = jedisPool.getResource()) {
+                    final long reaped = reap(jedis, batch.stream().map(ExpiredMessage::id).toList());
+                    eventReapedCounter.increment(reaped);
+                }
+
+                final long now = System.nanoTime();
+                for (ExpiredMessage message : batch) {
+                    eventLagTimer.record(Duration.ofNanos(now - message.receivedAtNanos()));
+                }
+                log.debug("Reaped {} expired message ids from indexes", batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // ID не теряются безвозвратно: их дочистит обход индексов
+                log.error("Error occurred while reaping {} expired message ids", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Вычистить ID из всех индексов одним pipeline вызовов reap_message.lua.
+     *
+     * @return количество ID, у которых действительно не было сообщения
+     */
+    private long reap(final Jedis jedis, final List<byte[]> ids) {
+        try {
+            return reapPipelined(jedis, ids);
+        } catch (JedisNoScriptException e) {
+            REAP_SCRIPT.load(jedis);
+            return reapPipelined(jedis, ids);
+        }
+    }
+
+    private long reapPipelined(final Jedis jedis, final List<byte[]> ids) {
+        final List<byte[]> owners = jedis.hmget(layout.ownersKey(), ids.toArray(byte[][]::new));
+        final Pipeline pipeline = jedis.pipelined();
+        final List<Response<Object>> responses = new ArrayList<>(ids.size());
+
+        for (int i = 0; i < ids.size(); i++) {
+            final byte[] id = ids.get(i);
+            final UUID[] participants = parseOwners(owners.get(i));
+            final List<byte[]> templates = participants == null
+                    ? layout.staticIndexTemplates()
+                    : layout.indexTemplates();
+
+            final List<byte[]> keys = new ArrayList<>(templates.size() + 2);
+            keys.add(layout.messageKey(id));
+            keys.add(layout.ownersKey());
+            keys.addAll(participants == null
+                    ? layout.staticIndexKeys()
+                    : layout.indexKeys(participants[0], participants[1]));
+
+            final List<byte[]> args = new ArrayList<>(templates.size() + 2);
+            args.add(id);
+            args.add(owners.get(i) == null ? new byte[0] : owners.get(i));
+            args.addAll(templates);
+            responses.add(REAP_SCRIPT.eval(pipeline, keys, args));
+        }
+        pipeline.sync();
+
+        // -1: запись владельцев сменилась между HMGET и скриптом - ID останется до следующего прохода
+        return responses.stream()
+                .map(Response::get)
+                .filter(Long.valueOf(1L)::equals)
+                .count();
+    }
+
+    /**
+     * Участники из записи хэша владельцев (from и to одинаковой длины подряд).
+     *
+     * @return [from, to] или null, если записи нет или она не разбирается
+     */
+    private UUID[] parseOwners(final byte[] owners) {
+        if (owners == null || owners.length != layout.schema().idLength() * 2) {
+            return null;
+        }
+        final int half = owners.length / 2;
+        try {
+            return new UUID[]{
+                    layout.schema().parseMember(Arrays.copyOfRange(owners, 0, half)),
+                    layout.schema().parseMember(Arrays.copyOfRange(owners, half, owners.length))
+            };
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void scanIndexKeys(final Jedis jedis) {
+        final ScanResult<byte[]> page = jedis.scan(keyCursor, new ScanParams().count(batchSize));
+        keyCursor = page.getCursorAsBytes();
+        keyScanFinished = Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, keyCursor);
+
+        for (byte[] key : page.getResult()) {
+            if (layout.indexKind(key) != null) {
+                pendingIndexKeys.addLast(key);
+            }
+        }
+    }
+
+    /**
+     * Проверить одну страницу членов индекса и вычистить ID без сообщения.
+     * Ключ снимается с очереди, когда его курсор возвращается к началу.
+     * Записи об удалении в лентах изменений проверяются отдельно ({@link #isExpiredTombstone}).
+     */
+    private long sweepIndexPage(final Jedis jedis, final byte[] indexKey) {
+        final char kind = layout.indexKind(indexKey);
+        final ScanParams scanParams = new ScanParams().count(batchSize);
+
+        List<byte[]> ids;
+        switch (kind) {
+            case 'Z', 'Q' -> {
+                final ScanResult<Tuple> page = jedis.zscan(indexKey, memberCursor, scanParams);
+                memberCursor = page.getCursorAsBytes();
+                ids = page.getResult().stream().map(Tuple::getBinaryElement).toList();
+            }
+            case 'H' -> {
+                final ScanResult<Map.Entry<byte[], byte[]>> page = jedis.hscan(indexKey, memberCursor, scanParams);
+                memberCursor = page.getCursorAsBytes();
+                ids = page.getResult().stream().map(Map.Entry::getKey).toList();
+            }
+            default -> {
+                final ScanResult<byte[]> page = jedis.sscan(indexKey, memberCursor, scanParams);
+                memberCursor = page.getCursorAsBytes();
+                ids = page.getResult();
+            }
+        }
+
+        if (Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, memberCursor)) {
+            pendingIndexKeys.pollFirst();
+        }
+
+        long reapedTombstones = 0;
+        if (kind == 'Q') {
+            final List<byte[]> tombstones = ids.stream().filter(id -> layout.deletedId(id) != null).toList();
+            final byte[][] expired = tombstones.stream().filter(this::isExpiredTombstone).toArray(byte[][]::new);
+            if (expired.length > 0) {
+                reapedTombstones = jedis.zrem(indexKey, expired);
+            }
+            ids = ids.stream().filter(id -> layout.deletedId(id) == null).toList();
+        }
+
+        final List<byte[]> deadIds = findDeadIds(jedis, ids);
+        if (deadIds.isEmpty()) {
+            return reapedTombstones;
+        }
+
+        reap(jedis, deadIds);
+
+        // Для сообщений без записи в хэше владельцев скрипт чистит только статические индексы
+        final byte[][] members = deadIds.toArray(byte[][]::new);
+        switch (kind) {
+            case 'Z', 'Q' -> jedis.zrem(indexKey, members);
+            case 'H' -> jedis.hdel(indexKey, members);
+            default -> jedis.srem(indexKey, members);
+        }
+        return deadIds.size() + reapedTombstones;
+    }
+
+    /**
+     * Запись об удалении нужна, пока клиент с курсором до удаления может ещё видеть само сообщение,
+     * то есть не дольше TTL сообщения от его создания (время берётся из UUIDv7). Записи сообщений
+     * с ID без времени остались от сообщений, созданных до UUIDv7, и старше TTL.
+     */
+    private boolean isExpiredTombstone(final byte[] member) {
+        final UUID id = layout.deletedId(member);
+        return !UuidV7.isTimeOrdered(id)
+                || UuidV7.timestamp(id).isBefore(Instant.now().minusSeconds(MESSAGE_TTL));
+    }
+
+    private List<byte[]> findDeadIds(final Jedis jedis, final List<byte[]> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Pipeline pipeline = jedis.pipelined();
+        final List<Response<Boolean>> responses = new ArrayList<>(ids.size());
+        for (byte[] id : ids) {
+            responses.add(pipeline.exists(layout.messageKey(id)));
+        }
+        pipeline.sync();
+
+        final List<byte[]> deadIds = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (!responses.get(i).get()) {
+                deadIds.add(ids.get(i));
+            }
+        }
+        return deadIds;
+    }
+
+    private void finishSweepCycle() {
+        keyCursor = ScanParams.SCAN_POINTER_START_BINARY;
+        keyScanFinished = false;
+        lastSweepCompletedAt.set(System.currentTimeMillis());
+        log.debug("Message index sweep cycle completed");
+    }
+
+    private static void warnIfExpiredEventsDisabled(final Jedis jedis) {
+        try {
+            final String flags = jedis.configGet("notify-keyspace-events")
+                    .getOrDefault("notify-keyspace-events", "");
+            final boolean keyEvents = flags.contains("E");
+            final boolean expired = flags.contains("x") || flags.contains("A");
+            if (!keyEvents || !expired) {
+                log.warn("Redis notify-keyspace-events is '{}', expired events are disabled; "
+                        + "indexes will be cleaned by the periodic sweep only", flags);
+            }
+        } catch (Exception e) {
+            log.debug("Cannot read notify-keyspace-events, skipping check", e);
+        }
+    }
+
+    private record ExpiredMessage(byte[] id, long receivedAtNanos) {
+    }
+}
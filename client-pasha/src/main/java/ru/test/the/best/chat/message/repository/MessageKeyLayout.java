@@ -0,0 +1,345 @@
+package ru.test.the.best.chat.message.repository;
+
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.redis.KeySchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.*;
+
+/**
+ * Ключи и члены индексов сообщений {@link RedisMessageKeys} в заданном представлении ID ({@link KeySchema}).
+ * <p>
+ * В TEXT ключи совпадают с исторической раскладкой. В BINARY ID в ключах, членах индексов
+ * и значениях хэша владельцев занимают 16 байт, ключ переписки - conversation:{min}{max} без разделителя,
+ * статические ключи получают суффикс :bin (messages:all:bin, messages:owners:bin).
+ * Счётчик messages:seq общий для обеих раскладок.
+ */
+final class MessageKeyLayout {
+
+    private static final byte[] SET_INDEX_SPEC = SafeEncoder.encode("S");
+    private static final byte[] SEQUENCE_SPEC = SafeEncoder.encode("C");
+    private static final byte[] SEQUENCE_INDEX_SPEC = SafeEncoder.encode("Q");
+    private static final byte[] HASH_SPEC_PREFIX = SafeEncoder.encode("H");
+
+    static final MessageKeyLayout TEXT = new MessageKeyLayout(KeySchema.TEXT);
+    static final MessageKeyLayout BINARY = new MessageKeyLayout(KeySchema.BINARY);
+
+    private final KeySchema schema;
+    private final byte[] allMessagesKey;
+    private final byte[] ownersKey;
+    private final byte[] sequenceKey;
+
+    /**
+     * Шаблоны индексов для Lua-скриптов (формат описан в message_lib.lua).
+     * Состав и порядок должны совпадать с {@link #scriptKeys(Message, RedisMessageKeys.Side)}
+     * и {@link #indexSpecs(Message, RedisMessageKeys.Side)}
+     * (кроме счётчика messages:seq: он не индекс, и шаблона у него нет).
+     */
+    private final List<byte[]> indexTemplates;
+
+    /**
+     * Шаблоны индексов, ключи которых не зависят от участников (messages:all и messages:owners).
+     */
+    private final List<byte[]> staticIndexTemplates;
+
+    private MessageKeyLayout(final KeySchema schema) {
+        this.schema = schema;
+        this.allMessagesKey = SafeEncoder.encode(schema.staticKey(ALL_MESSAGES_KEY));
+        this.ownersKey = SafeEncoder.encode(schema.staticKey(MESSAGE_OWNERS_KEY));
+        this.sequenceKey = SafeEncoder.encode(MESSAGE_SEQUENCE_KEY);
+        this.indexTemplates = List.of(
+                schema.template('S', "from", USER_FROM_INDEX_PREFIX),
+                schema.template('S', "to", USER_TO_INDEX_PREFIX),
+                schema.template('S', "static", ALL_MESSAGES_KEY),
+                schema.template('Z', "pair", CONVERSATION_INDEX_PREFIX),
+                schema.template('H', "static", MESSAGE_OWNERS_KEY),
+                schema.template('Q', "from", USER_UPDATES_INDEX_PREFIX),
+                schema.template('Q', "to", USER_UPDATES_INDEX_PREFIX)
+        );
+        this.staticIndexTemplates = List.of(indexTemplates.get(2), indexTemplates.get(4));
+    }
+
+    static MessageKeyLayout of(final KeySchema schema) {
+        return schema == KeySchema.BINARY ? BINARY : TEXT;
+    }
+
+    KeySchema schema() {
+        return schema;
+    }
+
+    List<byte[]> indexTemplates() {
+        return indexTemplates;
+    }
+
+    List<byte[]> staticIndexTemplates() {
+        return staticIndexTemplates;
+    }
+
+    /**
+     * Ключи индексов сообщения с участниками from и to в порядке {@link #indexTemplates()}.
+     * Скрипты удаления, обновления и вычистки получают их в KEYS, а не строят сами:
+     * в Redis Cluster и при репликации эффектов скрипт может обращаться только к объявленным ключам.
+     */
+    List<byte[]> indexKeys(final UUID from, final UUID to) {
+        return List.of(
+                fromIndexKey(from),
+                toIndexKey(to),
+                allMessagesKey,
+                conversationKey(from, to),
+                ownersKey,
+                updatesKey(from),
+                updatesKey(to));
+    }
+
+    /**
+     * Ключи индексов в порядке {@link #staticIndexTemplates()}.
+     */
+    List<byte[]> staticIndexKeys() {
+        return List.of(allMessagesKey, ownersKey);
+    }
+
+    byte[] member(final UUID id) {
+        return schema.member(id);
+    }
+
+    /**
+     * Запись об удалении сообщения в ленте изменений: deleted: + ID в представлении этой раскладки.
+     */
+    byte[] tombstone(final UUID id) {
+        return schema.key(TOMBSTONE_MEMBER_PREFIX, id);
+    }
+
+    /**
+     * ID удалённого сообщения из члена ленты изменений.
+     *
+     * @return ID или null, если член - ID сообщения, а не запись об удалении
+     */
+    UUID deletedId(final byte[] member) {
+        return schema.idFromKey(TOMBSTONE_MEMBER_PREFIX, member);
+    }
+
+    byte[] messageKey(final UUID id) {
+        return schema.key(MESSAGE_KEY_PREFIX, id);
+    }
+
+    /**
+     * Ключ сообщения по члену индекса этой раскладки.
+     */
+    byte[] messageKey(final byte[] member) {
+        return schema.key(MESSAGE_KEY_PREFIX, member);
+    }
+
+    byte[] fromIndexKey(final UUID userId) {
+        return schema.key(USER_FROM_INDEX_PREFIX, userId);
+    }
+
+    byte[] toIndexKey(final UUID userId) {
+        return schema.key(USER_TO_INDEX_PREFIX, userId);
+    }
+
+    byte[] updatesKey(final UUID userId) {
+        return schema.key(USER_UPDATES_INDEX_PREFIX, userId);
+    }
+
+    /**
+     * Ключ переписки, не зависящий от порядка участников (как роль pair/bpair в message_lib.lua).
+     */
+    byte[] conversationKey(final UUID user1Id, final UUID user2Id) {
+        return schema.pairKey(CONVERSATION_INDEX_PREFIX, user1Id, user2Id);
+    }
+
+    byte[] allMessagesKey() {
+        return allMessagesKey;
+    }
+
+    byte[] ownersKey() {
+        return ownersKey;
+    }
+
+    /**
+     * Значение хэша владельцев: from и to подряд.
+     */
+    byte[] owners(final Message message) {
+        return schema.owners(message.getFrom(), message.getTo());
+    }
+
+    /**
+     * ID сообщения из ключа message:{id} этой раскладки.
+     *
+     * @return ID или null для чужих ключей
+     */
+    UUID idFromMessageKey(final byte[] key) {
+        return schema.idFromKey(MESSAGE_KEY_PREFIX, key);
+    }
+
+    /**
+     * Ключи для Lua-скриптов: ключ сообщения и ключи всех индексов в порядке {@link #indexTemplates()}.
+     * Перед лентами изменений идёт счётчик messages:seq: он выдаёт score для них.
+     * На одной стороне переписки - подмножество в том же порядке (см. {@link RedisMessageKeys.Side}).
+     */
+    List<byte[]> scriptKeys(final Message message, final Side side) {
+        final List<byte[]> keys = new ArrayList<>(9);
+        keys.add(messageKey(message.getId()));
+        if (side.sender()) {
+            keys.add(fromIndexKey(message.getFrom()));
+        }
+        if (side.recipient()) {
+            keys.add(toIndexKey(message.getTo()));
+        }
+        keys.add(allMessagesKey);
+        if (side.sender()) {
+            keys.add(conversationKey(message.getFrom(), message.getTo()));
+        }
+        keys.add(ownersKey);
+        keys.add(sequenceKey);
+        if (side.sender()) {
+            keys.add(updatesKey(message.getFrom()));
+        }
+        if (side.recipient()) {
+            keys.add(updatesKey(message.getTo()));
+        }
+        return keys;
+    }
+
+    /**
+     * Спецификации записи для индексов из {@link #scriptKeys(Message, RedisMessageKeys.Side)}:
+     * "S" для Set, "Z" + score для Sorted Set, "H" + значение для Hash,
+     * "C" для счётчика и "Q" для лент изменений со score из этого счётчика.
+     */
+    List<byte[]> indexSpecs(final Message message, final Side side) {
+        final List<byte[]> specs = new ArrayList<>(8);
+        if (side.sender()) {
+            specs.add(SET_INDEX_SPEC);
+        }
+        if (side.recipient()) {
+            specs.add(SET_INDEX_SPEC);
+        }
+        specs.add(SET_INDEX_SPEC);
+        if (side.sender()) {
+            specs.add(SafeEncoder.encode("Z" + message.getDate().toEpochMilli()));
+        }
+        final byte[] owners = owners(message);
+        final byte[] ownersSpec = Arrays.copyOf(HASH_SPEC_PREFIX, HASH_SPEC_PREFIX.length + owners.length);
+        System.arraycopy(owners, 0, ownersSpec, HASH_SPEC_PREFIX.length, owners.length);
+        specs.add(ownersSpec);
+        specs.add(SEQUENCE_SPEC);
+        if (side.sender()) {
+            specs.add(SEQUENCE_INDEX_SPEC);
+        }
+        if (side.recipient()) {
+            specs.add(SEQUENCE_INDEX_SPEC);
+        }
+        return specs;
+    }
+
+    /**
+     * KEYS для delete_message.lua: ключ сообщения, ключи индексов сохранённого значения
+     * и счётчик messages:seq для записей об удалении в лентах изменений.
+     *
+     * @param stored сохранённое значение, по участникам которого строятся ключи индексов
+     */
+    List<byte[]> deleteKeys(final Message stored) {
+        final List<byte[]> keys = storedKeys(stored);
+        keys.add(sequenceKey);
+        return keys;
+    }
+
+    /**
+     * KEYS для update_message.lua: ключ сообщения и ключи индексов сохранённого значения, затем ключи записи нового
+     * на стороне side (как {@link #scriptKeys(Message, RedisMessageKeys.Side)} без ключа сообщения).
+     *
+     * @param stored  сохранённое значение
+     * @param message новое значение
+     * @param side    сторона переписки, чьи индексы пишутся
+     */
+    List<byte[]> updateKeys(final Message stored, final Message message, final Side side) {
+        final List<byte[]> keys = storedKeys(stored);
+        final List<byte[]> newKeys = scriptKeys(message, side);
+        keys.addAll(newKeys.subList(1, newKeys.size()));
+        return keys;
+    }
+
+    /**
+     * ARGV для delete_message.lua: в лентах изменений остаётся запись об удалении.
+     */
+    List<byte[]> deleteArgs(final UUID id) {
+        return deleteArgs(id, true);
+    }
+
+    /**
+     * ARGV для delete_message.lua.
+     *
+     * @param tombstone оставить в лентах изменений запись об удалении; false - при переносе копии,
+     *                  которая сразу записывается заново
+     */
+    List<byte[]> deleteArgs(final UUID id, final boolean tombstone) {
+        final List<byte[]> args = new ArrayList<>(indexTemplates.size() + 2);
+        args.add(member(id));
+        args.add(tombstone ? tombstone(id) : new byte[0]);
+        args.addAll(indexTemplates);
+        return args;
+    }
+
+    /**
+     * Тип индекса этой раскладки по ключу: 'S' - Set, 'Z' - Sorted Set, 'Q' - лента изменений, 'H' - Hash,
+     * null - не индекс сообщений.
+     * Раскладки различаются длиной ID в ключах и суффиксом статических ключей.
+     */
+    Character indexKind(final byte[] key) {
+        if (Arrays.equals(key, allMessagesKey)
+                || schema.idFromKey(USER_FROM_INDEX_PREFIX, key) != null
+                || schema.idFromKey(USER_TO_INDEX_PREFIX, key) != null) {
+            return 'S';
+        }
+        if (Arrays.equals(key, ownersKey)) {
+            return 'H';
+        }
+        if (isConversationKey(key)) {
+            return 'Z';
+        }
+        if (schema.idFromKey(USER_UPDATES_INDEX_PREFIX, key) != null) {
+            return 'Q';
+        }
+        return null;
+    }
+
+    /**
+     * Принадлежит ли ключ этой раскладке сообщений: значения и индексы.
+     * Счётчик messages:seq не удаляется, чтобы курсоры клиентов оставались монотонными.
+     */
+    boolean isLayoutKey(final byte[] key) {
+        return idFromMessageKey(key) != null || indexKind(key) != null;
+    }
+
+    /**
+     * Ключ сообщения и ключи индексов сохранённого значения в порядке {@link #indexTemplates()}.
+     */
+    private List<byte[]> storedKeys(final Message stored) {
+        final List<byte[]> keys = new ArrayList<>(indexTemplates.size() + 2);
+        keys.add(messageKey(stored.getId()));
+        keys.addAll(indexKeys(stored.getFrom(), stored.getTo()));
+        return keys;
+    }
+
+    private boolean isConversationKey(final byte[] key) {
+        final int idLength = schema.idLength();
+        final int pairLength = schema == KeySchema.TEXT ? idLength * 2 + 1 : idLength * 2;
+        if (!KeySchema.hasPrefix(key, CONVERSATION_INDEX_PREFIX)
+                || key.length != CONVERSATION_INDEX_PREFIX.length() + pairLength) {
+            return false;
+        }
+        if (schema == KeySchema.BINARY) {
+            return true;
+        }
+        // Текстовая пара: два UUID через двоеточие
+        final int first = CONVERSATION_INDEX_PREFIX.length();
+        return schema.idFromKey("", Arrays.copyOfRange(key, first, first + idLength)) != null
+                && key[first + idLength] == ':'
+                && schema.idFromKey("", Arrays.copyOfRange(key, first + idLength + 1, key.length)) != null;
+    }
+}
@@ -0,0 +1,215 @@
+package ru.test.the.best.chat.message.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.core.redis.RedisSubscriber;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.MESSAGE_INVALIDATIONS_CHANNEL;
+
+/**
+ * Кеш декодированных сообщений в памяти JVM перед {@link RedisMessageRepository}
+ * (messages.near-cache.enabled=true).
+ * <p>
+ * Размер ограничен суммарным весом записей (длина закодированного значения плюс накладные расходы объекта),
+ * вытеснение - W-TinyLFU Caffeine, поэтому однократные обходы (scanAll, backfill) не вымывают горячие сообщения.
+ * Запись живёт не дольше ttl-ms после загрузки.
+ * <p>
+ * Изменение и удаление сообщения публикуют его ID в канал messages:invalidations, и каждый экземпляр
+ * приложения (включая этот) удаляет запись из своего кеша. Pub/Sub не гарантирует доставку,
+ * поэтому расхождение после потерянного сообщения ограничено ttl-ms; тот же предел действует
+ * для значений, прочитанных с отстающей реплики.
+ * <p>
+ * Метрики Caffeine (cache.gets hit/miss, cache.evictions, cache.size) публикуются с тегом cache=messages.
+ */
+@Slf4j
+@Component
+public class MessageNearCache {
+
+    private static final String CACHE_NAME = "messages";
+    private static final String INVALIDATE_ALL = "*";
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    /**
+     * Сообщение в кеше и его вес в байтах.
+     */
+    private record CachedMessage(Message message, int weight) {
+    }
+
+    private final JedisPool jedisPool;
+    private final boolean enabled;
+    private final Cache<UUID, CachedMessage> cache;
+
+    /**
+     * Номер последней инвалидации. Чтение запоминает его до обращения к Redis и кладёт значение
+     * в кеш, только если инвалидаций с тех пор не было: иначе прочитанное значение могло устареть
+     * между GET и вставкой.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private RedisSubscriber subscriber;
+
+    public MessageNearCache(
+            final JedisPool jedisPool,
+            final MeterRegistry meterRegistry,
+            @Value("${messages.near-cache.enabled:false}") final boolean enabled,
+            @Value("${messages.near-cache.max-weight-bytes:67108864}") final long maxWeightBytes,
+            @Value("${messages.near-cache.ttl-ms:60000}") final long ttlMillis) {
+        this.jedisPool = Objects.requireNonNull(jedisPool, "JedisPool cannot be null");
+        this.enabled = enabled;
+
+        if (enabled) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumWeight(maxWeightBytes)
+                    .weigher((UUID id, CachedMessage cached) -> cached.weight())
+                    .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+            log.info("Message near cache enabled: max weight {} bytes, ttl {} ms", maxWeightBytes, ttlMillis);
+        } else {
+            this.cache = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Подписаться на инвалидации после старта приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || subscriber != null) {
+            return;
+        }
+        subscriber = RedisSubscriber.channels(jedisPool, "message-invalidations",
+                this::onInvalidation, MESSAGE_INVALIDATIONS_CHANNEL);
+        subscriber.start();
+        log.info("Subscribed to message invalidations");
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (subscriber != null) {
+            subscriber.close();
+            subscriber = null;
+        }
+    }
+
+    /**
+     * Сообщение из кеша.
+     *
+     * @param id идентификатор сообщения
+     * @return сообщение или null, если его нет в кеше или кеш выключен
+     */
+    public Message get(final UUID id) {
+        if (!enabled) {
+            return null;
+        }
+        final CachedMessage cached = cache.getIfPresent(id);
+        return cached != null ? cached.message() : null;
+    }
+
+    /**
+     * Отметка для {@link #put(Message, int, long)}; берётся до чтения из Redis.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Положить прочитанное из Redis сообщение, если с момента stamp не было инвалидаций.
+     *
+     * @param message      сообщение
+     * @param encodedBytes длина закодированного значения
+     * @param stamp        значение {@link #stamp()} до чтения
+     */
+    public void put(final Message message, final int encodedBytes, final long stamp) {
+        if (!enabled) {
+            return;
+        }
+        final CachedMessage cached = new CachedMessage(message, encodedBytes + ENTRY_OVERHEAD_BYTES);
+        cache.asMap().compute(message.getId(), (id, current) -> invalidations.get() == stamp ? cached : current);
+    }
+
+    /**
+     * Удалить сообщения из кеша на всех экземплярах приложения.
+     * Вызывается после успешной записи в Redis; ошибка публикации не отменяет запись.
+     *
+     * @param jedis соединение, на котором выполнялась запись
+     * @param ids   идентификаторы изменённых или удалённых сообщений
+     */
+    public void invalidate(final Jedis jedis, final Collection<UUID> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        invalidateLocally(ids);
+        publish(jedis, ids.stream().map(UUID::toString).collect(Collectors.joining(",")));
+    }
+
+    /**
+     * Очистить кеш на всех экземплярах приложения (после удаления всех сообщений).
+     *
+     * @param jedis соединение с основным Redis
+     */
+    public void invalidateAll(final Jedis jedis) {
+        if (!enabled) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+        publish(jedis, INVALIDATE_ALL);
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void invalidateLocally(final Collection<UUID> ids) {
+        invalidations.incrementAndGet();
+        cache.invalidateAll(ids);
+    }
+
+    private void publish(final Jedis jedis, final String payload) {
+        try {
+            jedis.publish(MESSAGE_INVALIDATIONS_CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("Failed to publish message invalidation, other instances expire it by ttl", e);
+        }
+    }
+
+    private void onInvalidation(final String channel, final byte[] payload) {
+        final String ids = SafeEncoder.encode(payload);
+        if (INVALIDATE_ALL.equals(ids)) {
+            invalidations.incrementAndGet();
+            cache.invalidateAll();
+            log.debug("Message near cache cleared by invalidation");
+            return;
+        }
+
+        try {
+            invalidateLocally(Arrays.stream(ids.split(",")).map(UUID::fromString).toList());
+        } catch (IllegalArgumentException e) {
+            log.error("Malformed message invalidation: {}", ids);
+        }
+    }
+}
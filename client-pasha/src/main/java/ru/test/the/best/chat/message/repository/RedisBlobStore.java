@@ -0,0 +1,234 @@
+package ru.test.the.best.chat.message.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.codec.BlobReference;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Guard;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.id.UuidV7;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Хранилище блобов в основном Redis (redis.host): содержимое режется на куски
+ * blob:{id}:{n} по {@link #CHUNK_SIZE} байт, чтобы одно большое значение не блокировало Redis
+ * при записи и чтении. Куски пишутся и читаются через pipeline, срок хранения - как у сообщений.
+ * Диапазон содержимого читается через GETRANGE только нужных кусков, пачками по {@link #TRANSFER_CHUNKS},
+ * поэтому выдача большого блоба держит в памяти не больше одной пачки.
+ * <p>
+ * При шардинге и Redis Cluster блобы остаются на основном Redis; для кластера без отдельного
+ * основного узла нужно хранилище file ({@link MappedFileBlobStore}).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "messages.blob.store", havingValue = "redis", matchIfMissing = true)
+public class RedisBlobStore implements BlobStore {
+
+    static final int CHUNK_SIZE = 256 * 1024;
+
+    private static final int TRANSFER_CHUNKS = 8;
+
+    private final JedisPool jedisPool;
+
+    public RedisBlobStore(final JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Override
+    public Result<BlobReference, Error> put(final InputStream input, final long maxBytes) {
+        if (Guard.isNull(input)) return Result.failure(GeneralErrors.valueIsEmpty("data"));
+
+        final UUID id = UuidV7.next();
+        long size = 0;
+        int chunks = 0;
+        try (Jedis jedis = jedisPool.getResource()) {
+            final Pipeline pipeline = jedis.pipelined();
+            try {
+                while (true) {
+                    final byte[] chunk;
+                    try {
+                        chunk = input.readNBytes(CHUNK_SIZE);
+                    } catch (IOException e) {
+                        log.warn("Blob upload {} was interrupted after {} bytes: {}", id, size, e.getMessage());
+                        deleteChunks(pipeline, id, chunks);
+                        return Result.failure(GeneralErrors.valueIsInvalid("data", "upload was interrupted"));
+                    }
+                    if (chunk.length == 0) {
+                        break;
+                    }
+
+                    size += chunk.length;
+                    if (size > maxBytes) {
+                        log.warn("Blob upload {} exceeds limit of {} bytes", id, maxBytes);
+                        deleteChunks(pipeline, id, chunks);
+                        return Result.failure(GeneralErrors.payloadTooLarge(maxBytes));
+                    }
+
+                    pipeline.setex(chunkKey(id, chunks++), RedisMessageKeys.MESSAGE_TTL, chunk);
+                    // Записанные куски отправляются пачками, чтобы не копить их в памяти pipeline
+                    if (chunks % TRANSFER_CHUNKS == 0) {
+                        pipeline.sync();
+                    }
+                }
+                pipeline.sync();
+            } catch (RuntimeException e) {
+                deleteChunks(pipeline, id, chunks);
+                throw e;
+            }
+
+            if (size == 0) return Result.failure(GeneralErrors.valueIsEmpty("data"));
+
+            log.debug("Stored blob {} of {} bytes in {} chunks", id, size, chunks);
+            return Result.success(new BlobReference(id, size));
+        } catch (Exception e) {
+            log.error("Error occurred while storing blob {} after {} bytes", id, size, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    @Override
+    public Result<byte[], Error> read(final BlobReference reference) {
+        if (Guard.isNull(reference)) return Result.failure(GeneralErrors.valueIsRequired("reference"));
+        if (reference.size() > Integer.MAX_VALUE)
+            return Result.failure(GeneralErrors.illegalState("Blob is too large to read into memory: " + reference.size()));
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            final int chunks = chunks(reference);
+            final List<Response<byte[]>> responses = new ArrayList<>(chunks);
+            final Pipeline pipeline = jedis.pipelined();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                responses.add(pipeline.get(chunkKey(reference.id(), chunk)));
+            }
+            pipeline.sync();
+
+            final byte[] data = new byte[(int) reference.size()];
+            int offset = 0;
+            for (Response<byte[]> response : responses) {
+                final byte[] chunk = response.get();
+                if (chunk == null || offset + chunk.length > data.length) {
+                    log.warn("Blob {} is missing or corrupted", reference.id());
+                    return Result.failure(GeneralErrors.entityNotFound("Blob", reference.id()));
+                }
+                System.arraycopy(chunk, 0, data, offset, chunk.length);
+                offset += chunk.length;
+            }
+
+            if (offset != data.length) {
+                log.warn("Blob {} is truncated: {} of {} bytes", reference.id(), offset, data.length);
+                return Result.failure(GeneralErrors.entityNotFound("Blob", reference.id()));
+            }
+            return Result.success(data);
+        } catch (Exception e) {
+            log.error("Error occurred while reading blob: {}", reference.id(), e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    @Override
+    public void transferTo(
+            final BlobReference reference, final long offset, final long length, final WritableByteChannel channel
+    ) throws IOException {
+        reference.checkRange(offset, length);
+        if (length == 0) {
+            return;
+        }
+
+        final int firstChunk = (int) (offset / CHUNK_SIZE);
+        final int lastChunk = (int) ((offset + length - 1) / CHUNK_SIZE);
+        for (int batchStart = firstChunk; batchStart <= lastChunk; batchStart += TRANSFER_CHUNKS) {
+            final int batchEnd = Math.min(lastChunk, batchStart + TRANSFER_CHUNKS - 1);
+            final List<Response<byte[]>> responses = new ArrayList<>(batchEnd - batchStart + 1);
+            final List<Integer> expectedLengths = new ArrayList<>(batchEnd - batchStart + 1);
+
+            try (Jedis jedis = jedisPool.getResource()) {
+                final Pipeline pipeline = jedis.pipelined();
+                for (int chunk = batchStart; chunk <= batchEnd; chunk++) {
+                    final long chunkStart = (long) chunk * CHUNK_SIZE;
+                    final long from = Math.max(offset, chunkStart) - chunkStart;
+                    final long to = Math.min(offset + length, chunkStart + CHUNK_SIZE) - chunkStart - 1;
+                    responses.add(pipeline.getrange(chunkKey(reference.id(), chunk), from, to));
+                    expectedLengths.add((int) (to - from + 1));
+                }
+                pipeline.sync();
+            }
+
+            for (int i = 0; i < responses.size(); i++) {
+                final byte[] part = responses.get(i).get();
+                if (part == null || part.length != expectedLengths.get(i)) {
+                    throw new IOException("Blob " + reference.id() + " is missing or truncated");
+                }
+                final ByteBuffer buffer = ByteBuffer.wrap(part);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    @Override
+    public UnitResult<Error> delete(final BlobReference reference) {
+        if (Guard.isNull(reference)) return UnitResult.failure(GeneralErrors.valueIsRequired("reference"));
+
+        final int chunks = chunks(reference);
+        if (chunks == 0) return UnitResult.success();
+
+        final byte[][] keys = new byte[chunks][];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            keys[chunk] = chunkKey(reference.id(), chunk);
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.unlink(keys);
+            log.debug("Deleted blob {} in {} chunks", reference.id(), chunks);
+            return UnitResult.success();
+        } catch (Exception e) {
+            log.error("Error occurred while deleting blob: {}", reference.id(), e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    /**
+     * Удалить уже записанные куски незавершённой загрузки; при ошибке их удалит TTL.
+     */
+    private static void deleteChunks(final Pipeline pipeline, final UUID id, final int chunks) {
+        if (chunks == 0) {
+            return;
+        }
+
+        try {
+            final byte[][] keys = new byte[chunks][];
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                keys[chunk] = chunkKey(id, chunk);
+            }
+            pipeline.unlink(keys);
+            pipeline.sync();
+        } catch (Exception e) {
+            log.warn("Failed to delete chunks of incomplete blob {}: {}", id, e.getMessage());
+        }
+    }
+
+    private static int chunks(final BlobReference reference) {
+        return (int) ((reference.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    private static byte[] chunkKey(final UUID id, final int chunk) {
+        return SafeEncoder.encode(RedisMessageKeys.BLOB_KEY_PREFIX + id + ":" + chunk);
+    }
+}
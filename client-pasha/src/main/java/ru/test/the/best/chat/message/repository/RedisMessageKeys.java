@@ -0,0 +1,184 @@
+package ru.test.the.best.chat.message.repository;
+
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Раскладка ключей сообщений в Redis, общая для репозитория и фоновых задач.
+ * <p>
+ * Структура ключей:
+ * - message:{id} - основное хранилище сообщений (BinaryMessageFormat, legacy JSON читается при декодировании)
+ * - user:messages:from:{userId} - Set с ID сообщений от пользователя
+ * - user:messages:to:{userId} - Set с ID сообщений для пользователя
+ * - messages:all - Set со всеми ID сообщений
+ * - conversation:{userA}:{userB} - Sorted Set с ID сообщений переписки, score - время сообщения в мс
+ *   (пара пользователей упорядочена, поэтому переписка A-B и B-A хранится в одном ключе)
+ * - messages:owners - Hash ID сообщения -> from и to подряд; нужен, чтобы вычистить индексы
+ *   после истечения TTL сообщения, когда самого значения уже нет
+ * - messages:seq - глобальный счётчик изменений сообщений
+ * - user:updates:{userId} - Sorted Set входящих и исходящих сообщений пользователя,
+ *   score - номер изменения из messages:seq; служит курсором для дельта-синхронизации.
+ *   Удалённое сообщение остаётся в ленте записью deleted:{id} с номером удаления
+ * - blob:{blobId}:{n} - куски содержимого IMAGE и SOUND сообщений в {@link RedisBlobStore}
+ * <p>
+ * Канал Pub/Sub messages:events - сохранённые сообщения (BinaryMessageFormat) для push-доставки
+ * клиентам, подключённым к любому экземпляру приложения.
+ * Канал messages:invalidations - ID изменённых и удалённых сообщений через запятую (или * - все)
+ * для {@link MessageNearCache}.
+ * <p>
+ * Здесь описана текстовая раскладка (ID строкой). Раскладка с бинарными ID и её отличия -
+ * {@link MessageKeyLayout}; шардированный репозиторий и перенос в Redis Cluster работают с текстовой.
+ */
+final class RedisMessageKeys {
+
+    static final String MESSAGE_KEY_PREFIX = "message:";
+    static final String USER_FROM_INDEX_PREFIX = "user:messages:from:";
+    static final String USER_TO_INDEX_PREFIX = "user:messages:to:";
+    static final String ALL_MESSAGES_KEY = "messages:all";
+    static final String CONVERSATION_INDEX_PREFIX = "conversation:";
+    static final String MESSAGE_OWNERS_KEY = "messages:owners";
+    static final String MESSAGE_SEQUENCE_KEY = "messages:seq";
+    static final String USER_UPDATES_INDEX_PREFIX = "user:updates:";
+    static final String MESSAGE_EVENTS_CHANNEL = "messages:events";
+    static final String MESSAGE_INVALIDATIONS_CHANNEL = "messages:invalidations";
+    static final String BLOB_KEY_PREFIX = "blob:";
+
+    /**
+     * Префикс записи об удалении в ленте изменений: deleted:{id} вместо ID удалённого сообщения.
+     */
+    static final String TOMBSTONE_MEMBER_PREFIX = "deleted:";
+
+    static final int MESSAGE_TTL = 86400 * 30; // 30 дней
+
+    /**
+     * Шаблоны индексов текстовой раскладки для Lua-скриптов (формат описан в message_lib.lua).
+     * Состав и порядок должны совпадать с {@link #scriptKeys(Message)} и {@link #indexSpecs(Message)}
+     * (кроме счётчика messages:seq: он не индекс, и шаблона у него нет).
+     */
+    static final List<byte[]> INDEX_TEMPLATES = MessageKeyLayout.TEXT.indexTemplates();
+
+    private RedisMessageKeys() {
+    }
+
+    static byte[] messageKey(final Object id) {
+        return SafeEncoder.encode(MESSAGE_KEY_PREFIX + id);
+    }
+
+    static String updatesKey(final UUID userId) {
+        return USER_UPDATES_INDEX_PREFIX + userId;
+    }
+
+    /**
+     * Запись об удалении сообщения в ленте изменений текстовой раскладки.
+     */
+    static String tombstone(final UUID id) {
+        return TOMBSTONE_MEMBER_PREFIX + id;
+    }
+
+    /**
+     * ID удалённого сообщения из члена ленты изменений текстовой раскладки.
+     *
+     * @return ID или null, если член - ID существующего сообщения
+     */
+    static UUID deletedId(final String member) {
+        if (!member.startsWith(TOMBSTONE_MEMBER_PREFIX)) {
+            return null;
+        }
+        try {
+            return UUID.fromString(member.substring(TOMBSTONE_MEMBER_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Принадлежит ли ключ раскладке сообщений: значения, индексы, служебные ключи переписок и блобы.
+     * Счётчик messages:seq не удаляется, чтобы курсоры клиентов оставались монотонными.
+     *
+     * @param key ключ Redis
+     * @return true для ключей, которые удаляются вместе со всеми сообщениями
+     */
+    static boolean isMessageLayoutKey(final String key) {
+        return key.startsWith(MESSAGE_KEY_PREFIX)
+                || key.startsWith(USER_FROM_INDEX_PREFIX)
+                || key.startsWith(USER_TO_INDEX_PREFIX)
+                || key.startsWith(CONVERSATION_INDEX_PREFIX)
+                || key.startsWith(USER_UPDATES_INDEX_PREFIX)
+                || key.startsWith(BLOB_KEY_PREFIX)
+                || key.equals(ALL_MESSAGES_KEY)
+                || key.equals(MESSAGE_OWNERS_KEY);
+    }
+
+    /**
+     * Ключ Sorted Set переписки. Пара пользователей упорядочивается,
+     * чтобы обе стороны переписки попадали в один и тот же ключ.
+     *
+     * @param user1Id ID первого пользователя
+     * @param user2Id ID второго пользователя
+     * @return ключ индекса переписки
+     */
+    static String conversationKey(final UUID user1Id, final UUID user2Id) {
+        final String first = user1Id.toString();
+        final String second = user2Id.toString();
+        return first.compareTo(second) <= 0
+                ? CONVERSATION_INDEX_PREFIX + first + ":" + second
+                : CONVERSATION_INDEX_PREFIX + second + ":" + first;
+    }
+
+    /**
+     * Ключи для Lua-скриптов: ключ сообщения и ключи всех индексов в порядке {@link #INDEX_TEMPLATES}.
+     * Перед лентами изменений идёт счётчик messages:seq: он выдаёт score для них.
+     */
+    static List<byte[]> scriptKeys(final Message message) {
+        return scriptKeys(message, Side.BOTH);
+    }
+
+    /**
+     * Ключи для save_message.lua и update_message.lua на одной стороне переписки:
+     * подмножество {@link #scriptKeys(Message)} в том же порядке.
+     * Для шардирования: индексы отправителя и получателя могут жить на разных серверах.
+     */
+    static List<byte[]> scriptKeys(final Message message, final Side side) {
+        return MessageKeyLayout.TEXT.scriptKeys(message, side);
+    }
+
+    /**
+     * Спецификации записи для индексов из {@link #scriptKeys(Message)}:
+     * "S" для Set, "Z" + score для Sorted Set, "H" + значение для Hash,
+     * "C" для счётчика и "Q" для лент изменений со score из этого счётчика.
+     */
+    static List<byte[]> indexSpecs(final Message message) {
+        return indexSpecs(message, Side.BOTH);
+    }
+
+    /**
+     * Спецификации записи для индексов из {@link #scriptKeys(Message, Side)}.
+     */
+    static List<byte[]> indexSpecs(final Message message, final Side side) {
+        return MessageKeyLayout.TEXT.indexSpecs(message, side);
+    }
+
+    /**
+     * Сторона переписки, чьи индексы пишутся на сервер.
+     * Переписка (conversation) хранится на стороне отправителя: каждая сторона держит
+     * отправленные ею сообщения, и страница переписки собирается из двух сторон.
+     * Удалять можно по полному {@link #INDEX_TEMPLATES}: индексов другой стороны на сервере нет,
+     * и удаление из них ничего не меняет.
+     */
+    enum Side {
+        SENDER,
+        RECIPIENT,
+        BOTH;
+
+        boolean sender() {
+            return this != RECIPIENT;
+        }
+
+        boolean recipient() {
+            return this != SENDER;
+        }
+    }
+}
@@ -2,49 +2,94 @@ package ru.test.the.best.chat.message.repository;
 
 import ru.test.the.best.chat.errs.*;
 import ru.test.the.best.chat.errs.Error;
-import com.google.gson.Gson;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Repository;
 import redis.clients.jedis.*;
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.codec.MessageCodec;
+import ru.test.the.best.chat.core.repository.UpdatesPage;
+import ru.test.the.best.chat.redis.LuaScript;
+import ru.test.the.best.chat.redis.RedisClientCache;
+import ru.test.the.best.chat.redis.RedisReadRouter;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.resps.Tuple;
 import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.redis.KeySchema;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.*;
+import static ru.test.the.best.chat.message.repository.RedisMessageScripts.*;
 
 /**
  * Репозиторий для работы с сообщениями в Redis.
  * Использует индексацию по отправителю и получателю для быстрого поиска.
- * <p>
- * Структура ключей:
- * - message:{id} - основное хранилище сообщений
- * - user:messages:from:{userId} - Set с ID сообщений от пользователя
- * - user:messages:to:{userId} - Set с ID сообщений для пользователя
- * - messages:all - Set со всеми ID сообщений
+ * Структура ключей описана в {@link RedisMessageKeys}; представление ID в ключах (текст или 16 байт)
+ * задаёт messages.key-schema ({@link MessageKeyLayout}), перенос между раскладками - {@link KeySchemaMessageMigration}.
+ * Чтения по ID проходят через {@link MessageNearCache} (если он включён), записи инвалидируют его.
+ * При redis.client-cache.enabled=true значения сообщений читаются через {@link RedisClientCache}.
+ * При messages.sharding.enabled=true вместо него работает {@link ShardedRedisMessageRepository},
+ * при redis.cluster.enabled=true - {@link ClusterRedisMessageRepository}.
  */
 @Slf4j
 @Repository
+@ConditionalOnProperty(name = {"messages.sharding.enabled", "redis.cluster.enabled"}, havingValue = "false", matchIfMissing = true)
 public class RedisMessageRepository implements ru.test.the.best.chat.core.repository.Repository<Message, UUID> {
 
-    // Префиксы ключей
-    private static final String MESSAGE_KEY_PREFIX = "message:";
-    private static final String USER_FROM_INDEX_PREFIX = "user:messages:from:";
-    private static final String USER_TO_INDEX_PREFIX = "user:messages:to:";
-    private static final String ALL_MESSAGES_KEY = "messages:all";
+    private static final String CONVERSATION_BACKFILL_DONE_KEY = "conversation:backfill:done";
+    private static final String CONVERSATION_BACKFILL_LOCK_KEY = "conversation:backfill:lock";
+    private static final String UPDATES_BACKFILL_DONE_KEY = "updates:backfill:done";
+    private static final String UPDATES_BACKFILL_LOCK_KEY = "updates:backfill:lock";
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private static final int BACKFILL_LOCK_TTL = 600; // 10 минут
+    private static final int DELETE_ALL_SCAN_COUNT = 1000;
+
+    private static final byte[] MESSAGE_EVENTS_CHANNEL_BYTES = SafeEncoder.encode(MESSAGE_EVENTS_CHANNEL);
+    private static final byte[] MIN_SCORE = SafeEncoder.encode("-inf");
 
-    private static final int MESSAGE_TTL = 86400 * 30; // 30 дней
+    private static final LuaScript BACKFILL_UPDATES_SCRIPT = LuaScript.fromClasspath("backfill_updates.lua");
 
     private final JedisPool jedisPool;
-    private final Gson gson;
+    private final RedisReadRouter readRouter;
+    private final MessageCodec<Message> messageCodec;
+    private final MessageNearCache nearCache;
+    private final RedisClientCache clientCache;
+    private final MessageKeyLayout layout;
 
     @Autowired
-    public RedisMessageRepository(final JedisPool jedisPool, final Gson gson) {
-        this.jedisPool = Objects.requireNonNull(jedisPool, "JedisPool cannot be null");
-        this.gson = Objects.requireNonNull(gson, "Gson cannot be null");
-        log.info("RedisMessageRepository initialized with JedisPool and Gson");
+    public RedisMessageRepository(
+            final RedisReadRouter readRouter,
+            final MessageCodec<Message> messageCodec,
+            final MessageNearCache nearCache,
+            final ObjectProvider<RedisClientCache> clientCache,
+            @Value("${messages.key-schema:TEXT}") final KeySchema keySchema) {
+        this.readRouter = Objects.requireNonNull(readRouter, "RedisReadRouter cannot be null");
+        this.jedisPool = readRouter.primary();
+        this.messageCodec = Objects.requireNonNull(messageCodec, "MessageCodec cannot be null");
+        this.nearCache = Objects.requireNonNull(nearCache, "MessageNearCache cannot be null");
+        this.clientCache = clientCache.getIfAvailable();
+        this.layout = MessageKeyLayout.of(Objects.requireNonNull(keySchema, "KeySchema cannot be null"));
+        log.info("RedisMessageRepository initialized with JedisPool, MessageCodec and {} key schema", keySchema);
     }
 
     /**
      * Сохранить сообщение с индексацией.
+     * Значение и все индексы записываются одним вызовом Lua-скрипта (EVALSHA),
+     * после чего сообщение публикуется в канал messages:events.
      *
      * @param message сообщение для сохранения
      * @return UnitResult с результатом операции
@@ -64,34 +109,156 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
         }
 
         try (Jedis jedis = jedisPool.getResource()) {
-            final String messageKey = MESSAGE_KEY_PREFIX + message.getId();
-            final String fromIndexKey = USER_FROM_INDEX_PREFIX + message.getFrom();
-            final String toIndexKey = USER_TO_INDEX_PREFIX + message.getTo();
-            final String messageIdStr = message.getId().toString();
+            final List<byte[]> args = saveArgs(message);
+            SAVE_SCRIPT.eval(jedis, layout.scriptKeys(message, Side.BOTH), args);
+            readRouter.recordWrite(message.getFrom());
+            nearCache.put(message, args.getFirst().length, nearCache.stamp());
+            publishSaved(jedis, List.of(args.getFirst()));
 
-            // Сериализация
-            final String jsonMessage = gson.toJson(message);
+            log.info("Successfully saved message: {} from {} to {}",
+                    message.getId(), message.getFrom(), message.getTo());
+            return UnitResult.success();
+
+        } catch (Exception e) {
+            log.error("Error occurred while saving message: {}", message.getId(), e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Сохранить несколько сообщений одним pipeline вызовов save_message.lua на одном соединении.
+     * Каждый скрипт атомарен сам по себе, результат возвращается для каждого сообщения отдельно.
+     *
+     * @param messages сообщения для сохранения
+     * @return результаты в том же порядке, что и messages
+     */
+    @Override
+    public List<UnitResult<Error>> saveAll(final List<Message> messages) {
+        if (Guard.isNull(messages) || messages.isEmpty()) {
+            log.debug("SaveAll called with no messages");
+            return Collections.emptyList();
+        }
 
-            Transaction transaction = jedis.multi();
-            transaction.set(messageKey, jsonMessage);
-            transaction.sadd(fromIndexKey, messageIdStr);
-            transaction.sadd(toIndexKey, messageIdStr);
-            transaction.sadd(ALL_MESSAGES_KEY, messageIdStr);
-            transaction.expire(messageKey, MESSAGE_TTL);
+        log.debug("Attempting to save {} messages", messages.size());
+
+        final List<UnitResult<Error>> results = new ArrayList<>(Collections.nCopies(messages.size(), null));
+        final List<Integer> pending = new ArrayList<>(messages.size());
+        final List<List<byte[]>> args = new ArrayList<>(messages.size());
+
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = messages.get(i);
+            if (Guard.isNull(message)) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsRequired("message")));
+            } else if (Guard.isNullOrEmpty(message.getId())) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsRequired("message.id")));
+            } else {
+                // Сообщение, которое не кодируется, отклоняется отдельно и не срывает остальную пачку
+                try {
+                    args.add(saveArgs(message));
+                    pending.add(i);
+                } catch (Exception e) {
+                    log.warn("Failed to encode message: {}", message.getId(), e);
+                    results.set(i, UnitResult.failure(GeneralErrors.serializationError(e.getMessage())));
+                }
+            }
+        }
 
-            final var results = transaction.exec();
+        if (pending.isEmpty()) {
+            return results;
+        }
 
-            if (results == null || results.isEmpty()) {
-                log.error("Transaction failed while saving message: {}", message.getId());
-                return UnitResult.failure(GeneralErrors.databaseError("Redis transaction failed"));
+        try (Jedis jedis = jedisPool.getResource()) {
+            final List<Object> replies = evalBatch(jedis, SAVE_SCRIPT,
+                    pending.stream().map(i -> layout.scriptKeys(messages.get(i), Side.BOTH)).toList(),
+                    args);
+
+            final List<byte[]> saved = new ArrayList<>(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                final int index = pending.get(i);
+                if (replies.get(i) instanceof Exception e) {
+                    log.error("Error occurred while saving message: {}", messages.get(index).getId(), e);
+                    results.set(index, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                } else {
+                    results.set(index, UnitResult.success());
+                    readRouter.recordWrite(messages.get(index).getFrom());
+                    nearCache.put(messages.get(index), args.get(i).getFirst().length, nearCache.stamp());
+                    saved.add(args.get(i).getFirst());
+                }
+            }
+            publishSaved(jedis, saved);
+        } catch (Exception e) {
+            log.error("Error occurred while saving {} messages", messages.size(), e);
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                }
             }
+        }
 
-            log.info("Successfully saved message: {} from {} to {}",
-                    message.getId(), message.getFrom(), message.getTo());
+        log.info("Saved batch of {} messages", messages.size());
+        return results;
+    }
+
+    /**
+     * Обновить существующее сообщение (check-and-set).
+     * Lua-скрипт проверяет существование, переносит записи индексов и сохраняет TTL атомарно.
+     * Ключи старых индексов строятся по прочитанному перед скриптом значению ({@link #readStored(Jedis, UUID)}).
+     *
+     * @param id      идентификатор сообщения
+     * @param message новое состояние сообщения с тем же ID
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
+     */
+    @Override
+    public UnitResult<Error> update(final UUID id, final Message message) {
+        log.debug("Attempting to update message with id: {}", id);
+
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("Update called with null or empty id");
+            return UnitResult.failure(GeneralErrors.valueIsEmpty("id"));
+        }
+
+        if (Guard.isNull(message)) {
+            log.warn("Update called with null message");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("message"));
+        }
+
+        if (!id.equals(message.getId())) {
+            log.warn("Update called with mismatched ids: {} and {}", id, message.getId());
+            return UnitResult.failure(GeneralErrors.validationError("message.id", "Message id does not match updated id"));
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            final List<byte[]> args = new ArrayList<>();
+            args.add(messageCodec.encode(message));
+            args.add(layout.member(id));
+            args.add(SafeEncoder.encode(String.valueOf(layout.indexTemplates().size())));
+            args.addAll(layout.indexTemplates());
+            args.addAll(layout.indexSpecs(message, Side.BOTH));
+
+            Object updated = STALE_INDEX_KEYS;
+            for (int attempt = 0; attempt < STALE_INDEX_ATTEMPTS && STALE_INDEX_KEYS.equals(updated); attempt++) {
+                final Optional<Message> stored = readStored(jedis, id);
+                updated = stored.isPresent()
+                        ? UPDATE_SCRIPT.eval(jedis, layout.updateKeys(stored.get(), message, Side.BOTH), args)
+                        : 0L;
+            }
+
+            if (STALE_INDEX_KEYS.equals(updated)) {
+                log.warn("Cannot update: message {} keeps changing concurrently", id);
+                return UnitResult.failure(GeneralErrors.conflict("Message " + id + " was changed concurrently"));
+            }
+
+            if (!Long.valueOf(1L).equals(updated)) {
+                log.warn("Cannot update: message not found with id: {}", id);
+                return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
+            }
+            nearCache.invalidate(jedis, List.of(id));
+
+            log.info("Successfully updated message: {} from {} to {}", id, message.getFrom(), message.getTo());
             return UnitResult.success();
 
         } catch (Exception e) {
-            log.error("Error occurred while saving message: {}", message.getId(), e);
+            log.error("Error occurred while updating message with id: {}", id, e);
             return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
         }
     }
@@ -111,18 +278,34 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
             return Result.failure(GeneralErrors.valueIsEmpty("id"));
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final String key = MESSAGE_KEY_PREFIX + id;
-            final String jsonMessage = jedis.get(key);
+        final Message cached = nearCache.get(id);
+        if (cached != null) {
+            log.debug("Message found in near cache with id: {}", id);
+            return Result.success(Optional.of(cached));
+        }
 
-            if (jsonMessage == null || jsonMessage.isEmpty()) {
+        try {
+            final long stamp = nearCache.stamp();
+            final byte[] encodedMessage = clientCache != null
+                    ? clientCache.get(layout.messageKey(id))
+                    : readWithPrimaryFallback(
+                            jedis -> jedis.get(layout.messageKey(id)),
+                            value -> value == null || value.length == 0);
+
+            if (encodedMessage == null || encodedMessage.length == 0) {
                 log.debug("Message not found with id: {}", id);
                 return Result.success(Optional.empty());
             }
 
-            final Message message = gson.fromJson(jsonMessage, Message.class);
+            final Result<Message, Error> messageResult = messageCodec.decode(encodedMessage);
+            if (messageResult.isFailure()) {
+                log.error("Failed to decode message with id: {}", id);
+                return Result.failure(messageResult.getError());
+            }
+            nearCache.put(messageResult.getValue(), encodedMessage.length, stamp);
+
             log.debug("Message found with id: {}", id);
-            return Result.success(Optional.of(message));
+            return Result.success(Optional.of(messageResult.getValue()));
 
         } catch (Exception e) {
             log.error("Error occurred while finding message by id: {}", id, e);
@@ -130,6 +313,79 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
         }
     }
 
+    /**
+     * Найти сообщения по списку ID одним pipeline GET.
+     *
+     * @param ids идентификаторы сообщений
+     * @return Result со списком в том же порядке, что и ids (Optional.empty для отсутствующих), или Error
+     */
+    @Override
+    public Result<List<Optional<Message>>, Error> findAllByIds(final List<UUID> ids) {
+        log.debug("Attempting to find {} messages by ids", ids != null ? ids.size() : 0);
+
+        if (Guard.isNull(ids)) {
+            log.warn("FindAllByIds called with null ids");
+            return Result.failure(GeneralErrors.valueIsRequired("ids"));
+        }
+
+        if (ids.isEmpty()) {
+            return Result.success(Collections.emptyList());
+        }
+
+        try {
+            final List<Optional<Message>> messages =
+                    new ArrayList<>(Collections.<Optional<Message>>nCopies(ids.size(), Optional.empty()));
+            final List<Integer> misses = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                final Message cached = nearCache.get(ids.get(i));
+                if (cached != null) {
+                    messages.set(i, Optional.of(cached));
+                } else {
+                    misses.add(i);
+                }
+            }
+
+            final long stamp = nearCache.stamp();
+            final List<byte[]> values = misses.isEmpty() ? List.of() : clientCache != null
+                    ? clientCache.getAll(misses.stream().map(index -> layout.messageKey(ids.get(index))).toList())
+                    : readWithPrimaryFallback(
+                            jedis -> {
+                                final Pipeline pipeline = jedis.pipelined();
+                                final List<Response<byte[]>> responses = new ArrayList<>(misses.size());
+                                for (int index : misses) {
+                                    responses.add(pipeline.get(layout.messageKey(ids.get(index))));
+                                }
+                                pipeline.sync();
+                                return responses.stream().map(Response::get).toList();
+                            },
+                            found -> found.stream().anyMatch(Objects::isNull));
+
+            for (int i = 0; i < misses.size(); i++) {
+                final int index = misses.get(i);
+                final byte[] value = values.get(i);
+                if (value == null || value.length == 0) {
+                    continue;
+                }
+
+                final Result<Message, Error> messageResult = messageCodec.decode(value);
+                if (messageResult.isFailure()) {
+                    log.error("Failed to decode message with id: {}", ids.get(index));
+                    continue;
+                }
+                nearCache.put(messageResult.getValue(), value.length, stamp);
+                messages.set(index, Optional.of(messageResult.getValue()));
+            }
+
+            log.debug("Found {} of {} messages by ids",
+                    messages.stream().filter(Optional::isPresent).count(), ids.size());
+            return Result.success(messages);
+
+        } catch (Exception e) {
+            log.error("Error occurred while finding {} messages by ids", ids.size(), e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
     /**
      * Найти все сообщения.
      * ВНИМАНИЕ: Может быть медленным при большом количестве сообщений!
@@ -140,8 +396,8 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
     public List<Message> findAll() {
         log.debug("Fetching all messages from Redis");
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var allMessageIds = jedis.smembers(ALL_MESSAGES_KEY);
+        try (Jedis jedis = readRouter.forAnyUser().getResource()) {
+            final var allMessageIds = jedis.smembers(layout.allMessagesKey());
 
             if (allMessageIds.isEmpty()) {
                 log.debug("No messages found in Redis");
@@ -161,12 +417,64 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
         }
     }
 
+    /**
+     * Обойти все сообщения постранично через SSCAN по messages:all.
+     * Соединение берётся из пула на каждую страницу и возвращается до вызова обработчика,
+     * поэтому медленный потребитель (например, HTTP-клиент) не держит соединение с Redis.
+     *
+     * @param pageSize     значение COUNT для SSCAN
+     * @param pageConsumer обработчик очередной страницы
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> scanAll(final int pageSize, final Consumer<List<Message>> pageConsumer) {
+        log.debug("Scanning all messages with page size: {}", pageSize);
+
+        if (pageSize < 1) {
+            log.warn("ScanAll called with non-positive page size: {}", pageSize);
+            return UnitResult.failure(GeneralErrors.valueIsOutOfRange("pageSize", pageSize, 1, Integer.MAX_VALUE));
+        }
+
+        if (Guard.isNull(pageConsumer)) {
+            log.warn("ScanAll called with null page consumer");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("pageConsumer"));
+        }
+
+        final ScanParams scanParams = new ScanParams().count(pageSize);
+        // Курсор SSCAN действителен только на том сервере, где получен
+        final JedisPool readPool = readRouter.forAnyUser();
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        long scanned = 0;
+
+        do {
+            final List<Message> page;
+
+            try (Jedis jedis = readPool.getResource()) {
+                final ScanResult<byte[]> scanResult = jedis.sscan(layout.allMessagesKey(), cursor, scanParams);
+                cursor = scanResult.getCursorAsBytes();
+                page = getMessagesByIds(jedis, scanResult.getResult());
+            } catch (Exception e) {
+                log.error("Error occurred while scanning messages at cursor: {}", SafeEncoder.encode(cursor), e);
+                return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+            }
+
+            if (!page.isEmpty()) {
+                pageConsumer.accept(page);
+                scanned += page.size();
+            }
+        } while (!Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, cursor));
+
+        log.info("Successfully scanned {} messages", scanned);
+        return UnitResult.success();
+    }
+
     /**
      * Удалить сообщение по ID.
-     * Удаляет из основного хранилища и всех индексов.
+     * Удаляет из основного хранилища и всех индексов одним вызовом Lua-скрипта;
+     * ключи индексов строятся по прочитанному перед скриптом значению.
      *
      * @param id идентификатор сообщения
-     * @return UnitResult с результатом операции
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
      */
     @Override
     public UnitResult<Error> deleteById(final UUID id) {
@@ -178,40 +486,105 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
         }
 
         try (Jedis jedis = jedisPool.getResource()) {
-            final var messageKey = MESSAGE_KEY_PREFIX + id;
-            final var jsonMessage = jedis.get(messageKey);
+            final Object deleted = deleteStored(jedis, id);
+
+            if (STALE_INDEX_KEYS.equals(deleted)) {
+                log.warn("Cannot delete: message {} keeps changing concurrently", id);
+                return UnitResult.failure(GeneralErrors.conflict("Message " + id + " was changed concurrently"));
+            }
 
-            if (jsonMessage == null || jsonMessage.isEmpty()) {
+            if (!Long.valueOf(1L).equals(deleted)) {
                 log.warn("Cannot delete: message not found with id: {}", id);
                 return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
             }
+            nearCache.invalidate(jedis, List.of(id));
+
+            log.info("Successfully deleted message: {}", id);
+            return UnitResult.success();
+
+        } catch (Exception e) {
+            log.error("Error occurred while deleting message with id: {}", id, e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
 
-            final var message = gson.fromJson(jsonMessage, Message.class);
-            final var messageIdStr = id.toString();
-            final var fromIndexKey = USER_FROM_INDEX_PREFIX + message.getFrom();
-            final var toIndexKey = USER_TO_INDEX_PREFIX + message.getTo();
+    /**
+     * Удалить сообщения по списку ID: значения читаются одним pipeline, затем одним pipeline
+     * вызывается delete_message.lua. Вызовы с устаревшими ключами индексов повторяются по одному.
+     *
+     * @param ids идентификаторы сообщений
+     * @return результаты в том же порядке, что и ids, entity.not.found для отсутствующих
+     */
+    @Override
+    public List<UnitResult<Error>> deleteAllByIds(final List<UUID> ids) {
+        if (Guard.isNull(ids) || ids.isEmpty()) {
+            log.debug("DeleteAllByIds called with no ids");
+            return Collections.emptyList();
+        }
 
-            Transaction transaction = jedis.multi();
-            transaction.del(messageKey);
-            transaction.srem(fromIndexKey, messageIdStr);
-            transaction.srem(toIndexKey, messageIdStr);
-            transaction.srem(ALL_MESSAGES_KEY, messageIdStr);
+        log.debug("Attempting to delete {} messages by ids", ids.size());
 
-            final var results = transaction.exec();
+        final List<UnitResult<Error>> results = new ArrayList<>(Collections.nCopies(ids.size(), null));
+        final List<Integer> pending = new ArrayList<>(ids.size());
 
-            if (results == null || results.isEmpty()) {
-                log.error("Transaction failed while deleting message: {}", id);
-                return UnitResult.failure(GeneralErrors.databaseError("Redis transaction failed"));
+        for (int i = 0; i < ids.size(); i++) {
+            if (Guard.isNullOrEmpty(ids.get(i))) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsEmpty("id")));
+            } else {
+                pending.add(i);
             }
+        }
 
-            log.info("Successfully deleted message: {} from {} to {}",
-                    id, message.getFrom(), message.getTo());
-            return UnitResult.success();
+        try (Jedis jedis = jedisPool.getResource()) {
+            final List<Optional<Message>> stored = readStored(jedis, pending.stream().map(ids::get).toList());
+            final List<Integer> existing = new ArrayList<>(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                if (stored.get(i).isPresent()) {
+                    existing.add(i);
+                } else {
+                    final UUID id = ids.get(pending.get(i));
+                    results.set(pending.get(i), UnitResult.failure(GeneralErrors.entityNotFound("Message", id)));
+                }
+            }
+
+            final List<Object> replies = evalBatch(jedis, DELETE_SCRIPT,
+                    existing.stream().map(i -> layout.deleteKeys(stored.get(i).orElseThrow())).toList(),
+                    existing.stream().map(i -> layout.deleteArgs(ids.get(pending.get(i)))).toList());
+
+            try {
+                for (int i = 0; i < existing.size(); i++) {
+                    final int index = pending.get(existing.get(i));
+                    Object reply = replies.get(i);
+                    if (STALE_INDEX_KEYS.equals(reply)) {
+                        reply = deleteStored(jedis, ids.get(index));
+                    }
 
+                    if (reply instanceof Exception e) {
+                        log.error("Error occurred while deleting message with id: {}", ids.get(index), e);
+                        results.set(index, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                    } else if (Long.valueOf(1L).equals(reply)) {
+                        results.set(index, UnitResult.success());
+                    } else if (STALE_INDEX_KEYS.equals(reply)) {
+                        results.set(index, UnitResult.failure(
+                                GeneralErrors.conflict("Message " + ids.get(index) + " was changed concurrently")));
+                    } else {
+                        results.set(index, UnitResult.failure(GeneralErrors.entityNotFound("Message", ids.get(index))));
+                    }
+                }
+            } finally {
+                nearCache.invalidate(jedis, pending.stream().map(ids::get).toList());
+            }
         } catch (Exception e) {
-            log.error("Error occurred while deleting message with id: {}", id, e);
-            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+            log.error("Error occurred while deleting {} messages by ids", ids.size(), e);
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                }
+            }
         }
+
+        log.info("Processed delete batch of {} messages", ids.size());
+        return results;
     }
 
     /**
@@ -230,9 +603,8 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
             return Collections.emptyList();
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var fromIndexKey = USER_FROM_INDEX_PREFIX + fromUserId;
-            final var messageIds = jedis.smembers(fromIndexKey);
+        try (Jedis jedis = readRouter.forUsers(fromUserId).getResource()) {
+            final var messageIds = jedis.smembers(layout.fromIndexKey(fromUserId));
 
             if (messageIds.isEmpty()) {
                 log.debug("No messages found from user: {}", fromUserId);
@@ -270,9 +642,8 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
             return Collections.emptyList();
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var toIndexKey = USER_TO_INDEX_PREFIX + toUserId;
-            final var messageIds = jedis.smembers(toIndexKey);
+        try (Jedis jedis = readRouter.forUsers(toUserId).getResource()) {
+            final var messageIds = jedis.smembers(layout.toIndexKey(toUserId));
 
             if (messageIds.isEmpty()) {
                 log.debug("No messages found from user: {}", toUserId);
@@ -295,15 +666,23 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
     }
 
     /**
-     * Найти переписку между двумя пользователями.
+     * Найти страницу переписки между двумя пользователями.
+     * Читает ID из Sorted Set переписки (ZREVRANGEBYSCORE c LIMIT), поэтому
+     * стоимость запроса зависит только от размера страницы, а не от истории пользователей.
+     * С ID курсора тем же pipeline читается миллисекунда курсора целиком ({@link ConversationCursor}).
      *
-     * @param user1Id ID первого пользователя
-     * @param user2Id ID второго пользователя
-     * @return список сообщений, отсортированных по дате
+     * @param user1Id  ID первого пользователя
+     * @param user2Id  ID второго пользователя
+     * @param before   курсор: время первого сообщения предыдущей страницы (null - самые свежие)
+     * @param beforeId ID первого сообщения предыдущей страницы или null
+     * @param limit    максимальный размер страницы
+     * @return страница сообщений, отсортированных по дате по возрастанию
      */
     @Override
-    public List<Message> findConversation(final UUID user1Id, final UUID user2Id) {
-        log.debug("Fetching conversation between users: {} and {}", user1Id, user2Id);
+    public List<Message> findConversation(final UUID user1Id, final UUID user2Id,
+                                          final Instant before, final UUID beforeId, final int limit) {
+        log.debug("Fetching conversation page between users: {} and {}, before: {}/{}, limit: {}",
+                user1Id, user2Id, before, beforeId, limit);
 
         if (Guard.isNullOrEmpty(user1Id)) {
             log.warn("FindConversation called with null or empty user1Id");
@@ -315,33 +694,38 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
             return Collections.emptyList();
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final String from1Key = USER_FROM_INDEX_PREFIX + user1Id;
-            final String to1Key = USER_TO_INDEX_PREFIX + user2Id;
-            final String from2Key = USER_FROM_INDEX_PREFIX + user2Id;
-            final String to2Key = USER_TO_INDEX_PREFIX + user1Id;
-
-            // Получаем сообщения от user1 к user2
-            final var messages1to2 = jedis.sinter(from1Key, to1Key);
+        if (limit <= 0) {
+            log.warn("FindConversation called with non-positive limit: {}", limit);
+            return Collections.emptyList();
+        }
 
-            // Получаем сообщения от user2 к user1
-            final var messages2to1 = jedis.sinter(from2Key, to2Key);
+        try (Jedis jedis = readRouter.forUsers(user1Id, user2Id).getResource()) {
+            final byte[] conversationKey = layout.conversationKey(user1Id, user2Id);
+            final ConversationCursor cursor = ConversationCursor.of(before, beforeId);
+
+            // Берём самые свежие сообщения до курсора, затем разворачиваем страницу в хронологический порядок
+            final Pipeline pipeline = jedis.pipelined();
+            final Response<List<byte[]>> boundary = cursor.hasBoundary()
+                    ? pipeline.zrevrangeByScore(conversationKey,
+                            SafeEncoder.encode(cursor.boundaryScore()), SafeEncoder.encode(cursor.boundaryScore()))
+                    : null;
+            final Response<List<byte[]>> older = pipeline.zrevrangeByScore(
+                    conversationKey, SafeEncoder.encode(cursor.olderMaxScore()), MIN_SCORE, 0, limit);
+            pipeline.sync();
 
-            Set<String> allMessageIds = new HashSet<>();
-            allMessageIds.addAll(messages1to2);
-            allMessageIds.addAll(messages2to1);
+            final byte[] cursorMember = cursor.hasBoundary() ? layout.member(beforeId) : null;
+            final List<byte[]> newestFirst = ConversationCursor.page(
+                    boundary == null ? List.of() : boundary.get(),
+                    older.get(),
+                    member -> ConversationCursor.isOlder(member, cursorMember),
+                    limit);
 
-            if (allMessageIds.isEmpty()) {
+            if (newestFirst.isEmpty()) {
                 log.debug("No conversation found between users: {} and {}", user1Id, user2Id);
                 return Collections.emptyList();
             }
 
-            log.debug("Found {} messages in conversation between users: {} and {}",
-                    allMessageIds.size(), user1Id, user2Id);
-
-            final var messages = getMessagesByIds(jedis, allMessageIds);
-            // Сортируем по дате
-            messages.sort(Comparator.comparing(Message::getDate));
+            final var messages = getMessagesByIds(jedis, newestFirst.reversed());
 
             log.info("Successfully fetched {} messages in conversation between users: {} and {}",
                     messages.size(), user1Id, user2Id);
@@ -353,6 +737,74 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
         }
     }
 
+    /**
+     * Найти сообщения пользователя, созданные или изменённые после курсора.
+     * Читает ленту user:updates:{userId} через ZRANGEBYSCORE c LIMIT: score - номер изменения
+     * из messages:seq, поэтому курсор не зависит от часов клиентов и экземпляров приложения.
+     * Запрашивается на одну запись больше лимита, чтобы определить, есть ли следующая страница.
+     * Лента всегда читается с основного Redis: по ней досинхронизируются SSE и long polling сразу
+     * после оповещения о сохранении, и отставание реплики задержало бы доставку.
+     *
+     * @param userId ID пользователя
+     * @param since  курсор из предыдущего ответа (0 - с начала)
+     * @param limit  максимальный размер страницы
+     * @return Result со страницей изменений и следующим курсором или Error
+     */
+    @Override
+    public Result<UpdatesPage<Message>, Error> findUpdates(final UUID userId, final long since, final int limit) {
+        log.debug("Fetching updates for user: {}, since: {}, limit: {}", userId, since, limit);
+
+        if (Guard.isNullOrEmpty(userId)) {
+            log.warn("FindUpdates called with null or empty userId");
+            return Result.failure(GeneralErrors.valueIsEmpty("userId"));
+        }
+
+        if (since < 0) {
+            log.warn("FindUpdates called with negative cursor: {}", since);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("since", since, 0, Long.MAX_VALUE));
+        }
+
+        if (limit < 1) {
+            log.warn("FindUpdates called with non-positive limit: {}", limit);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("limit", limit, 1, Integer.MAX_VALUE));
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            final List<Tuple> entries = jedis.zrangeByScoreWithScores(
+                    layout.updatesKey(userId), SafeEncoder.encode("(" + since), SafeEncoder.encode("+inf"), 0, limit + 1);
+
+            final boolean hasMore = entries.size() > limit;
+            final List<Tuple> page = hasMore ? entries.subList(0, limit) : entries;
+
+            if (page.isEmpty()) {
+                log.debug("No updates for user: {} since: {}", userId, since);
+                return Result.success(new UpdatesPage<>(Collections.emptyList(), Collections.emptyList(), since, false));
+            }
+
+            // Курсор - номер последнего изменения страницы, даже если само сообщение уже истекло
+            final long cursor = (long) page.getLast().getScore();
+            final List<byte[]> ids = new ArrayList<>(page.size());
+            final List<UUID> deletedIds = new ArrayList<>();
+            for (Tuple entry : page) {
+                final UUID deletedId = layout.deletedId(entry.getBinaryElement());
+                if (deletedId != null) {
+                    deletedIds.add(deletedId);
+                } else {
+                    ids.add(entry.getBinaryElement());
+                }
+            }
+            final var messages = getMessagesByIds(jedis, ids);
+
+            log.info("Successfully fetched {} updates and {} deletions for user: {}, next cursor: {}",
+                    messages.size(), deletedIds.size(), userId, cursor);
+            return Result.success(new UpdatesPage<>(messages, deletedIds, cursor, hasMore));
+
+        } catch (Exception e) {
+            log.error("Error occurred while fetching updates for user: {}", userId, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
     /**
      * Подсчитать количество сообщений от пользователя.
      *
@@ -368,9 +820,8 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
             return 0L;
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var fromIndexKey = USER_FROM_INDEX_PREFIX + fromUserId;
-            final var count = jedis.scard(fromIndexKey);
+        try (Jedis jedis = readRouter.forUsers(fromUserId).getResource()) {
+            final var count = jedis.scard(layout.fromIndexKey(fromUserId));
 
             log.debug("User {} has {} messages sent", fromUserId, count);
             return count;
@@ -396,9 +847,8 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
             return 0L;
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final var toIndexKey = USER_TO_INDEX_PREFIX + toUserId;
-            final var count = jedis.scard(toIndexKey);
+        try (Jedis jedis = readRouter.forUsers(toUserId).getResource()) {
+            final var count = jedis.scard(layout.toIndexKey(toUserId));
 
             log.debug("User {} has {} messages received", toUserId, count);
             return count;
@@ -424,9 +874,9 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
             return false;
         }
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            final String messageKey = MESSAGE_KEY_PREFIX + id;
-            boolean exists = jedis.exists(messageKey);
+        try {
+            final byte[] messageKey = layout.messageKey(id);
+            final boolean exists = readWithPrimaryFallback(jedis -> jedis.exists(messageKey), found -> !found);
 
             log.debug("Message {} exists: {}", id, exists);
             return exists;
@@ -445,92 +895,379 @@ public class RedisMessageRepository implements ru.test.the.best.chat.core.reposi
      */
     @Override
     public UnitResult<Error> deleteAll() {
+        return deleteAll((scannedKeys, deletedKeys) -> { });
+    }
+
+    /**
+     * Удалить все сообщения (ОСТОРОЖНО!) инкрементально.
+     * Один проход SCAN по пространству ключей: ключи обеих раскладок сообщений из каждой страницы
+     * удаляются через UNLINK (память освобождается в фоне на стороне Redis).
+     * Соединение берётся из пула на каждую страницу, в памяти держится не больше одной страницы ключей.
+     * Сообщения, сохранённые во время удаления, могут остаться.
+     *
+     * @param progressListener обработчик прогресса, вызывается после каждой страницы
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> deleteAll(final DeleteAllProgressListener progressListener) {
         log.warn("Attempting to delete ALL messages from Redis");
 
-        try (Jedis jedis = jedisPool.getResource()) {
-            // Получаем все ID сообщений
-            final var allMessageIds = jedis.smembers(ALL_MESSAGES_KEY);
+        if (Guard.isNull(progressListener)) {
+            log.warn("DeleteAll called with null progress listener");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("progressListener"));
+        }
 
-            if (allMessageIds.isEmpty()) {
-                log.info("No messages to delete");
-                return UnitResult.success();
+        final ScanParams scanParams = new ScanParams().count(DELETE_ALL_SCAN_COUNT);
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        long deleted = 0;
+
+        do {
+            try (Jedis jedis = jedisPool.getResource()) {
+                final ScanResult<byte[]> page = jedis.scan(cursor, scanParams);
+                cursor = page.getCursorAsBytes();
+
+                final byte[][] keys = page.getResult().stream()
+                        .filter(key -> isMessageLayoutKey(SafeEncoder.encode(key)) || MessageKeyLayout.BINARY.isLayoutKey(key))
+                        .toArray(byte[][]::new);
+                final long unlinked = keys.length == 0 ? 0 : jedis.unlink(keys);
+
+                deleted += unlinked;
+                progressListener.onProgress(page.getResult().size(), unlinked);
+            } catch (Exception e) {
+                log.error("Error occurred while deleting all messages at cursor: {}", SafeEncoder.encode(cursor), e);
+                return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
             }
+        } while (!Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, cursor));
 
-            // Получаем все ключи для удаления
-            HashSet<String> allKeys = new HashSet<>();
+        try (Jedis jedis = jedisPool.getResource()) {
+            nearCache.invalidateAll(jedis);
+        } catch (Exception e) {
+            log.warn("Failed to invalidate message near cache after deleting all messages", e);
+        }
 
-            // Добавляем ключи сообщений
-            for (String id : allMessageIds) {
-                allKeys.add(MESSAGE_KEY_PREFIX + id);
+        log.warn("Successfully deleted {} message keys and indexes", deleted);
+        return UnitResult.success();
+    }
+
+    /**
+     * Загрузить Lua-скрипты в Redis при старте приложения.
+     * Если Redis недоступен, скрипты будут загружены при первом вызове (NOSCRIPT).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadScripts() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (LuaScript script : List.of(SAVE_SCRIPT, DELETE_SCRIPT, UPDATE_SCRIPT)) {
+                script.load(jedis);
             }
+            log.info("Redis message scripts loaded");
+        } catch (Exception e) {
+            log.warn("Failed to preload Redis message scripts, they will be loaded on first use", e);
+        }
+    }
+
+    /**
+     * Построить индексы переписок и ленты изменений для сообщений, сохранённых до их появления.
+     * Каждый индекс строится один раз на кластер в фоне после старта приложения:
+     * повторный запуск блокируется маркером, одновременный - блокировкой с TTL.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIndexes() {
+        Thread.ofVirtual()
+                .name("message-index-backfill")
+                .start(() -> {
+                    final KeySchema schema = layout.schema();
+                    runIndexBackfill("conversation", schema.staticKey(CONVERSATION_BACKFILL_DONE_KEY),
+                            schema.staticKey(CONVERSATION_BACKFILL_LOCK_KEY), this::indexConversations);
+                    runIndexBackfill("updates", schema.staticKey(UPDATES_BACKFILL_DONE_KEY),
+                            schema.staticKey(UPDATES_BACKFILL_LOCK_KEY), this::indexUpdates);
+                });
+    }
 
-            // Добавляем ключи индексов (получаем все ключи user:messages:*)
-            Set<String> indexKeys = jedis.keys(USER_FROM_INDEX_PREFIX + "*");
-            allKeys.addAll(indexKeys);
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
 
-            indexKeys = jedis.keys(USER_TO_INDEX_PREFIX + "*");
-            allKeys.addAll(indexKeys);
+    /**
+     * Прочитать без привязки к пользователю: с реплики, а промах - повторно с основного Redis,
+     * так как только что сохранённое значение могло ещё не дойти до реплики.
+     *
+     * @param read   чтение на соединении
+     * @param isMiss признак промаха, после которого читать с основного Redis
+     */
+    private <T> T readWithPrimaryFallback(final Function<Jedis, T> read, final Predicate<T> isMiss) {
+        final JedisPool readPool = readRouter.forAnyUser();
+        if (readPool != jedisPool) {
+            try (Jedis jedis = readPool.getResource()) {
+                final T value = read.apply(jedis);
+                if (!isMiss.test(value)) {
+                    return value;
+                }
+            }
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            return read.apply(jedis);
+        }
+    }
 
-            // Добавляем общий индекс
-            allKeys.add(ALL_MESSAGES_KEY);
+    /**
+     * ARGV для save_message.lua.
+     */
+    private List<byte[]> saveArgs(final Message message) {
+        final List<byte[]> args = new ArrayList<>();
+        args.add(messageCodec.encode(message));
+        args.add(SafeEncoder.encode(String.valueOf(MESSAGE_TTL)));
+        args.add(layout.member(message.getId()));
+        args.addAll(layout.indexSpecs(message, Side.BOTH));
+        return args;
+    }
 
-            // Удаляем все через pipeline
-            final var pipeline = jedis.pipelined();
-            for (String key : allKeys) {
-                pipeline.del(key);
+    /**
+     * Опубликовать сохранённые сообщения в messages:events одним pipeline.
+     * Pub/Sub не гарантирует доставку, поэтому ошибка публикации не отменяет сохранение:
+     * клиенты досинхронизируются через ленту изменений.
+     *
+     * @param encodedMessages закодированные сообщения (первый ARGV save_message.lua)
+     */
+    private static void publishSaved(final Jedis jedis, final List<byte[]> encodedMessages) {
+        if (encodedMessages.isEmpty()) {
+            return;
+        }
+        try {
+            final Pipeline pipeline = jedis.pipelined();
+            for (byte[] encoded : encodedMessages) {
+                pipeline.publish(MESSAGE_EVENTS_CHANNEL_BYTES, encoded);
             }
             pipeline.sync();
+        } catch (Exception e) {
+            log.warn("Failed to publish {} saved messages", encodedMessages.size(), e);
+        }
+    }
 
-            log.warn("Successfully deleted {} messages and all indexes", allMessageIds.size());
-            return UnitResult.success();
+    /**
+     * Пройти messages:all текущей раскладки через SSCAN и передать каждую страницу сообщений в indexer.
+     *
+     * @param name     название индекса для логов
+     * @param doneKey  маркер завершённого построения
+     * @param lockKey  блокировка от одновременного построения на нескольких экземплярах
+     * @param indexer  запись страницы сообщений в индекс
+     */
+    private void runIndexBackfill(final String name, final String doneKey, final String lockKey,
+                                  final BiConsumer<Jedis, List<Message>> indexer) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (jedis.exists(doneKey)) {
+                log.debug("{} indexes already backfilled", name);
+                return;
+            }
+
+            final String lock = jedis.set(lockKey, Instant.now().toString(),
+                    SetParams.setParams().nx().ex(BACKFILL_LOCK_TTL));
+            if (lock == null) {
+                log.debug("{} index backfill is running on another instance", name);
+                return;
+            }
+
+            log.info("Starting {} index backfill", name);
+            final ScanParams scanParams = new ScanParams().count(BACKFILL_BATCH_SIZE);
+            byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+            long indexed = 0;
+
+            do {
+                final ScanResult<byte[]> page = jedis.sscan(layout.allMessagesKey(), cursor, scanParams);
+                cursor = page.getCursorAsBytes();
+
+                final List<Message> messages = getMessagesByIds(jedis, page.getResult());
+                if (!messages.isEmpty()) {
+                    indexer.accept(jedis, messages);
+                    indexed += messages.size();
+                }
+            } while (!Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, cursor));
+
+            jedis.set(doneKey, Instant.now().toString());
+            jedis.del(lockKey);
+            log.info("{} index backfill finished, indexed {} messages", name, indexed);
 
         } catch (Exception e) {
-            log.error("Error occurred while deleting all messages", e);
-            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+            log.error("Error occurred while backfilling {} indexes", name, e);
         }
     }
 
-    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+    /**
+     * Добавить сообщения в индексы их переписок.
+     */
+    private void indexConversations(final Jedis jedis, final List<Message> messages) {
+        final Pipeline pipeline = jedis.pipelined();
+        for (Message message : messages) {
+            pipeline.zadd(layout.conversationKey(message.getFrom(), message.getTo()),
+                    message.getDate().toEpochMilli(), layout.member(message.getId()));
+        }
+        pipeline.sync();
+    }
+
+    /**
+     * Добавить сообщения в ленты изменений отправителя и получателя скриптом backfill_updates.lua.
+     * Номера изменений выдаются в одном скрипте с записью в ленты, поэтому сохранение, выполненное
+     * параллельно с backfill, не получает номер больше ещё не записанных; внутри страницы
+     * сообщения нумеруются по дате. NX не трогает сообщения, уже записанные в ленту при сохранении.
+     */
+    private void indexUpdates(final Jedis jedis, final List<Message> messages) {
+        final List<Message> byDate = messages.stream()
+                .sorted(Comparator.comparing(Message::getDate))
+                .toList();
+
+        final List<byte[]> keys = new ArrayList<>(byDate.size() * 2 + 1);
+        final List<byte[]> args = new ArrayList<>(byDate.size());
+        keys.add(SafeEncoder.encode(MESSAGE_SEQUENCE_KEY));
+        for (Message message : byDate) {
+            keys.add(layout.updatesKey(message.getFrom()));
+            keys.add(layout.updatesKey(message.getTo()));
+            args.add(layout.member(message.getId()));
+        }
+        BACKFILL_UPDATES_SCRIPT.eval(jedis, keys, args);
+    }
+
+    /**
+     * Удалить сообщение через delete_message.lua, повторяя вызов, пока ключи индексов устаревают.
+     *
+     * @return ответ скрипта: 1 - удалено, 0 - сообщения нет, {@link RedisMessageScripts#STALE_INDEX_KEYS} - не удалось
+     */
+    private Object deleteStored(final Jedis jedis, final UUID id) {
+        Object deleted = STALE_INDEX_KEYS;
+        for (int attempt = 0; attempt < STALE_INDEX_ATTEMPTS && STALE_INDEX_KEYS.equals(deleted); attempt++) {
+            final Optional<Message> stored = readStored(jedis, id);
+            deleted = stored.isPresent()
+                    ? DELETE_SCRIPT.eval(jedis, layout.deleteKeys(stored.get()), layout.deleteArgs(id))
+                    : 0L;
+        }
+        return deleted;
+    }
+
+    /**
+     * Прочитать сохранённое значение с основного Redis в обход кешей: по его участникам
+     * строятся ключи индексов для delete_message.lua и update_message.lua.
+     */
+    private Optional<Message> readStored(final Jedis jedis, final UUID id) {
+        return readStored(jedis, List.of(id)).getFirst();
+    }
+
+    private List<Optional<Message>> readStored(final Jedis jedis, final List<UUID> ids) {
+        final Pipeline pipeline = jedis.pipelined();
+        final List<Response<byte[]>> responses = ids.stream()
+                .map(id -> pipeline.get(layout.messageKey(id)))
+                .toList();
+        pipeline.sync();
+
+        final List<Optional<Message>> stored = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            final byte[] value = responses.get(i).get();
+            if (value == null) {
+                stored.add(Optional.empty());
+                continue;
+            }
+            final Result<Message, Error> decoded = messageCodec.decode(value);
+            if (decoded.isFailure()) {
+                throw new IllegalStateException("Cannot decode stored message " + ids.get(i) + ": "
+                        + decoded.getError().getMessage());
+            }
+            stored.add(Optional.of(decoded.getValue()));
+        }
+        return stored;
+    }
 
     /**
      * Получить сообщения по списку ID через pipeline (batch).
-     * Оптимизирует количество обращений к Redis.
+     * Оптимизирует количество обращений к Redis: сообщения из {@link MessageNearCache}
+     * не запрашиваются, остальные читаются за один round-trip.
+     * Порядок результата совпадает с порядком итерации messageIds.
      *
      * @param jedis      подключение к Redis
-     * @param messageIds Set с ID сообщений
+     * @param messageIds коллекция с членами индексов - ID сообщений в представлении текущей раскладки
      * @return список сообщений
      */
-    private List<Message> getMessagesByIds(final Jedis jedis, final Set<String> messageIds) {
+    private List<Message> getMessagesByIds(final Jedis jedis, final Collection<byte[]> messageIds) {
         if (messageIds.isEmpty()) {
             return Collections.emptyList();
         }
 
-        // Используем pipeline для batch-получения всех сообщений за один round-trip
-        Pipeline pipeline = jedis.pipelined();
-        List<Response<String>> responses = new ArrayList<>();
+        if (clientCache != null) {
+            return getMessagesByIdsFromClientCache(messageIds);
+        }
+
+        final List<Message> messages = new ArrayList<>(messageIds.size());
+        final Map<Integer, Response<byte[]>> responses = new LinkedHashMap<>();
+        final long stamp = nearCache.stamp();
 
-        for (String messageId : messageIds) {
-            String messageKey = MESSAGE_KEY_PREFIX + messageId;
-            responses.add(pipeline.get(messageKey));
+        // Используем pipeline для batch-получения всех промахов кеша за один round-trip
+        final Pipeline pipeline = jedis.pipelined();
+        for (byte[] messageId : messageIds) {
+            final Message cached = nearCache.isEnabled() ? nearCache.get(layout.schema().parseMember(messageId)) : null;
+            if (cached == null) {
+                responses.put(messages.size(), pipeline.get(layout.messageKey(messageId)));
+            }
+            messages.add(cached);
         }
 
         // Выполняем все запросы одним батчем
-        pipeline.sync();
+        if (!responses.isEmpty()) {
+            pipeline.sync();
+        }
 
-        return responses.stream()
-                .map(Response::get)
+        responses.forEach((index, response) -> {
+            final byte[] value = response.get();
+            if (value == null || value.length == 0) {
+                return;
+            }
+            final Result<Message, Error> messageResult = messageCodec.decode(value);
+            if (messageResult.isFailure()) {
+                log.error("Failed to decode message: {}", messageResult.getError().getMessage());
+                return;
+            }
+            nearCache.put(messageResult.getValue(), value.length, stamp);
+            messages.set(index, messageResult.getValue());
+        });
+
+        return messages.stream()
                 .filter(Objects::nonNull)
-                .filter(json -> !json.isEmpty())
-                .map(json -> {
-                    try {
-                        return gson.fromJson(json, Message.class);
-                    } catch (Exception e) {
-                        log.error("Failed to deserialize message from JSON", e);
-                        return null;
-                    }
-                })
+                .toList();
+    }
+
+    /**
+     * Получить сообщения по списку ID через {@link RedisClientCache}: сначала из {@link MessageNearCache},
+     * затем попадания клиентского кеша не уходят в сеть, промахи читаются параллельно отдельными GET
+     * (одновременно не больше размера пула клиента).
+     */
+    private List<Message> getMessagesByIdsFromClientCache(final Collection<byte[]> messageIds) {
+        final long stamp = nearCache.stamp();
+        final List<Message> messages = new ArrayList<>(messageIds.size());
+        final List<Integer> missIndexes = new ArrayList<>();
+        final List<byte[]> missKeys = new ArrayList<>();
+
+        // Ближний кеш проверяется первым: попадания не занимают соединения клиентского кеша
+        for (byte[] messageId : messageIds) {
+            final Message cached = nearCache.isEnabled() ? nearCache.get(layout.schema().parseMember(messageId)) : null;
+            if (cached == null) {
+                missIndexes.add(messages.size());
+                missKeys.add(layout.messageKey(messageId));
+            }
+            messages.add(cached);
+        }
+
+        if (!missKeys.isEmpty()) {
+            final List<byte[]> values = clientCache.getAll(missKeys);
+            for (int i = 0; i < values.size(); i++) {
+                final byte[] value = values.get(i);
+                if (value == null || value.length == 0) {
+                    continue;
+                }
+                final Result<Message, Error> messageResult = messageCodec.decode(value);
+                if (messageResult.isFailure()) {
+                    log.error("Failed to decode message: {}", messageResult.getError().getMessage());
+                    continue;
+                }
+                nearCache.put(messageResult.getValue(), value.length, stamp);
+                messages.set(missIndexes.get(i), messageResult.getValue());
+            }
+        }
+
+        return messages.stream()
                 .filter(Objects::nonNull)
                 .toList();
     }
 }
-
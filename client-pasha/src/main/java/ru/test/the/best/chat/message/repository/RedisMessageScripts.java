@@ -0,0 +1,113 @@
+package ru.test.the.best.chat.message.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.redis.LuaScript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Lua-скрипты записи сообщений и их пакетный вызов, общие для {@link RedisMessageRepository}
+ * и {@link ShardedRedisMessageRepository}.
+ */
+@Slf4j
+final class RedisMessageScripts {
+
+    static final LuaScript SAVE_SCRIPT = LuaScript.fromClasspath("save_message.lua");
+    static final LuaScript DELETE_SCRIPT = LuaScript.fromClasspath("delete_message.lua");
+    static final LuaScript UPDATE_SCRIPT = LuaScript.fromClasspath("update_message.lua");
+
+    /**
+     * Ответ delete_message.lua и update_message.lua: значение сменило участников после чтения,
+     * и переданные ключи индексов устарели. Скрипт ничего не изменил, вызов повторяется с перечитанным значением.
+     * Тот же ответ у compare_and_set_message.lua в {@link ClusterRedisMessageRepository}: значение изменилось после чтения.
+     */
+    static final Long STALE_INDEX_KEYS = -1L;
+
+    /**
+     * Сколько раз вызывать скрипт, пока ключи индексов устаревают из-за одновременных изменений.
+     */
+    static final int STALE_INDEX_ATTEMPTS = 3;
+
+    private RedisMessageScripts() {
+    }
+
+    /**
+     * ARGV для delete_message.lua в текстовой раскладке.
+     */
+    static List<byte[]> deleteArgs(final UUID id) {
+        return MessageKeyLayout.TEXT.deleteArgs(id);
+    }
+
+    /**
+     * ARGV для delete_message.lua в текстовой раскладке без записи об удалении в лентах изменений.
+     */
+    static List<byte[]> moveArgs(final UUID id) {
+        return MessageKeyLayout.TEXT.deleteArgs(id, false);
+    }
+
+    /**
+     * KEYS для delete_message.lua в текстовой раскладке.
+     */
+    static List<byte[]> deleteKeys(final Message stored) {
+        return MessageKeyLayout.TEXT.deleteKeys(stored);
+    }
+
+    /**
+     * KEYS для update_message.lua в текстовой раскладке.
+     */
+    static List<byte[]> updateKeys(final Message stored, final Message message, final RedisMessageKeys.Side side) {
+        return MessageKeyLayout.TEXT.updateKeys(stored, message, side);
+    }
+
+    /**
+     * Выполнить скрипт для каждого набора KEYS/ARGV одним pipeline.
+     * Вызовы, получившие NOSCRIPT, повторяются один раз после SCRIPT LOAD.
+     *
+     * @return ответ скрипта или исключение для каждого вызова, в порядке keys
+     */
+    static List<Object> evalBatch(final Jedis jedis, final LuaScript script,
+                                  final List<List<byte[]>> keys, final List<List<byte[]>> args) {
+        final List<Object> replies = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        List<Integer> pending = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            pending.add(i);
+        }
+
+        for (int attempt = 0; attempt < 2 && !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                log.warn("Redis script {} is not loaded, loading it", script.getName());
+                script.load(jedis);
+            }
+
+            final Pipeline pipeline = jedis.pipelined();
+            final List<Response<Object>> responses = new ArrayList<>(pending.size());
+            for (int index : pending) {
+                responses.add(script.eval(pipeline, keys.get(index), args.get(index)));
+            }
+            pipeline.sync();
+
+            final List<Integer> notLoaded = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                final int index = pending.get(i);
+                try {
+                    replies.set(index, responses.get(i).get());
+                } catch (JedisNoScriptException e) {
+                    replies.set(index, e);
+                    notLoaded.add(index);
+                } catch (Exception e) {
+                    replies.set(index, e);
+                }
+            }
+            pending = notLoaded;
+        }
+        return replies;
+    }
+}
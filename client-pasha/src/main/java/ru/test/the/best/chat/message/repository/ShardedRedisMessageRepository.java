@@ -0,0 +1,1649 @@
+package ru.test.the.best.chat.message.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.resps.Tuple;
+import redis.clients.jedis.util.SafeEncoder;
+import ru.test.the.best.chat.codec.MessageCodec;
+import ru.test.the.best.chat.core.redis.ConsistentHashRing;
+import ru.test.the.best.chat.core.repository.UpdatesPage;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Guard;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.model.dto.admin.ShardingStatusResponse;
+import ru.test.the.best.chat.redis.JedisPoolMetrics;
+import ru.test.the.best.chat.redis.JedisPools;
+import ru.test.the.best.chat.redis.KeySchema;
+import ru.test.the.best.chat.redis.LuaScript;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static ru.test.the.best.chat.message.repository.RedisMessageKeys.*;
+import static ru.test.the.best.chat.message.repository.RedisMessageScripts.*;
+
+/**
+ * Репозиторий сообщений, распределённых по нескольким серверам Redis (шардам).
+ * <p>
+ * Шард пользователя выбирается консистентным хешированием его ID ({@link ConsistentHashRing}
+ * с виртуальными узлами). На шарде пользователя лежат его индексы (входящие, исходящие, лента изменений)
+ * и значения всех его сообщений: сообщение между пользователями на разных шардах хранится в двух копиях,
+ * индексы отправителя - на шарде отправителя, получателя - на шарде получателя ({@link RedisMessageKeys.Side}).
+ * Поэтому входящие, исходящие, счётчики и лента изменений читаются с одного шарда одним pipeline,
+ * а страница переписки собирается параллельно максимум с двух шардов: каждый хранит переписку
+ * со стороны отправленных сообщений. Поиск по ID и удаление опрашивают все шарды.
+ * <p>
+ * Раскладка ключей на каждом шарде та же, что у {@link RedisMessageRepository}, и пишется теми же
+ * Lua-скриптами; атомарность есть только в пределах шарда: если запись на второй шард не удалась,
+ * первая копия остаётся, а вызов возвращает ошибку. Счётчик messages:seq у каждого шарда свой,
+ * курсор ленты изменений пользователя относится к счётчику его шарда.
+ * <p>
+ * Добавление шарда ({@link #addShard}) переключает кольцо сразу, а пользователей, сменивших шард,
+ * переносит фоновая перебалансировка. Пока пользователь не перенесён, его запросы идут на прежний шард;
+ * перенос пользователя и запись с его участием исключают друг друга блокировкой пользователя.
+ * Блокировки и состояние перебалансировки живут в памяти экземпляра, поэтому шард добавляется во время работы,
+ * только если запущен один экземпляр: экземпляры отмечаются в messages:sharding:instances основного Redis,
+ * и при других живых экземплярах {@link #addShard} отказывает. Пока идёт перебалансировка, маркер
+ * messages:sharding:rebalancing не даёт запуститься новым экземплярам. Остальные экземпляры получают шард
+ * в списке messages.sharding.shards при следующем развёртывании.
+ * <p>
+ * Индексы истёкших сообщений вычищает {@link MessageIndexReaper} на каждом шарде (messages.reaper.*),
+ * публикация в messages:events идёт через основной Redis (redis.host).
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "messages.sharding.enabled", havingValue = "true")
+public class ShardedRedisMessageRepository implements ru.test.the.best.chat.core.repository.Repository<Message, UUID> {
+
+    private static final int USER_LOCK_STRIPES = 256;
+    private static final int SCAN_COUNT = 1000;
+    private static final String SHARD_POOL_PREFIX = "shard-";
+
+    private static final byte[] MESSAGE_EVENTS_CHANNEL_BYTES = SafeEncoder.encode(MESSAGE_EVENTS_CHANNEL);
+
+    private static final LuaScript RAISE_SEQUENCE_SCRIPT = LuaScript.fromClasspath("raise_sequence.lua");
+
+    private static final String INSTANCES_KEY = "messages:sharding:instances";
+    private static final String REBALANCING_KEY = "messages:sharding:rebalancing";
+    // Экземпляр считается остановленным, если не отмечался столько интервалов heartbeat
+    private static final int HEARTBEAT_MISSES = 3;
+
+    private final JedisPool eventsPool;
+    private final JedisPoolConfig poolConfig;
+    private final MessageCodec<Message> messageCodec;
+    private final MeterRegistry meterRegistry;
+    private final String username;
+    private final String password;
+    private final long validationIdleThresholdMillis;
+    private final boolean reaperEnabled;
+    private final int reaperBatchSize;
+    private final int reaperSweepPagesPerRun;
+    private final long heartbeatIntervalMillis;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final ReentrantReadWriteLock[] userLocks = new ReentrantReadWriteLock[USER_LOCK_STRIPES];
+    private final Set<UUID> movedUsers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rebalancing = new AtomicBoolean();
+    private final AtomicLong movedUsersCount = new AtomicLong();
+    private final ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter movedUsersCounter;
+    private final Map<String, MessageIndexReaper> reapers = new ConcurrentHashMap<>();
+
+    private volatile ConsistentHashRing<JedisPool> ring;
+    // Кольцо до добавления шарда: по нему маршрутизируются ещё не перенесённые пользователи
+    private volatile ConsistentHashRing<JedisPool> previousRing;
+
+    public ShardedRedisMessageRepository(
+            @Qualifier("jedisPool") final JedisPool eventsPool,
+            final JedisPoolConfig poolConfig,
+            final MessageCodec<Message> messageCodec,
+            final MeterRegistry meterRegistry,
+            @Value("${messages.sharding.shards}") final String shards,
+            @Value("${messages.sharding.virtual-nodes:160}") final int virtualNodes,
+            @Value("${redis.username}") final String username,
+            @Value("${redis.password}") final String password,
+            @Value("${redis.validation.idle-threshold-ms}") final long validationIdleThresholdMillis,
+            @Value("${messages.reaper.enabled:true}") final boolean reaperEnabled,
+            @Value("${messages.reaper.batch-size:500}") final int reaperBatchSize,
+            @Value("${messages.reaper.sweep-pages-per-run:10}") final int reaperSweepPagesPerRun,
+            @Value("${messages.sharding.heartbeat-interval-ms:5000}") final long heartbeatIntervalMillis) {
+        this.eventsPool = Objects.requireNonNull(eventsPool, "JedisPool cannot be null");
+        this.poolConfig = Objects.requireNonNull(poolConfig, "JedisPoolConfig cannot be null");
+        this.messageCodec = Objects.requireNonNull(messageCodec, "MessageCodec cannot be null");
+        this.meterRegistry = Objects.requireNonNull(meterRegistry, "MeterRegistry cannot be null");
+        this.username = username;
+        this.password = password;
+        this.validationIdleThresholdMillis = validationIdleThresholdMillis;
+        this.reaperEnabled = reaperEnabled;
+        this.reaperBatchSize = reaperBatchSize;
+        this.reaperSweepPagesPerRun = reaperSweepPagesPerRun;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+
+        for (int i = 0; i < USER_LOCK_STRIPES; i++) {
+            userLocks[i] = new ReentrantReadWriteLock();
+        }
+
+        final Map<String, JedisPool> shardPools = new LinkedHashMap<>();
+        for (String shard : shards.split(",")) {
+            final String[] nameAndAddress = shard.trim().split("=", 2);
+            if (nameAndAddress.length != 2 || nameAndAddress[0].isBlank()) {
+                throw new IllegalArgumentException("Shard must be defined as name=host:port: " + shard);
+            }
+            shardPools.put(nameAndAddress[0].trim(),
+                    createShardPool(nameAndAddress[0].trim(), HostAndPort.from(nameAndAddress[1].trim())));
+        }
+        this.ring = new ConsistentHashRing<>(shardPools, virtualNodes);
+
+        this.movedUsersCounter = Counter.builder("messages.sharding.users.moved")
+                .description("Пользователи, перенесённые на другой шард при перебалансировке")
+                .register(meterRegistry);
+        Gauge.builder("messages.sharding.shards", this, repository -> repository.ring.nodes().size())
+                .description("Количество шардов сообщений")
+                .register(meterRegistry);
+
+        log.info("ShardedRedisMessageRepository initialized with shards: {}", shardPools.keySet());
+    }
+
+    /**
+     * Сохранить сообщение на шардах отправителя и получателя.
+     * На каждом шарде значение и индексы его стороны записываются одним вызовом save_message.lua,
+     * после чего сообщение публикуется в канал messages:events основного Redis.
+     *
+     * @param message сообщение для сохранения
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> save(final Message message) {
+        log.debug("Attempting to save message with id: {}", message != null ? message.getId() : "null");
+
+        if (Guard.isNull(message)) {
+            log.warn("Save called with null message");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("message"));
+        }
+
+        if (Guard.isNullOrEmpty(message.getId())) {
+            log.warn("Save called with message without ID");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("message.id"));
+        }
+
+        try {
+            final byte[] encoded = messageCodec.encode(message);
+            withUsersLocked(participants(List.of(message)), () -> {
+                placement(message).forEach((pool, side) -> {
+                    try (Jedis jedis = pool.getResource()) {
+                        SAVE_SCRIPT.eval(jedis, scriptKeys(message, side), saveArgs(encoded, message, side, MESSAGE_TTL));
+                    }
+                });
+                return null;
+            });
+            publishSaved(List.of(encoded));
+
+            log.info("Successfully saved message: {} from {} to {}",
+                    message.getId(), message.getFrom(), message.getTo());
+            return UnitResult.success();
+
+        } catch (Exception e) {
+            log.error("Error occurred while saving message: {}", message.getId(), e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Сохранить несколько сообщений: по одному pipeline вызовов save_message.lua на каждый затронутый шард.
+     * Сообщение считается сохранённым, если записаны копии на всех его шардах.
+     *
+     * @param messages сообщения для сохранения
+     * @return результаты в том же порядке, что и messages
+     */
+    @Override
+    public List<UnitResult<Error>> saveAll(final List<Message> messages) {
+        if (Guard.isNull(messages) || messages.isEmpty()) {
+            log.debug("SaveAll called with no messages");
+            return Collections.emptyList();
+        }
+
+        log.debug("Attempting to save {} messages", messages.size());
+
+        final List<UnitResult<Error>> results = new ArrayList<>(Collections.nCopies(messages.size(), null));
+        final List<Integer> pending = new ArrayList<>(messages.size());
+        final Map<Integer, byte[]> encoded = new HashMap<>();
+
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = messages.get(i);
+            if (Guard.isNull(message)) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsRequired("message")));
+            } else if (Guard.isNullOrEmpty(message.getId())) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsRequired("message.id")));
+            } else {
+                // Сообщение, которое не кодируется, отклоняется отдельно и не срывает остальную пачку
+                try {
+                    encoded.put(i, messageCodec.encode(message));
+                    pending.add(i);
+                } catch (Exception e) {
+                    log.warn("Failed to encode message: {}", message.getId(), e);
+                    results.set(i, UnitResult.failure(GeneralErrors.serializationError(e.getMessage())));
+                }
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return results;
+        }
+
+        try {
+            withUsersLocked(participants(pending.stream().map(messages::get).toList()), () -> {
+                // Вызовы группируются по шардам: один pipeline на шард
+                final Map<JedisPool, List<Integer>> indexesByShard = new LinkedHashMap<>();
+                final Map<JedisPool, List<Side>> sidesByShard = new HashMap<>();
+                for (int index : pending) {
+                    placement(messages.get(index)).forEach((pool, side) -> {
+                        indexesByShard.computeIfAbsent(pool, p -> new ArrayList<>()).add(index);
+                        sidesByShard.computeIfAbsent(pool, p -> new ArrayList<>()).add(side);
+                    });
+                }
+
+                indexesByShard.forEach((pool, indexes) -> {
+                    final List<Side> sides = sidesByShard.get(pool);
+                    final List<List<byte[]>> keys = new ArrayList<>(indexes.size());
+                    final List<List<byte[]>> args = new ArrayList<>(indexes.size());
+                    for (int i = 0; i < indexes.size(); i++) {
+                        final Message message = messages.get(indexes.get(i));
+                        keys.add(scriptKeys(message, sides.get(i)));
+                        args.add(saveArgs(encoded.get(indexes.get(i)), message, sides.get(i), MESSAGE_TTL));
+                    }
+
+                    List<Object> replies;
+                    try (Jedis jedis = pool.getResource()) {
+                        replies = evalBatch(jedis, SAVE_SCRIPT, keys, args);
+                    } catch (Exception e) {
+                        replies = Collections.<Object>nCopies(indexes.size(), e);
+                    }
+
+                    for (int i = 0; i < indexes.size(); i++) {
+                        final int index = indexes.get(i);
+                        if (replies.get(i) instanceof Exception e && results.get(index) == null) {
+                            log.error("Error occurred while saving message: {}", messages.get(index).getId(), e);
+                            results.set(index, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                        }
+                    }
+                });
+                return null;
+            });
+
+            final List<byte[]> saved = new ArrayList<>(pending.size());
+            for (int index : pending) {
+                if (results.get(index) == null) {
+                    results.set(index, UnitResult.success());
+                    saved.add(encoded.get(index));
+                }
+            }
+            publishSaved(saved);
+        } catch (Exception e) {
+            log.error("Error occurred while saving {} messages", messages.size(), e);
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                }
+            }
+        }
+
+        log.info("Saved batch of {} messages", messages.size());
+        return results;
+    }
+
+    /**
+     * Обновить существующее сообщение (check-and-set).
+     * Если шарды участников не изменились, на каждом шарде выполняется update_message.lua
+     * с сохранением TTL. Если изменились (сменился отправитель или получатель), старые копии удаляются,
+     * а новые сохраняются с оставшимся TTL; такой перенос не атомарен.
+     *
+     * @param id      идентификатор сообщения
+     * @param message новое состояние сообщения с тем же ID
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
+     */
+    @Override
+    public UnitResult<Error> update(final UUID id, final Message message) {
+        log.debug("Attempting to update message with id: {}", id);
+
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("Update called with null or empty id");
+            return UnitResult.failure(GeneralErrors.valueIsEmpty("id"));
+        }
+
+        if (Guard.isNull(message)) {
+            log.warn("Update called with null message");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("message"));
+        }
+
+        if (!id.equals(message.getId())) {
+            log.warn("Update called with mismatched ids: {} and {}", id, message.getId());
+            return UnitResult.failure(GeneralErrors.validationError("message.id", "Message id does not match updated id"));
+        }
+
+        try {
+            final Optional<Message> existing = findOnShards(List.of(id)).getFirst();
+            if (existing.isEmpty()) {
+                log.warn("Cannot update: message not found with id: {}", id);
+                return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
+            }
+
+            final Set<UUID> users = participants(List.of(existing.get(), message));
+            final boolean updated = withUsersLocked(users, () -> updateOnShards(existing.get(), message));
+
+            if (!updated) {
+                log.warn("Cannot update: message not found with id: {}", id);
+                return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
+            }
+
+            log.info("Successfully updated message: {} from {} to {}", id, message.getFrom(), message.getTo());
+            return UnitResult.success();
+
+        } catch (ConcurrentModificationException e) {
+            log.warn("Cannot update: {}", e.getMessage());
+            return UnitResult.failure(GeneralErrors.conflict(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error occurred while updating message with id: {}", id, e);
+            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Найти сообщение по ID, опрашивая шарды по очереди до первого найденного.
+     *
+     * @param id идентификатор сообщения
+     * @return Result с Optional<Message> или Error
+     */
+    @Override
+    public Result<Optional<Message>, Error> findById(final UUID id) {
+        log.debug("Attempting to find message by id: {}", id);
+
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("FindById called with null or empty id");
+            return Result.failure(GeneralErrors.valueIsEmpty("id"));
+        }
+
+        try {
+            final Optional<Message> message = findOnShards(List.of(id)).getFirst();
+            log.debug("Message {} found: {}", id, message.isPresent());
+            return Result.success(message);
+        } catch (Exception e) {
+            log.error("Error occurred while finding message by id: {}", id, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Найти сообщения по списку ID: pipeline GET на каждый шард для ещё не найденных ID.
+     *
+     * @param ids идентификаторы сообщений
+     * @return Result со списком в том же порядке, что и ids (Optional.empty для отсутствующих), или Error
+     */
+    @Override
+    public Result<List<Optional<Message>>, Error> findAllByIds(final List<UUID> ids) {
+        log.debug("Attempting to find {} messages by ids", ids != null ? ids.size() : 0);
+
+        if (Guard.isNull(ids)) {
+            log.warn("FindAllByIds called with null ids");
+            return Result.failure(GeneralErrors.valueIsRequired("ids"));
+        }
+
+        if (ids.isEmpty()) {
+            return Result.success(Collections.emptyList());
+        }
+
+        try {
+            final List<Optional<Message>> messages = findOnShards(ids);
+            log.debug("Found {} of {} messages by ids",
+                    messages.stream().filter(Optional::isPresent).count(), ids.size());
+            return Result.success(messages);
+        } catch (Exception e) {
+            log.error("Error occurred while finding {} messages by ids", ids.size(), e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Найти все сообщения со всех шардов; копии на шардах отправителя и получателя схлопываются.
+     * ВНИМАНИЕ: Может быть медленным при большом количестве сообщений!
+     *
+     * @return список всех сообщений
+     */
+    @Override
+    public List<Message> findAll() {
+        log.debug("Fetching all messages from {} shards", ring.nodes().size());
+
+        try {
+            final Map<UUID, Message> messages = new LinkedHashMap<>();
+            for (JedisPool pool : ring.nodes().values()) {
+                try (Jedis jedis = pool.getResource()) {
+                    for (Message message : getMessagesByIds(jedis, jedis.smembers(ALL_MESSAGES_KEY))) {
+                        messages.putIfAbsent(message.getId(), message);
+                    }
+                }
+            }
+
+            log.info("Successfully fetched {} messages", messages.size());
+            return new ArrayList<>(messages.values());
+
+        } catch (Exception e) {
+            log.error("Error occurred while fetching all messages", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Обойти все сообщения постранично: SSCAN по messages:all каждого шарда по очереди.
+     * Из двух копий сообщения отдаётся копия с шарда отправителя; во время перебалансировки
+     * сообщения перенесённых пользователей могут повториться или пропасть.
+     *
+     * @param pageSize     значение COUNT для SSCAN
+     * @param pageConsumer обработчик очередной страницы
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> scanAll(final int pageSize, final Consumer<List<Message>> pageConsumer) {
+        log.debug("Scanning all messages with page size: {}", pageSize);
+
+        if (pageSize < 1) {
+            log.warn("ScanAll called with non-positive page size: {}", pageSize);
+            return UnitResult.failure(GeneralErrors.valueIsOutOfRange("pageSize", pageSize, 1, Integer.MAX_VALUE));
+        }
+
+        if (Guard.isNull(pageConsumer)) {
+            log.warn("ScanAll called with null page consumer");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("pageConsumer"));
+        }
+
+        final ScanParams scanParams = new ScanParams().count(pageSize);
+        long scanned = 0;
+
+        for (JedisPool pool : ring.nodes().values()) {
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                final List<Message> page;
+
+                try (Jedis jedis = pool.getResource()) {
+                    final ScanResult<String> scanResult = jedis.sscan(ALL_MESSAGES_KEY, cursor, scanParams);
+                    cursor = scanResult.getCursor();
+                    page = getMessagesByIds(jedis, scanResult.getResult()).stream()
+                            .filter(message -> ownerOf(message.getFrom()) == pool)
+                            .toList();
+                } catch (Exception e) {
+                    log.error("Error occurred while scanning messages at cursor: {}", cursor, e);
+                    return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+                }
+
+                if (!page.isEmpty()) {
+                    pageConsumer.accept(page);
+                    scanned += page.size();
+                }
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        }
+
+        log.info("Successfully scanned {} messages", scanned);
+        return UnitResult.success();
+    }
+
+    /**
+     * Удалить сообщение по ID на всех шардах, где есть его копии.
+     *
+     * @param id идентификатор сообщения
+     * @return UnitResult с результатом операции, entity.not.found если сообщения нет
+     */
+    @Override
+    public UnitResult<Error> deleteById(final UUID id) {
+        log.debug("Attempting to delete message with id: {}", id);
+
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("DeleteById called with null or empty id");
+            return UnitResult.failure(GeneralErrors.valueIsEmpty("id"));
+        }
+
+        final List<UnitResult<Error>> results = deleteAllByIds(List.of(id));
+        if (results.getFirst().isSuccess()) {
+            log.info("Successfully deleted message: {}", id);
+        }
+        return results.getFirst();
+    }
+
+    /**
+     * Удалить сообщения по списку ID: pipeline вызовов delete_message.lua на каждом шарде.
+     * Участники читаются заранее, чтобы удаление не пересеклось с переносом их данных;
+     * по ним же строятся ключи индексов для скрипта.
+     *
+     * @param ids идентификаторы сообщений
+     * @return результаты в том же порядке, что и ids, entity.not.found для отсутствующих
+     */
+    @Override
+    public List<UnitResult<Error>> deleteAllByIds(final List<UUID> ids) {
+        if (Guard.isNull(ids) || ids.isEmpty()) {
+            log.debug("DeleteAllByIds called with no ids");
+            return Collections.emptyList();
+        }
+
+        log.debug("Attempting to delete {} messages by ids", ids.size());
+
+        final List<UnitResult<Error>> results = new ArrayList<>(Collections.nCopies(ids.size(), null));
+        final List<Integer> pending = new ArrayList<>(ids.size());
+
+        for (int i = 0; i < ids.size(); i++) {
+            if (Guard.isNullOrEmpty(ids.get(i))) {
+                results.set(i, UnitResult.failure(GeneralErrors.valueIsEmpty("id")));
+            } else {
+                pending.add(i);
+            }
+        }
+
+        try {
+            final List<UUID> pendingIds = pending.stream().map(ids::get).toList();
+            final List<Optional<Message>> stored = findOnShards(pendingIds);
+            final List<Integer> existing = new ArrayList<>(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                if (stored.get(i).isPresent()) {
+                    existing.add(i);
+                }
+            }
+            final boolean[] deleted = new boolean[pending.size()];
+
+            withUsersLocked(participants(stored.stream().flatMap(Optional::stream).toList()), () -> {
+                final List<List<byte[]>> keys = existing.stream()
+                        .map(i -> RedisMessageScripts.deleteKeys(stored.get(i).orElseThrow()))
+                        .toList();
+                final List<List<byte[]>> args = existing.stream()
+                        .map(i -> RedisMessageScripts.deleteArgs(pendingIds.get(i)))
+                        .toList();
+
+                for (JedisPool pool : ring.nodes().values()) {
+                    try (Jedis jedis = pool.getResource()) {
+                        final List<Object> replies = evalBatch(jedis, DELETE_SCRIPT, keys, args);
+                        for (int i = 0; i < existing.size(); i++) {
+                            final int index = pending.get(existing.get(i));
+                            if (replies.get(i) instanceof Exception e) {
+                                log.error("Error occurred while deleting message with id: {}", ids.get(index), e);
+                                results.set(index, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                            } else if (STALE_INDEX_KEYS.equals(replies.get(i))) {
+                                log.warn("Message {} was changed concurrently, not deleted", ids.get(index));
+                                results.set(index, UnitResult.failure(
+                                        GeneralErrors.conflict("Message " + ids.get(index) + " was changed concurrently")));
+                            } else if (Long.valueOf(1L).equals(replies.get(i))) {
+                                deleted[existing.get(i)] = true;
+                            }
+                        }
+                    }
+                }
+                return null;
+            });
+
+            for (int i = 0; i < pending.size(); i++) {
+                final int index = pending.get(i);
+                if (results.get(index) == null) {
+                    results.set(index, deleted[i]
+                            ? UnitResult.success()
+                            : UnitResult.failure(GeneralErrors.entityNotFound("Message", ids.get(index))));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error occurred while deleting {} messages by ids", ids.size(), e);
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+                }
+            }
+        }
+
+        log.info("Processed delete batch of {} messages", ids.size());
+        return results;
+    }
+
+    /**
+     * Найти все сообщения от пользователя на его шарде.
+     *
+     * @param fromUserId ID отправителя
+     * @return список сообщений
+     */
+    @Override
+    public List<Message> findAllByFrom(final UUID fromUserId) {
+        log.debug("Fetching all messages from user: {}", fromUserId);
+
+        if (Guard.isNullOrEmpty(fromUserId)) {
+            log.warn("FindAllByFrom called with null or empty fromUserId");
+            return Collections.emptyList();
+        }
+
+        try (Jedis jedis = ownerOf(fromUserId).getResource()) {
+            final var messages = getMessagesByIds(jedis, jedis.smembers(USER_FROM_INDEX_PREFIX + fromUserId));
+
+            log.info("Successfully fetched {} messages from user: {}", messages.size(), fromUserId);
+            return messages;
+
+        } catch (Exception e) {
+            log.error("Error occurred while fetching messages from user: {}", fromUserId, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Найти все сообщения для пользователя на его шарде.
+     *
+     * @param toUserId ID получателя
+     * @return список сообщений
+     */
+    @Override
+    public List<Message> findAllByTo(final UUID toUserId) {
+        log.debug("Fetching all messages to user: {}", toUserId);
+
+        if (Guard.isNullOrEmpty(toUserId)) {
+            log.warn("FindAllByTo called with null or empty toUserId");
+            return Collections.emptyList();
+        }
+
+        try (Jedis jedis = ownerOf(toUserId).getResource()) {
+            final var messages = getMessagesByIds(jedis, jedis.smembers(USER_TO_INDEX_PREFIX + toUserId));
+
+            log.info("Successfully fetched {} messages to user: {}", messages.size(), toUserId);
+            return messages;
+
+        } catch (Exception e) {
+            log.error("Error occurred while fetching messages to user: {}", toUserId, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Найти страницу переписки между двумя пользователями.
+     * Каждый шард участника хранит отправленную им часть переписки: с каждого параллельно
+     * читается до limit последних сообщений до курсора, затем страницы сливаются по времени.
+     * Если участники на одном шарде, запрос один.
+     *
+     * @param user1Id  ID первого пользователя
+     * @param user2Id  ID второго пользователя
+     * @param before   курсор: время первого сообщения предыдущей страницы (null - самые свежие)
+     * @param beforeId ID первого сообщения предыдущей страницы или null
+     * @param limit    максимальный размер страницы
+     * @return страница сообщений, отсортированных по дате по возрастанию
+     */
+    @Override
+    public List<Message> findConversation(final UUID user1Id, final UUID user2Id,
+                                          final Instant before, final UUID beforeId, final int limit) {
+        log.debug("Fetching conversation page between users: {} and {}, before: {}/{}, limit: {}",
+                user1Id, user2Id, before, beforeId, limit);
+
+        if (Guard.isNullOrEmpty(user1Id)) {
+            log.warn("FindConversation called with null or empty user1Id");
+            return Collections.emptyList();
+        }
+
+        if (Guard.isNullOrEmpty(user2Id)) {
+            log.warn("FindConversation called with null or empty user2Id");
+            return Collections.emptyList();
+        }
+
+        if (limit <= 0) {
+            log.warn("FindConversation called with non-positive limit: {}", limit);
+            return Collections.emptyList();
+        }
+
+        try {
+            final String conversationKey = conversationKey(user1Id, user2Id);
+            final ConversationCursor cursor = ConversationCursor.of(before, beforeId);
+
+            final List<CompletableFuture<List<Message>>> parts = new LinkedHashSet<JedisPool>(
+                    List.of(ownerOf(user1Id), ownerOf(user2Id))).stream()
+                    .map(pool -> CompletableFuture.supplyAsync(
+                            () -> readConversationPart(pool, conversationKey, cursor, limit), readers))
+                    .toList();
+
+            final Map<UUID, Message> merged = new LinkedHashMap<>();
+            for (CompletableFuture<List<Message>> part : parts) {
+                for (Message message : part.join()) {
+                    merged.putIfAbsent(message.getId(), message);
+                }
+            }
+
+            // Самые свежие limit сообщений обеих частей в хронологическом порядке
+            final List<Message> newestFirst = merged.values().stream()
+                    .sorted(ConversationCursor.NEWEST_FIRST)
+                    .limit(limit)
+                    .toList();
+            final List<Message> messages = newestFirst.reversed();
+
+            log.info("Successfully fetched {} messages in conversation between users: {} and {}",
+                    messages.size(), user1Id, user2Id);
+            return messages;
+        } catch (Exception e) {
+            log.error("Error occurred while fetching conversation between users: {} and {}",
+                    user1Id, user2Id, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Найти сообщения пользователя, созданные или изменённые после курсора.
+     * Лента и значения сообщений пользователя лежат на его шарде, курсор - номер изменения этого шарда.
+     *
+     * @param userId ID пользователя
+     * @param since  курсор из предыдущего ответа (0 - с начала)
+     * @param limit  максимальный размер страницы
+     * @return Result со страницей изменений и следующим курсором или Error
+     */
+    @Override
+    public Result<UpdatesPage<Message>, Error> findUpdates(final UUID userId, final long since, final int limit) {
+        log.debug("Fetching updates for user: {}, since: {}, limit: {}", userId, since, limit);
+
+        if (Guard.isNullOrEmpty(userId)) {
+            log.warn("FindUpdates called with null or empty userId");
+            return Result.failure(GeneralErrors.valueIsEmpty("userId"));
+        }
+
+        if (since < 0) {
+            log.warn("FindUpdates called with negative cursor: {}", since);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("since", since, 0, Long.MAX_VALUE));
+        }
+
+        if (limit < 1) {
+            log.warn("FindUpdates called with non-positive limit: {}", limit);
+            return Result.failure(GeneralErrors.valueIsOutOfRange("limit", limit, 1, Integer.MAX_VALUE));
+        }
+
+        try (Jedis jedis = ownerOf(userId).getResource()) {
+            final List<Tuple> entries = jedis.zrangeByScoreWithScores(
+                    updatesKey(userId), "(" + since, "+inf", 0, limit + 1);
+
+            final boolean hasMore = entries.size() > limit;
+            final List<Tuple> page = hasMore ? entries.subList(0, limit) : entries;
+
+            if (page.isEmpty()) {
+                log.debug("No updates for user: {} since: {}", userId, since);
+                return Result.success(new UpdatesPage<>(Collections.emptyList(), Collections.emptyList(), since, false));
+            }
+
+            final long cursor = (long) page.getLast().getScore();
+            final List<String> ids = new ArrayList<>(page.size());
+            final List<UUID> deletedIds = new ArrayList<>();
+            for (Tuple entry : page) {
+                final UUID deletedId = deletedId(entry.getElement());
+                if (deletedId != null) {
+                    deletedIds.add(deletedId);
+                } else {
+                    ids.add(entry.getElement());
+                }
+            }
+            final var messages = getMessagesByIds(jedis, ids);
+
+            log.info("Successfully fetched {} updates and {} deletions for user: {}, next cursor: {}",
+                    messages.size(), deletedIds.size(), userId, cursor);
+            return Result.success(new UpdatesPage<>(messages, deletedIds, cursor, hasMore));
+
+        } catch (Exception e) {
+            log.error("Error occurred while fetching updates for user: {}", userId, e);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Подсчитать количество сообщений от пользователя.
+     *
+     * @param fromUserId ID отправителя
+     * @return количество сообщений
+     */
+    @Override
+    public long countByFrom(final UUID fromUserId) {
+        log.debug("Counting messages from user: {}", fromUserId);
+
+        if (Guard.isNullOrEmpty(fromUserId)) {
+            log.warn("CountByFrom called with null or empty fromUserId");
+            return 0L;
+        }
+
+        try (Jedis jedis = ownerOf(fromUserId).getResource()) {
+            return jedis.scard(USER_FROM_INDEX_PREFIX + fromUserId);
+        } catch (Exception e) {
+            log.error("Error occurred while counting messages from user: {}", fromUserId, e);
+            return 0L;
+        }
+    }
+
+    /**
+     * Подсчитать количество сообщений для пользователя.
+     *
+     * @param toUserId ID получателя
+     * @return количество сообщений
+     */
+    @Override
+    public long countByTo(final UUID toUserId) {
+        log.debug("Counting messages to user: {}", toUserId);
+
+        if (Guard.isNullOrEmpty(toUserId)) {
+            log.warn("CountByTo called with null or empty toUserId");
+            return 0L;
+        }
+
+        try (Jedis jedis = ownerOf(toUserId).getResource()) {
+            return jedis.scard(USER_TO_INDEX_PREFIX + toUserId);
+        } catch (Exception e) {
+            log.error("Error occurred while counting messages to user: {}", toUserId, e);
+            return 0L;
+        }
+    }
+
+    /**
+     * Проверить существование сообщения на любом из шардов.
+     *
+     * @param id идентификатор сообщения
+     * @return true если сообщение существует
+     */
+    @Override
+    public boolean existsById(final UUID id) {
+        log.debug("Checking if message exists with id: {}", id);
+
+        if (Guard.isNullOrEmpty(id)) {
+            log.warn("ExistsById called with null or empty id");
+            return false;
+        }
+
+        final byte[] key = messageKey(id);
+        for (JedisPool pool : ring.nodes().values()) {
+            try (Jedis jedis = pool.getResource()) {
+                if (jedis.exists(key)) {
+                    return true;
+                }
+            } catch (Exception e) {
+                log.error("Error occurred while checking message existence: {}", id, e);
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Удалить все сообщения (ОСТОРОЖНО!).
+     *
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> deleteAll() {
+        return deleteAll((scannedKeys, deletedKeys) -> { });
+    }
+
+    /**
+     * Удалить все сообщения (ОСТОРОЖНО!) инкрементально: SCAN + UNLINK ключей раскладки
+     * сообщений на каждом шарде по очереди.
+     *
+     * @param progressListener обработчик прогресса, вызывается после каждой страницы
+     * @return UnitResult с результатом операции
+     */
+    @Override
+    public UnitResult<Error> deleteAll(final DeleteAllProgressListener progressListener) {
+        log.warn("Attempting to delete ALL messages from {} shards", ring.nodes().size());
+
+        if (Guard.isNull(progressListener)) {
+            log.warn("DeleteAll called with null progress listener");
+            return UnitResult.failure(GeneralErrors.valueIsRequired("progressListener"));
+        }
+
+        final ScanParams scanParams = new ScanParams().count(SCAN_COUNT);
+        long deleted = 0;
+
+        for (Map.Entry<String, JedisPool> shard : ring.nodes().entrySet()) {
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                try (Jedis jedis = shard.getValue().getResource()) {
+                    final ScanResult<String> page = jedis.scan(cursor, scanParams);
+                    cursor = page.getCursor();
+
+                    final String[] keys = page.getResult().stream()
+                            .filter(RedisMessageKeys::isMessageLayoutKey)
+                            .toArray(String[]::new);
+                    final long unlinked = keys.length == 0 ? 0 : jedis.unlink(keys);
+
+                    deleted += unlinked;
+                    progressListener.onProgress(page.getResult().size(), unlinked);
+                } catch (Exception e) {
+                    log.error("Error occurred while deleting all messages on shard {} at cursor: {}",
+                            shard.getKey(), cursor, e);
+                    return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+                }
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        }
+
+        log.warn("Successfully deleted {} message keys and indexes", deleted);
+        return UnitResult.success();
+    }
+
+    /**
+     * Добавить шард и запустить фоновый перенос пользователей, которые по новому кольцу принадлежат ему.
+     * Повторный вызов с именем шарда, перебалансировка которого прервалась ошибкой, продолжает перенос.
+     * Кольцо и перенесённые пользователи известны только этому экземпляру, поэтому при других живых
+     * экземплярах шард не добавляется: их запросы продолжили бы идти по старому кольцу.
+     *
+     * @param name    имя шарда (определяет его положение на кольце)
+     * @param address адрес в формате host:port
+     * @return Result с состоянием шардирования или Error (data.conflict, если перебалансировка уже идёт
+     * или запущены другие экземпляры)
+     */
+    public Result<ShardingStatusResponse, Error> addShard(final String name, final String address) {
+        if (Guard.isNullOrEmpty(name)) {
+            return Result.failure(GeneralErrors.valueIsEmpty("name"));
+        }
+
+        if (!rebalancing.compareAndSet(false, true)) {
+            return Result.failure(GeneralErrors.conflict("Shard rebalancing is already running"));
+        }
+
+        final ConsistentHashRing<JedisPool> current = previousRing != null ? previousRing : ring;
+        final boolean resume = previousRing != null && ring.nodes().containsKey(name);
+        JedisPool pool = null;
+
+        try {
+            if (previousRing != null && !resume) {
+                rebalancing.set(false);
+                return Result.failure(GeneralErrors.conflict("Interrupted rebalancing must be resumed first"));
+            }
+
+            if (!resume) {
+                if (ring.nodes().containsKey(name)) {
+                    rebalancing.set(false);
+                    return Result.failure(GeneralErrors.duplicateEntity("Shard", "name", name));
+                }
+                pool = createShardPool(name, HostAndPort.from(address));
+                try (Jedis jedis = pool.getResource()) {
+                    jedis.ping();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Cannot add shard {} at {}: {}", name, address, e.getMessage());
+            if (pool != null) {
+                pool.close();
+            }
+            rebalancing.set(false);
+            return Result.failure(GeneralErrors.valueIsInvalid("address", e.getMessage()));
+        }
+
+        final Optional<Error> refused = claimRebalancing(name);
+        if (refused.isPresent()) {
+            if (pool != null) {
+                pool.close();
+            }
+            rebalancing.set(false);
+            return Result.failure(refused.get());
+        }
+
+        final ConsistentHashRing<JedisPool> extended = resume ? ring : current.withNode(name, pool);
+        if (!resume) {
+            // Сначала прежнее кольцо, затем новое: не перенесённые пользователи всё время читаются с прежнего шарда
+            movedUsers.clear();
+            movedUsersCount.set(0);
+            previousRing = current;
+            ring = extended;
+            startReaper(name, pool);
+        }
+
+        Thread.ofVirtual()
+                .name("message-shard-rebalance")
+                .start(() -> rebalance(current, extended, name));
+
+        log.warn("Started rebalancing messages to shard {}", name);
+        return Result.success(status());
+    }
+
+    /**
+     * Текущее состояние шардирования.
+     */
+    public ShardingStatusResponse status() {
+        return new ShardingStatusResponse(List.copyOf(ring.nodes().keySet()), rebalancing.get(), movedUsersCount.get());
+    }
+
+    /**
+     * Загрузить Lua-скрипты на все шарды при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadScripts() {
+        ring.nodes().forEach((name, pool) -> {
+            try (Jedis jedis = pool.getResource()) {
+                for (LuaScript script : List.of(SAVE_SCRIPT, DELETE_SCRIPT, UPDATE_SCRIPT)) {
+                    script.load(jedis);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to preload Redis message scripts on shard {}, they will be loaded on first use", name, e);
+            }
+        });
+    }
+
+    /**
+     * Отметить экземпляр в messages:sharding:instances и запустить очистку индексов на шардах.
+     * Экземпляр не запускается, пока другой экземпляр переносит пользователей на добавленный шард:
+     * он не знает о новом кольце и записал бы сообщения на прежние шарды.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Сначала отметка, затем проверка маркера: см. claimRebalancing
+        heartbeat();
+
+        String rebalancingShard = null;
+        try (Jedis jedis = eventsPool.getResource()) {
+            rebalancingShard = jedis.get(REBALANCING_KEY);
+        } catch (Exception e) {
+            log.warn("Cannot check shard rebalancing marker: {}", e.getMessage());
+        }
+        if (rebalancingShard != null) {
+            throw new IllegalStateException("Messages are being rebalanced to shard " + rebalancingShard
+                    + " by another instance, start after it finishes");
+        }
+
+        ring.nodes().forEach(this::startReaper);
+    }
+
+    /**
+     * Продлить отметку экземпляра и, пока идёт перебалансировка, её маркер.
+     */
+    @Scheduled(fixedDelayString = "${messages.sharding.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        final long now = System.currentTimeMillis();
+        final long expiry = heartbeatIntervalMillis * HEARTBEAT_MISSES;
+        try (Jedis jedis = eventsPool.getResource()) {
+            final Pipeline pipeline = jedis.pipelined();
+            pipeline.zadd(INSTANCES_KEY, now, instanceId);
+            pipeline.zremrangeByScore(INSTANCES_KEY, Double.NEGATIVE_INFINITY, now - expiry);
+            pipeline.pexpire(INSTANCES_KEY, expiry);
+            pipeline.sync();
+        } catch (Exception e) {
+            log.warn("Failed to refresh sharding instance heartbeat: {}", e.getMessage());
+        }
+
+        final ConsistentHashRing<JedisPool> previous = previousRing;
+        if (previous != null) {
+            ring.nodes().keySet().stream()
+                    .filter(name -> !previous.nodes().containsKey(name))
+                    .findFirst()
+                    .ifPresent(this::markRebalancing);
+        }
+    }
+
+    /**
+     * Шаг обхода индексов на каждом шарде (см. {@link MessageIndexReaper#sweep()}).
+     */
+    @Scheduled(fixedDelayString = "${messages.reaper.sweep-interval-ms:1000}")
+    public void sweepShards() {
+        reapers.values().forEach(MessageIndexReaper::sweep);
+    }
+
+    @PreDestroy
+    public void close() {
+        reapers.values().forEach(MessageIndexReaper::stop);
+        try (Jedis jedis = eventsPool.getResource()) {
+            jedis.zrem(INSTANCES_KEY, instanceId);
+        } catch (Exception e) {
+            log.debug("Cannot remove sharding instance heartbeat", e);
+        }
+        readers.shutdown();
+        ring.nodes().values().forEach(JedisPool::close);
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    /**
+     * Шард пользователя: прежний, пока пользователь не перенесён перебалансировкой.
+     */
+    private JedisPool ownerOf(final UUID userId) {
+        final ConsistentHashRing<JedisPool> previous = previousRing;
+        if (previous != null && !movedUsers.contains(userId)) {
+            return previous.nodeFor(userId.toString());
+        }
+        return ring.nodeFor(userId.toString());
+    }
+
+    /**
+     * Поставить маркер перебалансировки и убедиться, что других живых экземпляров нет.
+     * Маркер ставится до проверки, а запускающийся экземпляр отмечается до чтения маркера ({@link #start()}),
+     * поэтому при одновременном запуске либо он виден здесь, либо сам увидит маркер и не запустится.
+     *
+     * @return ошибка, если шард добавлять нельзя
+     */
+    private Optional<Error> claimRebalancing(final String name) {
+        final long since = System.currentTimeMillis() - heartbeatIntervalMillis * HEARTBEAT_MISSES;
+        try (Jedis jedis = eventsPool.getResource()) {
+            jedis.set(REBALANCING_KEY, name, SetParams.setParams().px(heartbeatIntervalMillis * HEARTBEAT_MISSES));
+            final long otherInstances = jedis.zrangeByScore(INSTANCES_KEY, since, Double.POSITIVE_INFINITY).stream()
+                    .filter(instance -> !instance.equals(instanceId))
+                    .count();
+            if (otherInstances > 0) {
+                jedis.del(REBALANCING_KEY);
+                return Optional.of(GeneralErrors.conflict("Shard can be added at runtime only with a single running "
+                        + "instance, " + otherInstances + " other instance(s) are running; "
+                        + "add it to messages.sharding.shards and redeploy"));
+            }
+            return Optional.empty();
+        } catch (Exception e) {
+            log.warn("Cannot check running instances before adding shard {}: {}", name, e.getMessage());
+            return Optional.of(GeneralErrors.serviceUnavailable("Redis"));
+        }
+    }
+
+    /**
+     * Поставить или продлить маркер перебалансировки: пока он есть, новые экземпляры не запускаются.
+     * TTL маркера - несколько интервалов heartbeat, чтобы упавший экземпляр не блокировал запуск навсегда.
+     */
+    private void markRebalancing(final String name) {
+        try (Jedis jedis = eventsPool.getResource()) {
+            jedis.set(REBALANCING_KEY, name, SetParams.setParams().px(heartbeatIntervalMillis * HEARTBEAT_MISSES));
+        } catch (Exception e) {
+            log.warn("Failed to mark rebalancing to shard {}: {}", name, e.getMessage());
+        }
+    }
+
+    private void clearRebalancing() {
+        try (Jedis jedis = eventsPool.getResource()) {
+            jedis.del(REBALANCING_KEY);
+        } catch (Exception e) {
+            log.warn("Failed to clear rebalancing marker, it expires in {} ms: {}",
+                    heartbeatIntervalMillis * HEARTBEAT_MISSES, e.getMessage());
+        }
+    }
+
+    /**
+     * Запустить очистку индексов истёкших сообщений на шарде.
+     */
+    private void startReaper(final String name, final JedisPool pool) {
+        final MessageIndexReaper reaper = MessageIndexReaper.forPool(pool, SHARD_POOL_PREFIX + name, meterRegistry,
+                KeySchema.TEXT, reaperEnabled, reaperBatchSize, reaperSweepPagesPerRun);
+        if (reapers.putIfAbsent(name, reaper) == null) {
+            reaper.start();
+        }
+    }
+
+    /**
+     * Шарды сообщения и стороны переписки, чьи индексы на них пишутся.
+     */
+    private Map<JedisPool, Side> placement(final Message message) {
+        final JedisPool senderShard = ownerOf(message.getFrom());
+        final JedisPool recipientShard = ownerOf(message.getTo());
+        if (senderShard == recipientShard) {
+            return Map.of(senderShard, Side.BOTH);
+        }
+        final Map<JedisPool, Side> placement = new LinkedHashMap<>();
+        placement.put(senderShard, Side.SENDER);
+        placement.put(recipientShard, Side.RECIPIENT);
+        return placement;
+    }
+
+    /**
+     * Обновить копии сообщения. Вызывается под блокировками старых и новых участников.
+     * Ключи старых индексов строятся по прочитанному до блокировки значению stored.
+     *
+     * @return false, если сообщения нет ни на одном шарде
+     * @throws ConcurrentModificationException если значение сменило участников после чтения
+     */
+    private boolean updateOnShards(final Message stored, final Message message) {
+        final byte[] key = messageKey(message.getId());
+        final Map<JedisPool, Side> placement = placement(message);
+
+        final Map<JedisPool, Long> copies = new LinkedHashMap<>();
+        for (JedisPool pool : ring.nodes().values()) {
+            try (Jedis jedis = pool.getResource()) {
+                final long ttlMillis = jedis.pttl(key);
+                if (ttlMillis != -2) {
+                    copies.put(pool, ttlMillis);
+                }
+            }
+        }
+        if (copies.isEmpty()) {
+            return false;
+        }
+
+        final byte[] encoded = messageCodec.encode(message);
+        if (copies.keySet().equals(placement.keySet())) {
+            for (Map.Entry<JedisPool, Side> shard : placement.entrySet()) {
+                try (Jedis jedis = shard.getKey().getResource()) {
+                    final Object updated = UPDATE_SCRIPT.eval(jedis, updateKeys(stored, message, shard.getValue()),
+                            updateArgs(encoded, message, shard.getValue()));
+                    if (STALE_INDEX_KEYS.equals(updated)) {
+                        throw new ConcurrentModificationException("Message " + message.getId() + " was changed concurrently");
+                    }
+                }
+            }
+            return true;
+        }
+
+        // Участник сменил шард: копии переносятся с оставшимся TTL
+        final long ttlMillis = copies.values().iterator().next();
+        final int ttlSeconds = ttlMillis > 0 ? (int) Math.max(1, ttlMillis / 1000) : MESSAGE_TTL;
+        for (JedisPool pool : copies.keySet()) {
+            try (Jedis jedis = pool.getResource()) {
+                DELETE_SCRIPT.eval(jedis, deleteKeys(stored), moveArgs(message.getId()));
+            }
+        }
+        for (Map.Entry<JedisPool, Side> shard : placement.entrySet()) {
+            try (Jedis jedis = shard.getKey().getResource()) {
+                SAVE_SCRIPT.eval(jedis, scriptKeys(message, shard.getValue()),
+                        saveArgs(encoded, message, shard.getValue(), ttlSeconds));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Прочитать с шарда отправленную его пользователями часть переписки.
+     */
+    private List<Message> readConversationPart(final JedisPool pool, final String conversationKey,
+                                               final ConversationCursor cursor, final int limit) {
+        try (Jedis jedis = pool.getResource()) {
+            final Pipeline pipeline = jedis.pipelined();
+            final Response<List<String>> boundary = cursor.hasBoundary()
+                    ? pipeline.zrevrangeByScore(conversationKey, cursor.boundaryScore(), cursor.boundaryScore())
+                    : null;
+            final Response<List<String>> older = pipeline.zrevrangeByScore(
+                    conversationKey, cursor.olderMaxScore(), "-inf", 0, limit);
+            pipeline.sync();
+
+            final String cursorMember = cursor.hasBoundary() ? cursor.beforeId().toString() : null;
+            final List<String> newestFirst = ConversationCursor.page(
+                    boundary == null ? List.of() : boundary.get(),
+                    older.get(),
+                    member -> member.compareTo(cursorMember) < 0,
+                    limit);
+            return getMessagesByIds(jedis, newestFirst);
+        }
+    }
+
+    /**
+     * Найти сообщения по ID: каждый следующий шард опрашивается только по ещё не найденным ID.
+     */
+    private List<Optional<Message>> findOnShards(final List<UUID> ids) {
+        final List<Optional<Message>> messages = new ArrayList<>(Collections.nCopies(ids.size(), Optional.empty()));
+        List<Integer> missing = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            missing.add(i);
+        }
+
+        for (JedisPool pool : ring.nodes().values()) {
+            if (missing.isEmpty()) {
+                break;
+            }
+
+            final List<Response<byte[]>> responses = new ArrayList<>(missing.size());
+            try (Jedis jedis = pool.getResource()) {
+                final Pipeline pipeline = jedis.pipelined();
+                for (int index : missing) {
+                    responses.add(pipeline.get(messageKey(ids.get(index))));
+                }
+                pipeline.sync();
+            }
+
+            final List<Integer> stillMissing = new ArrayList<>();
+            for (int i = 0; i < missing.size(); i++) {
+                final int index = missing.get(i);
+                final byte[] value = responses.get(i).get();
+                if (value == null || value.length == 0) {
+                    stillMissing.add(index);
+                    continue;
+                }
+
+                final Result<Message, Error> messageResult = messageCodec.decode(value);
+                if (messageResult.isFailure()) {
+                    log.error("Failed to decode message with id: {}", ids.get(index));
+                    continue;
+                }
+                messages.set(index, Optional.of(messageResult.getValue()));
+            }
+            missing = stillMissing;
+        }
+        return messages;
+    }
+
+    /**
+     * Перенести на добавленный шард пользователей, сменивших шард, затем закончить перебалансировку.
+     * При ошибке прежнее кольцо остаётся: не перенесённые пользователи продолжают работать с прежними шардами.
+     */
+    private void rebalance(final ConsistentHashRing<JedisPool> current,
+                           final ConsistentHashRing<JedisPool> extended, final String name) {
+        try {
+            final ScanParams scanParams = new ScanParams().count(SCAN_COUNT);
+            for (Map.Entry<String, JedisPool> shard : current.nodes().entrySet()) {
+                final JedisPool source = shard.getValue();
+                String cursor = ScanParams.SCAN_POINTER_START;
+                do {
+                    final Set<UUID> users = new HashSet<>();
+                    try (Jedis jedis = source.getResource()) {
+                        final ScanResult<String> page = jedis.scan(cursor, scanParams);
+                        cursor = page.getCursor();
+                        page.getResult().forEach(key -> userOfIndexKey(key).ifPresent(users::add));
+                    }
+
+                    for (UUID user : users) {
+                        final JedisPool target = extended.nodeFor(user.toString());
+                        if (current.nodeFor(user.toString()) == source && target != source
+                                && !movedUsers.contains(user)) {
+                            moveUser(user, source, target, current, extended);
+                        }
+                    }
+                } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+
+                log.info("Rebalanced shard {}, moved {} users so far", shard.getKey(), movedUsersCount.get());
+            }
+
+            previousRing = null;
+            clearRebalancing();
+            log.warn("Finished rebalancing messages to shard {}, moved {} users", name, movedUsersCount.get());
+        } catch (Exception e) {
+            log.error("Rebalancing messages to shard {} failed, repeat adding the shard to resume", name, e);
+        } finally {
+            rebalancing.set(false);
+        }
+    }
+
+    /**
+     * Перенести индексы, ленту изменений (с записями об удалении) и значения сообщений пользователя под его блокировкой.
+     * Сначала всё копируется на новый шард с исходными TTL и номерами изменений, затем пользователь
+     * отмечается перенесённым и только после этого удаляется с прежнего шарда, чтобы чтения
+     * ни в какой момент не остались без данных. Значение удаляется с прежнего шарда, если оно
+     * не нужно второму участнику.
+     */
+    private void moveUser(final UUID user, final JedisPool source, final JedisPool target,
+                          final ConsistentHashRing<JedisPool> current, final ConsistentHashRing<JedisPool> extended) {
+        final ReentrantReadWriteLock.WriteLock lock = userLock(user).writeLock();
+        lock.lock();
+        try {
+            final String fromIndexKey = USER_FROM_INDEX_PREFIX + user;
+            final String toIndexKey = USER_TO_INDEX_PREFIX + user;
+            final String updatesKey = updatesKey(user);
+
+            final Map<String, Double> updates = new HashMap<>();
+            final List<String> ids = new ArrayList<>();
+            final List<Response<byte[]>> values = new ArrayList<>();
+            final List<Response<Long>> ttls = new ArrayList<>();
+            final long sourceSequence;
+
+            try (Jedis jedis = source.getResource()) {
+                final String sequence = jedis.get(MESSAGE_SEQUENCE_KEY);
+                sourceSequence = sequence != null ? Long.parseLong(sequence) : 0L;
+                final Set<String> messageIds = new TreeSet<>(jedis.smembers(fromIndexKey));
+                messageIds.addAll(jedis.smembers(toIndexKey));
+                for (Tuple entry : jedis.zrangeWithScores(updatesKey, 0, -1)) {
+                    updates.put(entry.getElement(), entry.getScore());
+                    if (deletedId(entry.getElement()) == null) {
+                        messageIds.add(entry.getElement());
+                    }
+                }
+
+                final Pipeline pipeline = jedis.pipelined();
+                for (String id : messageIds) {
+                    ids.add(id);
+                    values.add(pipeline.get(messageKey(id)));
+                    ttls.add(pipeline.pttl(messageKey(id)));
+                }
+                pipeline.sync();
+            }
+
+            final List<Message> messages = new ArrayList<>(ids.size());
+            try (Jedis jedis = target.getResource()) {
+                // Номера изменений, выданные шардом после переноса, должны быть больше любого курсора
+                // клиента: курсор мог прийти от записи, уже удалённой из ленты (удаление, чистка индексов),
+                // поэтому счётчик поднимается до текущего messages:seq прежнего шарда, а не до максимума ленты
+                final long maxSequence = Math.max(sourceSequence,
+                        updates.values().stream().mapToLong(Double::longValue).max().orElse(0L));
+                RAISE_SEQUENCE_SCRIPT.eval(jedis, List.of(SafeEncoder.encode(MESSAGE_SEQUENCE_KEY)),
+                        List.of(SafeEncoder.encode(String.valueOf(maxSequence))));
+
+                final Pipeline pipeline = jedis.pipelined();
+                for (int i = 0; i < ids.size(); i++) {
+                    final byte[] value = values.get(i).get();
+                    final long ttlMillis = ttls.get(i).get();
+                    if (value == null || value.length == 0 || ttlMillis == -2) {
+                        // Истёкшее сообщение не переносится, его записи в индексах удаляются вместе с ключами
+                        continue;
+                    }
+
+                    final Result<Message, Error> decoded = messageCodec.decode(value);
+                    if (decoded.isFailure()) {
+                        log.error("Failed to decode message {} while moving user {}", ids.get(i), user);
+                        continue;
+                    }
+
+                    final Message message = decoded.getValue();
+                    final String id = ids.get(i);
+                    messages.add(message);
+
+                    pipeline.set(messageKey(id), value,
+                            ttlMillis > 0 ? SetParams.setParams().px(ttlMillis) : SetParams.setParams());
+                    if (user.equals(message.getFrom())) {
+                        pipeline.sadd(fromIndexKey, id);
+                        pipeline.zadd(conversationKey(message.getFrom(), message.getTo()),
+                                message.getDate().toEpochMilli(), id);
+                    }
+                    if (user.equals(message.getTo())) {
+                        pipeline.sadd(toIndexKey, id);
+                    }
+                    pipeline.sadd(ALL_MESSAGES_KEY, id);
+                    pipeline.hset(MESSAGE_OWNERS_KEY, id, message.getFrom().toString() + message.getTo());
+                    final Double score = updates.get(id);
+                    if (score != null) {
+                        pipeline.zadd(updatesKey, score, id);
+                    }
+                }
+                // Записи об удалении переносятся как есть: клиенты с курсором до удаления должны их получить
+                updates.forEach((member, score) -> {
+                    if (deletedId(member) != null) {
+                        pipeline.zadd(updatesKey, score, member);
+                    }
+                });
+                pipeline.sync();
+            }
+
+            movedUsers.add(user);
+
+            try (Jedis jedis = source.getResource()) {
+                final Pipeline pipeline = jedis.pipelined();
+                pipeline.unlink(fromIndexKey, toIndexKey, updatesKey);
+                for (Message message : messages) {
+                    final String id = message.getId().toString();
+                    if (user.equals(message.getFrom())) {
+                        pipeline.zrem(conversationKey(message.getFrom(), message.getTo()), id);
+                    }
+
+                    final UUID other = user.equals(message.getFrom()) ? message.getTo() : message.getFrom();
+                    final boolean neededByOther = !other.equals(user)
+                            && (extended.nodeFor(other.toString()) == source
+                            || (current.nodeFor(other.toString()) == source && !movedUsers.contains(other)));
+                    if (!neededByOther) {
+                        pipeline.unlink(messageKey(id));
+                        pipeline.srem(ALL_MESSAGES_KEY, id);
+                        pipeline.hdel(MESSAGE_OWNERS_KEY, id);
+                    }
+                }
+                pipeline.sync();
+            }
+
+            movedUsersCount.incrementAndGet();
+            movedUsersCounter.increment();
+            log.debug("Moved user {} with {} messages to new shard", user, messages.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выполнить действие под блокировками чтения пользователей: перенос пользователя
+     * (блокировка записи) ждёт завершения его операций и наоборот.
+     * Полосы блокируются по возрастанию номера, повторяющиеся полосы - один раз.
+     */
+    private <T> T withUsersLocked(final Collection<UUID> users, final Supplier<T> action) {
+        final TreeSet<Integer> stripes = new TreeSet<>();
+        for (UUID user : users) {
+            stripes.add(stripeOf(user));
+        }
+
+        final List<ReentrantReadWriteLock.ReadLock> locked = new ArrayList<>(stripes.size());
+        try {
+            for (int stripe : stripes) {
+                final ReentrantReadWriteLock.ReadLock lock = userLocks[stripe].readLock();
+                lock.lock();
+                locked.add(lock);
+            }
+            return action.get();
+        } finally {
+            locked.reversed().forEach(ReentrantReadWriteLock.ReadLock::unlock);
+        }
+    }
+
+    private ReentrantReadWriteLock userLock(final UUID user) {
+        return userLocks[stripeOf(user)];
+    }
+
+    private static int stripeOf(final UUID user) {
+        return Math.floorMod(user.hashCode(), USER_LOCK_STRIPES);
+    }
+
+    private static Set<UUID> participants(final Collection<Message> messages) {
+        final Set<UUID> users = new HashSet<>();
+        for (Message message : messages) {
+            users.add(message.getFrom());
+            users.add(message.getTo());
+        }
+        return users;
+    }
+
+    /**
+     * ID пользователя из ключа его индекса или ленты изменений.
+     */
+    private static Optional<UUID> userOfIndexKey(final String key) {
+        for (String prefix : List.of(USER_FROM_INDEX_PREFIX, USER_TO_INDEX_PREFIX, USER_UPDATES_INDEX_PREFIX)) {
+            if (key.startsWith(prefix)) {
+                try {
+                    return Optional.of(UUID.fromString(key.substring(prefix.length())));
+                } catch (IllegalArgumentException e) {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private JedisPool createShardPool(final String name, final HostAndPort address) {
+        final JedisPool pool = JedisPools.create(SHARD_POOL_PREFIX + name, poolConfig, address,
+                username, password, validationIdleThresholdMillis, meterRegistry);
+        new JedisPoolMetrics(pool, SHARD_POOL_PREFIX + name).bindTo(meterRegistry);
+        return pool;
+    }
+
+    /**
+     * ARGV для save_message.lua.
+     */
+    private static List<byte[]> saveArgs(final byte[] encoded, final Message message, final Side side,
+                                         final int ttlSeconds) {
+        final List<byte[]> args = new ArrayList<>();
+        args.add(encoded);
+        args.add(SafeEncoder.encode(String.valueOf(ttlSeconds)));
+        args.add(SafeEncoder.encode(message.getId().toString()));
+        args.addAll(indexSpecs(message, side));
+        return args;
+    }
+
+    /**
+     * ARGV для update_message.lua: старые записи удаляются по всем шаблонам, новые пишутся для стороны шарда.
+     */
+    private static List<byte[]> updateArgs(final byte[] encoded, final Message message, final Side side) {
+        final List<byte[]> args = new ArrayList<>();
+        args.add(encoded);
+        args.add(SafeEncoder.encode(message.getId().toString()));
+        args.add(SafeEncoder.encode(String.valueOf(INDEX_TEMPLATES.size())));
+        args.addAll(INDEX_TEMPLATES);
+        args.addAll(indexSpecs(message, side));
+        return args;
+    }
+
+    /**
+     * Опубликовать сохранённые сообщения в messages:events основного Redis.
+     * Ошибка публикации не отменяет сохранение: клиенты досинхронизируются через ленту изменений.
+     */
+    private void publishSaved(final List<byte[]> encodedMessages) {
+        if (encodedMessages.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = eventsPool.getResource()) {
+            final Pipeline pipeline = jedis.pipelined();
+            for (byte[] encoded : encodedMessages) {
+                pipeline.publish(MESSAGE_EVENTS_CHANNEL_BYTES, encoded);
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            log.warn("Failed to publish {} saved messages", encodedMessages.size(), e);
+        }
+    }
+
+    /**
+     * Получить сообщения с шарда по списку ID одним pipeline GET.
+     * Порядок результата совпадает с порядком итерации messageIds.
+     */
+    private List<Message> getMessagesByIds(final Jedis jedis, final Collection<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Pipeline pipeline = jedis.pipelined();
+        final List<Response<byte[]>> responses = new ArrayList<>(messageIds.size());
+        for (String messageId : messageIds) {
+            responses.add(pipeline.get(messageKey(messageId)));
+        }
+        pipeline.sync();
+
+        return responses.stream()
+                .map(Response::get)
+                .filter(Objects::nonNull)
+                .filter(value -> value.length > 0)
+                .map(value -> {
+                    final Result<Message, Error> messageResult = messageCodec.decode(value);
+                    if (messageResult.isFailure()) {
+                        log.error("Failed to decode message: {}", messageResult.getError().getMessage());
+                        return null;
+                    }
+                    return messageResult.getValue();
+                })
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
@@ -0,0 +1,118 @@
+package ru.test.the.best.chat.message.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.test.the.best.chat.codec.BlobReference;
+import ru.test.the.best.chat.core.model.value.DataMessage;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.message.repository.BlobStore;
+
+import java.io.InputStream;
+
+/**
+ * Вынос содержимого IMAGE и SOUND сообщений в {@link BlobStore} перед сохранением.
+ * В значении сообщения остаётся ссылка, поэтому списки и переписки читаются без медиа.
+ * <p>
+ * Выносится содержимое от messages.blob.min-bytes; текст (STRING) всегда хранится в сообщении.
+ * Значения со ссылкой пишутся версией 2 формата, поэтому включать после обновления всех экземпляров.
+ * <p>
+ * Загрузки потоком ({@link #shouldStream(String, long)}) пишутся в хранилище по мере чтения,
+ * без сборки содержимого в памяти. Блоб, на который не осталось ссылок (сообщение не сохранилось
+ * или содержимое заменено обновлением), удаляется через {@link #discard(DataMessage)}.
+ */
+@Slf4j
+@Component
+public class MessageBlobOffloader {
+
+    private final BlobStore blobStore;
+    private final boolean enabled;
+    private final int minBytes;
+
+    public MessageBlobOffloader(
+            final BlobStore blobStore,
+            @Value("${messages.blob.enabled:false}") final boolean enabled,
+            @Value("${messages.blob.min-bytes:16384}") final int minBytes) {
+        this.blobStore = blobStore;
+        this.enabled = enabled;
+        this.minBytes = minBytes;
+    }
+
+    /**
+     * Вынести содержимое сообщения в хранилище блобов, если оно подходит по типу и размеру.
+     *
+     * @param message проверенное сообщение с содержимым в памяти
+     * @return Result с тем же сообщением (тот же ID) со ссылкой на блоб или с исходным сообщением
+     */
+    public Result<Message, Error> offload(final Message message) {
+        final DataMessage dataMessage = message.getDataMessage();
+        if (!enabled || dataMessage.isBlob() || "STRING".equals(dataMessage.getType())
+                || dataMessage.getSize() < minBytes) {
+            return Result.success(message);
+        }
+
+        final Result<BlobReference, Error> reference = blobStore.put(dataMessage.getData());
+        if (reference.isFailure()) {
+            log.error("Failed to offload {} payload of message {}", dataMessage.getType(), message.getId());
+            return Result.failure(reference.getError());
+        }
+
+        final Result<DataMessage, Error> blob = DataMessage.blob(reference.getValue(), dataMessage.getType(), blobStore);
+        if (blob.isFailure()) return Result.failure(blob.getError());
+
+        log.debug("Offloaded {} bytes of message {} to blob {}",
+                reference.getValue().size(), message.getId(), reference.getValue().id());
+        return Message.create(message.getDate(), message.getFrom(), message.getTo(), blob.getValue(), message.getId());
+    }
+
+    /**
+     * Писать ли загружаемое содержимое сразу в хранилище блобов.
+     *
+     * @param type         тип содержимого
+     * @param declaredSize заявленный размер содержимого или -1, если он неизвестен
+     * @return true для IMAGE и SOUND при включённом выносе, если размер не меньше min-bytes или неизвестен
+     */
+    public boolean shouldStream(final String type, final long declaredSize) {
+        return enabled && !"STRING".equalsIgnoreCase(type) && (declaredSize < 0 || declaredSize >= minBytes);
+    }
+
+    /**
+     * Записать содержимое из потока в хранилище блобов.
+     *
+     * @param type     тип содержимого
+     * @param input    поток содержимого
+     * @param maxBytes максимальный размер содержимого
+     * @return Result с содержимым-ссылкой или Error (payload.too.large при превышении лимита)
+     */
+    public Result<DataMessage, Error> store(final String type, final InputStream input, final long maxBytes) {
+        final Result<BlobReference, Error> reference = blobStore.put(input, maxBytes);
+        if (reference.isFailure()) {
+            log.warn("Failed to store {} upload: {}", type, reference.getError().getMessage());
+            return Result.failure(reference.getError());
+        }
+
+        log.debug("Stored {} upload of {} bytes to blob {}", type, reference.getValue().size(), reference.getValue().id());
+        return DataMessage.blob(reference.getValue(), type, blobStore);
+    }
+
+    /**
+     * Удалить блоб, на который больше не ссылается ни одно сообщение. Ошибка удаления
+     * только логируется: такой блоб удалится по истечении срока хранения.
+     *
+     * @param dataMessage содержимое, которое не сохранено или заменено; не блоб - ничего не делается
+     */
+    public void discard(final DataMessage dataMessage) {
+        if (dataMessage == null || !dataMessage.isBlob()) {
+            return;
+        }
+
+        final BlobReference reference = dataMessage.getBlob();
+        final UnitResult<Error> deleted = blobStore.delete(reference);
+        if (deleted.isFailure()) {
+            log.warn("Failed to delete unreferenced blob {}: {}", reference.id(), deleted.getError().getMessage());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.test.the.best.chat.message.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Внутрипроцессное оповещение о сохранённых сообщениях.
+ * <p>
+ * {@link MessageService} сообщает сюда о каждом сохранении на этом экземпляре, не дожидаясь
+ * круга через Redis Pub/Sub. Обработчики получают ID участников переписки (отправителя и получателя)
+ * и вызываются в потоке запроса, поэтому не должны блокироваться.
+ */
+@Slf4j
+@Component
+public class MessageNotifier {
+
+    private final List<Consumer<UUID>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Зарегистрировать обработчик.
+     *
+     * @param listener обработчик, получающий ID участника переписки
+     */
+    public void addListener(final Consumer<UUID> listener) {
+        listeners.add(Objects.requireNonNull(listener, "Listener cannot be null"));
+    }
+
+    /**
+     * Оповестить об успешно сохранённом сообщении.
+     *
+     * @param message сохранённое сообщение
+     */
+    public void messageSaved(final Message message) {
+        notifyUser(message.getTo());
+        if (!message.getFrom().equals(message.getTo())) {
+            notifyUser(message.getFrom());
+        }
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void notifyUser(final UUID userId) {
+        for (Consumer<UUID> listener : listeners) {
+            try {
+                listener.accept(userId);
+            } catch (Exception e) {
+                log.error("Message notifier listener failed for user: {}", userId, e);
+            }
+        }
+    }
+}
@@ -3,23 +3,33 @@ package ru.test.the.best.chat.message.service;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.test.the.best.chat.core.metric.MetricOperationNameCore;
 import ru.test.the.best.chat.core.metric.MetricService;
+import ru.test.the.best.chat.core.metric.OperationMetric;
 import ru.test.the.best.chat.core.model.value.DataMessage;
 import ru.test.the.best.chat.core.repository.Repository;
+import ru.test.the.best.chat.core.repository.UpdatesPage;
 import ru.test.the.best.chat.errs.*;
 import ru.test.the.best.chat.errs.Error;
 import ru.test.the.best.chat.message.metric.MetricOperationNameMessage;
 import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.message.model.value.MessageContent;
+import ru.test.the.best.chat.model.dto.message.BatchItemResponse;
 import ru.test.the.best.chat.model.dto.message.CreateMessageRequest;
 import ru.test.the.best.chat.model.dto.message.MessageResponse;
+import ru.test.the.best.chat.model.dto.message.MessageUpdatesResponse;
 
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Сервис для управления сообщениями.
@@ -30,20 +40,56 @@ import java.util.UUID;
 @Transactional(readOnly = true)
 public class MessageService implements ru.test.the.best.chat.core.service.Service<MessageResponse, UUID, CreateMessageRequest> {
 
+    /**
+     * Максимальный размер страницы переписки.
+     */
+    public static final int MAX_CONVERSATION_PAGE_SIZE = 200;
+
+    /**
+     * Максимальное количество элементов в пакетной операции.
+     */
+    public static final int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Максимальный размер страницы ленты изменений.
+     */
+    public static final int MAX_UPDATES_PAGE_SIZE = 500;
+
+    /**
+     * Верхняя граница массива для загрузок, которые читаются в память (ограничение размера массива Java).
+     */
+    private static final long MAX_IN_MEMORY_UPLOAD_BYTES = Integer.MAX_VALUE - 8;
+
     private final Repository<Message, UUID> messageRepository;
 
+    private final MessageWriteBatcher messageWriteBatcher;
+
+    private final MessageNotifier messageNotifier;
+
+    private final MessageBlobOffloader messageBlobOffloader;
+
     private final MetricService metricService;
 
+    private final long maxUploadBytes;
+
     @Autowired
     public MessageService(
             final Repository<Message, UUID> messageRepository,
-            final MeterRegistry meterRegistry) {
+            final MessageWriteBatcher messageWriteBatcher,
+            final MessageNotifier messageNotifier,
+            final MessageBlobOffloader messageBlobOffloader,
+            final MeterRegistry meterRegistry,
+            @Value("${messages.upload.max-bytes:52428800}") final long maxUploadBytes) {
         this.metricService = new MetricService(
                 meterRegistry,
                 MessageService.class,
                 Message.class
         );
         this.messageRepository = messageRepository;
+        this.messageWriteBatcher = messageWriteBatcher;
+        this.messageNotifier = messageNotifier;
+        this.messageBlobOffloader = messageBlobOffloader;
+        this.maxUploadBytes = maxUploadBytes;
     }
 
     /**
@@ -74,6 +120,40 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
         }
     }
 
+    /**
+     * Получить все сообщения постранично, не собирая их в один список.
+     *
+     * @param pageSize     размер страницы
+     * @param pageConsumer обработчик очередной страницы
+     * @return UnitResult с результатом операции
+     */
+    public UnitResult<Error> streamAll(final int pageSize, final Consumer<List<MessageResponse>> pageConsumer) {
+        try {
+            return metricService.timer(MetricOperationNameMessage.STREAM_ALL).recordCallable(() -> {
+                log.debug("Streaming all messages with page size: {}", pageSize);
+
+                final UnitResult<Error> scanResult = messageRepository.scanAll(pageSize, page ->
+                        pageConsumer.accept(page.stream()
+                                .map(Message::toMessageResponse)
+                                .toList())
+                );
+
+                if (scanResult.isSuccess()) {
+                    metricService.recordSuccess(MetricOperationNameMessage.STREAM_ALL);
+                } else {
+                    log.error("Failed to stream all messages: {}", scanResult.getError().getMessage());
+                    metricService.recordError(MetricOperationNameMessage.STREAM_ALL);
+                }
+
+                return scanResult;
+            });
+        } catch (Exception e) {
+            log.error("Error occurred while streaming all messages", e);
+            metricService.recordError(MetricOperationNameMessage.STREAM_ALL);
+            return UnitResult.failure(GeneralErrors.internalServerError(e.getMessage()));
+        }
+    }
+
     /**
      * Найти сообщение по ID.
      *
@@ -100,8 +180,9 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
                     return Result.failure(messageResult.getError());
                 }
 
+                // Одно сообщение отдаётся с содержимым, вынесенное в BlobStore читается здесь
                 final Optional<MessageResponse> response = messageResult.getValue()
-                        .map(Message::toMessageResponse);
+                        .map(Message::toMessageResponseWithContent);
 
                 if (response.isPresent()) {
                     log.info("Message found with id: {}", id);
@@ -120,6 +201,50 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
         }
     }
 
+    /**
+     * Найти содержимое сообщения для выдачи сырыми байтами.
+     * Содержимое не читается целиком: определяется только его тип по первым байтам.
+     *
+     * @param id уникальный идентификатор сообщения
+     * @return Result с Optional<MessageContent> или Error
+     */
+    public Result<Optional<MessageContent>, Error> findContent(final UUID id) {
+        try {
+            return metricService.timer(MetricOperationNameMessage.FIND_CONTENT).recordCallable(() -> {
+                log.debug("Attempting to find content of message: {}", id);
+
+                if (Guard.isNullOrEmpty(id)) {
+                    log.warn("FindContent called with null or empty id");
+                    metricService.recordError(MetricOperationNameMessage.FIND_CONTENT);
+                    return Result.failure(GeneralErrors.valueIsEmpty("id"));
+                }
+
+                final Result<Optional<Message>, Error> messageResult = messageRepository.findById(id);
+
+                if (messageResult.isFailure()) {
+                    log.warn("Failed to find message with id: {}", id);
+                    metricService.recordError(MetricOperationNameMessage.FIND_CONTENT);
+                    return Result.failure(messageResult.getError());
+                }
+
+                if (messageResult.getValue().isEmpty()) {
+                    log.warn("Message not found with id: {}", id);
+                    metricService.recordNotFound();
+                    return Result.success(Optional.<MessageContent>empty());
+                }
+
+                final MessageContent content = MessageContent.of(id, messageResult.getValue().get().getDataMessage());
+                metricService.recordSuccess(MetricOperationNameMessage.FIND_CONTENT);
+                log.info("Content of message {} found: {} bytes of {}", id, content.size(), content.mediaType());
+                return Result.success(Optional.of(content));
+            });
+        } catch (Exception e) {
+            log.error("Error occurred while finding content of message: {}", id, e);
+            metricService.recordError(MetricOperationNameMessage.FIND_CONTENT);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
     /**
      * Удалить сообщение по ID.
      *
@@ -139,25 +264,15 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
                     return UnitResult.failure(GeneralErrors.valueIsEmpty("id"));
                 }
 
-                final Result<Optional<Message>, Error> existingMessage = messageRepository.findById(id);
-
-                if (existingMessage.isFailure()) {
-                    log.error("Failed to check message existence with id: {}", id);
-                    metricService.recordNotFound();
-                    return UnitResult.failure(existingMessage.getError());
-                }
-
-                if (existingMessage.getValue().isEmpty()) {
-                    log.warn("Cannot delete: message not found with id: {}", id);
-                    metricService.recordNotFound();
-                    return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
-                }
-
+                // Проверка существования выполняется атомарно в репозитории
                 final UnitResult<Error> deleteResult = messageRepository.deleteById(id);
 
                 if (deleteResult.isSuccess()) {
                     metricService.recordSuccess(MetricOperationNameCore.DELETE_BY_ID);
                     log.info("Successfully deleted message with id: {}", id);
+                } else if (isNotFound(deleteResult.getError())) {
+                    log.warn("Cannot delete: message not found with id: {}", id);
+                    metricService.recordNotFound();
                 } else {
                     metricService.recordError(MetricOperationNameCore.DELETE_BY_ID);
                     log.error("Failed to delete message with id: {}", id);
@@ -198,21 +313,6 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
                     return UnitResult.failure(GeneralErrors.valueIsRequired("createMessageRequest"));
                 }
 
-
-                final Result<Optional<Message>, Error> existingMessageResult = messageRepository.findById(id);
-
-                if (existingMessageResult.isFailure()) {
-                    log.error("Failed to find message with id: {} during update", id);
-                    metricService.recordNotFound();
-                    return UnitResult.failure(existingMessageResult.getError());
-                }
-
-                if (existingMessageResult.getValue().isEmpty()) {
-                    log.warn("Cannot update: message not found with id: {}", id);
-                    metricService.recordNotFound();
-                    return UnitResult.failure(GeneralErrors.entityNotFound("Message", id));
-                }
-
                 final Result<DataMessage, Error> dataMessageResult = DataMessage.create(
                         createMessageRequest.getDataAsBytes(),
                         createMessageRequest.type()
@@ -224,11 +324,13 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
                     return UnitResult.failure(dataMessageResult.getError());
                 }
 
+                // Сохраняем ID существующей записи
                 final Result<Message, Error> messageResult = Message.create(
                         createMessageRequest.date(),
                         createMessageRequest.from(),
                         createMessageRequest.to(),
-                        dataMessageResult.getValue()
+                        dataMessageResult.getValue(),
+                        id
                 );
 
                 if (messageResult.isFailure()) {
@@ -237,21 +339,47 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
                     return UnitResult.failure(messageResult.getError());
                 }
 
-                // Устанавливаем ID для обновления существующей записи
                 final Message messageToUpdate = messageResult.getValue();
 
-                // Сохраняем обновленное сообщение
-                final UnitResult<Error> saveResult = messageRepository.save(messageToUpdate);
+                final UnitResult<Error> validationResult = validateMessage(messageToUpdate);
+                if (validationResult.isFailure()) {
+                    log.warn("Validation failed for message update with id: {}", id);
+                    metricService.recordError(MetricOperationNameCore.UPDATE);
+                    return validationResult;
+                }
+
+                final Result<Message, Error> offloadResult = messageBlobOffloader.offload(messageToUpdate);
+                if (offloadResult.isFailure()) {
+                    log.error("Failed to offload payload of message update with id: {}", id);
+                    metricService.recordError(MetricOperationNameCore.UPDATE);
+                    return UnitResult.failure(offloadResult.getError());
+                }
+
+                // Заменяемое значение читается до записи, чтобы после неё удалить его блоб
+                final Result<Optional<Message>, Error> replacedResult = messageRepository.findById(id);
 
-                if (saveResult.isSuccess()) {
+                // Проверка существования и запись выполняются атомарно в репозитории
+                final UnitResult<Error> updateResult = messageRepository.update(id, offloadResult.getValue());
+
+                if (updateResult.isSuccess()) {
+                    if (replacedResult.isSuccess() && replacedResult.getValue().isPresent()) {
+                        messageBlobOffloader.discard(replacedResult.getValue().get().getDataMessage());
+                    }
                     metricService.recordSuccess(MetricOperationNameCore.UPDATE);
                     log.info("Successfully updated message with id: {}", id);
+                    return updateResult;
+                }
+
+                messageBlobOffloader.discard(offloadResult.getValue().getDataMessage());
+                if (isNotFound(updateResult.getError())) {
+                    log.warn("Cannot update: message not found with id: {}", id);
+                    metricService.recordNotFound();
                 } else {
                     metricService.recordError(MetricOperationNameCore.UPDATE);
-                    log.error("Failed to save updated message with id: {}", id);
+                    log.error("Failed to update message with id: {}", id);
                 }
 
-                return saveResult;
+                return updateResult;
             });
         } catch (Exception e) {
             log.error("Error occurred while updating message with id: {}", id, e);
@@ -270,54 +398,166 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
     @Override
     @Transactional
     public UnitResult<Error> save(final CreateMessageRequest createMessageRequest) {
-        try {
-            return metricService.timer(MetricOperationNameCore.SAVE).recordCallable(() -> {
-                log.debug("Attempting to create new message from: {} to: {}",
-                        createMessageRequest != null ? createMessageRequest.from() : "null",
-                        createMessageRequest != null ? createMessageRequest.to() : "null");
+        final Result<UUID, Error> result = create(createMessageRequest);
+        return result.isSuccess() ? UnitResult.success() : UnitResult.failure(result.getError());
+    }
 
-                if (Guard.isNull(createMessageRequest)) {
-                    log.warn("Save called with null createMessageRequest");
-                    metricService.recordError(MetricOperationNameCore.SAVE);
-                    return UnitResult.failure(GeneralErrors.valueIsRequired("createMessageRequest"));
-                }
-                // Создаем сущность Message из request
-                final Result<Message, Error> entityMessageResult = Message.from(createMessageRequest);
+    /**
+     * Создать новое сообщение и вернуть присвоенный ему ID.
+     *
+     * @param createMessageRequest данные нового сообщения
+     * @return Result с ID сохранённого сообщения или Error
+     */
+    @Transactional
+    public Result<UUID, Error> create(final CreateMessageRequest createMessageRequest) {
+        log.debug("Attempting to create new message from: {} to: {}",
+                createMessageRequest != null ? createMessageRequest.from() : "null",
+                createMessageRequest != null ? createMessageRequest.to() : "null");
 
-                if (entityMessageResult.isFailure()) {
-                    log.warn("Failed to create Message entity from request");
-                    metricService.recordError(MetricOperationNameCore.SAVE);
-                    return UnitResult.failure(entityMessageResult.getError());
-                }
+        if (Guard.isNull(createMessageRequest)) {
+            log.warn("Save called with null createMessageRequest");
+            metricService.recordError(MetricOperationNameCore.SAVE);
+            return Result.failure(GeneralErrors.valueIsRequired("createMessageRequest"));
+        }
+
+        // Создаем сущность Message из request
+        final Result<Message, Error> entityMessageResult = Message.from(createMessageRequest);
 
-                final Message newMessage = entityMessageResult.getValue();
+        if (entityMessageResult.isFailure()) {
+            log.warn("Failed to create Message entity from request");
+            metricService.recordError(MetricOperationNameCore.SAVE);
+            return Result.failure(entityMessageResult.getError());
+        }
 
+        return create(entityMessageResult.getValue());
+    }
+
+    /**
+     * Сохранить собранное сообщение с той же валидацией, что и при создании из запроса.
+     * Используется транспортами, которые получают содержимое в бинарном виде без Base64.
+     *
+     * @param newMessage новое сообщение с уже присвоенным ID
+     * @return Result с ID сохранённого сообщения или Error
+     */
+    @Transactional
+    public Result<UUID, Error> create(final Message newMessage) {
+        try {
+            return metricService.timer(MetricOperationNameCore.SAVE).recordCallable(() -> {
                 final UnitResult<Error> validationResult = validateMessage(newMessage);
                 if (validationResult.isFailure()) {
                     log.warn("Validation failed for message creation");
                     metricService.recordError(MetricOperationNameCore.SAVE);
-                    return validationResult;
+                    return Result.<UUID, Error>failure(validationResult.getError());
                 }
 
-                final UnitResult<Error> saveResult = messageRepository.save(newMessage);
-
-                if (saveResult.isSuccess()) {
-                    metricService.recordSuccess(MetricOperationNameCore.SAVE);
-                    log.info("Successfully created new message with id: {} from: {} to: {}",
-                            newMessage.getId(),
-                            newMessage.getFrom(),
-                            newMessage.getTo());
-                } else {
-                    log.error("Failed to save new message");
+                final Result<Message, Error> offloadResult = messageBlobOffloader.offload(newMessage);
+                if (offloadResult.isFailure()) {
+                    log.error("Failed to offload payload of new message");
                     metricService.recordError(MetricOperationNameCore.SAVE);
+                    return Result.<UUID, Error>failure(offloadResult.getError());
                 }
 
-                return saveResult;
+                return persist(offloadResult.getValue(), MetricOperationNameCore.SAVE);
             });
         } catch (Exception e) {
             log.error("Error occurred while creating new message", e);
             metricService.recordError(MetricOperationNameCore.SAVE);
-            return UnitResult.failure(GeneralErrors.databaseError(e.getMessage()));
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Создать сообщение из содержимого, переданного потоком (multipart/form-data или application/octet-stream).
+     * IMAGE и SOUND при включённом выносе в BlobStore пишутся в хранилище по мере чтения; остальное
+     * читается в память. Лимит {@link #maxUploadBytes} проверяется заранее по заявленному размеру
+     * и во время чтения, поэтому память и хранилище не заполняются сверх него.
+     *
+     * @param from         ID отправителя
+     * @param to           ID получателя
+     * @param type         тип содержимого
+     * @param date         дата сообщения
+     * @param body         поток содержимого (не закрывается)
+     * @param declaredSize заявленный размер содержимого или -1, если он неизвестен
+     * @return Result с ID сохранённого сообщения или Error (payload.too.large при превышении лимита)
+     */
+    @Transactional
+    public Result<UUID, Error> upload(
+            final UUID from,
+            final UUID to,
+            final String type,
+            final Instant date,
+            final InputStream body,
+            final long declaredSize) {
+        try {
+            return metricService.timer(MetricOperationNameMessage.UPLOAD).recordCallable(() -> {
+                log.debug("Attempting to upload {} message of {} bytes from: {} to: {}", type, declaredSize, from, to);
+
+                final UnitResult<Error> headerResult = validateHeader(from, to, date);
+                if (headerResult.isFailure()) {
+                    log.warn("Validation failed for message upload");
+                    metricService.recordError(MetricOperationNameMessage.UPLOAD);
+                    return Result.<UUID, Error>failure(headerResult.getError());
+                }
+
+                if (!DataMessage.isKnownType(type)) {
+                    log.warn("Upload called with unknown type: {}", type);
+                    metricService.recordError(MetricOperationNameMessage.UPLOAD);
+                    return Result.<UUID, Error>failure(GeneralErrors.valueIsInvalid("type", "unknown message type"));
+                }
+
+                if (declaredSize > maxUploadBytes) {
+                    log.warn("Upload of {} bytes exceeds limit of {} bytes", declaredSize, maxUploadBytes);
+                    metricService.recordError(MetricOperationNameMessage.UPLOAD);
+                    return Result.<UUID, Error>failure(GeneralErrors.payloadTooLarge(maxUploadBytes));
+                }
+
+                if (messageBlobOffloader.shouldStream(type, declaredSize)) {
+                    // Ссылку на блоб выставил сервер, поэтому сообщение сохраняется без validateMessage
+                    final Result<DataMessage, Error> blobResult = messageBlobOffloader.store(type, body, maxUploadBytes);
+                    final Result<Message, Error> messageResult = blobResult.isSuccess()
+                            ? Message.create(date, from, to, blobResult.getValue())
+                            : Result.failure(blobResult.getError());
+                    if (messageResult.isFailure()) {
+                        if (blobResult.isSuccess()) {
+                            messageBlobOffloader.discard(blobResult.getValue());
+                        }
+                        log.warn("Failed to store uploaded {} payload: {}", type, messageResult.getError().getMessage());
+                        metricService.recordError(MetricOperationNameMessage.UPLOAD);
+                        return Result.<UUID, Error>failure(messageResult.getError());
+                    }
+                    return persist(messageResult.getValue(), MetricOperationNameMessage.UPLOAD);
+                }
+
+                final byte[] data = body.readNBytes((int) Math.min(maxUploadBytes + 1, MAX_IN_MEMORY_UPLOAD_BYTES));
+                if (data.length > maxUploadBytes) {
+                    log.warn("Upload exceeds limit of {} bytes", maxUploadBytes);
+                    metricService.recordError(MetricOperationNameMessage.UPLOAD);
+                    return Result.<UUID, Error>failure(GeneralErrors.payloadTooLarge(maxUploadBytes));
+                }
+
+                final Result<DataMessage, Error> dataMessageResult = DataMessage.create(data, type);
+                final Result<Message, Error> messageResult = dataMessageResult.isSuccess()
+                        ? Message.create(date, from, to, dataMessageResult.getValue())
+                        : Result.failure(dataMessageResult.getError());
+                if (messageResult.isFailure()) {
+                    log.warn("Failed to create Message from upload: {}", messageResult.getError().getMessage());
+                    metricService.recordError(MetricOperationNameMessage.UPLOAD);
+                    return Result.<UUID, Error>failure(messageResult.getError());
+                }
+
+                final Result<Message, Error> offloadResult = messageBlobOffloader.offload(messageResult.getValue());
+                if (offloadResult.isFailure()) {
+                    log.error("Failed to offload payload of uploaded message");
+                    metricService.recordError(MetricOperationNameMessage.UPLOAD);
+                    return Result.<UUID, Error>failure(offloadResult.getError());
+                }
+
+                return persist(offloadResult.getValue(), MetricOperationNameMessage.UPLOAD);
+            });
+        } catch (Exception e) {
+            log.error("Error occurred while uploading new message", e);
+            metricService.recordError(MetricOperationNameMessage.UPLOAD);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
         }
     }
 
@@ -391,14 +631,19 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
     }
 
     /**
-     * Получить переписку между двумя пользователями.
+     * Получить страницу переписки между двумя пользователями.
      *
      * @param user1Id ID первого пользователя
      * @param user2Id ID второго пользователя
-     * @return список сообщений
+     * @param before   курсор: время первого сообщения предыдущей страницы (null - самые свежие)
+     * @param beforeId ID первого сообщения предыдущей страницы (null - строго раньше before)
+     * @param limit    размер страницы
+     * @return список сообщений в хронологическом порядке
      */
     @Transactional(readOnly = true)
-    public Result<List<MessageResponse>, Error> findConversation(final UUID user1Id, final UUID user2Id) {
+    public Result<List<MessageResponse>, Error> findConversation(final UUID user1Id, final UUID user2Id,
+                                                                 final Instant before, final UUID beforeId,
+                                                                 final int limit) {
         try {
             return metricService.timer(MetricOperationNameMessage.FIND_CONVERSATION).recordCallable(() -> {
                 log.debug("Fetching conversation between users: {} and {}", user1Id, user2Id);
@@ -415,7 +660,13 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
                     return Result.failure(GeneralErrors.valueIsEmpty("user2Id"));
                 }
 
-                final List<MessageResponse> messages = messageRepository.findConversation(user1Id, user2Id)
+                if (limit < 1 || limit > MAX_CONVERSATION_PAGE_SIZE) {
+                    log.warn("FindConversation called with out of range limit: {}", limit);
+                    metricService.recordError(MetricOperationNameMessage.FIND_CONVERSATION);
+                    return Result.failure(GeneralErrors.valueIsOutOfRange("limit", limit, 1, MAX_CONVERSATION_PAGE_SIZE));
+                }
+
+                final List<MessageResponse> messages = messageRepository.findConversation(user1Id, user2Id, before, beforeId, limit)
                         .stream()
                         .map(Message::toMessageResponse)
                         .toList();
@@ -433,6 +684,300 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
         }
     }
 
+    /**
+     * Получить сообщения пользователя, созданные или изменённые после курсора (дельта-синхронизация).
+     *
+     * @param userId ID пользователя
+     * @param since  курсор из предыдущего ответа (null или пусто - с начала)
+     * @param limit  размер страницы
+     * @return Result со страницей изменений и следующим курсором или Error
+     */
+    @Transactional(readOnly = true)
+    public Result<MessageUpdatesResponse, Error> findUpdates(final UUID userId, final String since, final int limit) {
+        try {
+            return metricService.timer(MetricOperationNameMessage.FIND_UPDATES).recordCallable(() -> {
+                log.debug("Fetching updates for user: {} since: {}", userId, since);
+
+                if (Guard.isNullOrEmpty(userId)) {
+                    log.warn("FindUpdates called with null or empty userId");
+                    metricService.recordError(MetricOperationNameMessage.FIND_UPDATES);
+                    return Result.failure(GeneralErrors.valueIsEmpty("userId"));
+                }
+
+                if (limit < 1 || limit > MAX_UPDATES_PAGE_SIZE) {
+                    log.warn("FindUpdates called with out of range limit: {}", limit);
+                    metricService.recordError(MetricOperationNameMessage.FIND_UPDATES);
+                    return Result.failure(GeneralErrors.valueIsOutOfRange("limit", limit, 1, MAX_UPDATES_PAGE_SIZE));
+                }
+
+                final Result<Long, Error> cursorResult = parseUpdatesCursor(since);
+                if (cursorResult.isFailure()) {
+                    log.warn("FindUpdates called with invalid cursor: {}", since);
+                    metricService.recordError(MetricOperationNameMessage.FIND_UPDATES);
+                    return Result.failure(cursorResult.getError());
+                }
+
+                final Result<UpdatesPage<Message>, Error> pageResult =
+                        messageRepository.findUpdates(userId, cursorResult.getValue(), limit);
+                if (pageResult.isFailure()) {
+                    log.error("Failed to fetch updates for user: {}: {}", userId, pageResult.getError().getMessage());
+                    metricService.recordError(MetricOperationNameMessage.FIND_UPDATES);
+                    return Result.failure(pageResult.getError());
+                }
+
+                final UpdatesPage<Message> page = pageResult.getValue();
+                final List<MessageResponse> messages = page.items()
+                        .stream()
+                        .map(Message::toMessageResponse)
+                        .toList();
+
+                log.info("Successfully fetched {} updates and {} deletions for user: {}",
+                        messages.size(), page.deletedIds().size(), userId);
+                metricService.recordSuccess(MetricOperationNameMessage.FIND_UPDATES);
+                return Result.success(new MessageUpdatesResponse(
+                        messages,
+                        page.deletedIds(),
+                        String.valueOf(page.cursor()),
+                        page.hasMore()
+                ));
+            });
+        } catch (Exception e) {
+            log.error("Error occurred while fetching updates for user: {}", userId, e);
+            metricService.recordError(MetricOperationNameMessage.FIND_UPDATES);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Создать несколько сообщений одним пакетом.
+     * Некорректные элементы не прерывают пакет: результат возвращается для каждого элемента.
+     *
+     * @param requests данные новых сообщений (не больше {@link #MAX_BATCH_SIZE})
+     * @return Result с результатами в порядке запроса или Error для пакета целиком
+     */
+    @Transactional
+    public Result<List<BatchItemResponse<Void>>, Error> saveAll(final List<CreateMessageRequest> requests) {
+        try {
+            return metricService.timer(MetricOperationNameMessage.SAVE_ALL).recordCallable(() -> {
+                final UnitResult<Error> sizeResult = validateBatchSize(requests);
+                if (sizeResult.isFailure()) {
+                    log.warn("SaveAll called with invalid batch: {}", sizeResult.getError().getMessage());
+                    metricService.recordError(MetricOperationNameMessage.SAVE_ALL);
+                    return Result.failure(sizeResult.getError());
+                }
+
+                log.debug("Attempting to create {} messages", requests.size());
+                metricService.recordBatchSize(MetricOperationNameMessage.SAVE_ALL, requests.size());
+
+                final List<BatchItemResponse<Void>> items = new ArrayList<>(Collections.nCopies(requests.size(), null));
+                final List<Integer> validIndexes = new ArrayList<>(requests.size());
+                final List<Message> validMessages = new ArrayList<>(requests.size());
+
+                for (int i = 0; i < requests.size(); i++) {
+                    final CreateMessageRequest request = requests.get(i);
+                    if (Guard.isNull(request)) {
+                        items.set(i, BatchItemResponse.failure(i, null,
+                                GeneralErrors.valueIsRequired("createMessageRequest")));
+                        continue;
+                    }
+
+                    final Result<Message, Error> messageResult = Message.from(request);
+                    if (messageResult.isFailure()) {
+                        items.set(i, BatchItemResponse.failure(i, null, messageResult.getError()));
+                        continue;
+                    }
+
+                    final UnitResult<Error> validationResult = validateMessage(messageResult.getValue());
+                    if (validationResult.isFailure()) {
+                        items.set(i, BatchItemResponse.failure(i, null, validationResult.getError()));
+                        continue;
+                    }
+
+                    final Result<Message, Error> offloadResult = messageBlobOffloader.offload(messageResult.getValue());
+                    if (offloadResult.isFailure()) {
+                        items.set(i, BatchItemResponse.failure(i, messageResult.getValue().getId(), offloadResult.getError()));
+                        continue;
+                    }
+
+                    validIndexes.add(i);
+                    validMessages.add(offloadResult.getValue());
+                }
+
+                final List<UnitResult<Error>> saveResults = messageRepository.saveAll(validMessages);
+                for (int i = 0; i < validIndexes.size(); i++) {
+                    final int index = validIndexes.get(i);
+                    final UUID id = validMessages.get(i).getId();
+                    final UnitResult<Error> saveResult = saveResults.get(i);
+                    if (saveResult.isSuccess()) {
+                        messageNotifier.messageSaved(validMessages.get(i));
+                    } else {
+                        messageBlobOffloader.discard(validMessages.get(i).getDataMessage());
+                    }
+                    items.set(index, saveResult.isSuccess()
+                            ? BatchItemResponse.success(index, id, null)
+                            : BatchItemResponse.failure(index, id, saveResult.getError()));
+                }
+
+                final long saved = items.stream().filter(BatchItemResponse::success).count();
+                log.info("Created {} of {} messages in batch", saved, requests.size());
+                metricService.recordSuccess(MetricOperationNameMessage.SAVE_ALL);
+                return Result.success(items);
+            });
+        } catch (Exception e) {
+            log.error("Error occurred while creating batch of messages", e);
+            metricService.recordError(MetricOperationNameMessage.SAVE_ALL);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Найти несколько сообщений по ID одним пакетом.
+     *
+     * @param ids идентификаторы сообщений (не больше {@link #MAX_BATCH_SIZE})
+     * @return Result с результатами в порядке запроса (entity.not.found для отсутствующих) или Error
+     */
+    @Transactional(readOnly = true)
+    public Result<List<BatchItemResponse<MessageResponse>>, Error> findAllByIds(final List<UUID> ids) {
+        try {
+            return metricService.timer(MetricOperationNameMessage.FIND_ALL_BY_IDS).recordCallable(() -> {
+                final UnitResult<Error> sizeResult = validateBatchSize(ids);
+                if (sizeResult.isFailure()) {
+                    log.warn("FindAllByIds called with invalid batch: {}", sizeResult.getError().getMessage());
+                    metricService.recordError(MetricOperationNameMessage.FIND_ALL_BY_IDS);
+                    return Result.failure(sizeResult.getError());
+                }
+
+                log.debug("Attempting to find {} messages by ids", ids.size());
+                metricService.recordBatchSize(MetricOperationNameMessage.FIND_ALL_BY_IDS, ids.size());
+
+                final Result<List<Optional<Message>>, Error> messagesResult = messageRepository.findAllByIds(ids);
+                if (messagesResult.isFailure()) {
+                    log.error("Failed to find messages by ids: {}", messagesResult.getError().getMessage());
+                    metricService.recordError(MetricOperationNameMessage.FIND_ALL_BY_IDS);
+                    return Result.failure(messagesResult.getError());
+                }
+
+                final List<Optional<Message>> messages = messagesResult.getValue();
+                final List<BatchItemResponse<MessageResponse>> items = new ArrayList<>(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    final int index = i;
+                    final UUID id = ids.get(i);
+                    items.add(messages.get(i)
+                            .map(message -> BatchItemResponse.success(index, id, message.toMessageResponse()))
+                            .orElseGet(() -> BatchItemResponse.failure(
+                                    index, id, GeneralErrors.entityNotFound("Message", id))));
+                }
+
+                log.info("Found {} of {} messages by ids",
+                        items.stream().filter(BatchItemResponse::success).count(), ids.size());
+                metricService.recordSuccess(MetricOperationNameMessage.FIND_ALL_BY_IDS);
+                return Result.success(items);
+            });
+        } catch (Exception e) {
+            log.error("Error occurred while finding messages by ids", e);
+            metricService.recordError(MetricOperationNameMessage.FIND_ALL_BY_IDS);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Удалить несколько сообщений по ID одним пакетом.
+     *
+     * @param ids идентификаторы сообщений (не больше {@link #MAX_BATCH_SIZE})
+     * @return Result с результатами в порядке запроса (entity.not.found для отсутствующих) или Error
+     */
+    @Transactional
+    public Result<List<BatchItemResponse<Void>>, Error> deleteAllByIds(final List<UUID> ids) {
+        try {
+            return metricService.timer(MetricOperationNameMessage.DELETE_ALL_BY_IDS).recordCallable(() -> {
+                final UnitResult<Error> sizeResult = validateBatchSize(ids);
+                if (sizeResult.isFailure()) {
+                    log.warn("DeleteAllByIds called with invalid batch: {}", sizeResult.getError().getMessage());
+                    metricService.recordError(MetricOperationNameMessage.DELETE_ALL_BY_IDS);
+                    return Result.failure(sizeResult.getError());
+                }
+
+                log.debug("Attempting to delete {} messages by ids", ids.size());
+                metricService.recordBatchSize(MetricOperationNameMessage.DELETE_ALL_BY_IDS, ids.size());
+
+                final List<UnitResult<Error>> deleteResults = messageRepository.deleteAllByIds(ids);
+                final List<BatchItemResponse<Void>> items = new ArrayList<>(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    final UnitResult<Error> deleteResult = deleteResults.get(i);
+                    items.add(deleteResult.isSuccess()
+                            ? BatchItemResponse.success(i, ids.get(i), null)
+                            : BatchItemResponse.failure(i, ids.get(i), deleteResult.getError()));
+                }
+
+                log.info("Deleted {} of {} messages by ids",
+                        items.stream().filter(BatchItemResponse::success).count(), ids.size());
+                metricService.recordSuccess(MetricOperationNameMessage.DELETE_ALL_BY_IDS);
+                return Result.success(items);
+            });
+        } catch (Exception e) {
+            log.error("Error occurred while deleting messages by ids", e);
+            metricService.recordError(MetricOperationNameMessage.DELETE_ALL_BY_IDS);
+            return Result.failure(GeneralErrors.databaseError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Разобрать курсор ленты изменений: неотрицательное число, пустой курсор означает начало ленты.
+     */
+    private static Result<Long, Error> parseUpdatesCursor(final String since) {
+        if (since == null || since.isBlank()) {
+            return Result.success(0L);
+        }
+        try {
+            final long cursor = Long.parseLong(since.trim());
+            return cursor < 0
+                    ? Result.failure(GeneralErrors.valueIsInvalid("since", "cursor must not be negative"))
+                    : Result.success(cursor);
+        } catch (NumberFormatException e) {
+            return Result.failure(GeneralErrors.valueIsInvalid("since", "cursor must be a number"));
+        }
+    }
+
+    private static UnitResult<Error> validateBatchSize(final List<?> items) {
+        if (Guard.isNull(items) || items.isEmpty()) {
+            return UnitResult.failure(GeneralErrors.collectionIsTooSmall(1, items == null ? 0 : items.size()));
+        }
+        if (items.size() > MAX_BATCH_SIZE) {
+            return UnitResult.failure(GeneralErrors.collectionIsTooLarge(MAX_BATCH_SIZE, items.size()));
+        }
+        return UnitResult.success();
+    }
+
+    /**
+     * Сохранить проверенное новое сообщение и разослать его подписчикам.
+     */
+    private Result<UUID, Error> persist(final Message message, final OperationMetric operation) {
+        // При включённой групповой записи сохранение объединяется с одновременными запросами
+        final UnitResult<Error> saveResult = messageWriteBatcher.isEnabled()
+                ? messageWriteBatcher.save(message)
+                : messageRepository.save(message);
+
+        if (saveResult.isFailure()) {
+            log.error("Failed to save new message");
+            // Ссылки на блоб выставляет только сервер, поэтому блоб записан этим вызовом и больше нигде не нужен
+            messageBlobOffloader.discard(message.getDataMessage());
+            metricService.recordError(operation);
+            return Result.failure(saveResult.getError());
+        }
+
+        messageNotifier.messageSaved(message);
+        metricService.recordSuccess(operation);
+        log.info("Successfully created new message with id: {} from: {} to: {}",
+                message.getId(),
+                message.getFrom(),
+                message.getTo());
+        return Result.success(message.getId());
+    }
+
+    private static boolean isNotFound(final Error error) {
+        return "entity.not.found".equals(error.getCode());
+    }
+
     /**
      * Валидация сообщения.
      *
@@ -445,34 +990,56 @@ public class MessageService implements ru.test.the.best.chat.core.service.Servic
             return UnitResult.failure(GeneralErrors.valueIsRequired("message"));
         }
 
-        if (Guard.isNullOrEmpty(message.getFrom())) {
+        final UnitResult<Error> headerResult = validateHeader(message.getFrom(), message.getTo(), message.getDate());
+        if (headerResult.isFailure()) {
+            return headerResult;
+        }
+
+        // Ссылку на блоб выставляет только сервер: иначе клиент мог бы сослаться на чужое содержимое
+        if (message.getDataMessage().isBlob()) {
+            log.debug("Message data references a blob");
+            return UnitResult.failure(GeneralErrors.validationError("data", "Message data cannot reference a blob"));
+        }
+
+        if (Guard.isNull(message.getDataMessage().getData())) {
+            log.debug("Message data is null");
+            return UnitResult.failure(GeneralErrors.valueIsEmpty("data"));
+        }
+
+        return UnitResult.success();
+    }
+
+    /**
+     * Валидация участников и даты сообщения - всё, что проверяется до чтения содержимого.
+     *
+     * @param from ID отправителя
+     * @param to   ID получателя
+     * @param date дата сообщения
+     * @return UnitResult с результатом валидации
+     */
+    private UnitResult<Error> validateHeader(final UUID from, final UUID to, final Instant date) {
+        if (Guard.isNullOrEmpty(from)) {
             log.debug("Message 'from' field is null or empty");
             return UnitResult.failure(GeneralErrors.valueIsEmpty("from"));
         }
 
-        if (Guard.isNullOrEmpty(message.getTo())) {
+        if (Guard.isNullOrEmpty(to)) {
             log.debug("Message 'to' field is null or empty");
             return UnitResult.failure(GeneralErrors.valueIsEmpty("to"));
         }
 
-        if (message.getFrom().equals(message.getTo())) {
-            log.debug("Message 'from' and 'to' are the same user: {}", message.getFrom());
+        if (from.equals(to)) {
+            log.debug("Message 'from' and 'to' are the same user: {}", from);
             return UnitResult.failure(
                     GeneralErrors.validationError("message", "User cannot send message to themselves")
             );
         }
 
-        if (Guard.isNull(message.getDate())) {
+        if (Guard.isNull(date)) {
             log.debug("Message date is null");
             return UnitResult.failure(GeneralErrors.valueIsEmpty("date"));
         }
 
-        if (Guard.isNull(message.getDataMessage().getData())) {
-            log.debug("Message data is null");
-            return UnitResult.failure(GeneralErrors.valueIsEmpty("data"));
-        }
-
         return UnitResult.success();
     }
 }
-
@@ -0,0 +1,157 @@
+package ru.test.the.best.chat.message.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.test.the.best.chat.core.utils.SerialExecutor;
+import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.message.repository.MessageEventSubscriber;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Push-доставка сообщений получателям через Server-Sent Events.
+ * <p>
+ * Поток держится асинхронным запросом сервлета ({@link SseEmitter}), поэтому простаивающее подключение
+ * не занимает поток. Сохранённые сообщения приходят через Redis Pub/Sub от всех экземпляров приложения
+ * и отправляются подключениям получателя, открытым на этом экземпляре. У каждого подключения своя
+ * очередь отправки ({@link SerialExecutor}) на виртуальных потоках: медленный клиент не задерживает
+ * остальных, а события одного подключения уходят в порядке публикации.
+ * <p>
+ * Pub/Sub не гарантирует доставку: после переподключения клиент досинхронизируется через ленту изменений.
+ */
+@Slf4j
+@Component
+public class MessageStreamService {
+
+    private static final String MESSAGE_EVENT = "message";
+
+    private final long timeoutMillis;
+    private final Map<UUID, Set<StreamConnection>> emitters = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter deliveredCounter;
+
+    public MessageStreamService(
+            final MessageEventSubscriber messageEventSubscriber,
+            final MeterRegistry meterRegistry,
+            @Value("${messages.stream.timeout-ms:1800000}") final long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+
+        this.deliveredCounter = Counter.builder("messages.stream.delivered")
+                .description("Сообщения, отправленные в SSE-подключения")
+                .register(meterRegistry);
+        Gauge.builder("messages.stream.connections", connections, AtomicInteger::get)
+                .description("Открытые SSE-подключения на этом экземпляре")
+                .register(meterRegistry);
+
+        messageEventSubscriber.addListener(this::onMessageSaved);
+    }
+
+    /**
+     * Открыть поток сообщений для пользователя.
+     *
+     * @param userId ID получателя
+     * @return emitter, который завершится по таймауту или при отключении клиента
+     */
+    public SseEmitter subscribe(final UUID userId) {
+        final SseEmitter emitter = new SseEmitter(timeoutMillis);
+        final StreamConnection connection = new StreamConnection(emitter, new SerialExecutor(senders));
+        emitters.compute(userId, (id, current) -> {
+            final Set<StreamConnection> userEmitters = current != null ? current : ConcurrentHashMap.newKeySet();
+            userEmitters.add(connection);
+            return userEmitters;
+        });
+        connections.incrementAndGet();
+
+        final Runnable remove = () -> unregister(userId, connection);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+
+        // Комментарий сразу отправляет заголовки ответа, чтобы клиент увидел открытый поток
+        connection.sender().execute(() -> send(emitter, SseEmitter.event().comment("connected")));
+        log.debug("Opened message stream for user: {}", userId);
+        return emitter;
+    }
+
+    /**
+     * Периодический комментарий во все подключения: не даёт прокси закрыть простаивающий поток
+     * и выявляет отключившихся клиентов.
+     */
+    @Scheduled(fixedDelayString = "${messages.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        emitters.values().forEach(userEmitters -> userEmitters.forEach(connection ->
+                connection.sender().execute(() -> send(connection.emitter(), SseEmitter.event().comment("heartbeat")))));
+    }
+
+    @PreDestroy
+    public void stop() {
+        emitters.values().forEach(userEmitters -> userEmitters.forEach(connection -> connection.emitter().complete()));
+        emitters.clear();
+        senders.shutdown();
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void onMessageSaved(final Message message) {
+        final Set<StreamConnection> userEmitters = emitters.get(message.getTo());
+        if (userEmitters == null || userEmitters.isEmpty()) {
+            return;
+        }
+
+        final var response = message.toMessageResponse();
+        for (StreamConnection connection : userEmitters) {
+            connection.sender().execute(() -> {
+                if (send(connection.emitter(), SseEmitter.event()
+                        .id(response.id().toString())
+                        .name(MESSAGE_EVENT)
+                        .data(response, MediaType.APPLICATION_JSON))) {
+                    deliveredCounter.increment();
+                }
+            });
+        }
+    }
+
+    private boolean send(final SseEmitter emitter, final SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился: emitter уберёт себя в onError/onCompletion
+            log.debug("Failed to send to message stream: {}", e.getMessage());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private void unregister(final UUID userId, final StreamConnection connection) {
+        // Удаление и добавление выполняются под блокировкой ключа, чтобы не потерять новое подключение
+        emitters.computeIfPresent(userId, (id, userEmitters) -> {
+            if (userEmitters.remove(connection)) {
+                connections.decrementAndGet();
+            }
+            return userEmitters.isEmpty() ? null : userEmitters;
+        });
+    }
+
+    /**
+     * SSE-подключение с его очередью отправки.
+     */
+    private record StreamConnection(SseEmitter emitter, SerialExecutor sender) {
+    }
+}
@@ -0,0 +1,164 @@
+package ru.test.the.best.chat.message.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.message.repository.MessageEventSubscriber;
+import ru.test.the.best.chat.model.dto.message.MessageUpdatesResponse;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Long polling ленты изменений: запасной вариант для клиентов за прокси, которые режут SSE и WebSocket.
+ * <p>
+ * Ожидающий запрос не занимает поток: он хранится как {@link CompletableFuture}, а сервлет-запрос
+ * освобождается асинхронным режимом. Ожидание будят внутрипроцессный {@link MessageNotifier}
+ * (сохранения на этом экземпляре) и Redis Pub/Sub (сохранения на остальных); проверка ленты
+ * после пробуждения выполняется в виртуальном потоке.
+ * <p>
+ * Ожидание регистрируется до первой проверки ленты, поэтому сообщение, сохранённое между
+ * проверкой и регистрацией, не теряется.
+ */
+@Slf4j
+@Component
+public class MessageWaitService {
+
+    /**
+     * Максимальный размер страницы в ответе; остальное клиент забирает через ленту изменений.
+     */
+    public static final int WAIT_PAGE_SIZE = 200;
+
+    private final MessageService messageService;
+    private final long maxTimeoutMillis;
+    private final Map<UUID, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger parked = new AtomicInteger();
+    private final ExecutorService pollers = Executors.newVirtualThreadPerTaskExecutor();
+
+    public MessageWaitService(
+            final MessageService messageService,
+            final MessageNotifier messageNotifier,
+            final MessageEventSubscriber messageEventSubscriber,
+            final MeterRegistry meterRegistry,
+            @Value("${messages.wait.max-timeout-ms:60000}") final long maxTimeoutMillis) {
+        this.messageService = messageService;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+
+        Gauge.builder("messages.wait.parked", parked, AtomicInteger::get)
+                .description("Запросы long polling, ожидающие новых сообщений")
+                .register(meterRegistry);
+
+        messageNotifier.addListener(this::wake);
+        messageEventSubscriber.addListener(message -> {
+            wake(message.getTo());
+            wake(message.getFrom());
+        });
+    }
+
+    /**
+     * Дождаться изменений в ленте пользователя после курсора.
+     *
+     * @param userId        ID пользователя
+     * @param since         курсор из предыдущего ответа (null - с начала)
+     * @param timeoutMillis сколько ждать (1 - messages.wait.max-timeout-ms)
+     * @return future со страницей изменений; по таймауту - пустая страница с тем же курсором.
+     * Отмена future снимает ожидание
+     */
+    public CompletableFuture<Result<MessageUpdatesResponse, Error>> await(
+            final UUID userId,
+            final String since,
+            final long timeoutMillis) {
+        if (timeoutMillis < 1 || timeoutMillis > maxTimeoutMillis) {
+            return CompletableFuture.completedFuture(Result.failure(
+                    GeneralErrors.valueIsOutOfRange("timeout", timeoutMillis, 1L, maxTimeoutMillis)));
+        }
+
+        final Waiter waiter = new Waiter(userId, since, new CompletableFuture<>(), new AtomicReference<>());
+        register(waiter);
+        waiter.future().whenComplete((result, error) -> unregister(waiter));
+
+        poll(waiter);
+        if (!waiter.future().isDone()) {
+            CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS, pollers)
+                    .execute(() -> waiter.future().complete(Result.success(waiter.emptyPage().get())));
+        }
+        return waiter.future();
+    }
+
+    @PreDestroy
+    public void stop() {
+        waiters.values().forEach(userWaiters -> userWaiters.forEach(waiter ->
+                waiter.future().complete(Result.success(waiter.emptyPage().get()))));
+        pollers.shutdown();
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void wake(final UUID userId) {
+        final Set<Waiter> userWaiters = waiters.get(userId);
+        if (userWaiters == null || userWaiters.isEmpty()) {
+            return;
+        }
+        userWaiters.forEach(waiter -> pollers.execute(() -> poll(waiter)));
+    }
+
+    /**
+     * Проверить ленту: есть изменения или ошибка - завершить ожидание, иначе оставить его запаркованным.
+     */
+    private void poll(final Waiter waiter) {
+        if (waiter.future().isDone()) {
+            return;
+        }
+
+        final Result<MessageUpdatesResponse, Error> result =
+                messageService.findUpdates(waiter.userId(), waiter.since(), WAIT_PAGE_SIZE);
+        if (result.isFailure() || !result.getValue().messages().isEmpty()
+                || !result.getValue().deletedIds().isEmpty()) {
+            waiter.future().complete(result);
+        } else {
+            waiter.emptyPage().set(result.getValue());
+        }
+    }
+
+    private void register(final Waiter waiter) {
+        waiters.compute(waiter.userId(), (id, current) -> {
+            final Set<Waiter> userWaiters = current != null ? current : ConcurrentHashMap.newKeySet();
+            userWaiters.add(waiter);
+            return userWaiters;
+        });
+        parked.incrementAndGet();
+    }
+
+    private void unregister(final Waiter waiter) {
+        waiters.computeIfPresent(waiter.userId(), (id, userWaiters) -> {
+            if (userWaiters.remove(waiter)) {
+                parked.decrementAndGet();
+            }
+            return userWaiters.isEmpty() ? null : userWaiters;
+        });
+    }
+
+    /**
+     * Запаркованный запрос; emptyPage хранит последнюю пустую страницу, её курсор возвращается по таймауту.
+     */
+    private record Waiter(
+            UUID userId,
+            String since,
+            CompletableFuture<Result<MessageUpdatesResponse, Error>> future,
+            AtomicReference<MessageUpdatesResponse> emptyPage) {
+    }
+}
@@ -0,0 +1,225 @@
+package ru.test.the.best.chat.message.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.test.the.best.chat.core.metric.MetricService;
+import ru.test.the.best.chat.core.repository.Repository;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.message.metric.MetricOperationNameMessage;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Групповая запись сообщений (group commit).
+ * Одновременные сохранения собираются в пачку, которая сбрасывается одним
+ * {@link Repository#saveAll(List)} на одном соединении, как только набирается max-size сообщений
+ * или проходит max-delay-micros с момента постановки первого сообщения пачки.
+ * Каждый вызывающий получает свой результат через отдельный future.
+ * <p>
+ * При выключенном батчере, переполненной очереди или после остановки запись выполняется напрямую.
+ * Постановка в очередь и остановка исключают друг друга, поэтому каждая принятая запись
+ * либо сбрасывается потоком батчера, либо дописывается при остановке.
+ */
+@Slf4j
+@Component
+public class MessageWriteBatcher {
+
+    private final Repository<Message, UUID> messageRepository;
+    private final MetricService metricService;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long saveTimeoutMillis;
+    private final BlockingQueue<PendingWrite> queue;
+    // Чтение - постановка в очередь, запись - остановка: после stop() ни одна запись не попадёт в очередь
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public MessageWriteBatcher(
+            final Repository<Message, UUID> messageRepository,
+            final MeterRegistry meterRegistry,
+            @Value("${messages.write-batch.enabled:false}") final boolean enabled,
+            @Value("${messages.write-batch.max-size:64}") final int maxBatchSize,
+            @Value("${messages.write-batch.max-delay-micros:500}") final long maxDelayMicros,
+            @Value("${messages.write-batch.queue-capacity:4096}") final int queueCapacity,
+            @Value("${messages.write-batch.save-timeout-ms:5000}") final long saveTimeoutMillis) {
+        this.messageRepository = messageRepository;
+        this.metricService = new MetricService(meterRegistry, MessageWriteBatcher.class, Message.class);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.saveTimeoutMillis = saveTimeoutMillis;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+
+        if (enabled) {
+            running = true;
+            flusher = Thread.ofPlatform()
+                    .name("message-write-batcher")
+                    .daemon()
+                    .start(this::runFlushLoop);
+            log.info("Message write batcher started: max size {}, max delay {} us", maxBatchSize, maxDelayMicros);
+        }
+    }
+
+    /**
+     * Поставить сообщение в очередь на сохранение.
+     *
+     * @param message сообщение для сохранения
+     * @return future с результатом сохранения этого сообщения
+     */
+    public CompletableFuture<UnitResult<Error>> submit(final Message message) {
+        stateLock.readLock().lock();
+        try {
+            if (running) {
+                final PendingWrite write = new PendingWrite(message, System.nanoTime(), new CompletableFuture<>());
+                if (queue.offer(write)) {
+                    return write.result();
+                }
+                log.debug("Write batch queue is full, saving message {} directly", message.getId());
+            }
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        return CompletableFuture.completedFuture(messageRepository.save(message));
+    }
+
+    /**
+     * Сохранить сообщение через батчер и дождаться результата не дольше save-timeout-ms.
+     * По истечении ожидания запись может всё ещё выполниться в пачке.
+     *
+     * @param message сообщение для сохранения
+     * @return UnitResult с результатом операции, database.error при истечении ожидания
+     */
+    public UnitResult<Error> save(final Message message) {
+        try {
+            return submit(message).get(saveTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Timed out after {} ms waiting for write batch with message {}", saveTimeoutMillis, message.getId());
+            return UnitResult.failure(GeneralErrors.databaseError("Timed out waiting for write batch"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return UnitResult.failure(GeneralErrors.databaseError("Interrupted while waiting for write batch"));
+        } catch (ExecutionException e) {
+            log.error("Error occurred while saving message {} through write batch", message.getId(), e.getCause());
+            return UnitResult.failure(GeneralErrors.databaseError(e.getCause().getMessage()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Остановить приём новых записей и сбросить то, что уже в очереди.
+     */
+    @PreDestroy
+    public void stop() {
+        stateLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Записи, которые поток батчера не успел сбросить; новых после смены running не появится
+        PendingWrite write;
+        while ((write = queue.poll()) != null) {
+            try {
+                write.result().complete(messageRepository.save(write.message()));
+            } catch (Exception e) {
+                log.error("Error occurred while saving message {} on write batcher stop", write.message().getId(), e);
+                write.result().complete(UnitResult.failure(GeneralErrors.databaseError(e.getMessage())));
+            }
+        }
+        log.info("Message write batcher stopped");
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void runFlushLoop() {
+        final List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                final PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                final long deadline = first.enqueuedAtNanos() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    final long remaining = deadline - System.nanoTime();
+                    final PendingWrite next = remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(final List<PendingWrite> batch) {
+        final List<Message> messages = batch.stream().map(PendingWrite::message).toList();
+        metricService.recordBatchSize(MetricOperationNameMessage.WRITE_BATCH_FLUSH, batch.size());
+
+        List<UnitResult<Error>> results;
+        try {
+            results = metricService.timer(MetricOperationNameMessage.WRITE_BATCH_FLUSH)
+                    .recordCallable(() -> messageRepository.saveAll(messages));
+            metricService.recordSuccess(MetricOperationNameMessage.WRITE_BATCH_FLUSH);
+        } catch (Exception e) {
+            log.error("Error occurred while flushing batch of {} messages", batch.size(), e);
+            metricService.recordError(MetricOperationNameMessage.WRITE_BATCH_FLUSH);
+            results = null;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            final UnitResult<Error> result = results != null && i < results.size()
+                    ? results.get(i)
+                    : UnitResult.failure(GeneralErrors.databaseError("Failed to flush write batch"));
+            batch.get(i).result().complete(result);
+        }
+
+        log.debug("Flushed batch of {} messages", batch.size());
+    }
+
+    private record PendingWrite(Message message, long enqueuedAtNanos, CompletableFuture<UnitResult<Error>> result) {
+    }
+}
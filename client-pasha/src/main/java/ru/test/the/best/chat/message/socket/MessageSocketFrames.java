@@ -0,0 +1,92 @@
+package ru.test.the.best.chat.message.socket;
+
+import ru.test.the.best.chat.codec.BinaryMessageFormat;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Result;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Бинарные кадры WebSocket-транспорта сообщений.
+ * <p>
+ * Структура (big-endian):
+ * <pre>
+ * SEND    (клиент -> сервер): 0x01 | requestId (4) | сообщение в {@link BinaryMessageFormat}
+ * ACK     (сервер -> клиент): 0x02 | requestId (4) | ID сохранённого сообщения (16)
+ * ERROR   (сервер -> клиент): 0x03 | requestId (4) | длина кода (2) | код UTF-8 | текст ошибки UTF-8
+ * MESSAGE (сервер -> клиент): 0x04 | сообщение в {@link BinaryMessageFormat} без сжатия содержимого (версия 1)
+ * </pre>
+ * Для содержимого, вынесенного в BlobStore, MESSAGE несёт ссылку (флаг FLAG_BLOB, версия 2: тип и размер),
+ * а содержимое клиент читает по GET /api/v1/messages/{id}/content.
+ * Содержимое IMAGE/SOUND передаётся байтами как есть, без Base64.
+ * В кадре SEND поле id сообщения игнорируется: ID присваивает сервер и возвращает в ACK.
+ */
+final class MessageSocketFrames {
+
+    static final byte SEND = 0x01;
+    static final byte ACK = 0x02;
+    static final byte ERROR = 0x03;
+    static final byte MESSAGE = 0x04;
+
+    private static final int REQUEST_HEADER_SIZE = 5;
+
+    private MessageSocketFrames() {
+    }
+
+    /**
+     * Кадр SEND: ID запроса клиента и закодированное сообщение.
+     */
+    record SendFrame(int requestId, byte[] message) {
+    }
+
+    /**
+     * Разобрать кадр SEND.
+     *
+     * @param payload содержимое бинарного кадра
+     * @return Result с кадром или Error, если тип кадра не SEND или он короче заголовка
+     */
+    static Result<SendFrame, Error> decodeSend(final ByteBuffer payload) {
+        if (payload.remaining() < REQUEST_HEADER_SIZE)
+            return Result.failure(GeneralErrors.deserializationError("Socket frame is shorter than header"));
+
+        final byte kind = payload.get();
+        if (kind != SEND)
+            return Result.failure(GeneralErrors.deserializationError("Unsupported socket frame type: " + kind));
+
+        final int requestId = payload.getInt();
+        final byte[] message = new byte[payload.remaining()];
+        payload.get(message);
+        return Result.success(new SendFrame(requestId, message));
+    }
+
+    static ByteBuffer ack(final int requestId, final UUID id) {
+        return ByteBuffer.allocate(REQUEST_HEADER_SIZE + 16)
+                .put(ACK)
+                .putInt(requestId)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .flip();
+    }
+
+    static ByteBuffer error(final int requestId, final Error error) {
+        final byte[] code = error.getCode().getBytes(StandardCharsets.UTF_8);
+        final byte[] message = error.getMessage().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(REQUEST_HEADER_SIZE + 2 + code.length + message.length)
+                .put(ERROR)
+                .putInt(requestId)
+                .putShort((short) code.length)
+                .put(code)
+                .put(message)
+                .flip();
+    }
+
+    static ByteBuffer message(final byte[] encodedMessage) {
+        return ByteBuffer.allocate(1 + encodedMessage.length)
+                .put(MESSAGE)
+                .put(encodedMessage)
+                .flip();
+    }
+}
@@ -0,0 +1,339 @@
+package ru.test.the.best.chat.message.socket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.util.UriComponentsBuilder;
+import ru.test.the.best.chat.codec.MessageCodec;
+import ru.test.the.best.chat.core.utils.SerialExecutor;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.api.ApiError;
+import ru.test.the.best.chat.message.model.entity.Message;
+import ru.test.the.best.chat.message.repository.MessageEventSubscriber;
+import ru.test.the.best.chat.message.service.MessageService;
+import ru.test.the.best.chat.model.dto.message.CreateMessageRequest;
+import ru.test.the.best.chat.model.dto.message.MessageResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Двунаправленный WebSocket-транспорт сообщений: /api/v1/messages/ws?user={id}&format={json|binary}.
+ * <p>
+ * Клиент отправляет сообщения текстовыми (JSON) или бинарными ({@link MessageSocketFrames}) кадрами
+ * и получает подтверждение с ID сохранённого сообщения. Сохранение идёт через {@link MessageService},
+ * поэтому валидация та же, что и у REST. Отправлять можно только от имени подключённого пользователя.
+ * <p>
+ * Входящие сообщения приходят из Redis Pub/Sub от всех экземпляров приложения и отправляются
+ * в формате, выбранном при подключении, через очередь подключения ({@link SerialExecutor}) в порядке
+ * публикации. Отправка в сессию идёт через
+ * {@link ConcurrentWebSocketSessionDecorator}: медленный клиент, превысивший лимит буфера
+ * или времени отправки, отключается и не задерживает остальных.
+ */
+@Slf4j
+@Component
+public class MessageSocketHandler extends AbstractWebSocketHandler {
+
+    private static final String USER_ATTRIBUTE = "messages.socket.user";
+    private static final String CLIENT_ATTRIBUTE = "messages.socket.client";
+    private static final String FORMAT_BINARY = "binary";
+
+    private static final String TYPE_SEND = "send";
+    private static final String TYPE_ACK = "ack";
+    private static final String TYPE_ERROR = "error";
+    private static final String TYPE_MESSAGE = "message";
+
+    private final MessageService messageService;
+    private final MessageCodec<Message> messageCodec;
+    private final Gson gson;
+    private final int sendTimeLimitMillis;
+    private final int sendBufferSizeLimit;
+
+    private final Map<UUID, Set<SocketClient>> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    public MessageSocketHandler(
+            final MessageService messageService,
+            final MessageCodec<Message> messageCodec,
+            final MessageEventSubscriber messageEventSubscriber,
+            final Gson gson,
+            final MeterRegistry meterRegistry,
+            @Value("${messages.socket.send-time-limit-ms:10000}") final int sendTimeLimitMillis,
+            @Value("${messages.socket.send-buffer-size-limit:1048576}") final int sendBufferSizeLimit) {
+        this.messageService = messageService;
+        this.messageCodec = messageCodec;
+        this.gson = gson;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+
+        Gauge.builder("messages.socket.connections", connections, AtomicInteger::get)
+                .description("Открытые WebSocket-подключения на этом экземпляре")
+                .register(meterRegistry);
+
+        messageEventSubscriber.addListener(this::onMessageSaved);
+    }
+
+    @Override
+    public void afterConnectionEstablished(final WebSocketSession session) throws IOException {
+        final Map<String, String> params = UriComponentsBuilder.fromUri(session.getUri())
+                .build()
+                .getQueryParams()
+                .toSingleValueMap();
+
+        final UUID userId;
+        try {
+            userId = UUID.fromString(params.getOrDefault("user", ""));
+        } catch (IllegalArgumentException e) {
+            log.warn("WS: Rejecting connection without valid user parameter");
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Parameter 'user' must be a UUID"));
+            return;
+        }
+
+        final SocketClient client = new SocketClient(
+                new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis, sendBufferSizeLimit),
+                FORMAT_BINARY.equalsIgnoreCase(params.get("format")),
+                new SerialExecutor(senders)
+        );
+        session.getAttributes().put(USER_ATTRIBUTE, userId);
+        session.getAttributes().put(CLIENT_ATTRIBUTE, client);
+        clients.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(client);
+        connections.incrementAndGet();
+
+        log.debug("WS: Connection {} opened for user: {}, binary: {}", session.getId(), userId, client.binary());
+    }
+
+    @Override
+    protected void handleTextMessage(final WebSocketSession session, final TextMessage textMessage) {
+        final SocketClient client = findClient(session);
+        if (client == null) {
+            return;
+        }
+
+        final SocketRequest request;
+        try {
+            request = gson.fromJson(textMessage.getPayload(), SocketRequest.class);
+        } catch (JsonParseException e) {
+            sendText(client, SocketReply.error(null, GeneralErrors.deserializationError(e.getMessage())));
+            return;
+        }
+
+        if (request == null || !TYPE_SEND.equals(request.type())) {
+            sendText(client, SocketReply.error(request != null ? request.requestId() : null,
+                    GeneralErrors.valueIsInvalid("type", "only 'send' frames are accepted")));
+            return;
+        }
+
+        if (request.message() != null && !userOf(session).equals(request.message().from())) {
+            sendText(client, SocketReply.error(request.requestId(), senderMismatch()));
+            return;
+        }
+
+        final Result<UUID, Error> result = messageService.create(request.message());
+        sendText(client, result.isSuccess()
+                ? SocketReply.ack(request.requestId(), result.getValue())
+                : SocketReply.error(request.requestId(), result.getError()));
+    }
+
+    @Override
+    protected void handleBinaryMessage(final WebSocketSession session, final BinaryMessage binaryMessage) {
+        final SocketClient client = findClient(session);
+        if (client == null) {
+            return;
+        }
+
+        final Result<MessageSocketFrames.SendFrame, Error> frameResult =
+                MessageSocketFrames.decodeSend(binaryMessage.getPayload());
+        if (frameResult.isFailure()) {
+            sendBinary(client, MessageSocketFrames.error(0, frameResult.getError()));
+            return;
+        }
+
+        final int requestId = frameResult.getValue().requestId();
+        final Result<UUID, Error> result = decodeAndSave(userOf(session), frameResult.getValue().message());
+        sendBinary(client, result.isSuccess()
+                ? MessageSocketFrames.ack(requestId, result.getValue())
+                : MessageSocketFrames.error(requestId, result.getError()));
+    }
+
+    @Override
+    public void handleTransportError(final WebSocketSession session, final Throwable exception) {
+        log.debug("WS: Transport error on connection {}: {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(final WebSocketSession session, final CloseStatus status) {
+        final Object userId = session.getAttributes().get(USER_ATTRIBUTE);
+        if (userId == null) {
+            return;
+        }
+
+        final Object client = session.getAttributes().get(CLIENT_ATTRIBUTE);
+        clients.computeIfPresent((UUID) userId, (id, userClients) -> {
+            if (userClients.remove(client)) {
+                connections.decrementAndGet();
+            }
+            return userClients.isEmpty() ? null : userClients;
+        });
+        log.debug("WS: Connection {} closed for user: {} ({})", session.getId(), userId, status);
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdown();
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    /**
+     * Разобрать сообщение из бинарного кадра и сохранить его под новым ID.
+     */
+    private Result<UUID, Error> decodeAndSave(final UUID userId, final byte[] encodedMessage) {
+        final Result<Message, Error> decoded = messageCodec.decode(encodedMessage);
+        if (decoded.isFailure()) {
+            return Result.failure(decoded.getError());
+        }
+
+        final Message frame = decoded.getValue();
+        if (!userId.equals(frame.getFrom())) {
+            return Result.failure(senderMismatch());
+        }
+
+        final Result<Message, Error> messageResult =
+                Message.create(frame.getDate(), frame.getFrom(), frame.getTo(), frame.getDataMessage());
+        if (messageResult.isFailure()) {
+            return Result.failure(messageResult.getError());
+        }
+        return messageService.create(messageResult.getValue());
+    }
+
+    private void onMessageSaved(final Message message) {
+        final Set<SocketClient> recipients = clients.get(message.getTo());
+        if (recipients == null || recipients.isEmpty()) {
+            return;
+        }
+
+        // Кодирование идёт в потоках отправки, а не в потоке подписки: он общий для SSE и long-poll
+        final OutgoingMessage outgoing = new OutgoingMessage(message);
+        for (SocketClient client : recipients) {
+            client.sender().execute(() -> send(client, client.binary() ? outgoing.binary() : outgoing.text()));
+        }
+    }
+
+    private void sendText(final SocketClient client, final SocketReply reply) {
+        send(client, new TextMessage(gson.toJson(reply)));
+    }
+
+    private void sendBinary(final SocketClient client, final ByteBuffer frame) {
+        send(client, new BinaryMessage(frame));
+    }
+
+    private void send(final SocketClient client, final WebSocketMessage<?> frame) {
+        try {
+            client.session().sendMessage(frame);
+        } catch (IOException | IllegalStateException e) {
+            // Декоратор закрывает сессию при превышении лимитов, afterConnectionClosed уберёт клиента
+            log.debug("WS: Failed to send to connection {}: {}", client.session().getId(), e.getMessage());
+        }
+    }
+
+    private static SocketClient findClient(final WebSocketSession session) {
+        return (SocketClient) session.getAttributes().get(CLIENT_ATTRIBUTE);
+    }
+
+    private static UUID userOf(final WebSocketSession session) {
+        return (UUID) session.getAttributes().get(USER_ATTRIBUTE);
+    }
+
+    private static Error senderMismatch() {
+        return GeneralErrors.valueIsInvalid("from", "messages can only be sent from the connected user");
+    }
+
+    /**
+     * Подключение: сессия, формат кадров и очередь отправки, сохраняющая порядок публикации.
+     */
+    private record SocketClient(WebSocketSession session, boolean binary, SerialExecutor sender) {
+    }
+
+    /**
+     * Входящее сообщение для отправки: кадр каждого формата кодируется не больше одного раза
+     * и только при первой отправке в этом формате.
+     * <p>
+     * Содержимое из BlobStore не читается: бинарный кадр несёт ссылку (тип и размер, флаг FLAG_BLOB),
+     * JSON - только тип, а само содержимое клиент читает по GET /api/v1/messages/{id}/content.
+     */
+    private final class OutgoingMessage {
+
+        private final Message message;
+        private byte[] encoded;
+        private WebSocketMessage<?> text;
+
+        private OutgoingMessage(final Message message) {
+            this.message = message;
+        }
+
+        /**
+         * Бинарный кадр: буфер кадра у каждой сессии свой, так как отправка сдвигает его позицию.
+         */
+        synchronized WebSocketMessage<?> binary() {
+            if (encoded == null) {
+                encoded = message.getDataMessage().isBlob()
+                        ? messageCodec.encode(message)
+                        : messageCodec.encodeUncompressed(message);
+            }
+            return new BinaryMessage(MessageSocketFrames.message(encoded));
+        }
+
+        synchronized WebSocketMessage<?> text() {
+            if (text == null) {
+                text = new TextMessage(gson.toJson(SocketReply.message(message.toMessageResponse())));
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Текстовый кадр клиента: {"type":"send","requestId":"...","message":{CreateMessageRequest}}.
+     */
+    private record SocketRequest(String type, String requestId, CreateMessageRequest message) {
+    }
+
+    /**
+     * Текстовый кадр сервера: ack с ID, error с ошибкой или message с входящим сообщением.
+     */
+    private record SocketReply(String type, String requestId, UUID id, ApiError error, MessageResponse message) {
+
+        static SocketReply ack(final String requestId, final UUID id) {
+            return new SocketReply(TYPE_ACK, requestId, id, null, null);
+        }
+
+        static SocketReply error(final String requestId, final Error error) {
+            return new SocketReply(TYPE_ERROR, requestId, null, new ApiError(error.getCode(), error.getMessage()), null);
+        }
+
+        static SocketReply message(final MessageResponse message) {
+            return new SocketReply(TYPE_MESSAGE, null, null, null, message);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ru.test.the.best.chat.core.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Лимиты multipart-загрузки выводятся из messages.upload.max-bytes.
+ */
+class MultipartConfigTest {
+
+    @Test
+    void requestLimitIsFileLimitPlusOverhead() {
+        final MultipartConfigElement config =
+                MultipartConfig.multipartConfig("", 100L * 1024 * 1024, 65536, DataSize.ofKilobytes(256));
+
+        assertEquals(100L * 1024 * 1024, config.getMaxFileSize());
+        assertEquals(100L * 1024 * 1024 + 65536, config.getMaxRequestSize());
+        assertEquals(256 * 1024, config.getFileSizeThreshold());
+    }
+
+    @Test
+    void invalidLimitsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MultipartConfig.multipartConfig("", 0, 65536, DataSize.ofKilobytes(256)));
+        assertThrows(IllegalArgumentException.class,
+                () -> MultipartConfig.multipartConfig("", 1024, -1, DataSize.ofKilobytes(256)));
+    }
+}
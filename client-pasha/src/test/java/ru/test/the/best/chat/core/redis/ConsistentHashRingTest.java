@@ -0,0 +1,90 @@
+package ru.test.the.best.chat.core.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кольцо консистентного хеширования шардов: одинаковое размещение на всех экземплярах,
+ * равномерность и перенос только части ключей при добавлении узла.
+ */
+class ConsistentHashRingTest {
+
+    private static final int VIRTUAL_NODES = 160;
+    private static final int KEYS = 20_000;
+
+    @Test
+    void placementDependsOnlyOnNodeNames() {
+        final Map<String, Integer> forward = new LinkedHashMap<>();
+        forward.put("a", 1);
+        forward.put("b", 2);
+        forward.put("c", 3);
+        final Map<String, Integer> backward = new LinkedHashMap<>();
+        backward.put("c", 30);
+        backward.put("b", 20);
+        backward.put("a", 10);
+
+        final ConsistentHashRing<Integer> first = new ConsistentHashRing<>(forward, VIRTUAL_NODES);
+        final ConsistentHashRing<Integer> second = new ConsistentHashRing<>(backward, VIRTUAL_NODES);
+
+        for (int i = 0; i < 1000; i++) {
+            final String key = UUID.randomUUID().toString();
+            assertEquals(first.nameFor(key), second.nameFor(key));
+        }
+    }
+
+    @Test
+    void keysAreSpreadOverAllNodes() {
+        final ConsistentHashRing<String> ring = new ConsistentHashRing<>(
+                Map.of("a", "a", "b", "b", "c", "c", "d", "d"), VIRTUAL_NODES);
+
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nameFor(UUID.randomUUID().toString()), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            // Ожидается KEYS / 4; с виртуальными узлами отклонение заметно меньше половины
+            assertTrue(count > KEYS / 8 && count < KEYS * 3 / 8, "count " + count);
+        }
+    }
+
+    @Test
+    void addingNodeMovesKeysOnlyToNewNode() {
+        final ConsistentHashRing<String> ring = new ConsistentHashRing<>(
+                Map.of("a", "a", "b", "b", "c", "c"), VIRTUAL_NODES);
+        final ConsistentHashRing<String> extended = ring.withNode("d", "d");
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            final String key = UUID.randomUUID().toString();
+            final String before = ring.nameFor(key);
+            final String after = extended.nameFor(key);
+            if (!before.equals(after)) {
+                assertEquals("d", after);
+                moved++;
+            }
+        }
+
+        // К новому узлу переезжает около 1/4 ключей
+        assertTrue(moved > KEYS / 8 && moved < KEYS * 3 / 8, "moved " + moved);
+        assertEquals(3, ring.nodes().size());
+        assertEquals(4, extended.nodes().size());
+    }
+
+    @Test
+    void invalidRingsAreRejected() {
+        final ConsistentHashRing<String> ring = new ConsistentHashRing<>(Map.of("a", "a"), VIRTUAL_NODES);
+
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing<>(Map.of(), VIRTUAL_NODES));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing<>(Map.of("a", "a"), 0));
+        assertThrows(IllegalArgumentException.class, () -> ring.withNode("a", "other"));
+        assertEquals("a", ring.nodeFor("any key"));
+    }
+}
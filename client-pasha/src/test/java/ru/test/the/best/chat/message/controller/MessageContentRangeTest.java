@@ -0,0 +1,133 @@
+package ru.test.the.best.chat.message.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.test.the.best.chat.core.model.value.DataMessage;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.message.model.value.MessageContent;
+import ru.test.the.best.chat.message.service.MessageService;
+import ru.test.the.best.chat.message.service.MessageStreamService;
+import ru.test.the.best.chat.message.service.MessageWaitService;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * GET /api/v1/messages/{id}/content: диапазоны Range, If-Range и If-None-Match.
+ */
+class MessageContentRangeTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    private final UUID id = UUID.randomUUID();
+    private MessageRestController controller;
+    private String eTag;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final MessageContent content = MessageContent.of(id, DataMessage.create(CONTENT, "STRING").getValue());
+        eTag = content.eTag();
+
+        final MessageService messageService = mock(MessageService.class);
+        when(messageService.findContent(id)).thenReturn(Result.success(Optional.of(content)));
+        controller = new MessageRestController(
+                messageService, mock(MessageStreamService.class), mock(MessageWaitService.class));
+    }
+
+    @Test
+    void withoutRangeReturnsWholeContent() throws Exception {
+        final ResponseEntity<StreamingResponseBody> response = controller.getMessageContent(id, null, null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(CONTENT.length, response.getHeaders().getContentLength());
+        assertEquals(eTag, response.getHeaders().getETag());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertArrayEquals(CONTENT, body(response));
+    }
+
+    @Test
+    void singleRangeReturnsPartialContent() throws Exception {
+        final ResponseEntity<StreamingResponseBody> response = controller.getMessageContent(id, "bytes=2-5", null, null);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals(4, response.getHeaders().getContentLength());
+        assertEquals("bytes 2-5/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("2345", new String(body(response), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void suffixAndOpenRangesAreClampedToContent() throws Exception {
+        final ResponseEntity<StreamingResponseBody> suffix = controller.getMessageContent(id, "bytes=-3", null, null);
+        final ResponseEntity<StreamingResponseBody> open = controller.getMessageContent(id, "bytes=7-100", null, null);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, suffix.getStatusCode());
+        assertEquals("bytes 7-9/10", suffix.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("789", new String(body(suffix), StandardCharsets.UTF_8));
+        assertEquals(HttpStatus.PARTIAL_CONTENT, open.getStatusCode());
+        assertEquals("bytes 7-9/10", open.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("789", new String(body(open), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rangeBeyondContentIsNotSatisfiable() {
+        final ResponseEntity<StreamingResponseBody> response = controller.getMessageContent(id, "bytes=10-12", null, null);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void malformedRangeIsNotSatisfiable() {
+        final ResponseEntity<StreamingResponseBody> response = controller.getMessageContent(id, "items=0-1", null, null);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void multipleRangesReturnWholeContent() throws Exception {
+        final ResponseEntity<StreamingResponseBody> response = controller.getMessageContent(id, "bytes=0-1,4-5", null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(CONTENT, body(response));
+    }
+
+    @Test
+    void ifRangeWithOtherETagIgnoresRange() throws Exception {
+        final ResponseEntity<StreamingResponseBody> stale = controller.getMessageContent(id, "bytes=2-5", "\"other\"", null);
+        final ResponseEntity<StreamingResponseBody> current = controller.getMessageContent(id, "bytes=2-5", eTag, null);
+
+        assertEquals(HttpStatus.OK, stale.getStatusCode());
+        assertArrayEquals(CONTENT, body(stale));
+        assertEquals(HttpStatus.PARTIAL_CONTENT, current.getStatusCode());
+    }
+
+    @Test
+    void ifNoneMatchWithCurrentETagReturnsNotModified() {
+        final ResponseEntity<StreamingResponseBody> exact = controller.getMessageContent(id, null, null, eTag);
+        final ResponseEntity<StreamingResponseBody> listed = controller.getMessageContent(id, "bytes=0-1", null, "\"other\", W/" + eTag);
+        final ResponseEntity<StreamingResponseBody> other = controller.getMessageContent(id, null, null, "\"other\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, exact.getStatusCode());
+        assertEquals(eTag, exact.getHeaders().getETag());
+        assertNull(exact.getBody());
+        assertEquals(HttpStatus.NOT_MODIFIED, listed.getStatusCode());
+        assertEquals(HttpStatus.OK, other.getStatusCode());
+    }
+
+    private static byte[] body(final ResponseEntity<StreamingResponseBody> response) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+}
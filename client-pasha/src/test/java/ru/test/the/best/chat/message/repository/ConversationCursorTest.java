@@ -0,0 +1,114 @@
+package ru.test.the.best.chat.message.repository;
+
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Постраничное чтение переписки по курсору (время, ID) на модели Sorted Set:
+ * порядок и границы ZREVRANGEBYSCORE повторяют Redis (score, затем member побайтно).
+ */
+class ConversationCursorTest {
+
+    private static final int LIMIT = 3;
+
+    /**
+     * Элемент модели Sorted Set переписки.
+     */
+    private record Entry(long score, byte[] member) {
+    }
+
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator
+            .comparingLong(Entry::score)
+            .thenComparing(Entry::member, Arrays::compareUnsigned)
+            .reversed();
+
+    @Test
+    void pagesDoNotSkipMessagesSharingOneMillisecond() {
+        final long millis = Instant.parse("2026-10-15T10:00:00Z").toEpochMilli();
+        final List<Entry> conversation = new ArrayList<>();
+        // Больше limit сообщений одной миллисекунды, как при групповой записи, и по одному до и после
+        conversation.add(entry(millis + 1));
+        for (int i = 0; i < LIMIT * 2 + 1; i++) {
+            conversation.add(entry(millis));
+        }
+        conversation.add(entry(millis - 1));
+
+        final List<Entry> expected = conversation.stream().sorted(NEWEST_FIRST).toList();
+        final List<Entry> read = new ArrayList<>();
+        ConversationCursor cursor = ConversationCursor.of(null, null);
+        while (true) {
+            final List<Entry> page = page(conversation, cursor);
+            if (page.isEmpty()) {
+                break;
+            }
+            assertTrue(page.size() <= LIMIT);
+            read.addAll(page);
+
+            // Курсор следующей страницы - самое раннее сообщение текущей
+            final Entry oldest = page.getLast();
+            cursor = ConversationCursor.of(Instant.ofEpochMilli(oldest.score()), idOf(oldest));
+        }
+
+        assertEquals(expected.stream().map(ConversationCursorTest::idOf).toList(),
+                read.stream().map(ConversationCursorTest::idOf).toList());
+    }
+
+    @Test
+    void withoutIdCursorIsStrictlyBeforeMillisecond() {
+        final long millis = Instant.parse("2026-10-15T10:00:00Z").toEpochMilli();
+        final List<Entry> conversation = List.of(entry(millis), entry(millis), entry(millis - 1));
+
+        final List<Entry> page = page(conversation, ConversationCursor.of(Instant.ofEpochMilli(millis), null));
+
+        assertEquals(1, page.size());
+        assertEquals(millis - 1, page.getFirst().score());
+    }
+
+    @Test
+    void memberOrderMatchesTextualIdOrder() {
+        final UUID lower = UUID.fromString("0199e7a0-0000-7000-8000-00000000000f");
+        final UUID higher = UUID.fromString("0199e7a0-0000-7000-8000-0000000000a0");
+
+        assertTrue(ConversationCursor.isOlder(SafeEncoder.encode(lower.toString()), SafeEncoder.encode(higher.toString())));
+        assertTrue(ConversationCursor.isOlder(MessageKeyLayout.BINARY.member(lower), MessageKeyLayout.BINARY.member(higher)));
+        assertFalse(ConversationCursor.isOlder(MessageKeyLayout.BINARY.member(higher), MessageKeyLayout.BINARY.member(lower)));
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    /**
+     * Страница так же, как в RedisMessageRepository: миллисекунда курсора целиком и limit более ранних.
+     */
+    private static List<Entry> page(final List<Entry> conversation, final ConversationCursor cursor) {
+        final List<Entry> sorted = conversation.stream().sorted(NEWEST_FIRST).toList();
+        final List<Entry> boundary = cursor.hasBoundary()
+                ? sorted.stream().filter(entry -> entry.score() == cursor.before().toEpochMilli()).toList()
+                : List.of();
+        final List<Entry> older = sorted.stream()
+                .filter(entry -> cursor.before() == null || entry.score() < cursor.before().toEpochMilli())
+                .limit(LIMIT)
+                .toList();
+
+        final byte[] cursorMember = cursor.hasBoundary() ? SafeEncoder.encode(cursor.beforeId().toString()) : null;
+        final Predicate<Entry> isOlder = entry -> ConversationCursor.isOlder(entry.member(), cursorMember);
+        return ConversationCursor.page(boundary, older, isOlder, LIMIT);
+    }
+
+    private static Entry entry(final long score) {
+        return new Entry(score, SafeEncoder.encode(UUID.randomUUID().toString()));
+    }
+
+    private static UUID idOf(final Entry entry) {
+        return UUID.fromString(SafeEncoder.encode(entry.member()));
+    }
+}
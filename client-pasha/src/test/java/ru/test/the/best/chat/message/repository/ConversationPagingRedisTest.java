@@ -0,0 +1,72 @@
+package ru.test.the.best.chat.message.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.test.the.best.chat.core.model.value.DataMessage;
+import ru.test.the.best.chat.core.repository.Repository;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Постраничное чтение переписки, в которой больше limit сообщений с одним временем.
+ * <p>
+ * Нужен запущенный Redis из application.properties; запуск:
+ * CHAT_REDIS_TESTS=true ./gradlew :client-pasha:test --tests '*ConversationPagingRedisTest'.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_REDIS_TESTS", matches = "true")
+class ConversationPagingRedisTest {
+
+    private static final int LIMIT = 3;
+
+    @Autowired
+    private Repository<Message, UUID> messageRepository;
+
+    @Test
+    void pagesDoNotSkipMessagesSharingOneTimestampTest() {
+        final UUID user1 = UUID.randomUUID();
+        final UUID user2 = UUID.randomUUID();
+        final Instant date = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        final List<UUID> saved = new ArrayList<>();
+        for (int i = 0; i < LIMIT * 2 + 1; i++) {
+            final Message message = Message.create(date, i % 2 == 0 ? user1 : user2, i % 2 == 0 ? user2 : user1,
+                    DataMessage.create(("message " + i).getBytes(StandardCharsets.UTF_8), "STRING").getValue()).getValue();
+            assertTrue(messageRepository.save(message).isSuccess());
+            saved.add(message.getId());
+        }
+
+        try {
+            final List<UUID> read = new ArrayList<>();
+            Instant before = null;
+            UUID beforeId = null;
+            while (true) {
+                final List<Message> page = messageRepository.findConversation(user1, user2, before, beforeId, LIMIT);
+                if (page.isEmpty()) {
+                    break;
+                }
+                assertTrue(page.size() <= LIMIT);
+                page.reversed().forEach(message -> read.add(message.getId()));
+
+                // Курсор следующей страницы - первое (самое раннее) сообщение текущей
+                before = page.getFirst().getDate();
+                beforeId = page.getFirst().getId();
+            }
+
+            assertEquals(saved.size(), read.size());
+            assertTrue(read.containsAll(saved));
+        } finally {
+            messageRepository.deleteAllByIds(saved);
+        }
+    }
+}
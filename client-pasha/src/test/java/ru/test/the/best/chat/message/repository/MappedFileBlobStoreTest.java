@@ -0,0 +1,124 @@
+package ru.test.the.best.chat.message.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.test.the.best.chat.codec.BlobReference;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Файловое хранилище блобов: запись на границах буфера чтения и выдача диапазонов на границе окна отображения.
+ */
+class MappedFileBlobStoreTest {
+
+    /**
+     * Размер буфера записи в {@link MappedFileBlobStore}.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Размер окна отображения в {@link MappedFileBlobStore}.
+     */
+    private static final int MAP_WINDOW = 16 * 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void putAndReadAroundBufferBoundary() {
+        final MappedFileBlobStore store = new MappedFileBlobStore(directory);
+        for (int size : new int[]{1, BUFFER_SIZE - 1, BUFFER_SIZE, BUFFER_SIZE + 1, 3 * BUFFER_SIZE + 7}) {
+            final byte[] data = data(size);
+
+            final Result<BlobReference, Error> stored = store.put(new ByteArrayInputStream(data), size);
+
+            assertTrue(stored.isSuccess(), "size " + size);
+            assertEquals(size, stored.getValue().size());
+            assertArrayEquals(data, store.read(stored.getValue()).getValue(), "size " + size);
+        }
+    }
+
+    @Test
+    void putRejectsContentOverLimitAndLeavesNoFiles() throws IOException {
+        final MappedFileBlobStore store = new MappedFileBlobStore(directory);
+
+        final Result<BlobReference, Error> result = store.put(new ByteArrayInputStream(data(BUFFER_SIZE + 1)), BUFFER_SIZE);
+
+        assertTrue(result.isFailure());
+        assertEquals("payload.too.large", result.getError().getCode());
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertTrue(files.noneMatch(Files::isRegularFile));
+        }
+    }
+
+    @Test
+    void putRejectsEmptyContent() {
+        final MappedFileBlobStore store = new MappedFileBlobStore(directory);
+
+        final Result<BlobReference, Error> result = store.put(new ByteArrayInputStream(new byte[0]), BUFFER_SIZE);
+
+        assertTrue(result.isFailure());
+    }
+
+    @Test
+    void deleteRemovesBlobAndIgnoresMissing() {
+        final MappedFileBlobStore store = new MappedFileBlobStore(directory);
+        final BlobReference reference = store.put(data(10)).getValue();
+
+        assertTrue(store.delete(reference).isSuccess());
+
+        assertEquals("entity.not.found", store.read(reference).getError().getCode());
+        assertTrue(store.delete(reference).isSuccess());
+    }
+
+    @Test
+    void transferToReturnsRangesAcrossMapWindow() throws IOException {
+        final MappedFileBlobStore store = new MappedFileBlobStore(directory);
+        final byte[] data = data(MAP_WINDOW + 5);
+        final BlobReference reference = store.put(data).getValue();
+
+        assertRange(store, reference, data, 0, data.length);
+        assertRange(store, reference, data, MAP_WINDOW - 3, 6);
+        assertRange(store, reference, data, MAP_WINDOW - 1, 1);
+        assertRange(store, reference, data, MAP_WINDOW, 5);
+        assertRange(store, reference, data, data.length - 1, 1);
+        assertRange(store, reference, data, 10, 0);
+    }
+
+    @Test
+    void transferToRejectsRangeOutsideBlob() {
+        final MappedFileBlobStore store = new MappedFileBlobStore(directory);
+        final BlobReference reference = store.put(data(10)).getValue();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> store.transferTo(reference, 5, 6, Channels.newChannel(new ByteArrayOutputStream())));
+    }
+
+    private static void assertRange(
+            final BlobStore store, final BlobReference reference, final byte[] data, final int offset, final int length
+    ) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        store.transferTo(reference, offset, length, Channels.newChannel(out));
+        assertArrayEquals(Arrays.copyOfRange(data, offset, offset + length), out.toByteArray(),
+                "range " + offset + "+" + length);
+    }
+
+    private static byte[] data(final int size) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + (i >>> 8));
+        }
+        return data;
+    }
+}
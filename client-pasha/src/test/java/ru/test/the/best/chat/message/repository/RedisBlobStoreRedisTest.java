@@ -0,0 +1,103 @@
+package ru.test.the.best.chat.message.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.test.the.best.chat.codec.BlobReference;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Хранилище блобов в Redis: запись, удаление и выдача диапазонов на границах кусков blob:{id}:{n}
+ * и пачек GETRANGE.
+ * <p>
+ * Нужен запущенный Redis из application.properties; запуск:
+ * CHAT_REDIS_TESTS=true ./gradlew :client-pasha:test --tests '*RedisBlobStoreRedisTest'.
+ */
+@SpringBootTest(properties = "messages.blob.store=redis")
+@EnabledIfEnvironmentVariable(named = "CHAT_REDIS_TESTS", matches = "true")
+class RedisBlobStoreRedisTest {
+
+    private static final int CHUNK = RedisBlobStore.CHUNK_SIZE;
+
+    /**
+     * Куски одной пачки GETRANGE в {@link RedisBlobStore}.
+     */
+    private static final int TRANSFER_CHUNKS = 8;
+
+    @Autowired
+    private RedisBlobStore blobStore;
+
+    @Test
+    void putAndReadAroundChunkBoundaryTest() {
+        for (int size : new int[]{1, CHUNK - 1, CHUNK, CHUNK + 1, 2 * CHUNK + 17}) {
+            final byte[] data = data(size);
+
+            final Result<BlobReference, Error> stored = blobStore.put(new ByteArrayInputStream(data), size);
+
+            assertTrue(stored.isSuccess(), "size " + size);
+            assertEquals(size, stored.getValue().size());
+            assertArrayEquals(data, blobStore.read(stored.getValue()).getValue(), "size " + size);
+        }
+    }
+
+    @Test
+    void putRejectsContentOverLimitTest() {
+        final Result<BlobReference, Error> result =
+                blobStore.put(new ByteArrayInputStream(data(CHUNK + 1)), CHUNK);
+
+        assertTrue(result.isFailure());
+        assertEquals("payload.too.large", result.getError().getCode());
+    }
+
+    @Test
+    void deleteRemovesAllChunksTest() {
+        final BlobReference reference = blobStore.put(data(2 * CHUNK + 1)).getValue();
+
+        assertTrue(blobStore.delete(reference).isSuccess());
+
+        assertEquals("entity.not.found", blobStore.read(reference).getError().getCode());
+        assertTrue(blobStore.delete(reference).isSuccess());
+    }
+
+    @Test
+    void transferToReturnsRangesAcrossChunksTest() throws IOException {
+        final byte[] data = data(TRANSFER_CHUNKS * CHUNK + CHUNK / 2);
+        final BlobReference reference = blobStore.put(data).getValue();
+
+        assertRange(reference, data, 0, data.length);
+        assertRange(reference, data, CHUNK - 2, 4);
+        assertRange(reference, data, CHUNK - 1, 1);
+        assertRange(reference, data, CHUNK, CHUNK);
+        assertRange(reference, data, CHUNK + 1, 2 * CHUNK);
+        // Диапазон на границе пачек: последний кусок первой пачки и первый кусок второй
+        assertRange(reference, data, TRANSFER_CHUNKS * CHUNK - 3, 6);
+        assertRange(reference, data, data.length - 1, 1);
+        assertRange(reference, data, 10, 0);
+    }
+
+    private void assertRange(final BlobReference reference, final byte[] data, final int offset, final int length)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        blobStore.transferTo(reference, offset, length, Channels.newChannel(out));
+        assertArrayEquals(Arrays.copyOfRange(data, offset, offset + length), out.toByteArray(),
+                "range " + offset + "+" + length);
+    }
+
+    private static byte[] data(final int size) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + (i >>> 8));
+        }
+        return data;
+    }
+}
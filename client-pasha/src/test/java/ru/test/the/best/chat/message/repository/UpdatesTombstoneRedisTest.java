@@ -0,0 +1,62 @@
+package ru.test.the.best.chat.message.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.test.the.best.chat.core.model.value.DataMessage;
+import ru.test.the.best.chat.core.repository.Repository;
+import ru.test.the.best.chat.core.repository.UpdatesPage;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Удаление сообщения остаётся в лентах изменений обоих участников записью с новым номером.
+ * <p>
+ * Нужен запущенный Redis из application.properties; запуск:
+ * CHAT_REDIS_TESTS=true ./gradlew :client-pasha:test --tests '*UpdatesTombstoneRedisTest'.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_REDIS_TESTS", matches = "true")
+class UpdatesTombstoneRedisTest {
+
+    private static final int LIMIT = 10;
+
+    @Autowired
+    private Repository<Message, UUID> messageRepository;
+
+    @Test
+    void deletedMessageIsReturnedToBothParticipantsAfterCursorTest() {
+        final UUID from = UUID.randomUUID();
+        final UUID to = UUID.randomUUID();
+        final Message message = Message.create(Instant.now(), from, to,
+                DataMessage.create("deleted".getBytes(StandardCharsets.UTF_8), "STRING").getValue()).getValue();
+        assertTrue(messageRepository.save(message).isSuccess());
+
+        final UpdatesPage<Message> before = messageRepository.findUpdates(to, 0, LIMIT).getValue();
+        assertEquals(List.of(message.getId()), before.items().stream().map(Message::getId).toList());
+
+        assertTrue(messageRepository.deleteById(message.getId()).isSuccess());
+
+        for (UUID userId : List.of(from, to)) {
+            final UpdatesPage<Message> page = messageRepository.findUpdates(userId, 0, LIMIT).getValue();
+            assertTrue(page.items().isEmpty());
+            assertEquals(List.of(message.getId()), page.deletedIds());
+        }
+
+        // Клиент, уже получивший сообщение, узнаёт об удалении по своему курсору
+        final UpdatesPage<Message> after = messageRepository.findUpdates(to, before.cursor(), LIMIT).getValue();
+        assertEquals(List.of(message.getId()), after.deletedIds());
+        assertTrue(after.cursor() > before.cursor());
+
+        // Повторное удаление не добавляет записей
+        assertTrue(messageRepository.deleteById(message.getId()).isFailure());
+        assertTrue(messageRepository.findUpdates(to, after.cursor(), LIMIT).getValue().deletedIds().isEmpty());
+    }
+}
@@ -0,0 +1,118 @@
+package ru.test.the.best.chat.message.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.test.the.best.chat.codec.BlobReader;
+import ru.test.the.best.chat.codec.BlobReference;
+import ru.test.the.best.chat.core.model.value.DataMessage;
+import ru.test.the.best.chat.core.repository.Repository;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Лимит загрузки медиа потоком (messages.upload.max-bytes): по заявленному размеру и во время чтения.
+ * Блоб несохранённой загрузки удаляется.
+ */
+class MessageUploadLimitTest {
+
+    private static final long MAX_BYTES = 16;
+
+    private final UUID from = UUID.randomUUID();
+    private final UUID to = UUID.randomUUID();
+
+    private Repository<Message, UUID> repository;
+    private MessageBlobOffloader offloader;
+    private MessageService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(Repository.class);
+        when(repository.save(any())).thenReturn(UnitResult.success());
+        offloader = mock(MessageBlobOffloader.class);
+        when(offloader.offload(any())).thenAnswer(invocation -> Result.success(invocation.getArgument(0)));
+        service = new MessageService(repository, mock(MessageWriteBatcher.class), mock(MessageNotifier.class),
+                offloader, new SimpleMeterRegistry(), MAX_BYTES);
+    }
+
+    @Test
+    void declaredSizeOverLimitIsRejectedBeforeReading() {
+        final InputStream body = mock(InputStream.class);
+
+        final Result<UUID, Error> result = service.upload(from, to, "IMAGE", Instant.now(), body, MAX_BYTES + 1);
+
+        assertTrue(result.isFailure());
+        assertEquals("payload.too.large", result.getError().getCode());
+        verifyNoInteractions(body);
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void undeclaredBodyOverLimitIsRejectedWhileReading() {
+        final Result<UUID, Error> result = service.upload(
+                from, to, "IMAGE", Instant.now(), new ByteArrayInputStream(new byte[(int) MAX_BYTES + 1]), -1);
+
+        assertTrue(result.isFailure());
+        assertEquals("payload.too.large", result.getError().getCode());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void bodyOfExactlyLimitIsSaved() {
+        final Result<UUID, Error> result = service.upload(
+                from, to, "IMAGE", Instant.now(), new ByteArrayInputStream(new byte[(int) MAX_BYTES]), -1);
+
+        assertTrue(result.isSuccess());
+        verify(repository).save(any());
+    }
+
+    @Test
+    void streamedBlobIsDiscardedWhenSaveFails() {
+        final DataMessage blob = DataMessage.blob(
+                new BlobReference(UUID.randomUUID(), MAX_BYTES), "IMAGE", mock(BlobReader.class)).getValue();
+        when(offloader.shouldStream(anyString(), anyLong())).thenReturn(true);
+        when(offloader.store(anyString(), any(), anyLong())).thenReturn(Result.success(blob));
+        when(repository.save(any())).thenReturn(UnitResult.failure(GeneralErrors.databaseError("down")));
+
+        final Result<UUID, Error> result = service.upload(
+                from, to, "IMAGE", Instant.now(), new ByteArrayInputStream(new byte[(int) MAX_BYTES]), -1);
+
+        assertTrue(result.isFailure());
+        verify(offloader).discard(blob);
+    }
+
+    @Test
+    void streamedBlobGetsLimitAndReportsOverflow() {
+        final InputStream body = new ByteArrayInputStream(new byte[(int) MAX_BYTES * 2]);
+        when(offloader.shouldStream(anyString(), anyLong())).thenReturn(true);
+        when(offloader.store(anyString(), any(), anyLong()))
+                .thenReturn(Result.failure(GeneralErrors.payloadTooLarge(MAX_BYTES)));
+
+        final Result<UUID, Error> result = service.upload(from, to, "IMAGE", Instant.now(), body, -1);
+
+        assertTrue(result.isFailure());
+        assertEquals("payload.too.large", result.getError().getCode());
+        verify(offloader).store(eq("IMAGE"), eq(body), eq(MAX_BYTES));
+        verify(repository, never()).save(any());
+    }
+}
@@ -0,0 +1,116 @@
+package ru.test.the.best.chat.message.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.test.the.best.chat.core.model.value.DataMessage;
+import ru.test.the.best.chat.core.repository.Repository;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.message.model.entity.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Групповая запись: каждая принятая запись получает результат, в том числе при остановке батчера.
+ */
+class MessageWriteBatcherTest {
+
+    private static final int SUBMITTERS = 8;
+    private static final int MESSAGES_PER_SUBMITTER = 500;
+
+    @Test
+    void everySubmittedWriteCompletesWhenStopRacesWithSubmit() throws Exception {
+        final Set<UUID> saved = ConcurrentHashMap.newKeySet();
+        final Repository<Message, UUID> repository = recordingRepository(saved);
+        final MessageWriteBatcher batcher = new MessageWriteBatcher(
+                repository, new SimpleMeterRegistry(), true, 16, 200, 64, 5000);
+
+        final List<CompletableFuture<UnitResult<Error>>> futures = Collections.synchronizedList(new ArrayList<>());
+        final Set<UUID> submitted = ConcurrentHashMap.newKeySet();
+        final CountDownLatch started = new CountDownLatch(SUBMITTERS);
+        final List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < SUBMITTERS; t++) {
+            submitters.add(Thread.ofPlatform().start(() -> {
+                started.countDown();
+                for (int i = 0; i < MESSAGES_PER_SUBMITTER; i++) {
+                    final Message message = message();
+                    submitted.add(message.getId());
+                    futures.add(batcher.submit(message));
+                }
+            }));
+        }
+
+        started.await();
+        batcher.stop();
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        assertEquals(SUBMITTERS * MESSAGES_PER_SUBMITTER, futures.size());
+        for (CompletableFuture<UnitResult<Error>> future : futures) {
+            assertTrue(future.get(1, TimeUnit.SECONDS).isSuccess());
+        }
+        assertEquals(submitted, saved);
+    }
+
+    @Test
+    void saveReturnsFailureWhenBatchDoesNotCompleteInTime() {
+        final CountDownLatch release = new CountDownLatch(1);
+        @SuppressWarnings("unchecked")
+        final Repository<Message, UUID> repository = mock(Repository.class);
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            release.await();
+            final List<Message> messages = invocation.getArgument(0);
+            return messages.stream().map(message -> UnitResult.<Error>success()).toList();
+        });
+        final MessageWriteBatcher batcher = new MessageWriteBatcher(
+                repository, new SimpleMeterRegistry(), true, 16, 200, 64, 50);
+
+        try {
+            final UnitResult<Error> result = batcher.save(message());
+
+            assertTrue(result.isFailure());
+            assertEquals("database.error", result.getError().getCode());
+        } finally {
+            release.countDown();
+            batcher.stop();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Repository<Message, UUID> recordingRepository(final Set<UUID> saved) {
+        final Repository<Message, UUID> repository = mock(Repository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            final Message message = invocation.getArgument(0);
+            saved.add(message.getId());
+            return UnitResult.success();
+        });
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            final List<Message> messages = invocation.getArgument(0);
+            messages.forEach(message -> saved.add(message.getId()));
+            return messages.stream().map(message -> UnitResult.<Error>success()).toList();
+        });
+        return repository;
+    }
+
+    private static Message message() {
+        final DataMessage data = DataMessage.create("hello".getBytes(StandardCharsets.UTF_8), "STRING").getValue();
+        return Message.create(Instant.now(), UUID.randomUUID(), UUID.randomUUID(), data).getValue();
+    }
+}
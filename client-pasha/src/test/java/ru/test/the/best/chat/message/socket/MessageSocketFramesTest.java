@@ -0,0 +1,107 @@
+package ru.test.the.best.chat.message.socket;
+
+import org.junit.jupiter.api.Test;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Бинарные кадры WebSocket-транспорта: разбор SEND и раскладка ACK, ERROR и MESSAGE.
+ */
+class MessageSocketFramesTest {
+
+    @Test
+    void decodeSendReadsRequestIdAndMessage() {
+        final byte[] message = {10, 20, 30, 40};
+        final ByteBuffer payload = ByteBuffer.allocate(5 + message.length)
+                .put(MessageSocketFrames.SEND)
+                .putInt(0x01020304)
+                .put(message)
+                .flip();
+
+        final Result<MessageSocketFrames.SendFrame, Error> result = MessageSocketFrames.decodeSend(payload);
+
+        assertTrue(result.isSuccess());
+        assertEquals(0x01020304, result.getValue().requestId());
+        assertArrayEquals(message, result.getValue().message());
+        assertFalse(payload.hasRemaining());
+    }
+
+    @Test
+    void decodeSendAcceptsEmptyMessage() {
+        final ByteBuffer payload = ByteBuffer.allocate(5).put(MessageSocketFrames.SEND).putInt(-1).flip();
+
+        final Result<MessageSocketFrames.SendFrame, Error> result = MessageSocketFrames.decodeSend(payload);
+
+        assertTrue(result.isSuccess());
+        assertEquals(-1, result.getValue().requestId());
+        assertEquals(0, result.getValue().message().length);
+    }
+
+    @Test
+    void decodeSendRejectsFrameShorterThanHeader() {
+        final ByteBuffer payload = ByteBuffer.wrap(new byte[]{MessageSocketFrames.SEND, 0, 0, 1});
+
+        final Result<MessageSocketFrames.SendFrame, Error> result = MessageSocketFrames.decodeSend(payload);
+
+        assertTrue(result.isFailure());
+        assertEquals("deserialization.error", result.getError().getCode());
+    }
+
+    @Test
+    void decodeSendRejectsOtherFrameTypes() {
+        final ByteBuffer payload = ByteBuffer.allocate(6).put(MessageSocketFrames.ACK).putInt(7).put((byte) 1).flip();
+
+        final Result<MessageSocketFrames.SendFrame, Error> result = MessageSocketFrames.decodeSend(payload);
+
+        assertTrue(result.isFailure());
+        assertEquals("deserialization.error", result.getError().getCode());
+    }
+
+    @Test
+    void ackCarriesRequestIdAndMessageId() {
+        final UUID id = UUID.randomUUID();
+
+        final ByteBuffer frame = MessageSocketFrames.ack(42, id);
+
+        assertEquals(21, frame.remaining());
+        assertEquals(MessageSocketFrames.ACK, frame.get());
+        assertEquals(42, frame.getInt());
+        assertEquals(id, new UUID(frame.getLong(), frame.getLong()));
+        assertFalse(frame.hasRemaining());
+    }
+
+    @Test
+    void errorCarriesCodeAndUtf8Message() {
+        final Error error = Error.of("value.is.invalid", "Недопустимое значение");
+
+        final ByteBuffer frame = MessageSocketFrames.error(9, error);
+
+        assertEquals(MessageSocketFrames.ERROR, frame.get());
+        assertEquals(9, frame.getInt());
+        final byte[] code = new byte[frame.getShort()];
+        frame.get(code);
+        final byte[] message = new byte[frame.remaining()];
+        frame.get(message);
+        assertEquals("value.is.invalid", new String(code, StandardCharsets.UTF_8));
+        assertEquals("Недопустимое значение", new String(message, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void messagePrefixesEncodedMessageWithFrameType() {
+        final byte[] encoded = {1, 2, 3};
+
+        final ByteBuffer frame = MessageSocketFrames.message(encoded);
+
+        assertEquals(1 + encoded.length, frame.remaining());
+        assertEquals(MessageSocketFrames.MESSAGE, frame.get());
+        final byte[] rest = new byte[frame.remaining()];
+        frame.get(rest);
+        assertArrayEquals(encoded, rest);
+    }
+}
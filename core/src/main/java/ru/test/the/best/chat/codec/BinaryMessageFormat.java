@@ -0,0 +1,191 @@
+package ru.test.the.best.chat.codec;
+
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Guard;
+import ru.test.the.best.chat.errs.Result;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Версионированный бинарный формат хранения сообщения.
+ * <p>
+ * Структура (big-endian):
+ * <pre>
+ * offset  size  поле
+ * 0       1     MAGIC (0xC7) - отличает формат от legacy JSON, который начинается с '{'
+ * 1       1     версия формата
+ * 2       1     флаги: FLAG_COMPRESSED, FLAG_BLOB (с версии 2, в версии 1 всегда 0)
+ * 3       1     тег типа содержимого
+ * 4       16    id
+ * 20      8     дата, наносекунды от epoch
+ * 28      16    from
+ * 44      16    to
+ * 60      4     длина содержимого
+ * 64      N     содержимое без преобразований, сжатое ({@link PayloadCompression})
+ *               или ссылка на содержимое во внешнем хранилище ({@link BlobReference})
+ * </pre>
+ * Смещения полей from/to используются Lua-скриптами, поэтому менять их можно только вместе с версией.
+ * <p>
+ * Сообщения без флагов пишутся версией 1, с флагами - версией 2 с тем же заголовком: экземпляры,
+ * которые не знают флагов, отклоняют такое значение как неподдерживаемую версию, а не читают его как содержимое.
+ */
+public final class BinaryMessageFormat {
+
+    public static final byte MAGIC = (byte) 0xC7;
+    public static final byte VERSION_1 = 1;
+    public static final byte VERSION_2 = 2;
+    public static final byte CURRENT_VERSION = VERSION_2;
+
+    public static final byte FLAG_COMPRESSED = 0x01;
+    public static final byte FLAG_BLOB = 0x02;
+
+    private static final int KNOWN_FLAGS = FLAG_COMPRESSED | FLAG_BLOB;
+
+    public static final int ID_OFFSET = 4;
+    public static final int DATE_OFFSET = 20;
+    public static final int FROM_OFFSET = 28;
+    public static final int TO_OFFSET = 44;
+    public static final int DATA_LENGTH_OFFSET = 60;
+    public static final int HEADER_SIZE = 64;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * Границы даты, представимой наносекундами от epoch в long (примерно 1677-2262 годы).
+     */
+    public static final Instant MIN_DATE = fromEpochNanos(Long.MIN_VALUE);
+    public static final Instant MAX_DATE = fromEpochNanos(Long.MAX_VALUE);
+
+    private static final String[] TYPES_BY_TAG = {null, "STRING", "IMAGE", "SOUND"};
+
+    private BinaryMessageFormat() {
+    }
+
+    /**
+     * Проверить, записано ли значение в бинарном формате.
+     *
+     * @param value значение из хранилища
+     * @return true если значение начинается с MAGIC
+     */
+    public static boolean isBinary(final byte[] value) {
+        return value != null && value.length > 0 && value[0] == MAGIC;
+    }
+
+    /**
+     * Закодировать сообщение: версия 1 без флагов содержимого, текущая - с флагами.
+     *
+     * @param frame поля сообщения
+     * @return закодированное значение
+     * @throws IllegalArgumentException если тип или флаги неизвестны или дата не помещается в long наносекунд
+     */
+    public static byte[] encode(final MessageFrame frame) {
+        final byte[] data = frame.data();
+        if (!validFlags(frame.flags()))
+            throw new IllegalArgumentException("Unsupported message flags: " + frame.flags());
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + data.length);
+
+        buffer.put(MAGIC);
+        buffer.put(frame.flags() == 0 ? VERSION_1 : CURRENT_VERSION);
+        buffer.put(frame.flags());
+        buffer.put(typeTag(frame.type()));
+        putUuid(buffer, frame.id());
+        buffer.putLong(toEpochNanos(frame.date()));
+        putUuid(buffer, frame.from());
+        putUuid(buffer, frame.to());
+        buffer.putInt(data.length);
+        buffer.put(data);
+
+        return buffer.array();
+    }
+
+    /**
+     * Декодировать сообщение.
+     *
+     * @param value значение из хранилища
+     * @return Result с полями сообщения или Error
+     */
+    public static Result<MessageFrame, Error> decode(final byte[] value) {
+        if (Guard.isNull(value) || value.length < HEADER_SIZE)
+            return Result.failure(GeneralErrors.deserializationError("Binary message is shorter than header"));
+
+        if (value[0] != MAGIC)
+            return Result.failure(GeneralErrors.deserializationError("Binary message has invalid magic byte"));
+
+        if (value[1] != VERSION_1 && value[1] != VERSION_2)
+            return Result.failure(GeneralErrors.deserializationError("Unsupported binary message version: " + value[1]));
+
+        final byte flags = value[1] == VERSION_1 ? 0 : value[2];
+        if (!validFlags(flags))
+            return Result.failure(GeneralErrors.deserializationError("Unknown binary message flags: " + flags));
+
+        final int tag = value[3];
+        if (tag <= 0 || tag >= TYPES_BY_TAG.length)
+            return Result.failure(GeneralErrors.deserializationError("Unknown message type tag: " + tag));
+
+        final ByteBuffer buffer = ByteBuffer.wrap(value);
+        buffer.position(ID_OFFSET);
+
+        final UUID id = getUuid(buffer);
+        final Instant date = fromEpochNanos(buffer.getLong());
+        final UUID from = getUuid(buffer);
+        final UUID to = getUuid(buffer);
+        final int length = buffer.getInt();
+
+        if (length < 0 || length != buffer.remaining())
+            return Result.failure(GeneralErrors.deserializationError("Binary message payload length mismatch"));
+
+        final byte[] data = new byte[length];
+        buffer.get(data);
+
+        return Result.success(new MessageFrame(id, date, from, to, TYPES_BY_TAG[tag], data, flags));
+    }
+
+    /**
+     * Представима ли дата в формате (от {@link #MIN_DATE} до {@link #MAX_DATE} включительно).
+     */
+    public static boolean isSupportedDate(final Instant date) {
+        return !date.isBefore(MIN_DATE) && !date.isAfter(MAX_DATE);
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    // Ссылка на внешнее содержимое не сжимается: флаги взаимоисключающие
+    private static boolean validFlags(final byte flags) {
+        return (flags & ~KNOWN_FLAGS) == 0 && flags != KNOWN_FLAGS;
+    }
+
+    private static byte typeTag(final String type) {
+        for (int tag = 1; tag < TYPES_BY_TAG.length; tag++) {
+            if (TYPES_BY_TAG[tag].equalsIgnoreCase(type)) return (byte) tag;
+        }
+        throw new IllegalArgumentException("Unknown message type: " + type);
+    }
+
+    private static long toEpochNanos(final Instant date) {
+        try {
+            return Math.addExact(Math.multiplyExact(date.getEpochSecond(), NANOS_PER_SECOND), date.getNano());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Message date is out of supported range: " + date, e);
+        }
+    }
+
+    private static Instant fromEpochNanos(final long epochNanos) {
+        return Instant.ofEpochSecond(
+                Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                Math.floorMod(epochNanos, NANOS_PER_SECOND)
+        );
+    }
+
+    private static void putUuid(final ByteBuffer buffer, final UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(final ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
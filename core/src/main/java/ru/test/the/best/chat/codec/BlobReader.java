@@ -0,0 +1,49 @@
+package ru.test.the.best.chat.codec;
+
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Чтение содержимого сообщения из хранилища блобов по {@link BlobReference}.
+ * Как и {@link PayloadInflater}, передаётся кодеком в сущность: содержимое читается только при обращении к нему.
+ */
+@FunctionalInterface
+public interface BlobReader {
+
+    /**
+     * Прочитать содержимое целиком.
+     *
+     * @param reference ссылка на содержимое
+     * @return Result с содержимым или Error (entity.not.found, если блоб истёк или удалён)
+     */
+    Result<byte[], Error> read(final BlobReference reference);
+
+    /**
+     * Записать диапазон содержимого в канал. Реализация по умолчанию читает блоб целиком;
+     * хранилища переопределяют её, чтобы читать только диапазон и писать без промежуточных копий.
+     *
+     * @param reference ссылка на содержимое
+     * @param offset    смещение первого байта
+     * @param length    количество байт
+     * @param channel   канал назначения
+     * @throws IOException              если блоб не прочитан или запись в канал не удалась
+     * @throws IllegalArgumentException если диапазон выходит за границы содержимого
+     */
+    default void transferTo(
+            final BlobReference reference, final long offset, final long length, final WritableByteChannel channel
+    ) throws IOException {
+        reference.checkRange(offset, length);
+
+        final Result<byte[], Error> data = read(reference);
+        if (data.isFailure()) throw new IOException(data.getError().getMessage());
+
+        final ByteBuffer buffer = ByteBuffer.wrap(data.getValue(), Math.toIntExact(offset), Math.toIntExact(length));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.test.the.best.chat.codec;
+
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Guard;
+import ru.test.the.best.chat.errs.Result;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Ссылка на содержимое сообщения во внешнем хранилище блобов ({@link BinaryMessageFormat#FLAG_BLOB}).
+ * <p>
+ * Структура (big-endian):
+ * <pre>
+ * offset  size  поле
+ * 0       16    id блоба
+ * 16      8     размер содержимого в байтах
+ * </pre>
+ *
+ * @param id   идентификатор блоба
+ * @param size размер содержимого в байтах
+ */
+public record BlobReference(UUID id, long size) {
+
+    public static final int ENCODED_SIZE = 24;
+
+    /**
+     * Закодировать ссылку для поля содержимого {@link BinaryMessageFormat}.
+     */
+    public byte[] encode() {
+        return ByteBuffer.allocate(ENCODED_SIZE)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .putLong(size)
+                .array();
+    }
+
+    /**
+     * Проверить, что диапазон лежит внутри содержимого.
+     *
+     * @param offset смещение первого байта
+     * @param length количество байт
+     * @throws IllegalArgumentException если диапазон выходит за границы содержимого
+     */
+    public void checkRange(final long offset, final long length) {
+        if (offset < 0 || length < 0 || offset > size - length) {
+            throw new IllegalArgumentException("Range " + offset + "+" + length
+                    + " is outside of blob " + id + " of " + size + " bytes");
+        }
+    }
+
+    /**
+     * Декодировать ссылку.
+     *
+     * @param value поле содержимого сообщения с флагом FLAG_BLOB
+     * @return Result со ссылкой или Error
+     */
+    public static Result<BlobReference, Error> decode(final byte[] value) {
+        if (Guard.isNull(value) || value.length != ENCODED_SIZE)
+            return Result.failure(GeneralErrors.deserializationError("Blob reference has invalid length"));
+
+        final ByteBuffer buffer = ByteBuffer.wrap(value);
+        final UUID id = new UUID(buffer.getLong(), buffer.getLong());
+        final long size = buffer.getLong();
+
+        if (size < 0)
+            return Result.failure(GeneralErrors.deserializationError("Blob reference has negative size"));
+
+        return Result.success(new BlobReference(id, size));
+    }
+}
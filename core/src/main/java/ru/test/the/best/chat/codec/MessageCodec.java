@@ -0,0 +1,41 @@
+package ru.test.the.best.chat.codec;
+
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+
+/**
+ * Кодек для представления сообщения в хранилище.
+ * Реализация определяет формат значения, которое репозиторий пишет в ключ сообщения.
+ *
+ * @param <T> тип сущности сообщения
+ */
+public interface MessageCodec<T> {
+
+    /**
+     * Закодировать сообщение в массив байт.
+     *
+     * @param message сообщение
+     * @return закодированное значение
+     */
+    byte[] encode(final T message);
+
+    /**
+     * Закодировать сообщение без сжатия содержимого - для получателей вне хранилища
+     * (например, WebSocket-клиентов), которые читают только несжатый формат.
+     *
+     * @param message сообщение
+     * @return закодированное значение
+     */
+    default byte[] encodeUncompressed(final T message) {
+        return encode(message);
+    }
+
+    /**
+     * Декодировать сообщение из массива байт.
+     * Реализация должна уметь читать все ранее записанные версии формата.
+     *
+     * @param value значение из хранилища
+     * @return Result с сообщением или Error
+     */
+    Result<T, Error> decode(final byte[] value);
+}
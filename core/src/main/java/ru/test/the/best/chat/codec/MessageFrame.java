@@ -0,0 +1,56 @@
+package ru.test.the.best.chat.codec;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Поля сообщения в том виде, в котором их пишет {@link BinaryMessageFormat}.
+ * Не зависит от сущностей клиентов, поэтому формат общий для всех приложений.
+ *
+ * @param id   идентификатор сообщения
+ * @param date дата сообщения
+ * @param from UUID отправителя
+ * @param to   UUID получателя
+ * @param type  тип содержимого (STRING, IMAGE, SOUND)
+ * @param data  содержимое сообщения; при {@link BinaryMessageFormat#FLAG_COMPRESSED} - в виде {@link PayloadCompression},
+ *              при {@link BinaryMessageFormat#FLAG_BLOB} - {@link BlobReference} на содержимое во внешнем хранилище
+ * @param flags флаги содержимого из заголовка {@link BinaryMessageFormat}
+ */
+public record MessageFrame(
+        UUID id,
+        Instant date,
+        UUID from,
+        UUID to,
+        String type,
+        byte[] data,
+        byte flags
+) {
+
+    /**
+     * Кадр с несжатым содержимым.
+     */
+    public MessageFrame(
+            final UUID id,
+            final Instant date,
+            final UUID from,
+            final UUID to,
+            final String type,
+            final byte[] data
+    ) {
+        this(id, date, from, to, type, data, (byte) 0);
+    }
+
+    /**
+     * Содержимое сжато ({@link BinaryMessageFormat#FLAG_COMPRESSED}).
+     */
+    public boolean compressed() {
+        return (flags & BinaryMessageFormat.FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * Вместо содержимого записана ссылка на него ({@link BinaryMessageFormat#FLAG_BLOB}).
+     */
+    public boolean blob() {
+        return (flags & BinaryMessageFormat.FLAG_BLOB) != 0;
+    }
+}
@@ -0,0 +1,112 @@
+package ru.test.the.best.chat.codec;
+
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Guard;
+import ru.test.the.best.chat.errs.Result;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие содержимого сообщения для {@link BinaryMessageFormat#FLAG_COMPRESSED}.
+ * <p>
+ * Структура сжатого содержимого (big-endian):
+ * <pre>
+ * offset  size  поле
+ * 0       4     длина исходного содержимого
+ * 4       N     поток DEFLATE без заголовка zlib
+ * </pre>
+ * Длина нужна, чтобы распаковать содержимое в массив точного размера за один проход.
+ */
+public final class PayloadCompression {
+
+    public static final int LENGTH_SIZE = 4;
+
+    // DEFLATE не сжимает сильнее ~1032:1, большая заявленная длина - признак повреждения
+    private static final long MAX_RATIO = 1032;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private PayloadCompression() {
+    }
+
+    /**
+     * Сжать содержимое.
+     *
+     * @param data  исходное содержимое
+     * @param level уровень Deflater (1 - быстрее всего, 9 - сильнее всего)
+     * @return сжатое содержимое с длиной исходного в начале
+     */
+    public static byte[] compress(final byte[] data, final int level) {
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            output.writeBytes(ByteBuffer.allocate(LENGTH_SIZE).putInt(data.length).array());
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Длина исходного содержимого без распаковки.
+     *
+     * @param compressed сжатое содержимое
+     * @return длина или -1, если префикса длины нет
+     */
+    public static int originalLength(final byte[] compressed) {
+        if (Guard.isNull(compressed) || compressed.length < LENGTH_SIZE) return -1;
+
+        return ByteBuffer.wrap(compressed).getInt();
+    }
+
+    /**
+     * Распаковать содержимое, сжатое {@link #compress(byte[], int)}.
+     *
+     * @param compressed сжатое содержимое
+     * @return Result с исходным содержимым или Error, если данные повреждены
+     */
+    public static Result<byte[], Error> decompress(final byte[] compressed) {
+        if (Guard.isNull(compressed) || compressed.length < LENGTH_SIZE)
+            return Result.failure(GeneralErrors.deserializationError("Compressed payload is shorter than length prefix"));
+
+        final int length = ByteBuffer.wrap(compressed).getInt();
+        if (length < 0 || length > (compressed.length - LENGTH_SIZE) * MAX_RATIO)
+            return Result.failure(GeneralErrors.deserializationError("Compressed payload has invalid length: " + length));
+
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed, LENGTH_SIZE, compressed.length - LENGTH_SIZE);
+
+            final byte[] data = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                final int inflated = inflater.inflate(data, offset, length - offset);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += inflated;
+            }
+
+            if (offset != length)
+                return Result.failure(GeneralErrors.deserializationError("Compressed payload is truncated"));
+
+            return Result.success(data);
+        } catch (final DataFormatException e) {
+            return Result.failure(GeneralErrors.deserializationError("Compressed payload is corrupted: " + e.getMessage()));
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.test.the.best.chat.codec;
+
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+
+/**
+ * Отложенная распаковка содержимого сообщения, сохранённого со сжатием.
+ * Кодек передаёт реализацию в сущность вместе со сжатыми байтами, и распаковка выполняется
+ * только при обращении к содержимому; реализация может снимать метрики по типу содержимого.
+ */
+@FunctionalInterface
+public interface PayloadInflater {
+
+    /**
+     * Распаковка без метрик.
+     */
+    PayloadInflater DEFAULT = (type, compressed) -> PayloadCompression.decompress(compressed);
+
+    /**
+     * Распаковать содержимое.
+     *
+     * @param type       тип содержимого (STRING, IMAGE, SOUND)
+     * @param compressed содержимое в виде {@link PayloadCompression}
+     * @return Result с исходным содержимым или Error, если данные повреждены
+     */
+    Result<byte[], Error> inflate(final String type, final byte[] compressed);
+}
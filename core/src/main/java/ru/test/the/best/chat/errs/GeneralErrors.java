@@ -253,6 +253,19 @@ public final class GeneralErrors {
         );
     }
 
+    /**
+     * Ошибка "Содержимое слишком велико".
+     *
+     * @param maxBytes максимальный размер содержимого в байтах
+     * @return объект Error
+     */
+    public static Error payloadTooLarge(long maxBytes) {
+        return Error.of(
+                "payload.too.large",
+                String.format("Payload must be at most %d bytes", maxBytes)
+        );
+    }
+
     // ==================== RANGE ERRORS ====================
 
     /**
@@ -0,0 +1,100 @@
+package ru.test.the.best.chat.id;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор упорядоченных по времени идентификаторов UUIDv7 (RFC 9562).
+ * <p>
+ * Структура (big-endian):
+ * <pre>
+ * бит     поле
+ * 0-47    время создания, миллисекунды от epoch
+ * 48-51   версия (7)
+ * 52-63   счётчик внутри миллисекунды
+ * 64-65   вариант (0b10)
+ * 66-127  случайные биты
+ * </pre>
+ * В пределах JVM идентификаторы строго возрастают: счётчик растёт внутри миллисекунды, а при переполнении
+ * или отставании часов переносится в поле времени. Случайная часть берётся из {@link ThreadLocalRandom}
+ * без общей блокировки, в отличие от {@link UUID#randomUUID()}.
+ * <p>
+ * Текстовое представление сравнивается лексикографически в том же порядке, что и время создания,
+ * поэтому ID можно использовать как курсор в ZRANGEBYLEX. {@link UUID#compareTo(UUID)} для этого
+ * не подходит: он сравнивает половины как знаковые числа.
+ */
+public final class UuidV7 {
+
+    private static final int VERSION = 7;
+    private static final int VARIANT = 2;
+
+    private static final int COUNTER_BITS = 12;
+    private static final long VERSION_BITS = 0x7000L;
+    private static final long VARIANT_BITS = 0x8000000000000000L;
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    /**
+     * Последнее выданное состояние: (миллисекунды << 12) | счётчик.
+     */
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private UuidV7() {
+    }
+
+    /**
+     * Следующий идентификатор, больший всех ранее выданных в этой JVM.
+     *
+     * @return UUIDv7 с текущим временем
+     */
+    public static UUID next() {
+        final long now = System.currentTimeMillis() << COUNTER_BITS;
+        final long state = LAST.updateAndGet(last -> Math.max(now, last + 1));
+        return build(state, ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+    }
+
+    /**
+     * Наименьший UUIDv7 с заданным временем создания: все ID, созданные в этот момент или позже,
+     * больше него. Используется как граница диапазона по времени без чтения самих сообщений.
+     *
+     * @param time момент времени (округляется вниз до миллисекунды)
+     * @return граница диапазона
+     */
+    public static UUID lowerBound(final Instant time) {
+        return build(time.toEpochMilli() << COUNTER_BITS, 0);
+    }
+
+    /**
+     * Время создания идентификатора.
+     *
+     * @param id UUIDv7
+     * @return момент создания с точностью до миллисекунды
+     * @throws IllegalArgumentException если id не UUIDv7
+     */
+    public static Instant timestamp(final UUID id) {
+        if (!isTimeOrdered(id)) {
+            throw new IllegalArgumentException("UUID is not time-ordered (version 7): " + id);
+        }
+        return Instant.ofEpochMilli(id.getMostSignificantBits() >>> 16);
+    }
+
+    /**
+     * Проверить, что идентификатор упорядочен по времени (UUIDv7).
+     * Сообщения, созданные до перехода на UUIDv7, имеют случайные ID (версия 4).
+     *
+     * @param id идентификатор
+     * @return true для UUIDv7
+     */
+    public static boolean isTimeOrdered(final UUID id) {
+        return id != null && id.version() == VERSION && id.variant() == VARIANT;
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private static UUID build(final long state, final long random) {
+        final long millis = state >>> COUNTER_BITS;
+        final long counter = state & ((1L << COUNTER_BITS) - 1);
+        return new UUID((millis << 16) | VERSION_BITS | counter, VARIANT_BITS | random);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.test.the.best.chat.metric;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Отслеживание закрепления (pinning) виртуальных потоков за потоком-носителем через JFR-событие
+ * jdk.VirtualThreadPinned.
+ * <p>
+ * Закреплённый виртуальный поток, заблокировавшись (например, на сокете Redis или в ожидании пула),
+ * держит поток-носитель, и при их нехватке остальные запросы стоят. События длиннее порога
+ * считаются в jvm.threads.virtual.pinned и пишутся в лог с верхним кадром стека.
+ * Запись JFR идёт между {@link #start()} и {@link #stop()}.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final Duration threshold;
+    private final Counter pinnedCounter;
+    private final Timer pinnedTimer;
+
+    private RecordingStream recording;
+
+    /**
+     * @param meterRegistry реестр метрик
+     * @param threshold     минимальная длительность закрепления, которая учитывается
+     */
+    public VirtualThreadPinningMonitor(final MeterRegistry meterRegistry, final Duration threshold) {
+        this.threshold = threshold;
+        this.pinnedCounter = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Блокировки виртуальных потоков с закреплением за потоком-носителем")
+                .register(meterRegistry);
+        this.pinnedTimer = Timer.builder("jvm.threads.virtual.pinned.duration")
+                .description("Длительность закрепления виртуальных потоков")
+                .register(meterRegistry);
+    }
+
+    public synchronized void start() {
+        if (recording != null) {
+            return;
+        }
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+        log.info("Monitoring virtual thread pinning longer than {} ms", threshold.toMillis());
+    }
+
+    public synchronized void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void onPinned(final RecordedEvent event) {
+        pinnedCounter.increment();
+        pinnedTimer.record(event.getDuration());
+
+        final List<RecordedFrame> frames = event.getStackTrace() != null
+                ? event.getStackTrace().getFrames()
+                : List.of();
+        log.warn("Virtual thread pinned for {} ms at {}",
+                event.getDuration().toMillis(),
+                frames.isEmpty() ? "unknown" : frames.getFirst().getMethod().getType().getName()
+                        + "." + frames.getFirst().getMethod().getName());
+    }
+}
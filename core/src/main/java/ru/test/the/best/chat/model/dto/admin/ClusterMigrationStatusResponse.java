@@ -0,0 +1,57 @@
+package ru.test.the.best.chat.model.dto.admin;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/**
+ * DTO с состоянием переноса сообщений из одного Redis в раскладку Redis Cluster.
+ */
+@Schema(description = "Состояние переноса сообщений в Redis Cluster")
+public record ClusterMigrationStatusResponse(
+
+        @Schema(
+                description = "Состояние задачи",
+                example = "RUNNING",
+                allowableValues = {"IDLE", "RUNNING", "COMPLETED", "FAILED"}
+        )
+        String state,
+
+        @Schema(
+                description = "Количество перенесённых сообщений",
+                example = "45000"
+        )
+        long migratedMessages,
+
+        @Schema(
+                description = "Количество пропущенных сообщений (истёк TTL или значение не декодируется)",
+                example = "120"
+        )
+        long skippedMessages,
+
+        @Schema(
+                description = "Время запуска задачи (UTC)",
+                example = "2025-10-04T06:57:24.759Z",
+                type = "string",
+                format = "date-time"
+        )
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+        Instant startedAt,
+
+        @Schema(
+                description = "Время завершения задачи (UTC), null пока задача выполняется",
+                example = "2025-10-04T06:58:02.113Z",
+                type = "string",
+                format = "date-time"
+        )
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+        Instant finishedAt,
+
+        @Schema(
+                description = "Описание ошибки для состояния FAILED",
+                example = "Connection refused"
+        )
+        String error
+) {
+}
@@ -0,0 +1,31 @@
+package ru.test.the.best.chat.model.dto.admin;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO с состоянием шардирования сообщений.
+ */
+@Schema(description = "Состояние шардирования сообщений")
+public record ShardingStatusResponse(
+
+        @Schema(
+                description = "Имена шардов в порядке добавления",
+                example = "[\"shard-0\", \"shard-1\"]"
+        )
+        List<String> shards,
+
+        @Schema(
+                description = "Выполняется ли перенос пользователей на добавленный шард",
+                example = "true"
+        )
+        boolean rebalancing,
+
+        @Schema(
+                description = "Количество пользователей, перенесённых последней перебалансировкой",
+                example = "15000"
+        )
+        long movedUsers
+) {
+}
@@ -0,0 +1,52 @@
+package ru.test.the.best.chat.model.dto.message;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.api.ApiError;
+
+import java.util.UUID;
+
+/**
+ * DTO с результатом одного элемента пакетной операции.
+ * Элементы ответа идут в том же порядке, что и элементы запроса.
+ *
+ * @param <T> тип данных успешного элемента
+ */
+@Schema(description = "Результат одного элемента пакетной операции")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResponse<T>(
+
+        @Schema(
+                description = "Позиция элемента в запросе",
+                example = "0"
+        )
+        int index,
+
+        @Schema(
+                description = "UUID сообщения, к которому относится результат",
+                example = "550e8400-e29b-41d4-a716-446655440000"
+        )
+        UUID id,
+
+        @Schema(
+                description = "Успешно ли обработан элемент",
+                example = "true"
+        )
+        boolean success,
+
+        @Schema(description = "Данные элемента (для операций чтения)")
+        T data,
+
+        @Schema(description = "Ошибка обработки элемента")
+        ApiError error
+) {
+
+    public static <T> BatchItemResponse<T> success(final int index, final UUID id, final T data) {
+        return new BatchItemResponse<>(index, id, true, data, null);
+    }
+
+    public static <T> BatchItemResponse<T> failure(final int index, final UUID id, final Error error) {
+        return new BatchItemResponse<>(index, id, false, null, new ApiError(error.getCode(), error.getMessage()));
+    }
+}
@@ -43,7 +43,8 @@ public record MessageResponse(
         UUID to,
 
         @Schema(
-                description = "Содержимое сообщения (текст или Base64 для бинарных данных)",
+                description = "Содержимое сообщения (текст или Base64 для бинарных данных); "
+                        + "null для IMAGE и SOUND в списках - содержимое загружается отдельно по ID сообщения",
                 example = "Hello, World!"
         )
         String data,
@@ -53,9 +54,22 @@ public record MessageResponse(
                 example = "STRING",
                 allowableValues = {"STRING", "IMAGE", "SOUND"}
         )
-        String type
+        String type,
+
+        @Schema(
+                description = "Размер содержимого в байтах",
+                example = "13"
+        )
+        Long size
 ) {
 
+    /**
+     * Ответ без размера содержимого.
+     */
+    public MessageResponse(UUID id, Instant date, UUID from, UUID to, String data, String type) {
+        this(id, date, from, to, data, type, null);
+    }
+
     /**
      * Проверка, является ли сообщение текстовым.
      */
@@ -0,0 +1,33 @@
+package ru.test.the.best.chat.model.dto.message;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO со страницей изменений сообщений пользователя для дельта-синхронизации.
+ * Клиент передаёт cursor в следующий запрос и получает только то, что появилось после него.
+ */
+@Schema(description = "Страница новых, изменённых и удалённых сообщений пользователя")
+public record MessageUpdatesResponse(
+
+        @Schema(description = "Новые и изменённые сообщения в порядке изменений")
+        List<MessageResponse> messages,
+
+        @Schema(description = "ID сообщений, удалённых после курсора, в порядке удаления")
+        List<UUID> deletedIds,
+
+        @Schema(
+                description = "Курсор для следующего запроса (параметр since)",
+                example = "1042"
+        )
+        String cursor,
+
+        @Schema(
+                description = "Есть ли изменения после этой страницы",
+                example = "false"
+        )
+        boolean hasMore
+) {
+}
@@ -0,0 +1,75 @@
+package ru.test.the.best.chat.redis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.pool2.PooledObject;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Фабрика соединений, проверяющая командой PING только соединения, простоявшие в пуле дольше порога.
+ * <p>
+ * testOnBorrow добавляет лишний круг до Redis к каждой выдаче соединения. Соединение, которое
+ * только что вернули в пул, почти наверняка живо, поэтому для него проверка пропускается; долго
+ * простаивавшие (их мог закрыть сервер или сеть) проверяются как обычно. Порог 0 - проверять всегда.
+ */
+public class IdleAwareJedisFactory extends JedisFactory {
+
+    private final Duration idleThreshold;
+    private final Timer validationTimer;
+    private final Counter validationFailures;
+    private final Counter validationSkipped;
+
+    /**
+     * @param hostAndPort   адрес Redis
+     * @param clientConfig  параметры подключения
+     * @param idleThreshold минимальный простой, после которого соединение проверяется
+     * @param meterRegistry реестр метрик
+     * @param tags          теги пула
+     */
+    public IdleAwareJedisFactory(
+            final HostAndPort hostAndPort,
+            final JedisClientConfig clientConfig,
+            final Duration idleThreshold,
+            final MeterRegistry meterRegistry,
+            final Tags tags) {
+        super(hostAndPort, clientConfig);
+        this.idleThreshold = Objects.requireNonNull(idleThreshold, "Idle threshold cannot be null");
+        this.validationTimer = Timer.builder("redis.pool.validation")
+                .tags(tags)
+                .description("Проверка соединения командой PING")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.validationFailures = Counter.builder("redis.pool.validation.failures")
+                .tags(tags)
+                .description("Соединения, не прошедшие проверку")
+                .register(meterRegistry);
+        this.validationSkipped = Counter.builder("redis.pool.validation.skipped")
+                .tags(tags)
+                .description("Проверки, пропущенные для недавно использованных соединений")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean validateObject(final PooledObject<Jedis> pooledJedis) {
+        if (pooledJedis.getIdleDuration().compareTo(idleThreshold) < 0 && pooledJedis.getObject().isConnected()) {
+            validationSkipped.increment();
+            return true;
+        }
+
+        final long start = System.nanoTime();
+        final boolean valid = super.validateObject(pooledJedis);
+        validationTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        if (!valid) {
+            validationFailures.increment();
+        }
+        return valid;
+    }
+}
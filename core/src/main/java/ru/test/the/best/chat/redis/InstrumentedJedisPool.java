@@ -0,0 +1,43 @@
+package ru.test.the.best.chat.redis;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.time.Duration;
+
+/**
+ * {@link JedisPool} с гистограммой времени выдачи соединения (redis.pool.borrow):
+ * ожидание свободного соединения, создание нового и проверка testOnBorrow.
+ */
+public class InstrumentedJedisPool extends JedisPool {
+
+    private final Timer borrowTimer;
+
+    public InstrumentedJedisPool(
+            final GenericObjectPoolConfig<Jedis> poolConfig,
+            final PooledObjectFactory<Jedis> factory,
+            final MeterRegistry meterRegistry,
+            final Tags tags) {
+        super(poolConfig, factory);
+        this.borrowTimer = Timer.builder("redis.pool.borrow")
+                .tags(tags)
+                .description("Время получения соединения из пула")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Jedis getResource() {
+        final long start = System.nanoTime();
+        try {
+            return super.getResource();
+        } finally {
+            borrowTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.test.the.best.chat.redis;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики состояния {@link JedisPool}: занятые и свободные соединения, ожидающие потоки,
+ * время ожидания, создание и уничтожение соединений.
+ * <p>
+ * С виртуальными потоками пул - единственный ограничитель параллельности к Redis:
+ * рост redis.pool.waiters и времени ожидания означает, что maxTotal мал для нагрузки.
+ * Гистограмма выдачи и метрики проверки соединений пишутся в {@link InstrumentedJedisPool}
+ * и {@link IdleAwareJedisFactory}.
+ */
+public class JedisPoolMetrics implements MeterBinder {
+
+    private final JedisPool jedisPool;
+    private final Tags tags;
+
+    /**
+     * @param jedisPool пул соединений
+     * @param poolName  значение тега pool, различающее пулы одного приложения
+     */
+    public JedisPoolMetrics(final JedisPool jedisPool, final String poolName) {
+        this.jedisPool = Objects.requireNonNull(jedisPool, "JedisPool cannot be null");
+        this.tags = Tags.of("pool", Objects.requireNonNull(poolName, "Pool name cannot be null"));
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("redis.pool.active", jedisPool, JedisPool::getNumActive)
+                .tags(tags)
+                .description("Соединения, выданные из пула")
+                .register(registry);
+
+        Gauge.builder("redis.pool.idle", jedisPool, JedisPool::getNumIdle)
+                .tags(tags)
+                .description("Свободные соединения в пуле")
+                .register(registry);
+
+        Gauge.builder("redis.pool.waiters", jedisPool, JedisPool::getNumWaiters)
+                .tags(tags)
+                .description("Потоки, ожидающие свободное соединение")
+                .register(registry);
+
+        TimeGauge.builder("redis.pool.borrow.wait.mean", jedisPool, TimeUnit.MILLISECONDS,
+                        JedisPool::getMeanBorrowWaitTimeMillis)
+                .tags(tags)
+                .description("Среднее время ожидания соединения по последним выдачам")
+                .register(registry);
+
+        TimeGauge.builder("redis.pool.borrow.wait.max", jedisPool, TimeUnit.MILLISECONDS,
+                        JedisPool::getMaxBorrowWaitTimeMillis)
+                .tags(tags)
+                .description("Максимальное время ожидания соединения с запуска пула")
+                .register(registry);
+
+        FunctionCounter.builder("redis.pool.created", jedisPool, JedisPool::getCreatedCount)
+                .tags(tags)
+                .description("Созданные соединения")
+                .register(registry);
+
+        FunctionCounter.builder("redis.pool.destroyed", jedisPool, JedisPool::getDestroyedCount)
+                .tags(tags)
+                .description("Закрытые соединения")
+                .register(registry);
+
+        FunctionCounter.builder("redis.pool.destroyed.validation", jedisPool,
+                        JedisPool::getDestroyedByBorrowValidationCount)
+                .tags(tags)
+                .description("Соединения, закрытые после неудачной проверки при выдаче")
+                .register(registry);
+    }
+}
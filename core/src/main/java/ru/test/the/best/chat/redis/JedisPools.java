@@ -0,0 +1,58 @@
+package ru.test.the.best.chat.redis;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.time.Duration;
+
+/**
+ * Создание инструментированных пулов Redis: основного, реплики и шардов сообщений.
+ */
+public final class JedisPools {
+
+    private JedisPools() {
+    }
+
+    /**
+     * Создать пул с гистограммой выдачи соединений и проверкой простоявших соединений.
+     *
+     * @param poolName                      значение тега pool в метриках
+     * @param poolConfig                    параметры пула
+     * @param hostAndPort                   адрес Redis
+     * @param username                      пользователь ACL
+     * @param password                      пароль
+     * @param validationIdleThresholdMillis порог простоя для PING при выдаче (0 - проверять всегда)
+     * @param meterRegistry                 реестр метрик
+     * @return пул соединений
+     */
+    public static JedisPool create(
+            final String poolName,
+            final JedisPoolConfig poolConfig,
+            final HostAndPort hostAndPort,
+            final String username,
+            final String password,
+            final long validationIdleThresholdMillis,
+            final MeterRegistry meterRegistry) {
+        /**
+         * Фабрика соединений пропускает PING при выдаче для соединений, простоявших
+         * меньше порога (0 - проверять всегда), и считает проверки и их отказы.
+         */
+        final Tags poolTags = Tags.of("pool", poolName);
+        final var factory = new IdleAwareJedisFactory(
+                hostAndPort,
+                DefaultJedisClientConfig.builder()
+                        .user(username)
+                        .password(password)
+                        .build(),
+                Duration.ofMillis(validationIdleThresholdMillis),
+                meterRegistry,
+                poolTags
+        );
+
+        return new InstrumentedJedisPool(poolConfig, factory, meterRegistry, poolTags);
+    }
+}
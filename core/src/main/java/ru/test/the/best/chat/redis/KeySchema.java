@@ -0,0 +1,176 @@
+package ru.test.the.best.chat.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Представление ID в ключах и членах индексов сообщений Redis.
+ * <p>
+ * TEXT - UUID текстом (36 байт): message:{uuid}, user:messages:from:{uuid}, conversation:{min}:{max}.
+ * BINARY - UUID 16 байтами big-endian в тех же местах; ключ пары - min и max подряд без разделителя.
+ * Член индекса занимает 16 байт вместо 36, поэтому индексы дольше остаются в компактной кодировке
+ * listpack и занимают меньше памяти.
+ * <p>
+ * Статические ключи (messages:all и т.п.) в BINARY получают суффикс :bin, остальные ключи
+ * различаются длиной ID, поэтому обе раскладки могут жить в одном Redis одновременно - это нужно
+ * для онлайн-переноса. Счётчик изменений общий (его имя схемой не меняется), чтобы курсоры лент
+ * оставались монотонными после переноса.
+ * <p>
+ * Пары упорядочиваются одинаково в обеих схемах: текст UUID в нижнем регистре сравнивается так же,
+ * как его байты без знака, и так же их сравнивает message_lib.lua.
+ */
+public enum KeySchema {
+
+    TEXT,
+    BINARY;
+
+    public static final int BINARY_ID_LENGTH = 16;
+
+    private static final String BINARY_STATIC_SUFFIX = ":bin";
+    private static final String BINARY_ROLE_PREFIX = "b";
+    private static final String STATIC_ROLE = "static";
+
+    /**
+     * Член индекса для ID сообщения (или участник в значении хэша владельцев).
+     */
+    public byte[] member(final UUID id) {
+        if (this == TEXT) {
+            return ascii(id.toString());
+        }
+        return ByteBuffer.allocate(BINARY_ID_LENGTH)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    /**
+     * ID из члена индекса.
+     *
+     * @throws IllegalArgumentException если член не соответствует схеме
+     */
+    public UUID parseMember(final byte[] member) {
+        if (this == TEXT) {
+            return UUID.fromString(new String(member, StandardCharsets.US_ASCII));
+        }
+        if (member.length != BINARY_ID_LENGTH) {
+            throw new IllegalArgumentException("Binary id must be " + BINARY_ID_LENGTH + " bytes, got " + member.length);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(member);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Ключ prefix + ID.
+     */
+    public byte[] key(final String prefix, final UUID id) {
+        return key(prefix, member(id));
+    }
+
+    /**
+     * Ключ prefix + член индекса (ID в представлении этой схемы).
+     */
+    public byte[] key(final String prefix, final byte[] member) {
+        final byte[] prefixBytes = ascii(prefix);
+        final byte[] key = Arrays.copyOf(prefixBytes, prefixBytes.length + member.length);
+        System.arraycopy(member, 0, key, prefixBytes.length, member.length);
+        return key;
+    }
+
+    /**
+     * Ключ пары пользователей, не зависящий от порядка участников.
+     */
+    public byte[] pairKey(final String prefix, final UUID user1Id, final UUID user2Id) {
+        final byte[] first = member(user1Id);
+        final byte[] second = member(user2Id);
+        final boolean ordered = Arrays.compareUnsigned(first, second) <= 0;
+        final byte[] min = ordered ? first : second;
+        final byte[] max = ordered ? second : first;
+
+        final byte[] pair;
+        if (this == TEXT) {
+            pair = Arrays.copyOf(min, min.length + 1 + max.length);
+            pair[min.length] = ':';
+            System.arraycopy(max, 0, pair, min.length + 1, max.length);
+        } else {
+            pair = Arrays.copyOf(min, min.length + max.length);
+            System.arraycopy(max, 0, pair, min.length, max.length);
+        }
+        return key(prefix, pair);
+    }
+
+    /**
+     * Имя статического ключа раскладки (не содержащего ID).
+     */
+    public String staticKey(final String name) {
+        return this == TEXT ? name : name + BINARY_STATIC_SUFFIX;
+    }
+
+    /**
+     * Шаблон индекса для Lua-скриптов (формат описан в message_lib.lua).
+     * Для роли static prefix - имя статического ключа, оно приводится через {@link #staticKey(String)}.
+     *
+     * @param kind   S, Z, H или Q (лента изменений, см. message_lib.lua)
+     * @param role   from, to, pair или static
+     * @param prefix префикс ключа
+     */
+    public byte[] template(final char kind, final String role, final String prefix) {
+        if (STATIC_ROLE.equals(role)) {
+            return ascii(kind + "|" + role + "|" + staticKey(prefix));
+        }
+        final String schemaRole = this == TEXT ? role : BINARY_ROLE_PREFIX + role;
+        return ascii(kind + "|" + schemaRole + "|" + prefix);
+    }
+
+    /**
+     * Участники переписки подряд (значение хэша владельцев): from и to одинаковой длины.
+     */
+    public byte[] owners(final UUID from, final UUID to) {
+        final byte[] first = member(from);
+        final byte[] second = member(to);
+        final byte[] owners = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, owners, first.length, second.length);
+        return owners;
+    }
+
+    /**
+     * ID из ключа prefix + ID.
+     *
+     * @return ID или null, если ключ не из этой схемы или с другим префиксом
+     */
+    public UUID idFromKey(final String prefix, final byte[] key) {
+        if (!hasPrefix(key, prefix)) {
+            return null;
+        }
+        final byte[] member = Arrays.copyOfRange(key, prefix.length(), key.length);
+        if (member.length != idLength()) {
+            return null;
+        }
+        try {
+            return parseMember(member);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Длина ID в ключах и членах индексов.
+     */
+    public int idLength() {
+        return this == TEXT ? 36 : BINARY_ID_LENGTH;
+    }
+
+    /**
+     * Начинается ли ключ с ASCII-префикса.
+     */
+    public static boolean hasPrefix(final byte[] key, final String prefix) {
+        final byte[] prefixBytes = ascii(prefix);
+        return key.length >= prefixBytes.length
+                && Arrays.equals(key, 0, prefixBytes.length, prefixBytes, 0, prefixBytes.length);
+    }
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
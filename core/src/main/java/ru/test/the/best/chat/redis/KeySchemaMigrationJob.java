@@ -0,0 +1,151 @@
+package ru.test.the.best.chat.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.GeneralErrors;
+import ru.test.the.best.chat.errs.Result;
+import ru.test.the.best.chat.errs.UnitResult;
+import ru.test.the.best.chat.model.dto.admin.KeySchemaMigrationStatusResponse;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая задача переноса сообщений в текущую раскладку ключей ({@link KeySchema}) из другой раскладки.
+ * Одновременно выполняется не больше одной задачи на экземпляр приложения;
+ * состояние последнего запуска доступно для опроса.
+ * <p>
+ * Сам перенос выполняет {@link Migration} приложения, задача ведёт состояние и счётчики.
+ */
+@Slf4j
+public class KeySchemaMigrationJob {
+
+    private enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private final KeySchema target;
+    private final KeySchema source;
+    private final Migration migration;
+
+    private final AtomicLong migratedMessages = new AtomicLong();
+    private final AtomicLong skippedMessages = new AtomicLong();
+    private final AtomicLong deletedKeys = new AtomicLong();
+
+    private volatile State state = State.IDLE;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    /**
+     * @param target    текущая раскладка приложения
+     * @param migration перенос сообщений из другой раскладки в target
+     */
+    public KeySchemaMigrationJob(final KeySchema target, final Migration migration) {
+        this.target = target;
+        this.source = target == KeySchema.TEXT ? KeySchema.BINARY : KeySchema.TEXT;
+        this.migration = migration;
+    }
+
+    /**
+     * Запустить перенос сообщений в фоне.
+     *
+     * @return Result с состоянием запущенной задачи или data.conflict, если задача уже выполняется
+     */
+    public synchronized Result<KeySchemaMigrationStatusResponse, Error> start() {
+        if (state == State.RUNNING) {
+            log.warn("Key schema migration job is already running since {}", startedAt);
+            return Result.failure(GeneralErrors.conflict("Key schema migration job is already running"));
+        }
+
+        migratedMessages.set(0);
+        skippedMessages.set(0);
+        deletedKeys.set(0);
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+        state = State.RUNNING;
+
+        Thread.ofVirtual()
+                .name("messages-key-schema-migration")
+                .start(this::run);
+
+        log.warn("Key schema migration job started: {} -> {}", source, target);
+        return Result.success(status());
+    }
+
+    /**
+     * Текущее состояние задачи.
+     *
+     * @return состояние последнего запуска или IDLE, если задача не запускалась
+     */
+    public KeySchemaMigrationStatusResponse status() {
+        return new KeySchemaMigrationStatusResponse(
+                state.name(),
+                source.name(),
+                target.name(),
+                migratedMessages.get(),
+                skippedMessages.get(),
+                deletedKeys.get(),
+                startedAt,
+                finishedAt,
+                error
+        );
+    }
+
+    /**
+     * Перенос сообщений из раскладки source в текущую раскладку приложения.
+     */
+    @FunctionalInterface
+    public interface Migration {
+
+        /**
+         * @param source           раскладка, из которой переносятся сообщения
+         * @param progressListener обработчик прогресса, вызывается после каждой пачки
+         * @return UnitResult с результатом операции
+         */
+        UnitResult<Error> migrate(KeySchema source, ProgressListener progressListener);
+    }
+
+    /**
+     * Обработчик прогресса переноса сообщений между раскладками ключей.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        /**
+         * @param migratedMessages сообщения, перенесённые в очередной пачке
+         * @param skippedMessages  сообщения, пропущенные в очередной пачке (истёк TTL или значение не декодируется)
+         * @param deletedKeys      ключи исходной раскладки, удалённые в очередной пачке
+         */
+        void onProgress(long migratedMessages, long skippedMessages, long deletedKeys);
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private void run() {
+        UnitResult<Error> result;
+        try {
+            result = migration.migrate(source, (migrated, skipped, deleted) -> {
+                migratedMessages.addAndGet(migrated);
+                skippedMessages.addAndGet(skipped);
+                deletedKeys.addAndGet(deleted);
+            });
+        } catch (Exception e) {
+            result = UnitResult.failure(GeneralErrors.internalServerError(e.getMessage()));
+        }
+
+        synchronized (this) {
+            finishedAt = Instant.now();
+            if (result.isFailure()) {
+                error = result.getError().getMessage();
+                state = State.FAILED;
+                log.error("Key schema migration job failed after {} migrated messages: {}", migratedMessages.get(), error);
+            } else {
+                state = State.COMPLETED;
+                log.warn("Key schema migration job completed: migrated {} messages, skipped {}, deleted {} keys",
+                        migratedMessages.get(), skippedMessages.get(), deletedKeys.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.test.the.best.chat.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.PipeliningBase;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Lua-скрипт Redis, выполняемый через EVALSHA.
+ * Исходник читается из classpath (redis/scripts) вместе с общей библиотекой message_lib.lua.
+ * SHA1 вычисляется локально, поэтому скрипт можно вызывать до SCRIPT LOAD:
+ * при NOSCRIPT (рестарт Redis, SCRIPT FLUSH) скрипт загружается повторно и вызов повторяется.
+ */
+@Slf4j
+public final class LuaScript {
+
+    private static final String SCRIPTS_LOCATION = "redis/scripts/";
+    private static final String LIBRARY = "message_lib.lua";
+
+    private final String name;
+    private final String source;
+    private final byte[] sha;
+
+    private LuaScript(final String name, final String source) {
+        this.name = name;
+        this.source = source;
+        this.sha = SafeEncoder.encode(sha1Hex(source));
+    }
+
+    /**
+     * Загрузить скрипт из classpath.
+     *
+     * @param name имя файла в redis/scripts
+     * @return скрипт
+     */
+    public static LuaScript fromClasspath(final String name) {
+        return new LuaScript(name, readResource(LIBRARY) + "\n" + readResource(name));
+    }
+
+    /**
+     * Загрузить скрипт в кеш скриптов Redis (SCRIPT LOAD).
+     *
+     * @param jedis подключение к Redis
+     */
+    public void load(final Jedis jedis) {
+        jedis.scriptLoad(source);
+        log.debug("Loaded Redis script {}", name);
+    }
+
+    /**
+     * Выполнить скрипт через EVALSHA, при необходимости загрузив его.
+     *
+     * @param jedis подключение к Redis
+     * @param keys  KEYS скрипта
+     * @param args  ARGV скрипта
+     * @return ответ скрипта
+     */
+    public Object eval(final Jedis jedis, final List<byte[]> keys, final List<byte[]> args) {
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            log.warn("Redis script {} is not loaded, loading it", name);
+            load(jedis);
+            return jedis.evalsha(sha, keys, args);
+        }
+    }
+
+    /**
+     * Выполнить скрипт через EVALSHA на клиенте Redis Cluster.
+     * При NOSCRIPT скрипт выполняется через EVAL: узел слота кеширует его, и следующие EVALSHA проходят.
+     *
+     * @param jedis клиент (JedisCluster)
+     * @param keys  KEYS скрипта, все в одном слоте
+     * @param args  ARGV скрипта
+     * @return ответ скрипта
+     */
+    public Object eval(final UnifiedJedis jedis, final List<byte[]> keys, final List<byte[]> args) {
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            log.warn("Redis script {} is not loaded on cluster node, evaluating it", name);
+            return jedis.eval(SafeEncoder.encode(source), keys, args);
+        }
+    }
+
+    /**
+     * Поставить вызов скрипта в pipeline. NOSCRIPT здесь не перехватывается,
+     * поэтому перед использованием скрипт должен быть загружен через {@link #load(Jedis)}.
+     *
+     * @param pipeline pipeline или транзакция
+     * @param keys     KEYS скрипта
+     * @param args     ARGV скрипта
+     * @return отложенный ответ скрипта
+     */
+    public Response<Object> eval(final PipeliningBase pipeline, final List<byte[]> keys, final List<byte[]> args) {
+        return pipeline.evalsha(sha, keys, args);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private static String readResource(final String fileName) {
+        final String path = SCRIPTS_LOCATION + fileName;
+
+        try (InputStream inputStream = LuaScript.class.getClassLoader().getResourceAsStream(path)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Redis script not found on classpath: " + path);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read Redis script: " + path, e);
+        }
+    }
+
+    private static String sha1Hex(final String source) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
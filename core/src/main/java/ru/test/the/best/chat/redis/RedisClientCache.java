@@ -0,0 +1,186 @@
+package ru.test.the.best.chat.redis;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.RedisProtocol;
+import redis.clients.jedis.csc.Cache;
+import redis.clients.jedis.csc.CacheConfig;
+import redis.clients.jedis.csc.CacheFactory;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Клиентский кеш значений сообщений на стороне Redis (RESP3 client-side caching, CLIENT TRACKING).
+ * <p>
+ * GET ключей message:* через этот клиент кешируются в памяти приложения, а Redis сам присылает
+ * инвалидацию, когда ключ меняется или удаляется (в том числе по TTL), поэтому повторное чтение
+ * того же сообщения не уходит в сеть. Остальные команды проходят мимо кеша.
+ * <p>
+ * Кеширование в Jedis работает только на клиентах UnifiedJedis, а не на соединениях {@link redis.clients.jedis.JedisPool},
+ * поэтому для него используется отдельный {@link JedisPooled} к основному Redis (нужен Redis 7.4+).
+ * Pipeline мимо кеша проходит, поэтому пакетное чтение выполняется отдельными GET параллельно:
+ * попадания отдаются из памяти, промахи идут в Redis одновременно. Одновременных GET не больше
+ * размера пула клиента (maxTotal), иначе большая выборка исчерпала бы пул и упала по таймауту ожидания.
+ */
+public final class RedisClientCache implements MeterBinder, AutoCloseable {
+
+    private static final byte[] MESSAGE_KEY_PREFIX = SafeEncoder.encode("message:");
+
+    private final Cache cache;
+    private final JedisPooled client;
+    private final Semaphore permits;
+
+    /**
+     * @param hostAndPort адрес основного Redis
+     * @param username    пользователь ACL
+     * @param password    пароль
+     * @param maxSize     максимальное число закешированных ключей
+     * @param poolConfig  параметры пула соединений клиента
+     */
+    public RedisClientCache(
+            final HostAndPort hostAndPort,
+            final String username,
+            final String password,
+            final int maxSize,
+            final GenericObjectPoolConfig<Connection> poolConfig) {
+        this.cache = CacheFactory.getCache(CacheConfig.builder()
+                .maxSize(maxSize)
+                .cacheable((command, keys) -> command == Protocol.Command.GET
+                        && keys.stream().allMatch(RedisClientCache::isMessageKey))
+                .build());
+        this.client = new JedisPooled(
+                hostAndPort,
+                DefaultJedisClientConfig.builder()
+                        .user(username)
+                        .password(password)
+                        .protocol(RedisProtocol.RESP3)
+                        .build(),
+                cache,
+                poolConfig
+        );
+        this.permits = new Semaphore(poolConfig.getMaxTotal() > 0 ? poolConfig.getMaxTotal() : Integer.MAX_VALUE, true);
+    }
+
+    /**
+     * Прочитать значение ключа message:* из кеша или из Redis.
+     *
+     * @param key ключ сообщения
+     * @return значение или null, если ключа нет
+     */
+    public byte[] get(final byte[] key) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JedisException(e);
+        }
+        try {
+            return client.get(key);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Прочитать значения нескольких ключей message:*: каждый GET на своём виртуальном потоке,
+     * одновременно - не больше размера пула клиента.
+     *
+     * @param keys ключи сообщений
+     * @return значения в порядке keys (null для отсутствующих)
+     */
+    public List<byte[]> getAll(final List<byte[]> keys) {
+        if (keys.size() == 1) {
+            return Collections.singletonList(get(keys.getFirst()));
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final List<Future<byte[]>> futures = new ArrayList<>(keys.size());
+            for (byte[] key : keys) {
+                // Поток запускается только под разрешением, поэтому выборка не порождает тысячи ожидающих потоков
+                permits.acquire();
+                try {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            return client.get(key);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+
+            final List<byte[]> values = new ArrayList<>(keys.size());
+            for (Future<byte[]> future : futures) {
+                values.add(future.get());
+            }
+            return values;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new JedisException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JedisException(e);
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("redis.client.cache.size", cache, Cache::getSize)
+                .description("Ключи в клиентском кеше Redis")
+                .register(registry);
+
+        FunctionCounter.builder("redis.client.cache.gets", cache, c -> c.getStats().getHitCount())
+                .tag("result", "hit")
+                .description("Чтения через клиентский кеш Redis")
+                .register(registry);
+
+        FunctionCounter.builder("redis.client.cache.gets", cache, c -> c.getStats().getMissCount())
+                .tag("result", "miss")
+                .description("Чтения через клиентский кеш Redis")
+                .register(registry);
+
+        FunctionCounter.builder("redis.client.cache.evictions", cache, c -> c.getStats().getEvictCount())
+                .description("Ключи, вытесненные из клиентского кеша по размеру")
+                .register(registry);
+
+        FunctionCounter.builder("redis.client.cache.invalidations", cache, c -> c.getStats().getInvalidationCount())
+                .description("Инвалидации ключей, присланные Redis")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    private static boolean isMessageKey(final Object key) {
+        final byte[] bytes = key instanceof byte[] raw ? raw : SafeEncoder.encode(String.valueOf(key));
+        return bytes.length > MESSAGE_KEY_PREFIX.length
+                && Arrays.equals(bytes, 0, MESSAGE_KEY_PREFIX.length, MESSAGE_KEY_PREFIX, 0, MESSAGE_KEY_PREFIX.length);
+    }
+}
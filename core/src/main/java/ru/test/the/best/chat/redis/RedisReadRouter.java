@@ -0,0 +1,132 @@
+package ru.test.the.best.chat.redis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.JedisPool;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Выбор пула для чтения: реплика или основной Redis.
+ * <p>
+ * Чтения без требований к свежести идут на реплику, если она настроена (redis.replica.enabled).
+ * Пользователь, сохранивший сообщение на этом экземпляре, в течение окна read-your-writes
+ * читает с основного Redis, чтобы не увидеть свою запись ещё не реплицированной.
+ * Окно учитывается в памяти экземпляра: запись через другой экземпляр его не открывает.
+ * Отметки с истёкшим окном удаляются при записи, не чаще одного раза за окно.
+ */
+@Slf4j
+public class RedisReadRouter {
+
+    private final JedisPool primaryPool;
+    private final JedisPool replicaPool;
+    private final long readYourWritesNanos;
+    private final Map<UUID, Long> recentWriters = new ConcurrentHashMap<>();
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+    private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param primaryPool    пул основного Redis
+     * @param replicaPool    пул реплики или null, если реплика не настроена
+     * @param readYourWrites окно, в течение которого записавший пользователь читает с основного Redis
+     * @param meterRegistry  реестр метрик для счётчиков redis.reads
+     */
+    public RedisReadRouter(
+            final JedisPool primaryPool,
+            final JedisPool replicaPool,
+            final Duration readYourWrites,
+            final MeterRegistry meterRegistry) {
+        this.primaryPool = Objects.requireNonNull(primaryPool, "JedisPool cannot be null");
+        this.replicaPool = replicaPool;
+        this.readYourWritesNanos = readYourWrites.toNanos();
+        this.replicaReads = Counter.builder("redis.reads")
+                .tag("target", "replica")
+                .description("Чтения, направленные на реплику или основной Redis")
+                .register(meterRegistry);
+        this.primaryReads = Counter.builder("redis.reads")
+                .tag("target", "primary")
+                .description("Чтения, направленные на реплику или основной Redis")
+                .register(meterRegistry);
+
+        log.info("Redis reads routed to {}", this.replicaPool != null ? "replica" : "primary");
+    }
+
+    /**
+     * Основной пул: записи и чтения, которым нужна свежесть.
+     */
+    public JedisPool primary() {
+        return primaryPool;
+    }
+
+    /**
+     * Отметить запись пользователя: его чтения уходят на основной Redis до конца окна.
+     *
+     * @param userId ID пользователя
+     */
+    public void recordWrite(final UUID userId) {
+        if (replicaPool != null && userId != null) {
+            final long now = System.nanoTime();
+            recentWriters.put(userId, now);
+            evictExpiredWrites(now);
+        }
+    }
+
+    /**
+     * Пул для чтения данных пользователей: основной, если кто-то из них недавно писал.
+     *
+     * @param userIds пользователи, чьи данные читаются
+     * @return пул для чтения
+     */
+    public JedisPool forUsers(final UUID... userIds) {
+        if (replicaPool == null) {
+            return primaryPool;
+        }
+        for (UUID userId : userIds) {
+            if (wroteRecently(userId)) {
+                primaryReads.increment();
+                return primaryPool;
+            }
+        }
+        replicaReads.increment();
+        return replicaPool;
+    }
+
+    /**
+     * Пул для чтения без привязки к пользователю. Промахи таких чтений стоит перепроверять
+     * на {@link #primary()}: значение могло ещё не дойти до реплики.
+     *
+     * @return пул для чтения
+     */
+    public JedisPool forAnyUser() {
+        if (replicaPool == null) {
+            return primaryPool;
+        }
+        replicaReads.increment();
+        return replicaPool;
+    }
+
+    // ==================== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ====================
+
+    /**
+     * Удалить отметки записей с истёкшим окном, если с прошлой очистки прошло больше окна.
+     */
+    private void evictExpiredWrites(final long now) {
+        final long last = lastEviction.get();
+        if (now - last < readYourWritesNanos || !lastEviction.compareAndSet(last, now)) {
+            return;
+        }
+        recentWriters.entrySet().removeIf(entry -> now - entry.getValue() >= readYourWritesNanos);
+    }
+
+    private boolean wroteRecently(final UUID userId) {
+        final Long writtenAt = userId != null ? recentWriters.get(userId) : null;
+        return writtenAt != null && System.nanoTime() - writtenAt < readYourWritesNanos;
+    }
+}
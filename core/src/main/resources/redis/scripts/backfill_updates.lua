@@ -0,0 +1,18 @@
+-- Добавить страницу сообщений в ленты изменений отправителя и получателя.
+-- Номера изменений выдаются тем же счётчиком, что и при сохранении, в одном скрипте с записью в ленты:
+-- клиент, увидевший номер N, уже видит все записи с меньшими номерами, и курсор since ничего не пропускает.
+-- NX не трогает сообщения, уже записанные в ленту при сохранении.
+--
+-- KEYS[1]            - ключ счётчика изменений (messages:seq)
+-- KEYS[2i], KEYS[2i+1] - ленты изменений отправителя и получателя i-го сообщения
+-- ARGV[i]            - ID i-го сообщения (member индексов), сообщения упорядочены по дате
+--
+-- Возвращает количество обработанных сообщений.
+
+local sequence = redis.call('INCRBY', KEYS[1], #ARGV) - #ARGV
+for i, member in ipairs(ARGV) do
+    sequence = sequence + 1
+    redis.call('ZADD', KEYS[2 * i], 'NX', sequence, member)
+    redis.call('ZADD', KEYS[2 * i + 1], 'NX', sequence, member)
+end
+return #ARGV
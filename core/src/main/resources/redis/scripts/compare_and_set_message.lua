@@ -0,0 +1,19 @@
+-- Заменить значение сообщения, если оно не изменилось после чтения (Redis Cluster: один ключ).
+-- Индексы в кластере лежат в слотах участников, поэтому обновляются отдельно по прочитанному значению;
+-- сравнение гарантирует, что индексы старого значения снимаются именно с того, что было заменено.
+--
+-- KEYS[1]  - ключ сообщения
+-- ARGV[1]  - прочитанное значение
+-- ARGV[2]  - новое значение
+--
+-- Возвращает 1 - заменено, 0 - сообщения нет, -1 - значение изменилось после чтения.
+
+local current = redis.call('GET', KEYS[1])
+if not current then
+    return 0
+end
+if current ~= ARGV[1] then
+    return -1
+end
+redis.call('SET', KEYS[1], ARGV[2], 'KEEPTTL')
+return 1
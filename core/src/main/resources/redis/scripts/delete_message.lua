@@ -0,0 +1,36 @@
+-- Удалить сообщение, если оно существует, вместе с записями во всех индексах.
+-- Ключи индексов строятся на клиенте по прочитанному значению; скрипт проверяет, что участники
+-- переписки в значении с тех пор не изменились (см. index_keys_match в message_lib.lua).
+-- В лентах изменений ID заменяется записью об удалении с новым номером, чтобы клиенты
+-- дельта-синхронизации узнали об удалении (см. replace_with_tombstone в message_lib.lua).
+--
+-- KEYS[1]      - ключ сообщения
+-- KEYS[2..1+N] - ключи индексов значения в порядке шаблонов
+-- KEYS[2+N]    - ключ счётчика изменений (messages:seq)
+-- ARGV[1]      - ID сообщения (member индексов)
+-- ARGV[2]      - запись об удалении для лент изменений; пусто - ленты только очищаются
+--                (копия сообщения переносится на другой шард и будет записана заново)
+-- ARGV[3..]    - шаблоны индексов (см. message_lib.lua), N штук
+--
+-- Возвращает 1, если сообщение удалено, 0 - если его не было, -1 - если ключи индексов устарели.
+
+local value = redis.call('GET', KEYS[1])
+if not value then
+    return 0
+end
+
+local templates = {}
+for i = 3, #ARGV do
+    templates[#templates + 1] = ARGV[i]
+end
+
+if not index_keys_match_value(KEYS, 2, value, templates) then
+    return -1
+end
+
+if ARGV[2] ~= '' then
+    replace_with_tombstone(KEYS, 2, ARGV[1], ARGV[2], templates, KEYS[2 + #templates])
+end
+remove_member(KEYS, 2, ARGV[1], templates)
+redis.call('DEL', KEYS[1])
+return 1
@@ -0,0 +1,10 @@
+-- Добавить сообщение в индексы одного пользователя (Redis Cluster: все ключи в слоте пользователя).
+--
+-- KEYS[1..]  - ключи индексов пользователя
+-- ARGV[1]    - ID сообщения (member индексов)
+-- ARGV[2..]  - спецификация записи для каждого индекса из KEYS (см. message_lib.lua)
+--
+-- Возвращает 1.
+
+add_to_indexes(KEYS, 1, ARGV, 2, ARGV[1])
+return 1
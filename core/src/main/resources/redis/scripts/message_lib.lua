@@ -0,0 +1,172 @@
+-- Общие функции скриптов сообщений. Загрузчик подставляет этот файл перед каждым скриптом.
+--
+-- Шаблон индекса: "<S|Z|H|Q>|<role>|<prefix>"
+--   S/Z/H  - Set, Sorted Set или Hash (поле - ID сообщения)
+--   Q      - лента изменений: Sorted Set со score из счётчика изменений; при удалении сообщения
+--            ID в ней заменяется записью об удалении (tombstone) с новым номером
+--   role   - from (prefix .. from), to (prefix .. to), pair (prefix .. min .. ':' .. max), static (prefix)
+--            bfrom, bto, bpair - то же для бинарной раскладки (KeySchema.BINARY): участники - 16 байт UUID,
+--            пара - prefix .. min .. max без разделителя
+--
+-- Спецификация записи в индекс (ARGV при сохранении):
+--   "S"        - SADD
+--   "Z<score>" - ZADD с заданным score
+--   "H<value>" - HSET поле member = value
+--   "C"        - счётчик последовательности: INCR, значение становится score для следующих "Q"
+--   "Q"        - ZADD со score из последнего "C" (порядок изменений, а не время сообщения)
+
+local BINARY_MAGIC = 0xC7   -- BinaryMessageFormat.MAGIC
+local FROM_OFFSET = 28      -- BinaryMessageFormat.FROM_OFFSET
+local TO_OFFSET = 44        -- BinaryMessageFormat.TO_OFFSET
+
+local function format_uuid(raw)
+    local hex = string.gsub(raw, '.', function(c)
+        return string.format('%02x', string.byte(c))
+    end)
+    return string.sub(hex, 1, 8) .. '-' .. string.sub(hex, 9, 12) .. '-' .. string.sub(hex, 13, 16)
+            .. '-' .. string.sub(hex, 17, 20) .. '-' .. string.sub(hex, 21, 32)
+end
+
+-- from и to сообщения в текстовом виде: бинарный формат или legacy JSON
+local function participants(value)
+    if string.byte(value, 1) == BINARY_MAGIC then
+        return format_uuid(string.sub(value, FROM_OFFSET + 1, FROM_OFFSET + 16)),
+                format_uuid(string.sub(value, TO_OFFSET + 1, TO_OFFSET + 16))
+    end
+    local message = cjson.decode(value)
+    return message['from'], message['to']
+end
+
+local function uuid_bytes(text)
+    local hex = string.gsub(text, '-', '')
+    return (string.gsub(hex, '%x%x', function(byte)
+        return string.char(tonumber(byte, 16))
+    end))
+end
+
+-- from и to сообщения по 16 байт: бинарный формат или legacy JSON
+local function raw_participants(value)
+    if string.byte(value, 1) == BINARY_MAGIC then
+        return string.sub(value, FROM_OFFSET + 1, FROM_OFFSET + 16),
+                string.sub(value, TO_OFFSET + 1, TO_OFFSET + 16)
+    end
+    local from, to = participants(value)
+    return uuid_bytes(from), uuid_bytes(to)
+end
+
+-- Сравнение по байтам без знака, как Arrays.compareUnsigned (сравнение строк Lua зависит от локали)
+local function bytes_le(a, b)
+    for i = 1, math.min(#a, #b) do
+        local x, y = string.byte(a, i), string.byte(b, i)
+        if x ~= y then
+            return x < y
+        end
+    end
+    return #a <= #b
+end
+
+local function index_key(role, prefix, from, to)
+    if role == 'from' or role == 'bfrom' then
+        return prefix .. from
+    elseif role == 'to' or role == 'bto' then
+        return prefix .. to
+    elseif role == 'pair' then
+        if from <= to then
+            return prefix .. from .. ':' .. to
+        end
+        return prefix .. to .. ':' .. from
+    elseif role == 'bpair' then
+        if bytes_le(from, to) then
+            return prefix .. from .. to
+        end
+        return prefix .. to .. from
+    end
+    return prefix
+end
+
+-- Шаблоны бинарной раскладки: участники нужны 16 байтами, а не текстом
+local function is_binary_layout(templates)
+    for _, template in ipairs(templates) do
+        if string.match(template, '^[SZHQ]|b') then
+            return true
+        end
+    end
+    return false
+end
+
+-- Совпадают ли ключи индексов keys[first_key..] с построенными по шаблонам для участников from/to.
+-- Скрипты пишут только в ключи из KEYS (Redis Cluster, репликация эффектов): ключи старых индексов
+-- строит вызывающая сторона по прочитанному значению, а скрипт проверяет, что значение с тех пор не сменило
+-- участников. При несовпадении скрипт ничего не меняет и возвращает -1, вызывающая сторона повторяет.
+local function index_keys_match(keys, first_key, from, to, templates)
+    if not (from and to) then
+        return false
+    end
+    for i, template in ipairs(templates) do
+        local _, role, prefix = string.match(template, '^([SZHQ])|(%a+)|(.*)$')
+        if keys[first_key + i - 1] ~= index_key(role, prefix, from, to) then
+            return false
+        end
+    end
+    return true
+end
+
+-- Совпадают ли ключи индексов keys[first_key..] с построенными для сохранённого значения
+local function index_keys_match_value(keys, first_key, value, templates)
+    local from, to
+    if is_binary_layout(templates) then
+        from, to = raw_participants(value)
+    else
+        from, to = participants(value)
+    end
+    return index_keys_match(keys, first_key, from, to, templates)
+end
+
+-- Удалить member из индексов keys[first_key..], тип индекса - из шаблона с тем же номером
+local function remove_member(keys, first_key, member, templates)
+    for i, template in ipairs(templates) do
+        local kind = string.sub(template, 1, 1)
+        local key = keys[first_key + i - 1]
+        if kind == 'Z' or kind == 'Q' then
+            redis.call('ZREM', key, member)
+        elseif kind == 'H' then
+            redis.call('HDEL', key, member)
+        else
+            redis.call('SREM', key, member)
+        end
+    end
+end
+
+-- Заменить member в лентах изменений (шаблоны Q) из keys[first_key..] записью об удалении tombstone.
+-- Номер изменения один на обе ленты и берётся из sequence_key. Запись добавляется только в ленты, где member был:
+-- при шардировании лента второго участника лежит на другом шарде и получает запись там.
+local function replace_with_tombstone(keys, first_key, member, tombstone, templates, sequence_key)
+    local sequence
+    for i, template in ipairs(templates) do
+        local key = keys[first_key + i - 1]
+        if string.sub(template, 1, 1) == 'Q' and redis.call('ZREM', key, member) == 1 then
+            sequence = sequence or redis.call('INCR', sequence_key)
+            redis.call('ZADD', key, sequence, tombstone)
+        end
+    end
+end
+
+-- Добавить member в индексы keys[first_key..] по спецификациям specs[first_spec..]
+local function add_to_indexes(keys, first_key, specs, first_spec, member)
+    local sequence
+    for i = first_key, #keys do
+        local spec = specs[first_spec + i - first_key]
+        local kind = string.sub(spec, 1, 1)
+        if kind == 'C' then
+            sequence = redis.call('INCR', keys[i])
+        elseif kind == 'Q' then
+            redis.call('ZADD', keys[i], sequence, member)
+        elseif kind == 'Z' then
+            redis.call('ZADD', keys[i], string.sub(spec, 2), member)
+        elseif kind == 'H' then
+            redis.call('HSET', keys[i], member, string.sub(spec, 2))
+        else
+            redis.call('SADD', keys[i], member)
+        end
+    end
+end
@@ -0,0 +1,16 @@
+-- Поднять счётчик изменений до значения, если он меньше.
+-- Нужен при переносе ленты изменений пользователя на другой шард: номера, выданные
+-- после переноса, должны быть больше перенесённых, чтобы курсоры клиентов оставались монотонными.
+--
+-- KEYS[1]  - ключ счётчика
+-- ARGV[1]  - минимальное значение
+--
+-- Возвращает значение счётчика после вызова.
+
+local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+local minimum = tonumber(ARGV[1])
+if current < minimum then
+    redis.call('SET', KEYS[1], ARGV[1])
+    return minimum
+end
+return current
@@ -0,0 +1,30 @@
+-- Удалить из индексов ID сообщения, ключ которого истёк или пропал.
+-- Участники берутся на клиенте из хэша владельцев (значение - from и to одинаковой длины подряд),
+-- по ним строятся ключи индексов; если записи нет, передаются только статические индексы.
+-- Скрипт проверяет, что запись в хэше владельцев с тех пор не изменилась.
+--
+-- KEYS[1]    - ключ сообщения
+-- KEYS[2]    - ключ хэша владельцев
+-- KEYS[3..]  - ключи индексов в порядке шаблонов
+-- ARGV[1]    - ID сообщения (member индексов)
+-- ARGV[2]    - прочитанная запись хэша владельцев (пусто, если записи не было)
+-- ARGV[3..]  - шаблоны индексов (см. message_lib.lua)
+--
+-- Возвращает 1, если ID вычищен, 0 - если сообщение ещё существует, -1 - если запись владельцев изменилась.
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+
+local owners = redis.call('HGET', KEYS[2], ARGV[1]) or ''
+if owners ~= ARGV[2] then
+    return -1
+end
+
+local templates = {}
+for i = 3, #ARGV do
+    templates[#templates + 1] = ARGV[i]
+end
+
+remove_member(KEYS, 3, ARGV[1], templates)
+return 1
@@ -0,0 +1,14 @@
+-- Сохранить сообщение и добавить его во все индексы.
+--
+-- KEYS[1]    - ключ сообщения
+-- KEYS[2..]  - ключи индексов
+-- ARGV[1]    - закодированное сообщение
+-- ARGV[2]    - TTL сообщения в секундах
+-- ARGV[3]    - ID сообщения (member индексов)
+-- ARGV[4..]  - спецификация записи для каждого индекса из KEYS[2..] (см. message_lib.lua)
+--
+-- Возвращает 1.
+
+redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+add_to_indexes(KEYS, 2, ARGV, 4, ARGV[3])
+return 1
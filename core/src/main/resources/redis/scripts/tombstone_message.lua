@@ -0,0 +1,15 @@
+-- Заменить ID сообщения в ленте изменений пользователя записью об удалении с новым номером
+-- (Redis Cluster: оба ключа в слоте пользователя).
+--
+-- KEYS[1] - лента изменений пользователя
+-- KEYS[2] - счётчик изменений пользователя
+-- ARGV[1] - ID сообщения (member ленты)
+-- ARGV[2] - запись об удалении
+--
+-- Возвращает 1, если запись добавлена, 0 - если сообщения в ленте не было.
+
+if redis.call('ZREM', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+redis.call('ZADD', KEYS[1], redis.call('INCR', KEYS[2]), ARGV[2])
+return 1
@@ -0,0 +1,34 @@
+-- Обновить сообщение, только если оно существует (check-and-set), с переносом записей в индексах.
+-- TTL сообщения сохраняется. Ключи индексов старого значения строятся на клиенте по прочитанному значению;
+-- скрипт проверяет, что участники переписки с тех пор не изменились (см. index_keys_match в message_lib.lua).
+--
+-- KEYS[1]              - ключ сообщения
+-- KEYS[2..1+N]         - ключи индексов старого значения в порядке шаблонов
+-- KEYS[2+N..]          - ключи индексов нового значения
+-- ARGV[1]              - новое закодированное сообщение
+-- ARGV[2]              - ID сообщения (member индексов)
+-- ARGV[3]              - количество шаблонов N
+-- ARGV[4..3+N]         - шаблоны индексов старого значения (см. message_lib.lua)
+-- ARGV[4+N..]          - спецификация записи для каждого индекса из KEYS[2+N..] (см. message_lib.lua)
+--
+-- Возвращает 1, если сообщение обновлено, 0 - если его не было, -1 - если ключи индексов устарели.
+
+local old = redis.call('GET', KEYS[1])
+if not old then
+    return 0
+end
+
+local count = tonumber(ARGV[3])
+local templates = {}
+for i = 1, count do
+    templates[i] = ARGV[3 + i]
+end
+
+if not index_keys_match_value(KEYS, 2, old, templates) then
+    return -1
+end
+
+remove_member(KEYS, 2, ARGV[2], templates)
+redis.call('SET', KEYS[1], ARGV[1], 'KEEPTTL')
+add_to_indexes(KEYS, 2 + count, ARGV, 4 + count, ARGV[2])
+return 1
@@ -0,0 +1,131 @@
+package ru.test.the.best.chat.codec;
+
+import org.junit.jupiter.api.Test;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryMessageFormatTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        final MessageFrame frame = new MessageFrame(
+                UUID.randomUUID(),
+                Instant.parse("2025-10-04T06:57:24.759699123Z"),
+                UUID.randomUUID(),
+                UUID.randomUUID(),
+                "STRING",
+                "Привет".getBytes(StandardCharsets.UTF_8)
+        );
+
+        final byte[] encoded = BinaryMessageFormat.encode(frame);
+        assertTrue(BinaryMessageFormat.isBinary(encoded));
+        assertEquals(BinaryMessageFormat.HEADER_SIZE + frame.data().length, encoded.length);
+
+        final Result<MessageFrame, Error> decoded = BinaryMessageFormat.decode(encoded);
+        assertTrue(decoded.isSuccess());
+        assertEquals(frame.id(), decoded.getValue().id());
+        assertEquals(frame.date(), decoded.getValue().date());
+        assertEquals(frame.from(), decoded.getValue().from());
+        assertEquals(frame.to(), decoded.getValue().to());
+        assertEquals("STRING", decoded.getValue().type());
+        assertArrayEquals(frame.data(), decoded.getValue().data());
+    }
+
+    @Test
+    void compressedFlagRoundTrip() {
+        final byte[] compressed = PayloadCompression.compress("Привет ".repeat(300).getBytes(StandardCharsets.UTF_8), 1);
+        final MessageFrame frame = new MessageFrame(
+                UUID.randomUUID(), Instant.now(), UUID.randomUUID(), UUID.randomUUID(), "STRING", compressed, BinaryMessageFormat.FLAG_COMPRESSED);
+
+        final byte[] encoded = BinaryMessageFormat.encode(frame);
+        assertEquals(BinaryMessageFormat.VERSION_2, encoded[1]);
+        assertEquals(BinaryMessageFormat.FLAG_COMPRESSED, encoded[2]);
+
+        final Result<MessageFrame, Error> decoded = BinaryMessageFormat.decode(encoded);
+        assertTrue(decoded.isSuccess());
+        assertTrue(decoded.getValue().compressed());
+        assertArrayEquals(compressed, decoded.getValue().data());
+    }
+
+    @Test
+    void uncompressedFrameKeepsFirstVersion() {
+        final byte[] encoded = BinaryMessageFormat.encode(new MessageFrame(
+                UUID.randomUUID(), Instant.now(), UUID.randomUUID(), UUID.randomUUID(), "STRING", new byte[]{1}));
+
+        assertEquals(BinaryMessageFormat.VERSION_1, encoded[1]);
+        assertEquals(0, encoded[2]);
+        assertFalse(BinaryMessageFormat.decode(encoded).getValue().compressed());
+    }
+
+    @Test
+    void unknownFlagsAreRejected() {
+        final byte[] encoded = BinaryMessageFormat.encode(new MessageFrame(
+                UUID.randomUUID(), Instant.now(), UUID.randomUUID(), UUID.randomUUID(), "STRING", new byte[]{1}, BinaryMessageFormat.FLAG_COMPRESSED));
+        encoded[2] = 0x04;
+
+        assertTrue(BinaryMessageFormat.decode(encoded).isFailure());
+    }
+
+    @Test
+    void blobFlagRoundTrip() {
+        final BlobReference reference = new BlobReference(UUID.randomUUID(), 5_000_000);
+        final byte[] encoded = BinaryMessageFormat.encode(new MessageFrame(
+                UUID.randomUUID(), Instant.now(), UUID.randomUUID(), UUID.randomUUID(), "IMAGE", reference.encode(), BinaryMessageFormat.FLAG_BLOB));
+
+        assertEquals(BinaryMessageFormat.VERSION_2, encoded[1]);
+
+        final MessageFrame decoded = BinaryMessageFormat.decode(encoded).getValue();
+        assertTrue(decoded.blob());
+        assertFalse(decoded.compressed());
+        assertEquals(reference, BlobReference.decode(decoded.data()).getValue());
+    }
+
+    @Test
+    void compressedBlobIsRejected() {
+        final byte flags = (byte) (BinaryMessageFormat.FLAG_COMPRESSED | BinaryMessageFormat.FLAG_BLOB);
+        final MessageFrame frame = new MessageFrame(
+                UUID.randomUUID(), Instant.now(), UUID.randomUUID(), UUID.randomUUID(), "IMAGE", new byte[]{1}, flags);
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryMessageFormat.encode(frame));
+
+        final byte[] encoded = BinaryMessageFormat.encode(new MessageFrame(
+                UUID.randomUUID(), Instant.now(), UUID.randomUUID(), UUID.randomUUID(), "IMAGE", new byte[]{1}, BinaryMessageFormat.FLAG_BLOB));
+        encoded[2] = flags;
+
+        assertTrue(BinaryMessageFormat.decode(encoded).isFailure());
+    }
+
+    @Test
+    void legacyJsonIsNotBinary() {
+        assertFalse(BinaryMessageFormat.isBinary("{\"id\":\"x\"}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void truncatedValueIsRejected() {
+        final byte[] encoded = BinaryMessageFormat.encode(new MessageFrame(
+                UUID.randomUUID(), Instant.now(), UUID.randomUUID(), UUID.randomUUID(), "IMAGE", new byte[]{1, 2, 3}));
+
+        final byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+        assertTrue(BinaryMessageFormat.decode(truncated).isFailure());
+    }
+
+    @Test
+    void supportedDateRangeMatchesEncoding() {
+        assertTrue(BinaryMessageFormat.isSupportedDate(BinaryMessageFormat.MIN_DATE));
+        assertTrue(BinaryMessageFormat.isSupportedDate(BinaryMessageFormat.MAX_DATE));
+        assertFalse(BinaryMessageFormat.isSupportedDate(Instant.parse("3000-01-01T00:00:00Z")));
+        assertFalse(BinaryMessageFormat.isSupportedDate(BinaryMessageFormat.MIN_DATE.minusNanos(1)));
+
+        final MessageFrame frame = new MessageFrame(UUID.randomUUID(), BinaryMessageFormat.MAX_DATE,
+                UUID.randomUUID(), UUID.randomUUID(), "STRING", new byte[]{1});
+        assertEquals(BinaryMessageFormat.MAX_DATE, BinaryMessageFormat.decode(BinaryMessageFormat.encode(frame)).getValue().date());
+    }
+}
@@ -0,0 +1,48 @@
+package ru.test.the.best.chat.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobReferenceTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        final BlobReference reference = new BlobReference(UUID.randomUUID(), 3L * Integer.MAX_VALUE);
+
+        final byte[] encoded = reference.encode();
+        assertEquals(BlobReference.ENCODED_SIZE, encoded.length);
+        assertEquals(reference, BlobReference.decode(encoded).getValue());
+    }
+
+    @Test
+    void invalidLengthIsRejected() {
+        assertTrue(BlobReference.decode(new byte[BlobReference.ENCODED_SIZE - 1]).isFailure());
+        assertTrue(BlobReference.decode(null).isFailure());
+    }
+
+    @Test
+    void negativeSizeIsRejected() {
+        final byte[] encoded = ByteBuffer.allocate(BlobReference.ENCODED_SIZE)
+                .putLong(1)
+                .putLong(2)
+                .putLong(-1)
+                .array();
+
+        assertTrue(BlobReference.decode(encoded).isFailure());
+    }
+
+    @Test
+    void rangeOutsideContentIsRejected() {
+        final BlobReference reference = new BlobReference(UUID.randomUUID(), 100);
+
+        assertDoesNotThrow(() -> reference.checkRange(0, 100));
+        assertDoesNotThrow(() -> reference.checkRange(99, 1));
+        assertThrows(IllegalArgumentException.class, () -> reference.checkRange(99, 2));
+        assertThrows(IllegalArgumentException.class, () -> reference.checkRange(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> reference.checkRange(Long.MAX_VALUE, 1));
+    }
+}
@@ -0,0 +1,42 @@
+package ru.test.the.best.chat.codec;
+
+import org.junit.jupiter.api.Test;
+import ru.test.the.best.chat.errs.Error;
+import ru.test.the.best.chat.errs.Result;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadCompressionTest {
+
+    @Test
+    void compressDecompressRoundTrip() {
+        final byte[] data = "Привет, как дела? ".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+        final byte[] compressed = PayloadCompression.compress(data, 1);
+        assertTrue(compressed.length < data.length);
+        assertEquals(data.length, PayloadCompression.originalLength(compressed));
+
+        final Result<byte[], Error> decompressed = PayloadCompression.decompress(compressed);
+        assertTrue(decompressed.isSuccess());
+        assertArrayEquals(data, decompressed.getValue());
+    }
+
+    @Test
+    void truncatedPayloadIsRejected() {
+        final byte[] compressed = PayloadCompression.compress("a".repeat(10_000).getBytes(StandardCharsets.UTF_8), 1);
+
+        assertTrue(PayloadCompression.decompress(Arrays.copyOf(compressed, compressed.length - 2)).isFailure());
+        assertTrue(PayloadCompression.decompress(new byte[]{0, 0}).isFailure());
+    }
+
+    @Test
+    void implausibleLengthIsRejected() {
+        final byte[] compressed = PayloadCompression.compress(new byte[]{1, 2, 3}, 1);
+        compressed[0] = 0x7F;
+
+        assertTrue(PayloadCompression.decompress(compressed).isFailure());
+    }
+}
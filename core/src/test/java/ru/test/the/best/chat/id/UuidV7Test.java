@@ -0,0 +1,66 @@
+package ru.test.the.best.chat.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7Test {
+
+    @Test
+    void nextHasVersionAndVariant() {
+        final UUID id = UuidV7.next();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertTrue(UuidV7.isTimeOrdered(id));
+    }
+
+    @Test
+    void nextIsStrictlyIncreasingAsString() {
+        final List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(UuidV7.next().toString());
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0, "ids must grow: " + ids.get(i - 1) + " " + ids.get(i));
+        }
+    }
+
+    @Test
+    void timestampMatchesCreationTime() {
+        final long before = System.currentTimeMillis();
+        final UUID id = UuidV7.next();
+        final long after = System.currentTimeMillis();
+
+        final long created = UuidV7.timestamp(id).toEpochMilli();
+        // Счётчик может перенестись в поле времени, но не дальше нескольких миллисекунд
+        assertTrue(created >= before && created <= after + 100, "unexpected timestamp: " + created);
+    }
+
+    @Test
+    void lowerBoundPrecedesIdsOfSameMillisecond() {
+        final UUID id = UuidV7.next();
+        final Instant created = UuidV7.timestamp(id);
+
+        final UUID bound = UuidV7.lowerBound(created);
+        assertTrue(UuidV7.isTimeOrdered(bound));
+        assertEquals(created, UuidV7.timestamp(bound));
+        assertTrue(bound.toString().compareTo(id.toString()) < 0);
+        assertTrue(UuidV7.lowerBound(created.plusMillis(1)).toString().compareTo(id.toString()) > 0);
+    }
+
+    @Test
+    void randomUuidIsNotTimeOrdered() {
+        final UUID id = UUID.randomUUID();
+
+        assertFalse(UuidV7.isTimeOrdered(id));
+        assertFalse(UuidV7.isTimeOrdered(null));
+        assertThrows(IllegalArgumentException.class, () -> UuidV7.timestamp(id));
+    }
+}
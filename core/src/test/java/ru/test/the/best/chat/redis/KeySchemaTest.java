@@ -0,0 +1,66 @@
+package ru.test.the.best.chat.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeySchemaTest {
+
+    private static final UUID FIRST = UUID.fromString("0199b3a4-0f6e-7c21-9a3b-5d1e2f3a4b5c");
+    private static final UUID SECOND = UUID.fromString("f1e2d3c4-b5a6-4978-8877-665544332211");
+
+    @Test
+    void memberRoundTrip() {
+        for (KeySchema schema : KeySchema.values()) {
+            final byte[] member = schema.member(FIRST);
+            assertEquals(schema.idLength(), member.length);
+            assertEquals(FIRST, schema.parseMember(member));
+        }
+    }
+
+    @Test
+    void textKeysMatchLegacyLayout() {
+        assertEquals("message:" + FIRST, ascii(KeySchema.TEXT.key("message:", FIRST)));
+        assertEquals("conversation:" + FIRST + ":" + SECOND, ascii(KeySchema.TEXT.pairKey("conversation:", SECOND, FIRST)));
+        assertEquals("messages:all", KeySchema.TEXT.staticKey("messages:all"));
+        assertEquals("S|from|user:messages:from:", ascii(KeySchema.TEXT.template('S', "from", "user:messages:from:")));
+    }
+
+    @Test
+    void binaryKeysUseRawIds() {
+        final byte[] key = KeySchema.BINARY.key("message:", FIRST);
+        assertEquals("message:".length() + KeySchema.BINARY_ID_LENGTH, key.length);
+        assertEquals(FIRST, KeySchema.BINARY.idFromKey("message:", key));
+        assertNull(KeySchema.TEXT.idFromKey("message:", key));
+
+        assertEquals("messages:all:bin", KeySchema.BINARY.staticKey("messages:all"));
+        assertEquals("Z|bpair|conversation:", ascii(KeySchema.BINARY.template('Z', "pair", "conversation:")));
+        assertEquals("S|static|messages:all:bin", ascii(KeySchema.BINARY.template('S', "static", "messages:all")));
+    }
+
+    @Test
+    void pairKeyDoesNotDependOnOrder() {
+        for (KeySchema schema : KeySchema.values()) {
+            assertArrayEquals(schema.pairKey("conversation:", FIRST, SECOND), schema.pairKey("conversation:", SECOND, FIRST));
+        }
+
+        // Пара в бинарной схеме упорядочена так же, как в текстовой
+        final byte[] binary = KeySchema.BINARY.pairKey("c:", SECOND, FIRST);
+        final byte[] min = new byte[KeySchema.BINARY_ID_LENGTH];
+        System.arraycopy(binary, 2, min, 0, min.length);
+        assertEquals(FIRST, KeySchema.BINARY.parseMember(min));
+    }
+
+    @Test
+    void parseMemberRejectsWrongLength() {
+        assertThrows(IllegalArgumentException.class, () -> KeySchema.BINARY.parseMember(new byte[15]));
+        assertThrows(IllegalArgumentException.class, () -> KeySchema.TEXT.parseMember("not-a-uuid".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String ascii(final byte[] value) {
+        return new String(value, StandardCharsets.US_ASCII);
+    }
+}